@@ -64,6 +64,8 @@ public class CleanupCommand extends Command {
 		OptionSpec<Void> optionNoOlderVersionRemoval = parser.acceptsAll(asList("O", "no-delete-older-than"));
 		OptionSpec<Void> optionNoVersionRemovalByInterval = parser.acceptsAll(asList("I", "no-delete-interval"));
 		OptionSpec<Void> optionNoRemoveTempFiles = parser.acceptsAll(asList("T", "no-temp-removal"));
+		OptionSpec<Void> optionNoRepack = parser.acceptsAll(asList("R", "no-repack"));
+		OptionSpec<Void> optionSnapshot = parser.acceptsAll(asList("S", "snapshot"));
 		OptionSpec<String> optionKeepMinTime = parser.acceptsAll(asList("o", "delete-older-than"))
 				.withRequiredArg().ofType(String.class);
 
@@ -81,6 +83,12 @@ public class CleanupCommand extends Command {
 		// -I, --no-delete-interval
 		operationOptions.setRemoveVersionsByInterval(!options.has(optionNoVersionRemovalByInterval));
 
+		// -R, --no-repack
+		operationOptions.setRepackMultiChunks(!options.has(optionNoRepack));
+
+		// -S, --snapshot
+		operationOptions.setCreateSnapshot(options.has(optionSnapshot));
+
 		// -o=<time>, --delete-older-than=<time>
 		if (options.has(optionKeepMinTime)) {
 			long keepDeletedFilesForSeconds = CommandLineUtil.parseTimePeriod(options.valueOf(optionKeepMinTime));
@@ -142,6 +150,12 @@ public class CleanupCommand extends Command {
 						(double) concreteOperationResult.getRemovedMultiChunksSize() / 1024 / 1024);
 			}
 
+			if (concreteOperationResult.getRepackedMultiChunksCount() > 0) {
+				out.printf("%d multichunk(s) repacked on remote storage (freed %.2f MB)\n",
+						concreteOperationResult.getRepackedMultiChunksCount(),
+						(double) concreteOperationResult.getRepackedMultiChunksSize() / 1024 / 1024);
+			}
+
 			if (concreteOperationResult.getRemovedOldVersionsCount() > 0) {
 				out.println(concreteOperationResult.getRemovedOldVersionsCount() + " file histories shortened.");
 				// TODO [low] This counts only the file histories, not file versions; not very helpful!
@@ -25,6 +25,7 @@ import org.syncany.cli.util.CarriageReturnPrinter;
 import org.syncany.config.LocalEventBus;
 import org.syncany.operations.OperationOptions;
 import org.syncany.operations.OperationResult;
+import org.syncany.operations.PagedOperationOptions;
 
 /**
  * Commands are the central part of Syncany's command line client. Each implementation 
@@ -107,6 +108,18 @@ public abstract class Command {
 	 * {@link OperationResult} object and formats it to be human-readable.
 	 */
 	public abstract void printResults(OperationResult result);
+
+	/**
+	 * Returns whether all pages of a paged result should be fetched and printed. If 
+	 * this method returns <tt>true</tt>, the options returned by {@link #parseOptions(String[]) parseOptions()}
+	 * must be {@link PagedOperationOptions}, and {@link #printResults(OperationResult) printResults()}
+	 * is called once per page.
+	 * 
+	 * <p>By default, only the first page is fetched and printed.
+	 */
+	public boolean fetchAllPages() {
+		return false;
+	}
 		
 	public void setLocalDir(File localDir) {
 		this.localDir = localDir;
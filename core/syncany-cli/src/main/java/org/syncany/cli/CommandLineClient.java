@@ -62,6 +62,9 @@ import org.syncany.config.Logging;
 import org.syncany.config.UserConfig;
 import org.syncany.config.to.PortTO;
 import org.syncany.operations.OperationOptions;
+import org.syncany.operations.OperationResult;
+import org.syncany.operations.PagedOperationOptions;
+import org.syncany.operations.PagedOperationResult;
 import org.syncany.operations.daemon.DaemonOperation;
 import org.syncany.operations.daemon.WebServer;
 import org.syncany.operations.daemon.messages.AlreadySyncingResponse;
@@ -421,21 +424,24 @@ public class CommandLineClient extends Client {
 					.build();
 
 			// Build and send request, print response
-			Request request = buildFolderRequestFromCommand(command, commandName, commandArgs, config.getLocalDir().getAbsolutePath());
+			OperationOptions operationOptions = command.parseOptions(commandArgs);
+			FolderRequest request = buildFolderRequestFromCommand(command, commandName, operationOptions, config.getLocalDir().getAbsolutePath());
 			String serverUri = SERVER_SCHEMA + SERVER_HOSTNAME + ":" + portConfig.getPort() + SERVER_REST_API;
 
-			String xmlMessageString = XmlMessageFactory.toXml(request);
-			StringEntity xmlMessageEntity = new StringEntity(xmlMessageString);
+			Response response = sendRestRequest(client, serverUri, request);
+			int exitCode = handleRestResponse(command, response);
 
-			HttpPost httpPost = new HttpPost(serverUri);
-			httpPost.setEntity(xmlMessageEntity);
+			// Fetch and print following pages (if command and operation support it)
+			String nextPageToken = getNextPageToken(command, response);
 
-			logger.log(Level.INFO, "Sending HTTP Request to: " + serverUri);
-			logger.log(Level.FINE, httpPost.toString());
-			logger.log(Level.FINE, xmlMessageString);
+			while (exitCode == 0 && nextPageToken != null) {
+				((PagedOperationOptions) operationOptions).setPageToken(nextPageToken);
+				request.setId(Math.abs(new Random().nextInt()));
 
-			HttpResponse httpResponse = client.execute(httpPost);
-			int exitCode = handleRestResponse(command, httpResponse);
+				response = sendRestRequest(client, serverUri, request);
+				exitCode = handleRestResponse(command, response);
+				nextPageToken = getNextPageToken(command, response);
+			}
 
 			return exitCode;
 		}
@@ -445,14 +451,27 @@ public class CommandLineClient extends Client {
 		}
 	}
 
-	private int handleRestResponse(Command command, HttpResponse httpResponse) throws Exception {
+	private Response sendRestRequest(CloseableHttpClient client, String serverUri, Request request) throws Exception {
+		String xmlMessageString = XmlMessageFactory.toXml(request);
+		StringEntity xmlMessageEntity = new StringEntity(xmlMessageString);
+
+		HttpPost httpPost = new HttpPost(serverUri);
+		httpPost.setEntity(xmlMessageEntity);
+
+		logger.log(Level.INFO, "Sending HTTP Request to: " + serverUri);
+		logger.log(Level.FINE, httpPost.toString());
+		logger.log(Level.FINE, xmlMessageString);
+
+		HttpResponse httpResponse = client.execute(httpPost);
 		logger.log(Level.FINE, "Received HttpResponse: " + httpResponse);
 
 		String responseStr = IOUtils.toString(httpResponse.getEntity().getContent());
 		logger.log(Level.FINE, "Responding to message with responseString: " + responseStr);
 
-		Response response = XmlMessageFactory.toResponse(responseStr);
+		return XmlMessageFactory.toResponse(responseStr);
+	}
 
+	private int handleRestResponse(Command command, Response response) throws Exception {
 		if (response instanceof FolderResponse) {
 			FolderResponse folderResponse = (FolderResponse) response;
 			command.printResults(folderResponse.getResult());
@@ -471,7 +490,24 @@ public class CommandLineClient extends Client {
 		return 1;
 	}
 
-	private Request buildFolderRequestFromCommand(Command command, String commandName, String[] commandArgs, String root) throws Exception {
+	/**
+	 * Returns the page token of the next page if the given response is a page of a 
+	 * paged result, and the command wants to print all pages. Otherwise, <tt>null</tt>
+	 * is returned.
+	 */
+	private String getNextPageToken(Command command, Response response) {
+		if (command.fetchAllPages() && response instanceof FolderResponse) {
+			OperationResult result = ((FolderResponse) response).getResult();
+
+			if (result instanceof PagedOperationResult) {
+				return ((PagedOperationResult) result).getNextPageToken();
+			}
+		}
+
+		return null;
+	}
+
+	private FolderRequest buildFolderRequestFromCommand(Command command, String commandName, OperationOptions operationOptions, String root) throws Exception {
 		String thisPackage = BadRequestResponse.class.getPackage().getName(); // TODO [low] Medium-dirty hack.
 		String camelCaseMessageType = StringUtil.toCamelCase(commandName) + FolderRequest.class.getSimpleName();
 		String fqMessageClassName = thisPackage + "." + camelCaseMessageType;
@@ -487,7 +523,6 @@ public class CommandLineClient extends Client {
 			throw new Exception("Cannot read request class from request type: " + commandName, e);
 		}
 
-		OperationOptions operationOptions = command.parseOptions(commandArgs);
 		int requestId = Math.abs(new Random().nextInt());
 
 		folderRequest.setRoot(root);
@@ -23,7 +23,6 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,6 +56,7 @@ public class LsCommand extends Command {
 	private int checksumLength;
 	private boolean groupedVersions;
 	private boolean fetchHistories;
+	private boolean printedHistoryGroup;
 	
 	@Override
 	public CommandScope getRequiredCommandScope() {	
@@ -75,9 +75,22 @@ public class LsCommand extends Command {
 
 		printResults(operationResult);
 
+		// Print the following pages as they arrive
+		while (operationResult.getNextPageToken() != null) {
+			operationOptions.setPageToken(operationResult.getNextPageToken());
+			operationResult = client.ls(operationOptions);
+
+			printResults(operationResult);
+		}
+
 		return 0;
 	}	
 
+	@Override
+	public boolean fetchAllPages() {
+		return true;
+	}
+
 	@Override
 	public LsOperationOptions parseOptions(String[] operationArgs) throws Exception {
 		LsOperationOptions operationOptions = new LsOperationOptions();
@@ -140,6 +153,8 @@ public class LsCommand extends Command {
 		
 		// --deleted
 		operationOptions.setDeleted(options.has(optionDeleted));
+
+		printedHistoryGroup = false;
 		
 		// <path-expr>
 		List<?> nonOptionArgs = options.nonOptionArguments();
@@ -192,12 +207,14 @@ public class LsCommand extends Command {
 	}
 
 	private void printGroupedHistories(LsOperationResult operationResult, int longestSize, int longestVersion) {
-		Iterator<FileVersion> fileVersionIterator = operationResult.getFileList().iterator();
-		
-		while (fileVersionIterator.hasNext()) {
-			FileVersion fileVersion = fileVersionIterator.next();
+		for (FileVersion fileVersion : operationResult.getFileList()) {
 			PartialFileHistory fileHistory = operationResult.getFileVersions().get(fileVersion.getFileHistoryId());
 			
+			// Separate groups by an empty line, also across pages
+			if (printedHistoryGroup) {
+				out.println();
+			}
+			
 			out.printf("File %s, %s\n", formatObjectId(fileHistory.getFileHistoryId()), fileVersion.getPath());
 			
 			for (FileVersion fileVersionInHistory : fileHistory.getFileVersions().values()) {
@@ -211,9 +228,7 @@ public class LsCommand extends Command {
 				printOneVersion(fileVersionInHistory, longestVersion, longestSize);						
 			}	
 			
-			if (fileVersionIterator.hasNext()) {
-				out.println();
-			}
+			printedHistoryGroup = true;
 		}		
 	}
 
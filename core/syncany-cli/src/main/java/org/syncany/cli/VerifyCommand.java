@@ -0,0 +1,123 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.cli;
+
+import static java.util.Arrays.asList;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import org.syncany.operations.OperationResult;
+import org.syncany.operations.verify.VerifyOperationOptions;
+import org.syncany.operations.verify.VerifyOperationResult;
+
+public class VerifyCommand extends Command {
+	@Override
+	public CommandScope getRequiredCommandScope() {
+		return CommandScope.INITIALIZED_LOCALDIR;
+	}
+
+	@Override
+	public boolean canExecuteInDaemonScope() {
+		return false;
+	}
+
+	@Override
+	public int execute(String[] operationArgs) throws Exception {
+		VerifyOperationOptions operationOptions = parseOptions(operationArgs);
+		VerifyOperationResult operationResult = client.verify(operationOptions);
+
+		printResults(operationResult);
+
+		return 0;
+	}
+
+	@Override
+	public VerifyOperationOptions parseOptions(String[] operationArgs) throws Exception {
+		VerifyOperationOptions operationOptions = new VerifyOperationOptions();
+
+		OptionParser parser = new OptionParser();
+		parser.allowsUnrecognizedOptions();
+
+		OptionSpec<Integer> optionThreads = parser.acceptsAll(asList("t", "threads")).withRequiredArg().ofType(Integer.class);
+		OptionSpec<Void> optionNoDownload = parser.acceptsAll(asList("D", "no-download"));
+
+		OptionSet options = parser.parse(operationArgs);
+
+		// -t, --threads=<count>
+		if (options.has(optionThreads)) {
+			int threads = options.valueOf(optionThreads);
+
+			if (threads < 1) {
+				throw new Exception("Invalid value for --threads=" + threads + "; must be >= 1");
+			}
+
+			operationOptions.setThreads(threads);
+		}
+
+		// -D, --no-download
+		operationOptions.setDownloadFallback(!options.has(optionNoDownload));
+
+		return operationOptions;
+	}
+
+	@Override
+	public void printResults(OperationResult operationResult) {
+		VerifyOperationResult concreteOperationResult = (VerifyOperationResult) operationResult;
+
+		switch (concreteOperationResult.getResultCode()) {
+		case NOK_REMOTE_CHANGES:
+			out.println("Remote changes detected. Please call 'down' first.");
+			break;
+
+		case NOK_OTHER_OPERATIONS_RUNNING:
+			out.println("Cannot verify while other clients are performing cleanup. Try again later.");
+			break;
+
+		case NOK_MISSING_OR_CORRUPT:
+			for (String multiChunkId : concreteOperationResult.getMissingMultiChunks()) {
+				out.println("M multichunk-" + multiChunkId);
+			}
+
+			for (String multiChunkId : concreteOperationResult.getCorruptMultiChunks()) {
+				out.println("C multichunk-" + multiChunkId);
+			}
+
+			out.println();
+			out.printf("%d multichunk(s) missing, %d multichunk(s) corrupt.\n", concreteOperationResult.getMissingMultiChunks().size(),
+					concreteOperationResult.getCorruptMultiChunks().size());
+
+			printVerifiedCounts(concreteOperationResult);
+			break;
+
+		case OK:
+			printVerifiedCounts(concreteOperationResult);
+			out.println("Verification successful.");
+			break;
+
+		default:
+			throw new RuntimeException("Invalid result code: " + concreteOperationResult.getResultCode().toString());
+		}
+	}
+
+	private void printVerifiedCounts(VerifyOperationResult operationResult) {
+		out.printf("%d multichunk(s) intact (%d verified by the remote storage), %d multichunk(s) not verified.\n",
+				operationResult.getVerifiedMultiChunksCount(), operationResult.getServerVerifiedMultiChunksCount(),
+				operationResult.getUnverifiedMultiChunksCount());
+	}
+}
@@ -61,6 +61,7 @@ public class WatchCommand extends Command {
 		OptionSpec<Void> optionNoAnnouncements = parser.acceptsAll(asList("N", "no-announcements"));
 		OptionSpec<String> optionAnnouncements = parser.acceptsAll(asList("a", "announce")).withRequiredArg();
 		OptionSpec<Void> optionNoWatcher = parser.acceptsAll(asList("W", "no-watcher"));
+		OptionSpec<Void> optionNoPrefetch = parser.acceptsAll(asList("P", "no-prefetch"));
 		OptionSpec<Integer> optionSettleDelay = parser.acceptsAll(asList("s", "delay")).withRequiredArg().ofType(Integer.class);
 		
 		OptionSet options = parser.parse(operationArgs);	
@@ -108,6 +109,11 @@ public class WatchCommand extends Command {
 			operationOptions.setWatcher(false);
 		}
 		
+		// --no-prefetch
+		if (options.has(optionNoPrefetch)) {
+			operationOptions.setPrefetch(false);
+		}
+		
 		return operationOptions;
 	}
 
@@ -65,6 +65,9 @@ import org.syncany.operations.status.StatusOperationResult;
 import org.syncany.operations.up.UpOperation;
 import org.syncany.operations.up.UpOperationOptions;
 import org.syncany.operations.up.UpOperationResult;
+import org.syncany.operations.verify.VerifyOperation;
+import org.syncany.operations.verify.VerifyOperationOptions;
+import org.syncany.operations.verify.VerifyOperationResult;
 import org.syncany.operations.watch.WatchOperation;
 import org.syncany.operations.watch.WatchOperationOptions;
 import org.syncany.plugins.UserInteractionListener;
@@ -183,6 +186,10 @@ public class Client {
 		return new CleanupOperation(config, options).execute();
 	}
 
+	public VerifyOperationResult verify(VerifyOperationOptions options) throws Exception {
+		return new VerifyOperation(config, options).execute();
+	}
+
 	public PluginOperationResult plugin(PluginOperationOptions options) throws Exception {
 		return new PluginOperation(config, options).execute();
 	}
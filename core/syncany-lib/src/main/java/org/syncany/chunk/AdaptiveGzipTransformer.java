@@ -0,0 +1,383 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.syncany.chunk.GzipTransformer.GZIPOutputStreamEx;
+
+/**
+ * Implements a {@link Transformer} that only compresses streams that are
+ * actually compressible, and stores all other streams uncompressed.
+ * 
+ * <p>Before compressing a stream, the transformer buffers a sample of the first
+ * {@link #SAMPLE_SIZE} bytes. If the byte entropy of that sample indicates random
+ * data (e.g. JPEGs, videos, archives or encrypted data), or if a trial deflate of the
+ * sample does not save at least the configured percentage of bytes, the stream is
+ * stored as-is. Otherwise, it is compressed using Gzip.
+ * 
+ * <p>The decision is recorded in a one-byte header ({@link #STREAM_STORED} or
+ * {@link #STREAM_GZIP}) written in front of every stream, so that the input stream
+ * can handle both formats. Streams written by this transformer can hence not be
+ * read by the {@link GzipTransformer}, and vice versa.
+ * 
+ * <p>Supported settings are {@link #PROPERTY_LEVEL} (<tt>fast</tt>, <tt>default</tt>,
+ * <tt>best</tt> or a deflate level 1-9), and {@link #PROPERTY_MIN_SAVING} (minimum
+ * saving in percent required to compress a stream).
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class AdaptiveGzipTransformer extends Transformer {
+	private static final Logger logger = Logger.getLogger(AdaptiveGzipTransformer.class.getSimpleName());
+
+	public static final String TYPE = "adaptive-gzip";
+	public static final String PROPERTY_LEVEL = "level";
+	public static final String PROPERTY_MIN_SAVING = "minsaving";
+
+	public static final String LEVEL_FAST = "fast";
+	public static final String LEVEL_DEFAULT = "default";
+	public static final String LEVEL_BEST = "best";
+
+	public static final byte STREAM_STORED = 0x00;
+	public static final byte STREAM_GZIP = 0x01;
+
+	public static final int SAMPLE_SIZE = 64 * 1024;
+	public static final int DEFAULT_MIN_SAVING = 5; // in percent
+
+	private static final double MAX_COMPRESSIBLE_ENTROPY = 7.9; // in bits per byte
+
+	private int level;
+	private int minSaving;
+	private CompressionStatistics statistics;
+
+	public AdaptiveGzipTransformer() {
+		this(Deflater.DEFAULT_COMPRESSION, DEFAULT_MIN_SAVING, null);
+	}
+
+	public AdaptiveGzipTransformer(Transformer nextTransformer) {
+		this(Deflater.DEFAULT_COMPRESSION, DEFAULT_MIN_SAVING, nextTransformer);
+	}
+
+	public AdaptiveGzipTransformer(int level, int minSaving, Transformer nextTransformer) {
+		super(nextTransformer);
+
+		this.level = level;
+		this.minSaving = minSaving;
+		this.statistics = new CompressionStatistics();
+	}
+
+	/**
+	 * Initializes the transformer using a settings map. All settings are
+	 * optional: {@link #PROPERTY_LEVEL} and {@link #PROPERTY_MIN_SAVING}.
+	 */
+	@Override
+	public void init(Map<String, String> settings) throws Exception {
+		if (settings == null) {
+			return;
+		}
+
+		String levelStr = settings.get(PROPERTY_LEVEL);
+		String minSavingStr = settings.get(PROPERTY_MIN_SAVING);
+
+		if (levelStr != null) {
+			level = parseLevel(levelStr);
+		}
+
+		if (minSavingStr != null) {
+			minSaving = Integer.parseInt(minSavingStr);
+
+			if (minSaving < 0 || minSaving > 100) {
+				throw new Exception("Setting '" + PROPERTY_MIN_SAVING + "' must be a percentage between 0 and 100.");
+			}
+		}
+	}
+
+	private int parseLevel(String levelStr) throws Exception {
+		if (LEVEL_FAST.equalsIgnoreCase(levelStr)) {
+			return Deflater.BEST_SPEED;
+		}
+		else if (LEVEL_DEFAULT.equalsIgnoreCase(levelStr)) {
+			return Deflater.DEFAULT_COMPRESSION;
+		}
+		else if (LEVEL_BEST.equalsIgnoreCase(levelStr)) {
+			return Deflater.BEST_COMPRESSION;
+		}
+		else {
+			int level = Integer.parseInt(levelStr);
+
+			if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+				throw new Exception("Setting '" + PROPERTY_LEVEL + "' must be 'fast', 'default', 'best' or a level between 1 and 9.");
+			}
+
+			return level;
+		}
+	}
+
+	@Override
+	public OutputStream createOutputStream(OutputStream out) throws IOException {
+		if (nextTransformer == null) {
+			return new AdaptiveGzipOutputStream(out);
+		}
+		else {
+			return new AdaptiveGzipOutputStream(nextTransformer.createOutputStream(out));
+		}
+	}
+
+	@Override
+	public InputStream createInputStream(InputStream in) throws IOException {
+		InputStream underlyingInputStream = (nextTransformer == null) ? in : nextTransformer.createInputStream(in);
+		int streamType = underlyingInputStream.read();
+
+		if (streamType == STREAM_GZIP) {
+			return new GZIPInputStream(underlyingInputStream);
+		}
+		else if (streamType == STREAM_STORED) {
+			return underlyingInputStream;
+		}
+		else {
+			throw new IOException("Invalid adaptive compression header: " + streamType);
+		}
+	}
+
+	/**
+	 * Returns the compression statistics of all streams written by this transformer
+	 * since its creation or since the last {@link CompressionStatistics#reset() reset}.
+	 */
+	public CompressionStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return (nextTransformer == null) ? "AdaptiveGzip" : "AdaptiveGzip-" + nextTransformer;
+	}
+
+	/**
+	 * Determines whether the given sample is worth compressing. Samples with a byte entropy
+	 * close to 8 bits per byte are considered incompressible without a trial deflate. For
+	 * all other samples, a trial deflate (fastest level) is performed.
+	 */
+	private boolean isCompressible(byte[] sample, int length) {
+		if (length == 0) {
+			return false;
+		}
+
+		double entropy = calculateEntropy(sample, length);
+
+		if (entropy > MAX_COMPRESSIBLE_ENTROPY) {
+			logger.log(Level.FINE, "- Sample entropy is {0} bits/byte; storing stream uncompressed.", entropy);
+			return false;
+		}
+
+		long trialStartTime = System.nanoTime();
+		int compressedLength = trialDeflate(sample, length);
+
+		statistics.addTrial(length, System.nanoTime() - trialStartTime);
+
+		long saving = 100L * (length - compressedLength) / length;
+		logger.log(Level.FINE, "- Trial deflate saves {0}% (entropy {1} bits/byte).", new Object[] { saving, entropy });
+
+		return saving >= minSaving;
+	}
+
+	private double calculateEntropy(byte[] sample, int length) {
+		int[] byteCounts = new int[256];
+
+		for (int i = 0; i < length; i++) {
+			byteCounts[sample[i] & 0xff]++;
+		}
+
+		double entropy = 0;
+
+		for (int byteCount : byteCounts) {
+			if (byteCount > 0) {
+				double probability = (double) byteCount / length;
+				entropy -= probability * Math.log(probability) / Math.log(2);
+			}
+		}
+
+		return entropy;
+	}
+
+	private int trialDeflate(byte[] sample, int length) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		byte[] buffer = new byte[8192];
+		int compressedLength = 0;
+
+		try {
+			deflater.setInput(sample, 0, length);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				compressedLength += deflater.deflate(buffer);
+			}
+
+			return compressedLength;
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Output stream that buffers the first {@link AdaptiveGzipTransformer#SAMPLE_SIZE SAMPLE_SIZE}
+	 * bytes, decides whether or not to compress the stream, writes the header and then passes
+	 * all data to either a Gzip stream or the underlying stream.
+	 */
+	private class AdaptiveGzipOutputStream extends OutputStream {
+		private OutputStream underlyingOutputStream;
+		private ByteArrayOutputStream sampleBuffer;
+
+		private OutputStream targetOutputStream;
+		private boolean compressed;
+
+		private long inputBytes;
+		private CountingOutputStream countingOutputStream;
+		private long compressNanos;
+
+		public AdaptiveGzipOutputStream(OutputStream underlyingOutputStream) {
+			this.underlyingOutputStream = underlyingOutputStream;
+			this.sampleBuffer = new ByteArrayOutputStream(SAMPLE_SIZE);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			inputBytes += len;
+
+			if (targetOutputStream == null) {
+				int sampleBytes = Math.min(len, SAMPLE_SIZE - sampleBuffer.size());
+				sampleBuffer.write(b, off, sampleBytes);
+
+				if (sampleBuffer.size() < SAMPLE_SIZE) {
+					return;
+				}
+
+				openTargetOutputStream();
+
+				off += sampleBytes;
+				len -= sampleBytes;
+			}
+
+			if (len > 0) {
+				writeToTarget(b, off, len);
+			}
+		}
+
+		private void openTargetOutputStream() throws IOException {
+			byte[] sample = sampleBuffer.toByteArray();
+
+			compressed = isCompressible(sample, sample.length);
+			countingOutputStream = new CountingOutputStream(underlyingOutputStream);
+
+			if (compressed) {
+				underlyingOutputStream.write(STREAM_GZIP);
+				targetOutputStream = new GZIPOutputStreamEx(countingOutputStream, level);
+			}
+			else {
+				underlyingOutputStream.write(STREAM_STORED);
+				targetOutputStream = countingOutputStream;
+			}
+
+			sampleBuffer = null;
+			writeToTarget(sample, 0, sample.length);
+		}
+
+		private void writeToTarget(byte[] b, int off, int len) throws IOException {
+			long writeStartTime = System.nanoTime();
+			targetOutputStream.write(b, off, len);
+
+			if (compressed) {
+				compressNanos += System.nanoTime() - writeStartTime;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (targetOutputStream != null) {
+				targetOutputStream.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (targetOutputStream == null) {
+				openTargetOutputStream();
+			}
+
+			long closeStartTime = System.nanoTime();
+			targetOutputStream.close();
+
+			if (compressed) {
+				compressNanos += System.nanoTime() - closeStartTime;
+				statistics.addCompressedStream(inputBytes, countingOutputStream.getCount(), compressNanos);
+			}
+			else {
+				statistics.addStoredStream(inputBytes);
+			}
+		}
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private OutputStream out;
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			this.out = out;
+			this.count = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
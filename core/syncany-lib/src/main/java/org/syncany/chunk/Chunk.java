@@ -28,12 +28,18 @@ public class Chunk {
     private byte[] contents;
     private int size;
     private byte[] fileChecksum;
+    private ChunkerResumePoint resumePoint;
 
     /*package*/ Chunk(byte[] checksum, byte[] contents, int size, byte[] fileChecksum) {
+        this(checksum, contents, size, fileChecksum, null);
+    }
+
+    /*package*/ Chunk(byte[] checksum, byte[] contents, int size, byte[] fileChecksum, ChunkerResumePoint resumePoint) {
         this.checksum = checksum;
         this.contents = contents;
         this.size = size;
         this.fileChecksum = fileChecksum;
+        this.resumePoint = resumePoint;
     }
 
     public byte[] getChecksum() {
@@ -50,5 +56,14 @@ public class Chunk {
 
     public int getSize() {
         return size;
+    }
+
+    /**
+     * Returns the resume point at the start of this chunk. The resume point is only
+     * set for the last chunk of a file, and only if the chunker supports resume points
+     * (see {@link Chunker#isResumable()}). Otherwise, <tt>null</tt> is returned.
+     */
+    public ChunkerResumePoint getResumePoint() {
+        return resumePoint;
     }                
 }
\ No newline at end of file
@@ -19,7 +19,13 @@ package org.syncany.chunk;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.util.StringUtil;
 
 /**
  * The chunker implements a core part of the deduplication process by breaking
@@ -32,12 +38,25 @@ import java.util.Enumeration;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class Chunker {	
+	private static final Logger logger = Logger.getLogger(Chunker.class.getSimpleName());
+	
 	/**
 	 * Property used by the config to indicate the exact or 
 	 * approximate size of a chunk. In bytes. 
 	 */
 	public static final String PROPERTY_SIZE = "size";
 	
+	/**
+	 * If a chunker is instantiated via the default constructor (e.g. via the repository config),
+	 * it must be initialized using this method. The settings passed to the method depend
+	 * on the implementation of the chunker. The default implementation does nothing.
+	 * 
+	 * @param settings Implementation-specific setting map
+	 */
+	public void init(Map<String, String> settings) {
+		// Nothing here
+	}
+	
     /**
      * Opens the given file and creates enumeration of {@link Chunk}s. This method 
      * should not read the file into memory at once, but instead read and emit new 
@@ -51,6 +70,62 @@ public abstract class Chunker {
      * @throws IOException If any file exceptions occur
      */	
 	public abstract ChunkEnumeration createChunks(File file) throws IOException;
+
+	/**
+	 * Opens the given file and creates an enumeration of {@link Chunk}s, starting at the 
+	 * given resume point instead of the beginning of the file. The resume point must have been
+	 * emitted by this chunker for a previous (shorter) version of the file, and the content
+	 * before the resume point must not have changed since.
+	 * 
+	 * <p>The emitted chunks are identical to the chunks a full scan of the file would
+	 * emit after the first {@link ChunkerResumePoint#getChunkCount() getChunkCount()} chunks,
+	 * and the file checksum of the last chunk covers the entire file. For the latter, the
+	 * resume point must carry the digest of the file prefix (see {@link ChunkerResumePoint#getPrefixDigest()}).
+	 * 
+	 * <p>The default implementation only supports a <tt>null</tt> resume point, i.e. 
+	 * it falls back to {@link #createChunks(File)}. Chunkers that support resuming must 
+	 * override this method as well as {@link #isResumable()}. 
+	 * 
+	 * @param file The file that is supposed to be chunked
+	 * @param resumePoint Resume point at which to start chunking, or <tt>null</tt> to chunk the entire file
+	 * @return An enumeration of individual chunks, must be closed at the end of processing
+	 * @throws IOException If any file exceptions occur
+	 */
+	public ChunkEnumeration createChunks(File file, ChunkerResumePoint resumePoint) throws IOException {
+		if (resumePoint != null) {
+			throw new IllegalArgumentException("Chunker " + this + " does not support resume points.");
+		}
+		
+		return createChunks(file);
+	}
+	
+	/**
+	 * Returns whether the chunker supports resuming at a stable chunk boundary, i.e.
+	 * whether it emits {@link ChunkerResumePoint}s with the last chunk of a file and
+	 * accepts them in {@link #createChunks(File, ChunkerResumePoint)}.
+	 * 
+	 * <p>This is only possible if all chunk boundaries (except the last one) depend 
+	 * only on the contents of the chunk itself. The default implementation returns <tt>false</tt>.
+	 */
+	public boolean isResumable() {
+		return false;
+	}
+
+	/**
+	 * Creates a resume point at the given offset, using the current state of the given 
+	 * file digest as prefix checksum. The file digest itself is not changed. If the digest
+	 * cannot be copied, no resume point is created and <tt>null</tt> is returned.
+	 */
+	protected ChunkerResumePoint createResumePoint(long offset, int chunkCount, MessageDigest fileDigest) {
+		try {
+			byte[] prefixChecksum = ((MessageDigest) fileDigest.clone()).digest();
+			return new ChunkerResumePoint(offset, chunkCount, prefixChecksum);
+		}
+		catch (CloneNotSupportedException e) {
+			logger.log(Level.FINE, "Cannot copy file digest " + fileDigest.getAlgorithm() + ", not creating resume point.", e);
+			return null;
+		}
+	}
 			
 	/**
 	 * Returns a string representation of the chunker implementation.
@@ -64,6 +139,33 @@ public abstract class Chunker {
      */
     public abstract String getChecksumAlgorithm();
     
+	/**
+	 * Instantiates a chunker by its name using the default constructor. After creating
+	 * a new chunker, it must be initialized using the {@link #init(Map) init()} method.  
+	 * 
+	 * <p>The given type attribute is mapped to fully qualified class name (FQCN) of the form
+	 * <tt>org.syncany.chunk.XChunker</tt>, where <tt>X</tt> is the camel-cased type
+	 * attribute.  
+	 * 
+	 * @param type Type/name of the chunker (corresponds to its camel case class name)
+	 * @return Returns a new chunker, or <tt>null</tt> if the chunker cannot be found
+	 */
+	public static Chunker getInstance(String type) {
+		String thisPackage = Chunker.class.getPackage().getName();
+		String camelCaseName = StringUtil.toCamelCase(type);
+		String fqClassName = thisPackage + "." + camelCaseName + Chunker.class.getSimpleName();
+
+		// Try to load!
+		try {
+			Class<?> clazz = Class.forName(fqClassName);
+			return (Chunker) clazz.newInstance();
+		}
+		catch (Exception ex) {
+			logger.log(Level.INFO, "Could not find chunker FQCN " + fqClassName, ex);
+			return null;
+		}
+	}
+    
     /**
      * The chunk enumeration is implemented by the actual chunkers and emits a new
      * chunk when {@link ChunkEnumeration#nextElement() nextElement()} is called. When no more 
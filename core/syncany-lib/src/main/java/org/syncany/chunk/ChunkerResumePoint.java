@@ -0,0 +1,89 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.security.MessageDigest;
+
+/**
+ * A resume point marks a stable chunk boundary within a file, i.e. the start of
+ * the last chunk emitted by a {@link Chunker}. All chunks before this boundary do not
+ * change if data is appended to the file.
+ *
+ * <p>Besides the byte offset of the boundary and the number of chunks before it,
+ * the resume point holds the checksum of the file prefix up to that offset. Before
+ * resuming, the caller must read the prefix of the appended file, compare its checksum
+ * to the stored prefix checksum, and pass the digest of the prefix to the chunker (see
+ * {@link #ChunkerResumePoint(long, int, byte[], MessageDigest)}). That way, the prefix
+ * is verified entirely, and the chunker can continue the checksum of the entire file.
+ *
+ * @see Chunker#createChunks(java.io.File, ChunkerResumePoint)
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class ChunkerResumePoint {
+	private long offset;
+	private int chunkCount;
+	private byte[] prefixChecksum;
+	private MessageDigest prefixDigest;
+
+	public ChunkerResumePoint(long offset, int chunkCount, byte[] prefixChecksum) {
+		this(offset, chunkCount, prefixChecksum, null);
+	}
+
+	public ChunkerResumePoint(long offset, int chunkCount, byte[] prefixChecksum, MessageDigest prefixDigest) {
+		this.offset = offset;
+		this.chunkCount = chunkCount;
+		this.prefixChecksum = prefixChecksum;
+		this.prefixDigest = prefixDigest;
+	}
+
+	/**
+	 * Returns the byte offset of the chunk boundary within the file.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the number of chunks before the chunk boundary.
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Returns the checksum of the file prefix up to the chunk boundary, calculated
+	 * with the checksum algorithm of the chunker.
+	 */
+	public byte[] getPrefixChecksum() {
+		return prefixChecksum;
+	}
+
+	/**
+	 * Returns the file checksum digest that has been updated with the (verified) file 
+	 * prefix, or <tt>null</tt> if the prefix has not been read. Only resume points with 
+	 * a prefix digest can be passed to {@link Chunker#createChunks(java.io.File, ChunkerResumePoint)}.
+	 */
+	public MessageDigest getPrefixDigest() {
+		return prefixDigest;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkerResumePoint [offset=" + offset + ", chunkCount=" + chunkCount + "]";
+	}
+}
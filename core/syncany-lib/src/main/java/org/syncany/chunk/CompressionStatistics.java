@@ -0,0 +1,146 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+/**
+ * Collects statistics about the streams written by the {@link AdaptiveGzipTransformer}:
+ * how many streams (and bytes) were compressed or stored uncompressed, the compression
+ * ratio achieved, and an estimate of the CPU time saved by not compressing incompressible
+ * streams.
+ * 
+ * <p>The CPU time saved is estimated by multiplying the number of stored bytes with the
+ * measured compression time per byte (of the compressed streams, or of the trial deflates
+ * if no stream was compressed yet).
+ * 
+ * <p>All methods are thread-safe.
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class CompressionStatistics {
+	private long compressedStreams;
+	private long compressedInputBytes;
+	private long compressedOutputBytes;
+	private long compressNanos;
+
+	private long storedStreams;
+	private long storedBytes;
+
+	private long trialBytes;
+	private long trialNanos;
+
+	public synchronized void addCompressedStream(long inputBytes, long outputBytes, long nanos) {
+		compressedStreams++;
+		compressedInputBytes += inputBytes;
+		compressedOutputBytes += outputBytes;
+		compressNanos += nanos;
+	}
+
+	public synchronized void addStoredStream(long bytes) {
+		storedStreams++;
+		storedBytes += bytes;
+	}
+
+	public synchronized void addTrial(long bytes, long nanos) {
+		trialBytes += bytes;
+		trialNanos += nanos;
+	}
+
+	public synchronized void reset() {
+		compressedStreams = 0;
+		compressedInputBytes = 0;
+		compressedOutputBytes = 0;
+		compressNanos = 0;
+		storedStreams = 0;
+		storedBytes = 0;
+		trialBytes = 0;
+		trialNanos = 0;
+	}
+
+	/**
+	 * Returns a copy of the current statistics.
+	 */
+	public synchronized CompressionStatistics snapshot() {
+		CompressionStatistics snapshot = new CompressionStatistics();
+
+		snapshot.compressedStreams = compressedStreams;
+		snapshot.compressedInputBytes = compressedInputBytes;
+		snapshot.compressedOutputBytes = compressedOutputBytes;
+		snapshot.compressNanos = compressNanos;
+		snapshot.storedStreams = storedStreams;
+		snapshot.storedBytes = storedBytes;
+		snapshot.trialBytes = trialBytes;
+		snapshot.trialNanos = trialNanos;
+
+		return snapshot;
+	}
+
+	public synchronized long getCompressedStreams() {
+		return compressedStreams;
+	}
+
+	public synchronized long getStoredStreams() {
+		return storedStreams;
+	}
+
+	public synchronized long getInputBytes() {
+		return compressedInputBytes + storedBytes;
+	}
+
+	public synchronized long getOutputBytes() {
+		return compressedOutputBytes + storedBytes;
+	}
+
+	/**
+	 * Returns the overall ratio of output bytes to input bytes (including stored
+	 * streams), i.e. a value of 0.6 means that the data was reduced to 60%.
+	 */
+	public synchronized double getCompressionRatio() {
+		long inputBytes = getInputBytes();
+		return (inputBytes > 0) ? (double) getOutputBytes() / inputBytes : 1.0;
+	}
+
+	public synchronized long getCompressTimeMillis() {
+		return compressNanos / 1000000;
+	}
+
+	/**
+	 * Returns the estimated CPU time (in milliseconds) saved by storing incompressible
+	 * streams instead of compressing them.
+	 */
+	public synchronized long getEstimatedTimeSavedMillis() {
+		double nanosPerByte;
+
+		if (compressedInputBytes > 0) {
+			nanosPerByte = (double) compressNanos / compressedInputBytes;
+		}
+		else if (trialBytes > 0) {
+			nanosPerByte = (double) trialNanos / trialBytes;
+		}
+		else {
+			return 0;
+		}
+
+		return (long) (storedBytes * nanosPerByte / 1000000);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d compressed, %d stored, ratio %.2f, compression time %d ms, est. time saved %d ms", compressedStreams,
+				storedStreams, getCompressionRatio(), getCompressTimeMillis(), getEstimatedTimeSavedMillis());
+	}
+}
@@ -17,10 +17,19 @@
  */
 package org.syncany.chunk;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.syncany.chunk.Chunker.ChunkEnumeration;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
@@ -36,6 +45,16 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
  * <p>This class does not maintain a chunk index itself. Instead, it calls a listener to
  * lookup a chunk, and skips further chunk processing if the chunk already exists. 
  * 
+ * <p>If more than one transformer thread is configured, multichunks are first assembled
+ * in memory and then handed to a thread pool that transforms (compresses/encrypts) several
+ * multichunks concurrently. Completed multichunks are reported to the listener via
+ * {@link DeduperListener#onMultiChunkClose(MultiChunk) onMultiChunkClose()} in the order
+ * in which they were opened. Because of that, the {@link Transformer} must be thread-safe.
+ * 
+ * <p>If the chunker supports resume points (see {@link Chunker#isResumable()}), the listener
+ * may return a {@link ChunkerResumePoint} for a file. In that case, the file is only chunked
+ * from that resume point on, e.g. to process only the appended data of a growing file.
+ * 
  * <p>For a detailed description of the algorithm, please refer to chapter 5.3 of the thesis:
  * <i>"Minimizing remote storage usage and synchronization time using deduplication and
  * multichunking: Syncany as an example"</i>
@@ -44,14 +63,33 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Deduper {	
+	private static final int MAX_PENDING_MULTICHUNKS_PER_THREAD = 2;
+	
 	private Chunker chunker;
 	private MultiChunker multiChunker;
 	private Transformer transformer;
+	private int transformerThreads;
+
+	private ExecutorService transformerPool;
+	private LinkedList<PendingMultiChunk> pendingMultiChunks;
+	private ByteArrayOutputStream multiChunkBuffer;
 
 	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer) {		
+		this(chunker, multiChunker, transformer, 1);
+	}
+	
+	/**
+	 * Creates a new deduper. If the number of transformer threads is larger than one,
+	 * multichunks are transformed in parallel by a thread pool of the given size. Otherwise,
+	 * multichunks are transformed inline on the calling thread.
+	 * 
+	 * @param transformerThreads Number of threads used to transform (compress/encrypt) multichunks
+	 */
+	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer, int transformerThreads) {		
 		this.chunker = chunker;
 		this.multiChunker = multiChunker;
 		this.transformer = transformer;
+		this.transformerThreads = Math.max(1, transformerThreads);
 	}
 	
 	/**
@@ -65,6 +103,25 @@ public class Deduper {
 	 * @throws IOException If a file cannot be read or an unexpected exception occurs
 	 */
 	public void deduplicate(List<File> files, DeduperListener listener) throws IOException {
+		try {
+			if (transformerThreads > 1) {
+				transformerPool = Executors.newFixedThreadPool(transformerThreads);
+				pendingMultiChunks = new LinkedList<PendingMultiChunk>();
+			}
+
+			deduplicateFiles(files, listener);
+		}
+		finally {
+			if (transformerPool != null) {
+				transformerPool.shutdownNow();
+
+				transformerPool = null;
+				pendingMultiChunks = null;
+			}
+		}
+	}
+	
+	private void deduplicateFiles(List<File> files, DeduperListener listener) throws IOException {
 		Chunk chunk = null;
 		MultiChunk multiChunk = null;
 		
@@ -84,8 +141,9 @@ public class Deduper {
 			boolean dedupContents = listener.onFileStart(file, i);
 
 			if (dedupContents) {
-				// Create chunks from file
-				ChunkEnumeration chunksEnum = chunker.createChunks(file);
+				// Create chunks from file (or from the resume point, if the file was appended to)
+				ChunkerResumePoint resumePoint = (chunker.isResumable()) ? listener.getResumePoint(file) : null;
+				ChunkEnumeration chunksEnum = chunker.createChunks(file, resumePoint);
 
 				while (chunksEnum.hasMoreElements()) {
 					chunk = chunksEnum.nextElement();
@@ -100,19 +158,14 @@ public class Deduper {
 					else {					
 						// - Check if multichunk full
 						if (multiChunk != null && multiChunk.isFull()) {
-							multiChunk.close();
-							listener.onMultiChunkClose(multiChunk);
-
+							closeMultiChunk(multiChunk, listener);
 							multiChunk = null;
 						}
 
 						// - Open new multichunk if non-existent
 						if (multiChunk == null) {
 							MultiChunkId newMultiChunkId = listener.createNewMultiChunkId(chunk);
-							File multiChunkFile = listener.getMultiChunkFile(newMultiChunkId);
-							
-							multiChunk = multiChunker.createMultiChunk(newMultiChunkId, 
-								transformer.createOutputStream(new FileOutputStream(multiChunkFile)));
+							multiChunk = openMultiChunk(newMultiChunkId, listener);
 
 							listener.onMultiChunkOpen(multiChunk);
 						}
@@ -142,13 +195,124 @@ public class Deduper {
 
 		// Close and add last multichunk
 		if (multiChunk != null) {
-			// Data
-			multiChunk.close();
-			listener.onMultiChunkClose(multiChunk);
-
+			closeMultiChunk(multiChunk, listener);
 			multiChunk = null;
 		}	
 		
+		// Wait for all remaining multichunks to be transformed
+		completePendingMultiChunks(listener, 0);
+		
 		listener.onFinish();
-	}	
+	}
+	
+	private MultiChunk openMultiChunk(MultiChunkId multiChunkId, DeduperListener listener) throws IOException {
+		if (transformerPool == null) {
+			File multiChunkFile = listener.getMultiChunkFile(multiChunkId);
+			return multiChunker.createMultiChunk(multiChunkId, transformer.createOutputStream(new FileOutputStream(multiChunkFile)));
+		}
+		else {
+			multiChunkBuffer = new ByteArrayOutputStream();
+			return multiChunker.createMultiChunk(multiChunkId, multiChunkBuffer);
+		}
+	}
+	
+	private void closeMultiChunk(MultiChunk multiChunk, DeduperListener listener) throws IOException {
+		multiChunk.close();
+
+		if (transformerPool == null) {
+			listener.onMultiChunkClose(multiChunk);
+		}
+		else {
+			// The (plain) multichunk has been assembled in memory; transform it
+			// and write it to the multichunk file in the background
+			File multiChunkFile = listener.getMultiChunkFile(multiChunk.getId());
+			Future<Void> transformFuture = transformerPool.submit(new MultiChunkTransformTask(multiChunkBuffer.toByteArray(), multiChunkFile));
+
+			pendingMultiChunks.add(new PendingMultiChunk(multiChunk, transformFuture));
+			multiChunkBuffer = null;
+
+			// Limit the number of multichunks held in memory
+			completePendingMultiChunks(listener, transformerThreads * MAX_PENDING_MULTICHUNKS_PER_THREAD);
+		}
+	}
+
+	/**
+	 * Waits for the oldest pending multichunks to be transformed until no more than the given
+	 * number of multichunks are pending, and notifies the listener in the order in which the
+	 * multichunks were opened. Multichunks that are already completed are always reported.
+	 */
+	private void completePendingMultiChunks(DeduperListener listener, int maxPendingMultiChunks) throws IOException {
+		if (pendingMultiChunks == null) {
+			return;
+		}
+
+		while (!pendingMultiChunks.isEmpty()) {
+			PendingMultiChunk pendingMultiChunk = pendingMultiChunks.getFirst();
+			boolean waitForCompletion = pendingMultiChunks.size() > maxPendingMultiChunks;
+
+			if (!waitForCompletion && !pendingMultiChunk.getTransformFuture().isDone()) {
+				break;
+			}
+
+			try {
+				pendingMultiChunk.getTransformFuture().get();
+			}
+			catch (InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while waiting for multichunk " + pendingMultiChunk.getMultiChunk().getId());
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				else {
+					throw new IOException("Cannot transform multichunk " + pendingMultiChunk.getMultiChunk().getId(), e.getCause());
+				}
+			}
+
+			pendingMultiChunks.removeFirst();
+			listener.onMultiChunkClose(pendingMultiChunk.getMultiChunk());
+		}
+	}
+
+	private class MultiChunkTransformTask implements Callable<Void> {
+		private byte[] multiChunkData;
+		private File multiChunkFile;
+
+		public MultiChunkTransformTask(byte[] multiChunkData, File multiChunkFile) {
+			this.multiChunkData = multiChunkData;
+			this.multiChunkFile = multiChunkFile;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			OutputStream transformedOutputStream = transformer.createOutputStream(new FileOutputStream(multiChunkFile));
+
+			try {
+				transformedOutputStream.write(multiChunkData);
+			}
+			finally {
+				transformedOutputStream.close();
+			}
+
+			return null;
+		}
+	}
+
+	private static class PendingMultiChunk {
+		private MultiChunk multiChunk;
+		private Future<Void> transformFuture;
+
+		public PendingMultiChunk(MultiChunk multiChunk, Future<Void> transformFuture) {
+			this.multiChunk = multiChunk;
+			this.transformFuture = transformFuture;
+		}
+
+		public MultiChunk getMultiChunk() {
+			return multiChunk;
+		}
+
+		public Future<Void> getTransformFuture() {
+			return transformFuture;
+		}
+	}
 }
@@ -55,6 +55,21 @@ public interface DeduperListener {
 	 */
 	public boolean onFileStart(File file, int fileNumber);
 	
+	/**
+	 * Called by {@link Deduper} after {@link #onFileStart(File, int) onFileStart()} returned <tt>true</tt>, 
+	 * and only if the chunker supports resume points (see {@link Chunker#isResumable()}). The method may
+	 * return a {@link ChunkerResumePoint} of a previous version of the file to skip the unchanged
+	 * beginning of the file, or <tt>null</tt> to chunk the entire file.
+	 * 
+	 * <p>If a resume point is returned, the chunks before the resume point are not emitted, i.e.
+	 * {@link #onFileAddChunk(File, Chunk) onFileAddChunk()} is only called for the chunks after it. 
+	 * The listener is responsible for adding the skipped chunks itself.
+	 * 
+	 * @param file File for which the deduplication process is about to be started
+	 * @return Returns a resume point to start chunking at, or <tt>null</tt> to chunk the entire file
+	 */
+	public ChunkerResumePoint getResumePoint(File file);
+	
 	/**
 	 * Called by {@link Deduper} during the deduplication process for each chunk that was
 	 * found in the given file.
@@ -137,6 +152,10 @@ public interface DeduperListener {
 	 * Called by {@link Deduper} during the deduplication process whenever a multichunk is closed. This can 
 	 * happen either because the multichunk is full (max. size reached/exceeded), or because there are no 
 	 * more files to chunk/index.
+	 * 
+	 * <p>When multichunks are transformed in parallel, this method is called only after the multichunk
+	 * file has been completely written. In that case, it might be called after the next multichunk has been
+	 * opened. Multichunks are, however, always closed in the order in which they were opened.
 	 *  
 	 * @param multiChunk The multichunk that's being closed 
 	 */
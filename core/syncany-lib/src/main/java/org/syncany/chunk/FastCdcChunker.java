@@ -0,0 +1,394 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The FastCDC chunker is a content-defined {@link Chunker} based on the Gear rolling
+ * hash and normalized chunking, as described in the FastCDC paper by Wen Xia et al., 2016.
+ * 
+ * <p>Compared to the {@link TttdChunker}, the chunker is considerably faster:
+ * 
+ * <ul>
+ *  <li>The Gear hash is table-driven and only requires a shift, an addition and a table
+ *      lookup per byte (instead of a rolling window and two modulo operations).</li>
+ *  <li>Breakpoints are detected using a bit mask test instead of a modulo check.</li>
+ *  <li>The first <i>Tmin</i> bytes of a chunk are skipped entirely, i.e. the hash
+ *      is not calculated for them.</li>
+ * </ul>
+ * 
+ * <p>Normalized chunking uses a stricter mask (more bits) before the average chunk size
+ * is reached and a looser mask (fewer bits) afterwards. This narrows the chunk size
+ * distribution around the average chunk size without hurting the deduplication ratio.
+ * 
+ * <p>The Gear table is derived from a fixed seed, so that all clients produce identical
+ * chunk boundaries for identical content.
+ * 
+ * @see <a href="https://www.usenix.org/conference/atc16/technical-sessions/presentation/xia">FastCDC: a Fast and Efficient Content-Defined Chunking Approach for Data Deduplication</a>,
+ *      2016, Wen Xia et al.
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class FastCdcChunker extends Chunker {
+	private static final Logger logger = Logger.getLogger(FastCdcChunker.class.getSimpleName());
+
+	public static final String TYPE = "fast-cdc";
+	public static final String DEFAULT_DIGEST_ALG = "SHA1";
+	public static final int DEFAULT_AVG_CHUNK_SIZE = 16 * 1024;
+	public static final int NORMALIZATION_LEVEL = 2;
+
+	private static final long GEAR_SEED = 0x5379636e616e79L; // Do NOT change; changes all chunk boundaries!
+	private static final long[] GEAR = createGearTable(GEAR_SEED);
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private int minChunkSize;
+	private int avgChunkSize;
+	private int maxChunkSize;
+	private long maskS;
+	private long maskL;
+	private String checksumAlgorithm;
+
+	/**
+	 * Creates a new FastCDC chunker with the default average chunk size
+	 * and the default checksum algorithm. Used when instantiating the chunker
+	 * via {@link Chunker#getInstance(String)}.
+	 */
+	public FastCdcChunker() {
+		this(DEFAULT_AVG_CHUNK_SIZE, DEFAULT_DIGEST_ALG);
+	}
+
+	/**
+	 * Creates a new FastCDC chunker. The minimum chunk size is a quarter of the
+	 * average chunk size, the maximum chunk size is eight times the average size.
+	 * 
+	 * @param avgChunkSize Average (expected) chunk size in bytes, should be a power of two
+	 * @param checksumAlgorithm Algorithm to calculate the chunk and file checksums (e.g. SHA1, MD5)
+	 */
+	public FastCdcChunker(int avgChunkSize, String checksumAlgorithm) {
+		this(avgChunkSize / 4, avgChunkSize, avgChunkSize * 8, checksumAlgorithm);
+	}
+
+	public FastCdcChunker(int minChunkSize, int avgChunkSize, int maxChunkSize, String checksumAlgorithm) {
+		setChunkSizes(minChunkSize, avgChunkSize, maxChunkSize);
+		this.checksumAlgorithm = checksumAlgorithm;
+	}
+
+	/**
+	 * Initializes the chunker using a settings map. The only (optional) setting
+	 * is {@link Chunker#PROPERTY_SIZE}, the average chunk size in KB.
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		String avgChunkSizeKbStr = (settings != null) ? settings.get(PROPERTY_SIZE) : null;
+
+		if (avgChunkSizeKbStr != null) {
+			try {
+				int avgChunkSize = Integer.parseInt(avgChunkSizeKbStr) * 1024;
+				setChunkSizes(avgChunkSize / 4, avgChunkSize, avgChunkSize * 8);
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", PROPERTY_SIZE));
+			}
+		}
+	}
+
+	private void setChunkSizes(int minChunkSize, int avgChunkSize, int maxChunkSize) {
+		if (minChunkSize <= 0 || minChunkSize > avgChunkSize || avgChunkSize > maxChunkSize) {
+			throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= avg <= max.");
+		}
+
+		int avgChunkSizeBits = 31 - Integer.numberOfLeadingZeros(avgChunkSize);
+
+		this.minChunkSize = minChunkSize;
+		this.avgChunkSize = avgChunkSize;
+		this.maxChunkSize = maxChunkSize;
+		this.maskS = createMask(avgChunkSizeBits + NORMALIZATION_LEVEL);
+		this.maskL = createMask(avgChunkSizeBits - NORMALIZATION_LEVEL);
+	}
+
+	@Override
+	public ChunkEnumeration createChunks(File file) throws IOException {
+		return new FastCdcEnumeration(new FileInputStream(file));
+	}
+
+	/**
+	 * Creates an enumeration of chunks, starting at the given resume point. Since the
+	 * Gear hash is reset at the start of every chunk, and all but the last chunk of a file
+	 * are cut with more than {@link #maxChunkSize} bytes available, all chunk boundaries 
+	 * before the last chunk are stable when data is appended to the file.
+	 */
+	@Override
+	public ChunkEnumeration createChunks(File file, ChunkerResumePoint resumePoint) throws IOException {
+		if (resumePoint == null) {
+			return createChunks(file);
+		}
+		else if (resumePoint.getPrefixDigest() == null) {
+			throw new IllegalArgumentException("Resume point " + resumePoint + " does not contain the digest of the file prefix.");
+		}
+
+		FileInputStream fileInputStream = new FileInputStream(file);
+
+		try {
+			fileInputStream.getChannel().position(resumePoint.getOffset());
+			return new FastCdcEnumeration(fileInputStream, resumePoint);
+		}
+		catch (IOException | RuntimeException e) {
+			fileInputStream.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean isResumable() {
+		return true;
+	}
+
+	@Override
+	public String getChecksumAlgorithm() {
+		return checksumAlgorithm;
+	}
+
+	@Override
+	public String toString() {
+		return "FastCDC-" + minChunkSize + "-" + avgChunkSize + "-" + maxChunkSize + "-" + checksumAlgorithm;
+	}
+
+	/**
+	 * Determines the length of the next chunk in the given buffer region, i.e. the
+	 * offset of the breakpoint relative to the given offset. 
+	 * 
+	 * <p>The first {@link #minChunkSize} bytes are skipped, the hash of the following bytes
+	 * (up to the average chunk size) is checked against the strict mask, the hash of the
+	 * remaining bytes is checked against the loose mask. If no breakpoint is found, the chunk
+	 * is cut at the maximum chunk size (or at the end of the region).
+	 * 
+	 * @param buffer Buffer containing the data
+	 * @param offset Offset of the chunk start in the buffer
+	 * @param length Available bytes (from the offset)
+	 * @return Returns the length of the next chunk
+	 */
+	public int findBreakpoint(byte[] buffer, int offset, int length) {
+		if (length <= minChunkSize) {
+			return length;
+		}
+
+		int maxLength = Math.min(length, maxChunkSize);
+		int normalLength = Math.min(maxLength, avgChunkSize);
+		long hash = 0;
+		int i = minChunkSize;
+
+		for (; i < normalLength; i++) {
+			hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+
+			if ((hash & maskS) == 0) {
+				return i + 1;
+			}
+		}
+
+		for (; i < maxLength; i++) {
+			hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+
+			if ((hash & maskL) == 0) {
+				return i + 1;
+			}
+		}
+
+		return maxLength;
+	}
+
+	/**
+	 * Creates a mask with the given number of bits set. The bits are taken from the 
+	 * upper half of the hash, because the higher bits of the Gear hash depend on a larger
+	 * window of input bytes than the lower bits.
+	 */
+	private static long createMask(int bits) {
+		bits = Math.max(1, Math.min(bits, 48));
+		return ((1L << bits) - 1) << (64 - bits - 8);
+	}
+
+	private static long[] createGearTable(long seed) {
+		Random random = new Random(seed);
+		long[] gearTable = new long[256];
+
+		for (int i = 0; i < gearTable.length; i++) {
+			gearTable[i] = random.nextLong();
+		}
+
+		return gearTable;
+	}
+
+	public class FastCdcEnumeration implements ChunkEnumeration {
+		private InputStream in;
+		private boolean endOfStream;
+		private boolean closed;
+
+		private byte[] buffer;
+		private int bufferStart;
+		private int bufferEnd;
+
+		private MessageDigest chunkDigest;
+		private MessageDigest fileDigest;
+
+		private long offset;
+		private int chunkCount;
+
+		public FastCdcEnumeration(InputStream in) {
+			this(in, null);
+		}
+
+		public FastCdcEnumeration(InputStream in, ChunkerResumePoint resumePoint) {
+			this.in = in;
+			this.endOfStream = false;
+			this.closed = false;
+
+			this.buffer = new byte[maxChunkSize + READ_BUFFER_SIZE];
+			this.bufferStart = 0;
+			this.bufferEnd = 0;
+
+			try {
+				this.chunkDigest = MessageDigest.getInstance(checksumAlgorithm);
+
+				if (resumePoint != null) {
+					this.fileDigest = resumePoint.getPrefixDigest();
+					this.offset = resumePoint.getOffset();
+					this.chunkCount = resumePoint.getChunkCount();
+				}
+				else {
+					this.fileDigest = MessageDigest.getInstance(checksumAlgorithm);
+				}
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			if (closed) {
+				return false;
+			}
+
+			try {
+				fillBuffer();
+				return bufferEnd > bufferStart;
+			}
+			catch (IOException ex) {
+				logger.log(Level.WARNING, "Error while reading from file input stream.", ex);
+				return false;
+			}
+		}
+
+		@Override
+		public Chunk nextElement() {
+			try {
+				fillBuffer();
+
+				int available = bufferEnd - bufferStart;
+
+				if (available == 0) {
+					return null;
+				}
+
+				int chunkSize = findBreakpoint(buffer, bufferStart, available);
+				byte[] chunkContents = Arrays.copyOfRange(buffer, bufferStart, bufferStart + chunkSize);
+
+				bufferStart += chunkSize;
+
+				boolean lastChunk = endOfStream && bufferStart == bufferEnd;
+
+				// Resume point at the start of the (last) chunk
+				ChunkerResumePoint resumePoint = null;
+
+				if (lastChunk) {
+					resumePoint = createResumePoint(offset, chunkCount, fileDigest);
+				}
+
+				offset += chunkSize;
+				chunkCount++;
+
+				// Chunk and file checksum
+				chunkDigest.reset();
+				chunkDigest.update(chunkContents, 0, chunkSize);
+				fileDigest.update(chunkContents, 0, chunkSize);
+
+				byte[] fileChecksum = null;
+
+				if (lastChunk) {
+					fileChecksum = fileDigest.digest();
+					close();
+				}
+
+				return new Chunk(chunkDigest.digest(), chunkContents, chunkSize, fileChecksum, resumePoint);
+			}
+			catch (IOException ex) {
+				logger.log(Level.SEVERE, "Error while retrieving next chunk.", ex);
+				return null;
+			}
+		}
+
+		/**
+		 * Makes sure that more than {@link FastCdcChunker#maxChunkSize maxChunkSize} bytes are
+		 * available in the buffer (unless the end of the stream is reached). Reading at least one
+		 * byte more than a chunk can hold guarantees that the last chunk is always detected.
+		 */
+		private void fillBuffer() throws IOException {
+			if (endOfStream || bufferEnd - bufferStart > maxChunkSize) {
+				return;
+			}
+
+			// Move remaining bytes to the beginning of the buffer
+			if (bufferStart > 0) {
+				System.arraycopy(buffer, bufferStart, buffer, 0, bufferEnd - bufferStart);
+
+				bufferEnd -= bufferStart;
+				bufferStart = 0;
+			}
+
+			while (!endOfStream && bufferEnd <= maxChunkSize) {
+				int read = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+
+				if (read == -1) {
+					endOfStream = true;
+				}
+				else {
+					bufferEnd += read;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				closed = true;
+				in.close();
+			}
+			catch (IOException e) {
+				logger.log(Level.INFO, "Error while closing", e);
+			}
+		}
+	}
+}
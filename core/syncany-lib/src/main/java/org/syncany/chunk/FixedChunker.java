@@ -73,6 +73,37 @@ public class FixedChunker extends Chunker {
 		return new FixedChunkEnumeration(new FileInputStream(file));
 	}
 
+	/**
+	 * Creates an enumeration of chunks, starting at the given resume point. Since 
+	 * all chunks (but the last one) of a file have the same size, every chunk start is
+	 * a stable boundary for appended files.
+	 */
+	@Override
+	public ChunkEnumeration createChunks(File file, ChunkerResumePoint resumePoint) throws IOException {
+		if (resumePoint == null) {
+			return createChunks(file);
+		}
+		else if (resumePoint.getPrefixDigest() == null) {
+			throw new IllegalArgumentException("Resume point " + resumePoint + " does not contain the digest of the file prefix.");
+		}
+
+		FileInputStream fileInputStream = new FileInputStream(file);
+
+		try {
+			fileInputStream.getChannel().position(resumePoint.getOffset());
+			return new FixedChunkEnumeration(fileInputStream, resumePoint);
+		}
+		catch (IOException | RuntimeException e) {
+			fileInputStream.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean isResumable() {
+		return true;
+	}
+
 	@Override
 	public String getChecksumAlgorithm() {
 		return checksumAlgorithm;
@@ -91,16 +122,29 @@ public class FixedChunker extends Chunker {
 		private byte[] buffer;
 		private boolean closed;
 
+		private long offset;
+		private int chunkCount;
+
 		public FixedChunkEnumeration(InputStream in) {
+			this(in, null);
+		}
+
+		public FixedChunkEnumeration(InputStream in, ChunkerResumePoint resumePoint) {
 			this.in = in;
 			this.buffer = new byte[chunkSize];
 			this.closed = false;
 
 			try {
 				this.digest = MessageDigest.getInstance(checksumAlgorithm);
-				this.fileDigest = MessageDigest.getInstance(checksumAlgorithm);
 
-				this.fileDigest.reset();
+				if (resumePoint != null) {
+					this.fileDigest = resumePoint.getPrefixDigest();
+					this.offset = resumePoint.getOffset();
+					this.chunkCount = resumePoint.getChunkCount();
+				}
+				else {
+					this.fileDigest = MessageDigest.getInstance(checksumAlgorithm);
+				}
 			}
 			catch (Exception e) {
 				throw new RuntimeException(e);
@@ -140,6 +184,16 @@ public class FixedChunker extends Chunker {
 					closed = true;
 				}
 
+				// Resume point at the start of the (last) chunk
+				ChunkerResumePoint resumePoint = null;
+
+				if (closed) {
+					resumePoint = createResumePoint(offset, chunkCount, fileDigest);
+				}
+
+				offset += read;
+				chunkCount++;
+
 				// Chunk checksum
 				digest.reset();
 				digest.update(buffer, 0, read);
@@ -149,7 +203,7 @@ public class FixedChunker extends Chunker {
 				byte[] fileChecksum = (closed) ? fileDigest.digest() : null;
 
 				// Create chunk
-				return new Chunk(digest.digest(), buffer, read, fileChecksum);
+				return new Chunk(digest.digest(), buffer, read, fileChecksum, resumePoint);
 			}
 			catch (IOException ex) {
 				logger.log(Level.SEVERE, "Error while retrieving next chunk.", ex);
@@ -100,7 +100,6 @@ public abstract class MultiChunk {
 	 * @return Returns the next chunk in the opened multichunk, or <tt>null</tt> if no chunk is available (anymore)
 	 * @throws IOException If an exception occurs when reading from the multichunk
 	 */
-	// TODO [low] Method is only used by tests, not necessary anymore? Required for 'cleanup'?
 	public abstract Chunk read() throws IOException;
 
 	/**
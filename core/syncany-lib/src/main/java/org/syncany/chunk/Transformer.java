@@ -126,6 +126,10 @@ public abstract class Transformer {
 		}
 	}
 
+	public Transformer getNextTransformer() {
+		return nextTransformer;
+	}
+
 	public void setNextTransformer(Transformer nextTransformer) {
 		this.nextTransformer = nextTransformer;
 	}
@@ -21,13 +21,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.syncany.config.CacheIndex.CacheEntry;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 
 /**
@@ -35,51 +38,102 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
  * or other metadata files before upload, and as a download location for the same
  * files. 
  * 
- * <p>The cache implements an LRU strategy based on the last modified date of the 
- * cached files. When files are accessed using the respective getters, the last modified
- * date is updated. Using the {@link #clear()}/{@link #clear(long)} method, the cache
- * can be cleaned.
+ * <p>The cache implements an LRU strategy based on an in-memory {@link CacheIndex} of
+ * the cached files. When files are accessed using the respective getters, the access is
+ * recorded in the index. Using the {@link #clear()}/{@link #clear(long)} method, the cache
+ * can be cleaned. Multichunks and database files can have separate quotas, in addition to
+ * the total quota; by default, they are only limited by the total quota. Files needed by a running operation can be protected from being 
+ * deleted using {@link #pin(File)}.
+ * 
+ * <p>If an index file is given, the index is persisted when the cache is cleaned. Files
+ * not contained in the index (e.g. if the index was lost) are added using their last
+ * modified date as last access.
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Cache {
 	private static final Logger logger = Logger.getLogger(Cache.class.getSimpleName());
 
-    private static long DEFAULT_CACHE_KEEP_BYTES = 500*1024*1024;
+	public enum CacheFileType {
+		MULTICHUNK, DATABASE, OTHER
+	}
+
+	private static long DEFAULT_CACHE_KEEP_BYTES = 500*1024*1024;
+	private static long CACHE_KEEP_BYTES_UNLIMITED = -1;
+
 	private static String FILE_FORMAT_MULTICHUNK_ENCRYPTED = "multichunk-%s";
 	private static String FILE_FORMAT_MULTICHUNK_DECRYPTED = "multichunk-%s-decrypted";
-    private static String FILE_FORMAT_DATABASE_FILE_ENCRYPTED = "%s";
-    
-    private long keepBytes;
-    private File cacheDir;
-    
-    public Cache(File cacheDir) {
-    	this.cacheDir = cacheDir;
-    	this.keepBytes = DEFAULT_CACHE_KEEP_BYTES;
-    }
-    
-    /**
-     * Returns a file path of a decrypted multichunk file, 
-     * given the identifier of a multichunk.
-     */
-    public File getDecryptedMultiChunkFile(MultiChunkId multiChunkId) {
-    	return getFileInCache(FILE_FORMAT_MULTICHUNK_DECRYPTED, multiChunkId.toString());
-    }    
-
-    /**
-     * Returns a file path of a encrypted multichunk file, 
-     * given the identifier of a multichunk.
-     */
-    public File getEncryptedMultiChunkFile(MultiChunkId multiChunkId) {
-    	return getFileInCache(FILE_FORMAT_MULTICHUNK_ENCRYPTED, multiChunkId.toString());
-    }    
-    
-    /**
-     * Returns a file path of a database remote file.
-     */
+	private static String FILE_FORMAT_DATABASE_FILE_ENCRYPTED = "%s";
+	private static String FILE_FORMAT_DATABASE_FILE_PREFETCHED = "prefetch-%s";
+	private static String FILE_FORMAT_TEMP = "temp-%s-";
+
+	private static String FILE_PREFIX_MULTICHUNK = "multichunk-";
+	private static String FILE_PREFIX_TEMP = "temp-";
+
+	private long keepBytes;
+	private long keepMultiChunkBytes;
+	private long keepDatabaseBytes;
+
+	private File cacheDir;
+	private File indexFile;
+	private CacheIndex index;
+	private Map<String, Integer> pinnedFiles;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long evictedBytes;
+
+	public Cache(File cacheDir) {
+		this(cacheDir, null);
+	}
+
+	public Cache(File cacheDir, File indexFile) {
+		this.cacheDir = cacheDir;
+		this.indexFile = indexFile;
+		this.pinnedFiles = new HashMap<String, Integer>();
+
+		this.keepBytes = DEFAULT_CACHE_KEEP_BYTES;
+		this.keepMultiChunkBytes = CACHE_KEEP_BYTES_UNLIMITED;
+		this.keepDatabaseBytes = CACHE_KEEP_BYTES_UNLIMITED;
+	}
+
+	/**
+	 * Returns a file path of a decrypted multichunk file, 
+	 * given the identifier of a multichunk.
+	 */
+	public File getDecryptedMultiChunkFile(MultiChunkId multiChunkId) {
+		return getFileInCache(CacheFileType.MULTICHUNK, true, FILE_FORMAT_MULTICHUNK_DECRYPTED, multiChunkId.toString());
+	}
+
+	/**
+	 * Returns a file path of a encrypted multichunk file, 
+	 * given the identifier of a multichunk. 
+	 * 
+	 * <p>Encrypted multichunks are only written (before upload, or while
+	 * downloading), so the access is not counted as hit or miss.
+	 */
+	public File getEncryptedMultiChunkFile(MultiChunkId multiChunkId) {
+		return getFileInCache(CacheFileType.MULTICHUNK, false, FILE_FORMAT_MULTICHUNK_ENCRYPTED, multiChunkId.toString());
+	}
+
+	/**
+	 * Returns a file path of a database remote file.
+	 * 
+	 * <p>Database files are written to this path (before upload, or while 
+	 * downloading), so the access is not counted as hit or miss.
+	 */
 	public File getDatabaseFile(String name) { // TODO [low] This shoule be a database file or another key
-		return getFileInCache(FILE_FORMAT_DATABASE_FILE_ENCRYPTED, name);		
-	}    
+		return getFileInCache(CacheFileType.DATABASE, false, FILE_FORMAT_DATABASE_FILE_ENCRYPTED, name);
+	}
+
+	/**
+	 * Returns a file path of a database remote file that was downloaded
+	 * ahead of time, i.e. before the operation that needs it was started.
+	 */
+	public File getPrefetchedDatabaseFile(String name) {
+		return getFileInCache(CacheFileType.DATABASE, true, FILE_FORMAT_DATABASE_FILE_PREFETCHED, name);
+	}
 
 	public long getKeepBytes() {
 		return keepBytes;
@@ -89,52 +143,133 @@ public class Cache {
 		this.keepBytes = keepBytes;
 	}
 
+	/**
+	 * Returns the quota for multichunks. If no quota has been set, 
+	 * multichunks are only limited by <tt>keepBytes</tt>.
+	 */
+	public long getKeepMultiChunkBytes() {
+		return (keepMultiChunkBytes != CACHE_KEEP_BYTES_UNLIMITED) ? keepMultiChunkBytes : keepBytes;
+	}
+
+	public void setKeepMultiChunkBytes(long keepMultiChunkBytes) {
+		this.keepMultiChunkBytes = keepMultiChunkBytes;
+	}
+
+	/**
+	 * Returns the quota for database files. If no quota has been set, 
+	 * database files are only limited by <tt>keepBytes</tt>.
+	 */
+	public long getKeepDatabaseBytes() {
+		return (keepDatabaseBytes != CACHE_KEEP_BYTES_UNLIMITED) ? keepDatabaseBytes : keepBytes;
+	}
+
+	public void setKeepDatabaseBytes(long keepDatabaseBytes) {
+		this.keepDatabaseBytes = keepDatabaseBytes;
+	}
+
+	/**
+	 * Protects the given file in the cache from being deleted by {@link #clear()}, 
+	 * e.g. because it is needed by a running operation. Files can be pinned multiple
+	 * times, and are only unprotected after the same number of calls to {@link #unpin(File)}.
+	 */
+	public synchronized void pin(File fileInCache) {
+		Integer pinCount = pinnedFiles.get(fileInCache.getName());
+		pinnedFiles.put(fileInCache.getName(), (pinCount != null) ? pinCount + 1 : 1);
+	}
+
+	/**
+	 * Removes a protection added by {@link #pin(File)}.
+	 */
+	public synchronized void unpin(File fileInCache) {
+		Integer pinCount = pinnedFiles.get(fileInCache.getName());
+
+		if (pinCount == null || pinCount <= 1) {
+			pinnedFiles.remove(fileInCache.getName());
+		}
+		else {
+			pinnedFiles.put(fileInCache.getName(), pinCount - 1);
+		}
+	}
+
+	public synchronized boolean isPinned(File fileInCache) {
+		return pinnedFiles.containsKey(fileInCache.getName());
+	}
+
+	/**
+	 * Returns the number of lookups of files that existed in the cache. Paths
+	 * requested for writing files are not counted.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of lookups of files that did not exist in the cache. Paths
+	 * requested for writing files are not counted.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of files deleted by {@link #clear()}.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Returns the number of bytes freed by {@link #clear()}.
+	 */
+	public synchronized long getEvictedBytes() {
+		return evictedBytes;
+	}
+
 	/**
 	 * Deletes files in the the cache directory using a LRU-strategy until <tt>keepBytes</tt>
 	 * bytes are left. This method calls {@link #clear(long)} using the <tt>keepBytes</tt> 
 	 * property.
 	 * 
-	 * <p>This method should not be run while an operation is executed.
+	 * <p>Pinned files are never deleted, so this method can be run while an operation is
+	 * executed, as long as the operation pins the files it needs.
 	 */
 	public void clear() {
 		clear(keepBytes);
 	}
-	
+
 	/**
 	 * Deletes files in the the cache directory using a LRU-strategy until <tt>keepBytes</tt>
-	 * bytes are left.
+	 * bytes are left, and until the multichunks and database files are within their respective
+	 * quotas (if set).
 	 * 
-	 * <p>This method should not be run while an operation is executed.
-	 */
-	public void clear(long keepBytes) {		
-		List<File> cacheFiles = getSortedFileList();
-			
-		// Determine total size
-		long totalSize = 0;
-		
-		for (File cacheFile : cacheFiles) {
-			totalSize += cacheFile.length();
-		}
-		
-		// Delete until total cache size <= keep size
-		if (totalSize > keepBytes) {
+	 * <p>Pinned files are never deleted, so this method can be run while an operation is
+	 * executed, as long as the operation pins the files it needs.
+	 */
+	public synchronized void clear(long keepBytes) {
+		CacheIndex cacheIndex = getIndex();
+		updateIndex(cacheIndex);
+
+		long totalSize = cacheIndex.getSize(null);
+		long keepMultiChunkBytes = (this.keepMultiChunkBytes != CACHE_KEEP_BYTES_UNLIMITED) ? this.keepMultiChunkBytes : keepBytes;
+		long keepDatabaseBytes = (this.keepDatabaseBytes != CACHE_KEEP_BYTES_UNLIMITED) ? this.keepDatabaseBytes : keepBytes;
+
+		if (totalSize > keepBytes || cacheIndex.getSize(CacheFileType.MULTICHUNK) > keepMultiChunkBytes
+				|| cacheIndex.getSize(CacheFileType.DATABASE) > keepDatabaseBytes) {
+
 			logger.log(Level.INFO, "Cache too large (" + (totalSize/1024) + " KB), deleting until <= " + (keepBytes/1024/1024) + " MB ...");
 
-			while (totalSize > keepBytes && cacheFiles.size() > 0) {
-				File eldestCacheFile = cacheFiles.remove(0);
-				
-				long fileSize = eldestCacheFile.length();
-				long fileLastModified = eldestCacheFile.lastModified();
-				
-				logger.log(Level.INFO, "- Deleting from cache (" + new Date(fileLastModified) + ", " + (fileSize/1024) + " KB): " + eldestCacheFile.getName());
-				
-				totalSize -= fileSize;
-				eldestCacheFile.delete();				
-			}
+			evict(cacheIndex, CacheFileType.MULTICHUNK, keepMultiChunkBytes);
+			evict(cacheIndex, CacheFileType.DATABASE, keepDatabaseBytes);
+			evict(cacheIndex, null, keepBytes);
 		}
 		else {
 			logger.log(Level.INFO, "Cache size okay (" + (totalSize/1024) + " KB), no need to clean (keep size is " + (keepBytes/1024/1024) + " MB)");
 		}
+
+		logger.log(Level.INFO, "Cache statistics: {0} hit(s), {1} miss(es), {2} eviction(s), {3} KB evicted", new Object[] { hitCount, missCount,
+				evictionCount, evictedBytes/1024 });
+
+		saveIndex(cacheIndex);
 	}
 
 	/**
@@ -144,53 +279,136 @@ public class Cache {
 	 * 
 	 * @return Temporary file in local directory cache
 	 */
-    public File createTempFile(String name) throws IOException {
-       File tempFile = File.createTempFile(String.format("temp-%s-", name), ".tmp", cacheDir);
-       tempFile.deleteOnExit();
-       
-       return tempFile;
-    }
-    
-    /**
-     * Returns the file using the given format and parameters, and 
-     * updates the last modified date of the file (used for LRU strategy).
-     */
-    private File getFileInCache(String format, Object... params) {
-        File fileInCache = new File(cacheDir.getAbsoluteFile(), String.format(format, params));
-
-        if (fileInCache.exists()) {
-        	touchFile(fileInCache);
-        }
-        
-        return fileInCache;
-    }
-    
-    /**
-     * Sets the last modified date of the given file to the current date/time.
-     */
-    private void touchFile(File fileInCache) {
-    	fileInCache.setLastModified(System.currentTimeMillis());
-    }
-    
-    /**
-     * Returns a list of all files in the cache, sorted by the last modified
-     * date -- eldest first.
-     */
-	private List<File> getSortedFileList() {
-		File[] cacheFilesList = cacheDir.listFiles();
-		List<File> sortedCacheFiles = new ArrayList<File>();
-		
-		if (cacheFilesList != null) {
-			sortedCacheFiles.addAll(Arrays.asList(cacheFilesList));
-			
-			Collections.sort(sortedCacheFiles, new Comparator<File>() {
-				@Override
-				public int compare(File file1, File file2) {				
-					return Long.compare(file1.lastModified(), file2.lastModified());
+	public File createTempFile(String name) throws IOException {
+		File tempFile = File.createTempFile(String.format(FILE_FORMAT_TEMP, name), ".tmp", cacheDir);
+		tempFile.deleteOnExit();
+
+		return tempFile;
+	}
+
+	/**
+	 * Returns the file using the given format and parameters, and 
+	 * records the access in the cache index (used for LRU strategy).
+	 * If <tt>lookup</tt> is set, the access is counted as hit or miss.
+	 */
+	private synchronized File getFileInCache(CacheFileType type, boolean lookup, String format, Object... params) {
+		File fileInCache = new File(cacheDir.getAbsoluteFile(), String.format(format, params));
+
+		if (lookup) {
+			if (fileInCache.exists()) {
+				hitCount++;
+			}
+			else {
+				missCount++;
+			}
+		}
+
+		getIndex().access(fileInCache.getName(), type);
+		return fileInCache;
+	}
+
+	/**
+	 * Deletes the least recently used files of the given type (or of any type, if the
+	 * type is <tt>null</tt>) until the size of these files is at most <tt>keepBytes</tt>. 
+	 */
+	private void evict(CacheIndex cacheIndex, CacheFileType type, long keepBytes) {
+		long size = cacheIndex.getSize(type);
+
+		for (CacheEntry entry : cacheIndex.getEntries()) {
+			if (size <= keepBytes) {
+				break;
+			}
+
+			boolean typeMatches = type == null || type == entry.getType();
+			boolean pinned = pinnedFiles.containsKey(entry.getName());
+
+			if (typeMatches && !pinned) {
+				File eldestCacheFile = new File(cacheDir, entry.getName());
+				logger.log(Level.INFO, "- Deleting from cache (" + new Date(entry.getLastAccess()) + ", " + (entry.getSize()/1024) + " KB): " + entry.getName());
+
+				if (eldestCacheFile.delete() || !eldestCacheFile.exists()) {
+					cacheIndex.remove(entry.getName());
+
+					size -= entry.getSize();
+					evictionCount++;
+					evictedBytes += entry.getSize();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the index with the contents of the cache folder: Removes entries of files that
+	 * have been deleted, adds files that are not yet indexed, and determines the size of files
+	 * that have been accessed since the last update. 
+	 */
+	private void updateIndex(CacheIndex cacheIndex) {
+		String[] fileNames = cacheDir.list();
+		Set<String> existingFileNames = new HashSet<String>((fileNames != null) ? Arrays.asList(fileNames) : new ArrayList<String>());
+
+		cacheIndex.retainAll(existingFileNames);
+
+		List<CacheEntry> newEntries = new ArrayList<CacheEntry>();
+
+		for (String fileName : existingFileNames) {
+			if (!cacheIndex.contains(fileName)) {
+				File newFile = new File(cacheDir, fileName);
+				newEntries.add(new CacheEntry(fileName, getFileType(fileName), newFile.length(), newFile.lastModified()));
+			}
+		}
+
+		if (newEntries.size() > 0) {
+			logger.log(Level.FINE, "Adding {0} unindexed file(s) to cache index ...", newEntries.size());
+			cacheIndex.addAll(newEntries);
+		}
+
+		for (CacheEntry entry : cacheIndex.getEntries()) {
+			if (entry.getSize() == CacheIndex.UNKNOWN_SIZE) {
+				entry.setSize(new File(cacheDir, entry.getName()).length());
+			}
+		}
+	}
+
+	private CacheFileType getFileType(String fileName) {
+		if (fileName.startsWith(FILE_PREFIX_MULTICHUNK)) {
+			return CacheFileType.MULTICHUNK;
+		}
+		else if (fileName.startsWith(FILE_PREFIX_TEMP)) {
+			return CacheFileType.OTHER;
+		}
+		else {
+			return CacheFileType.DATABASE;
+		}
+	}
+
+	private CacheIndex getIndex() {
+		if (index == null) {
+			if (indexFile != null && indexFile.exists()) {
+				try {
+					index = CacheIndex.load(indexFile);
+				}
+				catch (IOException e) {
+					logger.log(Level.WARNING, "Cannot load cache index, re-creating it from cache folder.", e);
+					index = new CacheIndex();
 				}
-			});
+			}
+			else {
+				index = new CacheIndex();
+			}
+		}
+
+		return index;
+	}
+
+	private void saveIndex(CacheIndex cacheIndex) {
+		if (indexFile != null) {
+			try {
+				indexFile.getParentFile().mkdirs();
+				cacheIndex.save(indexFile);
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Cannot save cache index to " + indexFile, e);
+			}
 		}
-		
-		return sortedCacheFiles;
 	}
 }
@@ -0,0 +1,222 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+import org.simpleframework.xml.core.Persister;
+import org.syncany.config.Cache.CacheFileType;
+
+/**
+ * The cache index is the in-memory index of the files in the local {@link Cache}. It
+ * keeps one entry per cached file, ordered by last access (eldest first), including the
+ * file's type and size. The index is persisted to the state folder, so that the cache
+ * does not have to scan and stat the entire cache folder when it is cleaned.
+ *
+ * <p>Sizes of files that were accessed since the last cleanup are unknown (the file might
+ * have been (re-)written), and are determined by the cache before it is cleaned.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+@Root(name = "cacheIndex", strict = false)
+class CacheIndex {
+	public static final long UNKNOWN_SIZE = -1;
+
+	@ElementList(name = "entries", entry = "entry", required = false)
+	private ArrayList<CacheEntry> entries;
+
+	private LinkedHashMap<String, CacheEntry> entryMap;
+
+	public CacheIndex() {
+		this.entries = new ArrayList<CacheEntry>();
+		this.entryMap = new LinkedHashMap<String, CacheEntry>();
+	}
+
+	/**
+	 * Records an access to the file with the given name. The entry is moved to the end
+	 * of the access order, and its size is reset to {@link #UNKNOWN_SIZE}.
+	 */
+	public void access(String name, CacheFileType type) {
+		CacheEntry entry = entryMap.remove(name);
+
+		if (entry == null) {
+			entry = new CacheEntry(name, type, UNKNOWN_SIZE, System.currentTimeMillis());
+		}
+		else {
+			entry.setSize(UNKNOWN_SIZE);
+			entry.setLastAccess(System.currentTimeMillis());
+		}
+
+		entryMap.put(name, entry);
+	}
+
+	public boolean contains(String name) {
+		return entryMap.containsKey(name);
+	}
+
+	public CacheEntry remove(String name) {
+		return entryMap.remove(name);
+	}
+
+	/**
+	 * Removes all entries whose names are not contained in the given set,
+	 * i.e. entries of files that have been deleted outside of the cache.
+	 */
+	public void retainAll(Set<String> names) {
+		entryMap.keySet().retainAll(names);
+	}
+
+	/**
+	 * Adds entries for files that were not indexed before (e.g. because
+	 * the index was lost), and re-sorts all entries by their last access.
+	 */
+	public void addAll(Collection<CacheEntry> newEntries) {
+		List<CacheEntry> sortedEntries = new ArrayList<CacheEntry>(entryMap.values());
+		sortedEntries.addAll(newEntries);
+
+		setEntries(sortedEntries);
+	}
+
+	/**
+	 * Returns all entries, sorted by their last access (eldest first).
+	 */
+	public List<CacheEntry> getEntries() {
+		return new ArrayList<CacheEntry>(entryMap.values());
+	}
+
+	/**
+	 * Returns the total size of all entries of the given type, or of all
+	 * entries if the type is <tt>null</tt>. Unknown sizes are not counted.
+	 */
+	public long getSize(CacheFileType type) {
+		long size = 0;
+
+		for (CacheEntry entry : entryMap.values()) {
+			if ((type == null || type == entry.getType()) && entry.getSize() != UNKNOWN_SIZE) {
+				size += entry.getSize();
+			}
+		}
+
+		return size;
+	}
+
+	public void save(File file) throws IOException {
+		entries = new ArrayList<CacheEntry>(entryMap.values());
+
+		try {
+			new Persister().write(this, file);
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot write cache index to " + file, e);
+		}
+		finally {
+			entries.clear();
+		}
+	}
+
+	public static CacheIndex load(File file) throws IOException {
+		try {
+			CacheIndex cacheIndex = new Persister().read(CacheIndex.class, file);
+			cacheIndex.setEntries(cacheIndex.entries);
+
+			return cacheIndex;
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot read cache index from " + file, e);
+		}
+	}
+
+	private void setEntries(List<CacheEntry> newEntries) {
+		List<CacheEntry> sortedEntries = new ArrayList<CacheEntry>(newEntries);
+
+		Collections.sort(sortedEntries, new Comparator<CacheEntry>() {
+			@Override
+			public int compare(CacheEntry entry1, CacheEntry entry2) {
+				return Long.compare(entry1.getLastAccess(), entry2.getLastAccess());
+			}
+		});
+
+		entryMap.clear();
+		entries.clear();
+
+		for (CacheEntry entry : sortedEntries) {
+			entryMap.put(entry.getName(), entry);
+		}
+	}
+
+	@Root(name = "entry")
+	public static class CacheEntry {
+		@Attribute(name = "name")
+		private String name;
+
+		@Attribute(name = "type")
+		private CacheFileType type;
+
+		@Attribute(name = "size")
+		private long size;
+
+		@Attribute(name = "lastAccess")
+		private long lastAccess;
+
+		public CacheEntry() {
+			// Required for Simple XML
+		}
+
+		public CacheEntry(String name, CacheFileType type, long size, long lastAccess) {
+			this.name = name;
+			this.type = type;
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public CacheFileType getType() {
+			return type;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public void setSize(long size) {
+			this.size = size;
+		}
+
+		public long getLastAccess() {
+			return lastAccess;
+		}
+
+		public void setLastAccess(long lastAccess) {
+			this.lastAccess = lastAccess;
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.syncany.chunk.NoTransformer;
 import org.syncany.chunk.Transformer;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.MultiChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.crypto.SaltedSecretKey;
@@ -72,6 +73,7 @@ public class Config {
 	public static final String FILE_PORT = "port.xml";
 	public static final String FILE_TRANSACTION = "transaction-actions.xml";
 	public static final String FILE_TRANSACTION_DATABASE = "transaction-database.xml";
+	public static final String FILE_CACHE_INDEX = "cache-index.xml";
 
 	private byte[] repoId;
 	private String machineName;
@@ -131,11 +133,19 @@ public class Config {
 	}
 
 	private void initCache(ConfigTO configTO) {
-		cache = new Cache(cacheDir);
+		cache = new Cache(cacheDir, getCacheIndexFile());
 
 		if (configTO.getCacheKeepBytes() != null && configTO.getCacheKeepBytes() >= 0) {
 			cache.setKeepBytes(configTO.getCacheKeepBytes());
 		}
+
+		if (configTO.getCacheKeepMultiChunkBytes() != null && configTO.getCacheKeepMultiChunkBytes() >= 0) {
+			cache.setKeepMultiChunkBytes(configTO.getCacheKeepMultiChunkBytes());
+		}
+
+		if (configTO.getCacheKeepDatabaseBytes() != null && configTO.getCacheKeepDatabaseBytes() >= 0) {
+			cache.setKeepDatabaseBytes(configTO.getCacheKeepDatabaseBytes());
+		}
 	}
 
 	private void initIgnoredFile() throws ConfigException {
@@ -160,10 +170,28 @@ public class Config {
 	}
 
 	private void initChunker(RepoTO repoTO) throws Exception {
-		// TODO [feature request] make chunking options configurable, something like described in #29
-		// See: https://github.com/syncany/syncany/issues/29#issuecomment-43425647
+		ChunkerTO chunkerTO = repoTO.getChunkerTO();
+
+		// Note: The settings of the fixed chunker in existing repository configs have never been
+		//       honored. To keep chunk boundaries stable, only other chunker types are read from the config.
+
+		if (chunkerTO == null || chunkerTO.getType() == null || FixedChunker.TYPE.equals(chunkerTO.getType())) {
+			chunker = new FixedChunker(512 * 1024, "SHA1");
+		}
+		else {
+			chunker = Chunker.getInstance(chunkerTO.getType());
+
+			if (chunker == null) {
+				throw new ConfigException("Invalid chunker type or settings: " + chunkerTO.getType());
+			}
 
-		chunker = new FixedChunker(512 * 1024, "SHA1");
+			try {
+				chunker.init(chunkerTO.getSettings());
+			}
+			catch (IllegalArgumentException e) {
+				throw new ConfigException("Invalid chunker settings for chunker type " + chunkerTO.getType() + ": " + e.getMessage(), e);
+			}
+		}
 	}
 
 	private void initMultiChunker(RepoTO repoTO) throws ConfigException {
@@ -237,6 +265,10 @@ public class Config {
 		return DatabaseConnectionFactory.createConnection(getDatabaseFile());
 	}
 
+	public java.sql.Connection createReadOnlyDatabaseConnection() {
+		return DatabaseConnectionFactory.createReadOnlyConnection(getDatabaseFile());
+	}
+
 	public File getCacheDir() {
 		return cacheDir;
 	}
@@ -340,4 +372,8 @@ public class Config {
 	public File getTransactionDatabaseFile() {
 		return new File(stateDir, FILE_TRANSACTION_DATABASE);
 	}
+
+	public File getCacheIndexFile() {
+		return new File(stateDir, FILE_CACHE_INDEX);
+	}
 }
@@ -17,11 +17,16 @@
  */
 package org.syncany.config;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.syncany.operations.daemon.messages.api.CoalescableEvent;
+import org.syncany.operations.daemon.messages.api.ExternalEvent;
+import org.syncany.operations.daemon.messages.api.Response;
+
 import com.google.common.eventbus.EventBus;
 
 /**
@@ -29,6 +34,19 @@ import com.google.common.eventbus.EventBus;
  * daemon. It provides a publish/subscribe mechanism within a
  * single JVM.
  * 
+ * <p>By default, events are delivered synchronously on the posting thread. If
+ * asynchronous dispatch is enabled (see {@link #enableAsyncDispatch(int)}), 
+ * {@link ExternalEvent}s and {@link Response}s are put in a bounded queue and delivered 
+ * by a single dispatcher thread in the order they were posted, so that a response never
+ * overtakes an event posted before it. Requests and all other messages are still 
+ * delivered synchronously. 
+ * 
+ * <p>While queued, a {@link CoalescableEvent} is replaced by newer events with the
+ * same coalescing key, i.e. superseded progress events are never delivered. Coalescable
+ * events are never dropped, so the latest event per key is always delivered; they may 
+ * exceed the queue size by at most the number of distinct coalescing keys. Posting any
+ * other message to a full queue blocks until the dispatcher has caught up.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class InternalEventBus {
@@ -37,6 +55,12 @@ public abstract class InternalEventBus {
 	
 	protected EventBus eventBus;
 	
+	private final Object queueLock = new Object();
+	private ArrayDeque<EventSlot> queue;
+	private Map<String, EventSlot> coalescableSlots;
+	private int maxQueueSize;
+	private Thread dispatcherThread;
+	
 	@SuppressWarnings("unchecked")
 	protected static <T extends InternalEventBus> T getInstance(Class<T> eventBusClass) {
 		T eventBusInstance = (T) instances.get(eventBusClass);
@@ -72,7 +96,174 @@ public abstract class InternalEventBus {
 	}	
 	
 	public void post(Object event) {
-		logger.log(Level.INFO, "Event bus '" + this.getClass().getSimpleName() + "': Posting event " + event.getClass().getSimpleName() + " (" + event + ") ...");
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Event bus '" + this.getClass().getSimpleName() + "': Posting event " + event.getClass().getSimpleName() + " (" + event + ") ...");
+		}
+		
+		if ((event instanceof ExternalEvent || event instanceof Response) && enqueue(event)) {
+			return;
+		}
+		
 		eventBus.post(event);
 	}
+	
+	/**
+	 * Starts a dispatcher thread and delivers all {@link ExternalEvent}s and {@link Response}s 
+	 * posted from now on asynchronously. Calling this method while asynchronous dispatch is already
+	 * enabled has no effect.
+	 * 
+	 * @param maxQueueSize Maximum number of undelivered events in the queue
+	 */
+	public void enableAsyncDispatch(int maxQueueSize) {
+		synchronized (queueLock) {
+			if (dispatcherThread != null) {
+				return;
+			}
+			
+			logger.log(Level.INFO, "Event bus '" + this.getClass().getSimpleName() + "': Enabling asynchronous dispatch (max. " + maxQueueSize + " queued events) ...");
+			
+			this.queue = new ArrayDeque<EventSlot>();
+			this.coalescableSlots = new HashMap<String, EventSlot>();
+			this.maxQueueSize = Math.max(1, maxQueueSize);
+			
+			this.dispatcherThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runDispatcher();
+				}
+			}, "EventBusDispatcher");
+			
+			this.dispatcherThread.setDaemon(true);
+			this.dispatcherThread.start();
+		}
+	}
+	
+	/**
+	 * Delivers all queued events and stops the dispatcher thread. Events posted 
+	 * afterwards are delivered synchronously again.
+	 */
+	public void disableAsyncDispatch() {
+		Thread stoppedDispatcherThread;
+		
+		synchronized (queueLock) {
+			if (dispatcherThread == null) {
+				return;
+			}
+			
+			logger.log(Level.INFO, "Event bus '" + this.getClass().getSimpleName() + "': Disabling asynchronous dispatch ...");
+
+			stoppedDispatcherThread = dispatcherThread;
+			dispatcherThread = null;
+			
+			queueLock.notifyAll();
+		}
+		
+		try {
+			stoppedDispatcherThread.join();
+		}
+		catch (InterruptedException e) {
+			logger.log(Level.INFO, "Interrupted while waiting for event dispatcher to finish.", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Puts the given event in the dispatch queue, or replaces a queued event with the
+	 * same coalescing key. Returns <tt>false</tt> if asynchronous dispatch is disabled, or 
+	 * if this method is called by the dispatcher thread itself (i.e. by a subscriber). 
+	 */
+	private boolean enqueue(Object event) {
+		synchronized (queueLock) {
+			if (dispatcherThread == null || dispatcherThread == Thread.currentThread()) {
+				return false;
+			}
+			
+			String coalescingKey = (event instanceof CoalescableEvent) ? ((CoalescableEvent) event).getCoalescingKey() : null;
+			
+			if (coalescingKey != null) {
+				EventSlot coalescableSlot = coalescableSlots.get(coalescingKey);
+				
+				if (coalescableSlot != null) {
+					coalescableSlot.event = event;
+					return true;
+				}
+				
+				// Never dropped or blocked, even if the queue is full; bounded by the number of keys
+			}
+			else {
+				while (queue.size() >= maxQueueSize && dispatcherThread != null) {
+					try {
+						queueLock.wait();
+					}
+					catch (InterruptedException e) {
+						logger.log(Level.INFO, "Interrupted while waiting for event queue; delivering event synchronously.", e);
+						Thread.currentThread().interrupt();
+						
+						return false;
+					}
+				}
+				
+				if (dispatcherThread == null) {
+					return false;
+				}
+			}
+			
+			EventSlot eventSlot = new EventSlot(event, coalescingKey);
+			queue.add(eventSlot);
+			
+			if (coalescingKey != null) {
+				coalescableSlots.put(coalescingKey, eventSlot);
+			}
+
+			queueLock.notifyAll();			
+			return true;
+		}
+	}
+	
+	private void runDispatcher() {
+		while (true) {
+			Object event;
+			
+			synchronized (queueLock) {
+				while (queue.isEmpty() && dispatcherThread != null) {
+					try {
+						queueLock.wait();
+					}
+					catch (InterruptedException e) {
+						logger.log(Level.FINE, "Event dispatcher interrupted; ignoring.", e);
+					}
+				}
+				
+				if (queue.isEmpty()) {
+					return; // Disabled, and all events delivered
+				}
+				
+				EventSlot eventSlot = queue.poll();
+				event = eventSlot.event;
+				
+				if (eventSlot.coalescingKey != null) {
+					coalescableSlots.remove(eventSlot.coalescingKey);
+				}
+				
+				queueLock.notifyAll();
+			}
+			
+			try {
+				eventBus.post(event);
+			}
+			catch (Exception e) {
+				logger.log(Level.WARNING, "Event bus '" + this.getClass().getSimpleName() + "': Cannot deliver event " + event.getClass().getSimpleName(), e);
+			}
+		}
+	}
+	
+	private static class EventSlot {
+		private Object event;
+		private String coalescingKey;
+		
+		public EventSlot(Object event, String coalescingKey) {
+			this.event = event;
+			this.coalescingKey = coalescingKey;
+		}
+	}
 }
@@ -63,6 +63,12 @@ public class ConfigTO {
 	@Element(name = "cacheKeepBytes", required = false)
 	private Long cacheKeepBytes;
 
+	@Element(name = "cacheKeepMultiChunkBytes", required = false)
+	private Long cacheKeepMultiChunkBytes;
+
+	@Element(name = "cacheKeepDatabaseBytes", required = false)
+	private Long cacheKeepDatabaseBytes;
+
 	public static ConfigTO load(File file) throws ConfigException {
 		try {
 			Registry registry = new Registry();
@@ -144,4 +150,20 @@ public class ConfigTO {
 		this.cacheKeepBytes = cacheKeepBytes;
 	}
 
+	public Long getCacheKeepMultiChunkBytes() {
+		return cacheKeepMultiChunkBytes;
+	}
+
+	public void setCacheKeepMultiChunkBytes(Long cacheKeepMultiChunkBytes) {
+		this.cacheKeepMultiChunkBytes = cacheKeepMultiChunkBytes;
+	}
+
+	public Long getCacheKeepDatabaseBytes() {
+		return cacheKeepDatabaseBytes;
+	}
+
+	public void setCacheKeepDatabaseBytes(Long cacheKeepDatabaseBytes) {
+		this.cacheKeepDatabaseBytes = cacheKeepDatabaseBytes;
+	}
+
 }
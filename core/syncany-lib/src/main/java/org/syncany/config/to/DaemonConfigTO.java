@@ -31,6 +31,15 @@ public class DaemonConfigTO {
 	@Element(name = "webServer", required = false)
 	private WebServerTO webServer = new WebServerTO();
 
+	@Element(name = "scheduler", required = false)
+	private SchedulerTO scheduler = new SchedulerTO();
+
+	@Element(name = "transferGovernor", required = false)
+	private TransferGovernorTO transferGovernor = new TransferGovernorTO();
+
+	@Element(name = "eventBus", required = false)
+	private EventBusTO eventBus = new EventBusTO();
+
 	@ElementList(name = "folders", entry = "folder", required = true)
 	private ArrayList<FolderTO> folders = new ArrayList<FolderTO>();
 
@@ -81,6 +90,30 @@ public class DaemonConfigTO {
 		this.webServer = webServer;
 	}
 
+	public SchedulerTO getScheduler() {
+		return scheduler;
+	}
+
+	public void setScheduler(SchedulerTO scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public TransferGovernorTO getTransferGovernor() {
+		return transferGovernor;
+	}
+
+	public void setTransferGovernor(TransferGovernorTO transferGovernor) {
+		this.transferGovernor = transferGovernor;
+	}
+
+	public EventBusTO getEventBus() {
+		return eventBus;
+	}
+
+	public void setEventBus(EventBusTO eventBus) {
+		this.eventBus = eventBus;
+	}
+
 	public PortTO getPortTO() {
 		return portTO;
 	}
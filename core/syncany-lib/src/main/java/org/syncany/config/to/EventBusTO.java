@@ -0,0 +1,62 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.config.to;
+
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.Root;
+
+/**
+ * Settings of the daemon's event bus, i.e. whether external events and responses are delivered
+ * asynchronously, the maximum number of undelivered events, and the interval in which
+ * progress events are batched before they are sent to web socket clients.
+ */
+@Root(strict = false)
+public class EventBusTO {
+	@Element(required = false)
+	private boolean asyncDispatch = true;
+
+	@Element(required = false)
+	private int maxQueueSize = 1000;
+
+	@Element(required = false)
+	private int batchInterval = 250;
+
+	public boolean isAsyncDispatch() {
+		return asyncDispatch;
+	}
+
+	public void setAsyncDispatch(boolean asyncDispatch) {
+		this.asyncDispatch = asyncDispatch;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	public int getBatchInterval() {
+		return batchInterval;
+	}
+
+	public void setBatchInterval(int batchInterval) {
+		this.batchInterval = batchInterval;
+	}
+}
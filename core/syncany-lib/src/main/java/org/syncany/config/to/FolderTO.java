@@ -28,6 +28,9 @@ public class FolderTO {
 
 	@Element(name="enabled", required=false) 
 	private boolean enabled = true;
+
+	@Element(name="priority", required=false)
+	private int priority = 0;
 	
 	@Element(name="watch", required = false)
 	private WatchOperationOptions watchOptions;
@@ -56,6 +59,14 @@ public class FolderTO {
 		this.enabled = enabled;
 	}
 
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
 	public WatchOperationOptions getWatchOptions() {
 		return watchOptions;
 	}
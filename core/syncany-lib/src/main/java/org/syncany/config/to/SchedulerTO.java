@@ -0,0 +1,96 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.config.to;
+
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.Root;
+
+/**
+ * Settings of the daemon's sync scheduler, i.e. the number of threads shared 
+ * among all watched folders, the maximum number of concurrently running operations
+ * per operation type, the maximum wait time after failed syncs, and the number of
+ * threads answering read-only folder requests.
+ */
+@Root(strict = false)
+public class SchedulerTO {
+	@Element(required = false)
+	private int threads = 4;
+
+	@Element(required = false)
+	private int maxConcurrentDown = 2;
+
+	@Element(required = false)
+	private int maxConcurrentUp = 2;
+
+	@Element(required = false)
+	private int maxConcurrentCleanup = 1;
+
+	@Element(required = false)
+	private int maxBackoff = 30*60*1000;
+
+	@Element(required = false)
+	private int readOnlyRequestThreads = 2;
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getMaxConcurrentDown() {
+		return maxConcurrentDown;
+	}
+
+	public void setMaxConcurrentDown(int maxConcurrentDown) {
+		this.maxConcurrentDown = maxConcurrentDown;
+	}
+
+	public int getMaxConcurrentUp() {
+		return maxConcurrentUp;
+	}
+
+	public void setMaxConcurrentUp(int maxConcurrentUp) {
+		this.maxConcurrentUp = maxConcurrentUp;
+	}
+
+	public int getMaxConcurrentCleanup() {
+		return maxConcurrentCleanup;
+	}
+
+	public void setMaxConcurrentCleanup(int maxConcurrentCleanup) {
+		this.maxConcurrentCleanup = maxConcurrentCleanup;
+	}
+
+	public int getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public void setMaxBackoff(int maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	public int getReadOnlyRequestThreads() {
+		return readOnlyRequestThreads;
+	}
+
+	public void setReadOnlyRequestThreads(int readOnlyRequestThreads) {
+		this.readOnlyRequestThreads = readOnlyRequestThreads;
+	}
+}
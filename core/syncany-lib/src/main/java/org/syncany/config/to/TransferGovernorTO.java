@@ -0,0 +1,62 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.config.to;
+
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.Root;
+
+/**
+ * Settings of the daemon-wide transfer governor, i.e. the upload and download
+ * bandwidth limits (shared by all watched folders) and the maximum number of 
+ * concurrent requests per storage host. A value of 0 means unlimited.
+ */
+@Root(strict = false)
+public class TransferGovernorTO {
+	@Element(required = false)
+	private long uploadBytesPerSecond = 0;
+
+	@Element(required = false)
+	private long downloadBytesPerSecond = 0;
+
+	@Element(required = false)
+	private int maxRequestsPerHost = 0;
+
+	public long getUploadBytesPerSecond() {
+		return uploadBytesPerSecond;
+	}
+
+	public void setUploadBytesPerSecond(long uploadBytesPerSecond) {
+		this.uploadBytesPerSecond = uploadBytesPerSecond;
+	}
+
+	public long getDownloadBytesPerSecond() {
+		return downloadBytesPerSecond;
+	}
+
+	public void setDownloadBytesPerSecond(long downloadBytesPerSecond) {
+		this.downloadBytesPerSecond = downloadBytesPerSecond;
+	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+}
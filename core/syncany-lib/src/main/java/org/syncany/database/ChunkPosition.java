@@ -0,0 +1,78 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.util.Date;
+
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+
+/**
+ * The chunk position describes where a chunk is located within the last
+ * {@link FileVersion} of a file, i.e. the file's relative path and the chunk's
+ * offset and size within this file. The expected size and last modified date of
+ * the file are included to check if the local file still matches the file version.
+ *
+ * @see ChunkEntry
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class ChunkPosition {
+	private ChunkChecksum checksum;
+	private String path;
+	private long fileSize;
+	private Date fileLastModified;
+	private long offset;
+	private int size;
+
+	public ChunkPosition(ChunkChecksum checksum, String path, long fileSize, Date fileLastModified, long offset, int size) {
+		this.checksum = checksum;
+		this.path = path;
+		this.fileSize = fileSize;
+		this.fileLastModified = fileLastModified;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	public ChunkChecksum getChecksum() {
+		return checksum;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	public Date getFileLastModified() {
+		return fileLastModified;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkPosition [checksum=" + checksum + ", path=" + path + ", offset=" + offset + ", size=" + size + "]";
+	}
+}
@@ -28,10 +28,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.syncany.database.dao.FileVersionSqlDao;
 import org.syncany.util.FileUtil;
 import org.syncany.util.SqlRunner;
 
@@ -41,7 +44,13 @@ import org.syncany.util.SqlRunner;
  *
  * <p>The class provides methods to create {@link Connection} objects, retrieve
  * SQL statements from the resources, and create the initial tables when the
- * application is first started.
+ * application is first started. For existing databases, missing tables are added
+ * using an idempotent upgrade script. The upgrade only runs for the first connection
+ * to a database file within the application, not for every connection.
+ *
+ * <p>The database uses multi version concurrency control (MVCC). That way, read-only
+ * connections (see {@link #createReadOnlyConnection(File)}) see the last committed state
+ * of the database, and neither wait for nor block a running sync.
  *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
@@ -52,9 +61,12 @@ public class DatabaseConnectionFactory {
 	public static final String DATABASE_CONNECTION_FILE_STRING = "jdbc:hsqldb:file:%DATABASEFILE%;user=sa;password=;create=true;write_delay=false;hsqldb.write_delay=false;shutdown=true";
 	public static final String DATABASE_RESOURCE_PATTERN = "/org/syncany/database/sql/%s";
 	public static final String DATABASE_RESOURCE_CREATE_ALL = "script.create.all.sql";
+	public static final String DATABASE_RESOURCE_UPGRADE_ALL = "script.upgrade.all.sql";
 
 	public static final Map<String, String> DATABASE_STATEMENTS = new HashMap<String, String>();
 
+	private static final Set<String> UPGRADED_DATABASE_FILES = new HashSet<String>();
+
 	static {
 		try {
 			logger.log(Level.INFO, "Loading database driver " + DATABASE_DRIVER + " ...");
@@ -81,7 +93,32 @@ public class DatabaseConnectionFactory {
 			connectionString += ";hsqldb.sqllog=3";
 		}
 
-		return createConnection(connectionString);
+		return createConnection(connectionString, databaseFilePath);
+	}
+
+	/**
+	 * Creates a read-only database connection using the given database file. The connection
+	 * reads from a snapshot of the last committed state of the database, taken with the first
+	 * statement after creating the connection or after calling {@link Connection#rollback()}.
+	 *
+	 * <p>The database must have been created or opened using {@link #createConnection(File)} before.
+	 *
+	 * @param databaseFile File of an existing database
+	 * @return Returns a valid read-only database connection
+	 */
+	public static Connection createReadOnlyConnection(File databaseFile) {
+		try {
+			Connection connection = createConnection(databaseFile);
+			connection.commit(); // End transaction of table checks, cannot change mode within a transaction
+
+			connection.setReadOnly(true);
+			connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+
+			return connection;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException("Cannot create read-only connection.", e);
+		}
 	}
 
 	/**
@@ -122,7 +159,7 @@ public class DatabaseConnectionFactory {
 		return statementInputStream;
 	}
 
-	private static Connection createConnection(String connectionString) {
+	private static Connection createConnection(String connectionString, String databaseFilePath) {
 		try {
 			Connection connection = DriverManager.getConnection(connectionString);
 			connection.setAutoCommit(false);
@@ -131,9 +168,20 @@ public class DatabaseConnectionFactory {
 			// with those changes, but still roll back the database if something goes wrong later.
 			connection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
 
-			// Test and create tables
-			if (!tablesExist(connection)) {
-				createTables(connection);
+			// Test and create tables, or upgrade tables (only once per database file)
+			synchronized (UPGRADED_DATABASE_FILES) {
+				if (!tablesExist(connection)) {
+					createTables(connection);
+					enableMultiVersionConcurrencyControl(connection);
+
+					UPGRADED_DATABASE_FILES.add(databaseFilePath);
+				}
+				else if (!UPGRADED_DATABASE_FILES.contains(databaseFilePath)) {
+					upgradeTables(connection);
+					enableMultiVersionConcurrencyControl(connection);
+
+					UPGRADED_DATABASE_FILES.add(databaseFilePath);
+				}
 			}
 
 			return connection;
@@ -171,6 +219,83 @@ public class DatabaseConnectionFactory {
 		SqlRunner.runScript(connection, inputStream);
 
 		connection.setAutoCommit(false);
+
+		// Fill new tables that cannot be filled by the script
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(connection);
+
+		fileVersionDao.writeMissingFilePaths();
+		fileVersionDao.writeMissingFileVersionValidity();
+
+		connection.commit();
+	}
+
+	private static void upgradeTables(Connection connection) throws SQLException, IOException {
+		logger.log(Level.FINE, "Database tables exist. Upgrading tables (if necessary) from " + DATABASE_RESOURCE_UPGRADE_ALL);
+
+		String fullResourcePath = String.format(DATABASE_RESOURCE_PATTERN, DATABASE_RESOURCE_UPGRADE_ALL);
+		InputStream inputStream = DatabaseConnectionFactory.class.getResourceAsStream(fullResourcePath);
+
+		connection.setAutoCommit(true);
+
+		SqlRunner.runScript(connection, inputStream);
+
+		connection.setAutoCommit(false);
+
+		// Fill new tables that cannot be filled by the script
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(connection);
+
+		fileVersionDao.writeMissingFilePaths();
+		fileVersionDao.writeMissingFileVersionValidity();
+
+		connection.commit();
+	}
+
+	/**
+	 * Switches the database to MVCC, unless it already uses it. This is only called when the
+	 * tables are created or upgraded, i.e. once per database file within the application. The
+	 * transaction control mode is persisted in the database. Failing to switch is not fatal;
+	 * read-only connections then simply wait for running transactions.
+	 */
+	private static void enableMultiVersionConcurrencyControl(Connection connection) {
+		String transactionControlMode = null;
+
+		try (PreparedStatement preparedStatement = connection.prepareStatement(
+				"select property_value from information_schema.system_properties where property_name = 'hsqldb.tx'")) {
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					transactionControlMode = resultSet.getString(1);
+				}
+			}
+		}
+		catch (SQLException e) {
+			logger.log(Level.WARNING, "Cannot read transaction control mode. Read-only connections might wait for running syncs.", e);
+			return;
+		}
+
+		if (transactionControlMode == null || "mvcc".equalsIgnoreCase(transactionControlMode)) {
+			return;
+		}
+
+		logger.log(Level.INFO, "Database uses transaction control mode " + transactionControlMode + ". Switching to MVCC ...");
+
+		try (PreparedStatement preparedStatement = connection.prepareStatement("set database transaction control mvcc")) {
+			connection.commit();
+			connection.setAutoCommit(true);
+
+			preparedStatement.execute();
+		}
+		catch (SQLException e) {
+			logger.log(Level.WARNING, "Cannot switch database to MVCC. Read-only connections might wait for running syncs.", e);
+		}
+		finally {
+			try {
+				connection.setAutoCommit(false);
+			}
+			catch (SQLException e) {
+				logger.log(Level.WARNING, "Cannot disable auto-commit after switching to MVCC.", e);
+			}
+		}
 	}
 
 	// TODO [low] Shouldn't the SqlRunner be used here? If so, the SqlRunner also needs refactoring.
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.syncany.chunk.ChunkerResumePoint;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
 
 /**
@@ -42,6 +43,7 @@ public class FileContent {
 	private long size;
 
 	private List<ChunkChecksum> chunkChecksums;
+	private ChunkerResumePoint resumePoint;
 
 	public FileContent() {
 		this.chunkChecksums = new ArrayList<ChunkChecksum>();
@@ -71,6 +73,21 @@ public class FileContent {
 		return Collections.unmodifiableList(chunkChecksums);
 	}
 
+	/**
+	 * Returns the local resume point of this file content, i.e. the stable chunk
+	 * boundary at which chunking can be resumed if the file is appended to. Resume
+	 * points are only stored in the local database, and are never part of a remote database.
+	 * 
+	 * @return Returns the resume point, or <tt>null</tt> if there is none
+	 */
+	public ChunkerResumePoint getResumePoint() {
+		return resumePoint;
+	}
+
+	public void setResumePoint(ChunkerResumePoint resumePoint) {
+		this.resumePoint = resumePoint;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
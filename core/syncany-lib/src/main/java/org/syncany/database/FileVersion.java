@@ -58,6 +58,9 @@ public class FileVersion implements Cloneable {
 	private String posixPermissions;
 	private String dosAttributes;
 
+	// Local only (not persisted in the remote database)
+	private String fileKey;
+
 	public FileVersion() {
 		// Fressen.
 	}
@@ -162,6 +165,19 @@ public class FileVersion implements Cloneable {
 		this.dosAttributes = dosAttributes;
 	}
 
+	/**
+	 * Returns the platform-specific file key (e.g. device and inode) of the local
+	 * file this version was indexed from, or <tt>null</tt> if it is unknown. The
+	 * file key is only stored in the local database and used to detect moved files.
+	 */
+	public String getFileKey() {
+		return fileKey;
+	}
+
+	public void setFileKey(String fileKey) {
+		this.fileKey = fileKey;
+	}
+
 	@Override
 	public String toString() {
 		return "FileVersion [version=" + version + ", path=" + path + ", type=" + type + ", status=" + status + ", size=" + size + ", lastModified="
@@ -439,6 +439,7 @@ public class FileVersionComparator {
 
 			fileProperties.lastModified = fileAttributes.lastModifiedTime().toMillis();
 			fileProperties.size = fileAttributes.size();
+			fileProperties.fileKey = (fileAttributes.fileKey() != null) ? fileAttributes.fileKey().toString() : null;
 
 			// Type
 			if (fileAttributes.isSymbolicLink()) {
@@ -511,6 +512,7 @@ public class FileVersionComparator {
 		fileProperties.type = fileVersion.getType();
 		fileProperties.posixPermissions = fileVersion.getPosixPermissions();
 		fileProperties.dosAttributes = fileVersion.getDosAttributes();
+		fileProperties.fileKey = fileVersion.getFileKey();
 		fileProperties.exists = fileVersion.getStatus() != FileStatus.DELETED;
 		fileProperties.locked = false;
 
@@ -555,6 +557,7 @@ public class FileVersionComparator {
 
 		private String posixPermissions = null;
 		private String dosAttributes = null;
+		private String fileKey = null;
 
 		public long getLastModified() {
 			return lastModified;
@@ -595,5 +598,14 @@ public class FileVersionComparator {
 		public String getDosAttributes() {
 			return dosAttributes;
 		}
+
+		/**
+		 * Returns the platform-specific key uniquely identifying the file on
+		 * the local file system (e.g. device and inode on Linux), or <tt>null</tt>
+		 * if the file system does not provide one.
+		 */
+		public String getFileKey() {
+			return fileKey;
+		}
 	}
 }
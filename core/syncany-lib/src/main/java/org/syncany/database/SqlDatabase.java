@@ -25,8 +25,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.syncany.chunk.ChunkerResumePoint;
 import org.syncany.config.Config;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
 import org.syncany.database.FileContent.FileChecksum;
@@ -72,7 +75,16 @@ public class SqlDatabase {
 	protected DatabaseVersionSqlDao databaseVersionDao;
 
 	public SqlDatabase(Config config) {
-		this.connection = config.createDatabaseConnection();
+		this(config, false);
+	}
+
+	/**
+	 * Creates a new SQL database. If <tt>readOnly</tt> is set, the database
+	 * reads from a snapshot of the last committed state, and all write methods fail.
+	 * Read-only databases should be closed using {@link #close()} after use.
+	 */
+	public SqlDatabase(Config config, boolean readOnly) {
+		this.connection = (readOnly) ? config.createReadOnlyDatabaseConnection() : config.createDatabaseConnection();
 		this.applicationDao = new ApplicationSqlDao(connection);
 		this.chunkDao = new ChunkSqlDao(connection);
 		this.fileContentDao = new FileContentSqlDao(connection);
@@ -99,6 +111,8 @@ public class SqlDatabase {
 	public void removeUnreferencedDatabaseEntities() {
 		try {
 			removeUnreferencedFileHistories();
+			removeUnreferencedFileKeys();
+			removeUnreferencedFilePaths();
 			removeUnreferencedFileContents();
 			removeUnreferencedMultiChunks();
 			removeUnreferencedChunks();
@@ -144,6 +158,14 @@ public class SqlDatabase {
 		applicationDao.writeCleanupTime(cleanupTime);		
 	}
 
+	public String getRemoteChangeMarker() {
+		return applicationDao.getRemoteChangeMarker();
+	}
+	
+	public void writeRemoteChangeMarker(String remoteChangeMarker) {
+		applicationDao.writeRemoteChangeMarker(remoteChangeMarker);
+	}
+
 	public void deleteAll() {
 		applicationDao.deleteAll();
 	}
@@ -152,20 +174,51 @@ public class SqlDatabase {
 		applicationDao.shutdown();
 	}
 
+	public void close() {
+		try {
+			connection.close();
+		}
+		catch (SQLException e) {
+			logger.log(Level.FINE, "Could not close the connection", e);
+		}
+	}
+
 	// Database version
 
 	public Iterator<DatabaseVersion> getDirtyDatabaseVersions() {
 		return databaseVersionDao.getDirtyDatabaseVersions();
 	}
 
+	public Iterator<DatabaseVersion> getMasterDatabaseVersions() {
+		return databaseVersionDao.getMasterDatabaseVersions();
+	}
+
 	public Iterator<DatabaseVersion> getDatabaseVersionsTo(String machineName, long maxLocalClientVersion) {
 		return databaseVersionDao.getDatabaseVersionsTo(machineName, maxLocalClientVersion);
 	}
 
+	public Iterator<DatabaseVersion> getDatabaseVersionsBetween(String machineName, long minLocalClientVersion, long maxLocalClientVersion) {
+		return databaseVersionDao.getDatabaseVersionsBetween(machineName, minLocalClientVersion, maxLocalClientVersion);
+	}
+
+	public Map<String, SortedMap<Long, Long>> getDatabaseVersionEntityCounts() {
+		return databaseVersionDao.getDatabaseVersionEntityCounts();
+	}
+
 	public Iterator<DatabaseVersion> getLastDatabaseVersions(int maxDatabaseVersionCount, int startDatabaseVersionIndex, int maxFileHistoryCount) {
 		return databaseVersionDao.getLastDatabaseVersions(maxDatabaseVersionCount, startDatabaseVersionIndex, maxFileHistoryCount);
 	}
 
+	public Iterator<DatabaseVersion> getDatabaseVersionsPage(long anchorDatabaseVersionId, int maxDatabaseVersionCount, int startDatabaseVersionIndex,
+			int maxFileHistoryCount) {
+		
+		return databaseVersionDao.getDatabaseVersionsPage(anchorDatabaseVersionId, maxDatabaseVersionCount, startDatabaseVersionIndex, maxFileHistoryCount);
+	}
+
+	public long getMaxDatabaseVersionId() {
+		return databaseVersionDao.getMaxDatabaseVersionId();
+	}
+
 	public DatabaseVersionHeader getLastDatabaseVersionHeader() {
 		return databaseVersionDao.getLastDatabaseVersionHeader();
 	}
@@ -232,6 +285,18 @@ public class SqlDatabase {
 		return fileVersionDao.getCurrentFileTree();
 	}
 
+	public Map<FileHistoryId, String> getCurrentFileKeys() {
+		return fileVersionDao.getCurrentFileKeys();
+	}
+
+	private void removeUnreferencedFileKeys() throws SQLException {
+		fileVersionDao.removeUnreferencedFileKeys();
+	}
+
+	private void removeUnreferencedFilePaths() throws SQLException {
+		fileVersionDao.removeUnreferencedFilePaths();
+	}
+
 	public void removeSmallerOrEqualFileVersions(Map<FileHistoryId, FileVersion> purgeFileVersions) throws SQLException {
 		fileVersionDao.removeFileVersions(purgeFileVersions);
 	}
@@ -246,6 +311,12 @@ public class SqlDatabase {
 		return fileVersionDao.getFileList(pathExpression, date, fileHistoryId, recursive, deleted, fileTypes);
 	}
 
+	public List<FileVersion> getFileListPage(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
+			Set<FileType> fileTypes, String afterPath, String afterFileHistoryId, int maxResults) {
+		
+		return fileVersionDao.getFileListPage(pathExpression, date, fileHistoryId, recursive, deleted, fileTypes, afterPath, afterFileHistoryId, maxResults);
+	}
+
 	public List<FileVersion> getFileHistory(FileHistoryId fileHistoryId) {
 		return fileVersionDao.getFileHistory(fileHistoryId);
 	}
@@ -288,6 +359,10 @@ public class SqlDatabase {
 		return multiChunkDao.getMultiChunkIdsByChecksums(chunkChecksums);
 	}
 
+	public Map<MultiChunkId, MultiChunkEntry> getMultiChunksForChunks(Collection<ChunkChecksum> chunkChecksums) {
+		return multiChunkDao.getMultiChunksForChunks(chunkChecksums);
+	}
+
 	public List<MultiChunkId> getDirtyMultiChunkIds() {
 		return multiChunkDao.getDirtyMultiChunkIds();
 	}
@@ -304,6 +379,14 @@ public class SqlDatabase {
 		return multiChunkDao.getMultiChunks();
 	}
 
+	public Map<MultiChunkEntry, DatabaseVersionHeader> getRepackableMultiChunks(double maxLiveRatio) {
+		return multiChunkDao.getRepackableMultiChunks(maxLiveRatio);
+	}
+
+	public boolean replaceMultiChunks(Collection<MultiChunkId> oldMultiChunkIds, Collection<MultiChunkEntry> newMultiChunks) throws SQLException {
+		return multiChunkDao.replaceMultiChunks(oldMultiChunkIds, newMultiChunks);
+	}
+
 	public void writeMuddyMultiChunks(Map<DatabaseVersionHeader, Collection<MultiChunkEntry>> muddyMultiChunks) throws SQLException {
 		multiChunkDao.writeMuddyMultiChunks(muddyMultiChunks);
 	}
@@ -316,6 +399,14 @@ public class SqlDatabase {
 		multiChunkDao.removeNonMuddyMultiChunks();
 	}
 
+	public void writeMultiChunkChecksum(MultiChunkId multiChunkId, String checksum) throws SQLException {
+		multiChunkDao.writeMultiChunkChecksum(multiChunkId, checksum);
+	}
+
+	public Map<MultiChunkId, String> getMultiChunkChecksums() {
+		return multiChunkDao.getMultiChunkChecksums();
+	}
+
 	// Chunk
 
 	protected Map<ChunkChecksum, ChunkEntry> getChunks(VectorClock vectorClock) {
@@ -326,6 +417,14 @@ public class SqlDatabase {
 		return chunkDao.getChunk(chunkChecksum);
 	}
 
+	public List<ChunkEntry> getChunksForFileContent(FileChecksum fileChecksum) {
+		return chunkDao.getChunksForFileContent(fileChecksum);
+	}
+
+	public Map<ChunkChecksum, List<ChunkPosition>> getChunkPositions(Collection<ChunkChecksum> chunkChecksums) {
+		return chunkDao.getChunkPositions(chunkChecksums);
+	}
+
 	private void removeUnreferencedChunks() {
 		chunkDao.removeUnreferencedChunks();
 	}
@@ -336,6 +435,10 @@ public class SqlDatabase {
 		return fileContentDao.getFileContent(fileChecksum, includeChunkChecksums);
 	}
 
+	public ChunkerResumePoint getFileContentResumePoint(FileChecksum fileChecksum) {
+		return fileContentDao.getFileContentResumePoint(fileChecksum);
+	}
+
 	private void removeUnreferencedFileContents() throws SQLException {
 		fileContentDao.removeUnreferencedFileContents();
 	}
@@ -59,7 +59,9 @@ public class ApplicationSqlDao extends AbstractSqlDao {
 			preparedStatement.addBatch();
 		}
 
-		preparedStatement.executeBatch();
+		if (remoteDatabases.size() > 0) {
+			preparedStatement.executeBatch();
+		}
 	}
 
 	public VectorClock getHighestKnownDatabaseFilenameNumbers() {
@@ -168,6 +170,14 @@ public class ApplicationSqlDao extends AbstractSqlDao {
 		writeSetting("cleanupTime", "" + cleanupTime);
 	}
 
+	public String getRemoteChangeMarker() {
+		return readSetting("remoteChangeMarker");
+	}
+
+	public void writeRemoteChangeMarker(String remoteChangeMarker) {
+		writeSetting("remoteChangeMarker", remoteChangeMarker);
+	}
+
 	public Long readSettingAsLong(String key) {
 		try {
 			String strValue = readSetting(key);
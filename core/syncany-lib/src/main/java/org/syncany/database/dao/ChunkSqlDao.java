@@ -21,13 +21,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.syncany.database.ChunkEntry;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
+import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.VectorClock;
 
 /**
@@ -124,6 +131,99 @@ public class ChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Queries the SQL database for the positions of the given chunks in the last versions
+	 * of all (non-deleted) files. A chunk can have multiple positions if it appears in more
+	 * than one file, or more than once in the same file.
+	 *
+	 * @param chunkChecksums Checksums of the chunks to be located
+	 * @return Returns the positions of the chunks, for all chunks that can be found
+	 */
+	public Map<ChunkChecksum, List<ChunkPosition>> getChunkPositions(Collection<ChunkChecksum> chunkChecksums) {
+		Map<ChunkChecksum, List<ChunkPosition>> chunkPositions = new HashMap<ChunkChecksum, List<ChunkPosition>>();
+
+		if (chunkChecksums.size() == 0) {
+			return chunkPositions;
+		}
+
+		// Gather a unique array of checksum strings (required for query!)
+		Set<String> chunkChecksumStrs = new HashSet<String>();
+
+		for (ChunkChecksum chunkChecksum : chunkChecksums) {
+			chunkChecksumStrs.add(chunkChecksum.toString());
+		}
+
+		try (PreparedStatement preparedStatement = getStatement("chunk.select.master.getChunkPositions.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", chunkChecksumStrs.toArray()));
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				// Rows are ordered by path and chunk number, so offsets can be summed up per file
+				String currentPath = null;
+				long currentOffset = 0;
+
+				while (resultSet.next()) {
+					String path = resultSet.getString("path");
+					String chunkChecksumStr = resultSet.getString("chunk_checksum");
+					int chunkSize = resultSet.getInt("chunk_size");
+
+					if (!path.equals(currentPath)) {
+						currentPath = path;
+						currentOffset = 0;
+					}
+
+					if (chunkChecksumStrs.contains(chunkChecksumStr)) {
+						ChunkChecksum chunkChecksum = ChunkChecksum.parseChunkChecksum(chunkChecksumStr);
+						List<ChunkPosition> positions = chunkPositions.get(chunkChecksum);
+
+						if (positions == null) {
+							positions = new ArrayList<ChunkPosition>();
+							chunkPositions.put(chunkChecksum, positions);
+						}
+
+						positions.add(new ChunkPosition(chunkChecksum, path, resultSet.getLong("file_size"), new Date(resultSet.getTimestamp(
+								"lastmodified").getTime()), currentOffset, chunkSize));
+					}
+
+					currentOffset += chunkSize;
+				}
+			}
+
+			return chunkPositions;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Queries the SQL database for the chunks of the given file content, in the order
+	 * in which they appear in the file. Unlike {@link FileContentSqlDao}, this method also
+	 * returns the size of each chunk, i.e. the returned list can be used to map file offsets
+	 * to chunks.
+	 *
+	 * @param fileChecksum Checksum of the file content
+	 * @return Returns the chunks of the file content, or an empty list if the file content does not exist
+	 */
+	public List<ChunkEntry> getChunksForFileContent(FileChecksum fileChecksum) {
+		try (PreparedStatement preparedStatement = getStatement("chunk.select.all.getChunksForFileContent.sql")) {
+			preparedStatement.setString(1, fileChecksum.toString());
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				List<ChunkEntry> chunks = new ArrayList<ChunkEntry>();
+
+				while (resultSet.next()) {
+					ChunkChecksum chunkChecksum = ChunkChecksum.parseChunkChecksum(resultSet.getString("checksum"));
+					chunks.add(new ChunkEntry(chunkChecksum, resultSet.getInt("size")));
+				}
+
+				return chunks;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Queries the SQL database for all chunks that <b>originally appeared</b> in the
 	 * database version identified by the given vector clock.
@@ -24,10 +24,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -95,6 +99,8 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 			preparedStatement.setString(2, vectorClock.toString());
 
 			preparedStatement.executeUpdate();
+
+			fileVersionDao.writeFileVersionValidity(connection, getFileHistoryIds(vectorClock));
 			connection.commit();
 		}
 		catch (SQLException e) {
@@ -148,9 +154,37 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 		fileContentDao.writeFileContents(connection, databaseVersionId, databaseVersion.getFileContents());
 		fileHistoryDao.writeFileHistories(connection, databaseVersionId, databaseVersion.getFileHistories());
 
+		fileVersionDao.writeFileVersionValidity(connection, getFileHistoryIds(databaseVersion.getFileHistories()));
+
 		return databaseVersionId;
 	}
 
+	private List<FileHistoryId> getFileHistoryIds(Collection<PartialFileHistory> fileHistories) {
+		List<FileHistoryId> fileHistoryIds = new ArrayList<FileHistoryId>();
+
+		for (PartialFileHistory fileHistory : fileHistories) {
+			fileHistoryIds.add(fileHistory.getFileHistoryId());
+		}
+
+		return fileHistoryIds;
+	}
+
+	private List<FileHistoryId> getFileHistoryIds(VectorClock vectorClock) throws SQLException {
+		List<FileHistoryId> fileHistoryIds = new ArrayList<FileHistoryId>();
+
+		try (PreparedStatement preparedStatement = getStatement("filehistory.select.all.getFileHistoryIdsByVectorClock.sql")) {
+			preparedStatement.setString(1, vectorClock.toString());
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					fileHistoryIds.add(FileHistoryId.parseFileId(resultSet.getString("id")));
+				}
+			}
+		}
+
+		return fileHistoryIds;
+	}
+
 	private long writeDatabaseVersionHeaderInternal(Connection connection, DatabaseVersionHeader databaseVersionHeader) throws SQLException {
 		try (PreparedStatement preparedStatement = connection.prepareStatement(
 				DatabaseConnectionFactory.getStatement("databaseversion.insert.all.writeDatabaseVersion.sql"), Statement.RETURN_GENERATED_KEYS)) {
@@ -203,6 +237,7 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 
 			// First, remove dirty file histories, then file versions
 			fileVersionDao.removeDirtyFileVersions();
+			fileVersionDao.removeUnreferencedFileKeys();
 			fileHistoryDao.removeDirtyFileHistories();
 
 			// Now, remove all unreferenced file contents
@@ -297,6 +332,19 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Returns all master database versions, in the order in which they were
+	 * written to the local database.
+	 */
+	public Iterator<DatabaseVersion> getMasterDatabaseVersions() {
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getMasterDatabaseVersions.sql")) {
+			return new DatabaseVersionIterator(preparedStatement.executeQuery());
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	public Iterator<DatabaseVersion> getDatabaseVersionsTo(String machineName, long maxLocalClientVersion) {
 		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getDatabaseVersionsTo.sql")) {
 			preparedStatement.setString(1, machineName);
@@ -308,7 +356,57 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 			throw new RuntimeException(e);
 		}
 	}
-	
+
+	/**
+	 * Returns the master database versions of the given client whose own client version (the
+	 * client's logical time in its vector clock) is within the given range (inclusive).
+	 */
+	public Iterator<DatabaseVersion> getDatabaseVersionsBetween(String machineName, long minLocalClientVersion, long maxLocalClientVersion) {
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getDatabaseVersionsBetween.sql")) {
+			preparedStatement.setString(1, machineName);
+			preparedStatement.setLong(2, minLocalClientVersion);
+			preparedStatement.setLong(3, maxLocalClientVersion);
+
+			return new DatabaseVersionIterator(preparedStatement.executeQuery());
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Counts the database entities (file histories, file versions, file contents, chunks and
+	 * multichunks) of each master database version. The result maps a client name to a map of
+	 * its own client versions and their entity count.
+	 *
+	 * <p>Comparing two of these snapshots reveals which database versions have been changed
+	 * or removed in between, e.g. by purging file versions.
+	 */
+	public Map<String, SortedMap<Long, Long>> getDatabaseVersionEntityCounts() {
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getDatabaseVersionEntityCounts.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				Map<String, SortedMap<Long, Long>> entityCounts = new HashMap<String, SortedMap<Long, Long>>();
+
+				while (resultSet.next()) {
+					String clientName = resultSet.getString("client");
+					SortedMap<Long, Long> clientEntityCounts = entityCounts.get(clientName);
+
+					if (clientEntityCounts == null) {
+						clientEntityCounts = new TreeMap<Long, Long>();
+						entityCounts.put(clientName, clientEntityCounts);
+					}
+
+					clientEntityCounts.put(resultSet.getLong("client_version"), resultSet.getLong("entity_count"));
+				}
+
+				return entityCounts;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	public Iterator<DatabaseVersion> getLastDatabaseVersions(int maxDatabaseVersionCount, int startDatabaseVersionIndex, int maxFileHistoryCount) {
 		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getLastDatabaseVersions.sql")) {
 			maxDatabaseVersionCount = (maxDatabaseVersionCount > 0) ? maxDatabaseVersionCount : Integer.MAX_VALUE;
@@ -326,6 +424,51 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Returns the master database versions with an ID smaller or equal to the given
+	 * anchor ID, newest first, skipping the first <tt>startDatabaseVersionIndex</tt> versions.
+	 * Unlike {@link #getLastDatabaseVersions(int, int, int) getLastDatabaseVersions()}, 
+	 * the pages returned by this method are not shifted by database versions added in 
+	 * between two calls, as long as the same anchor ID is used.
+	 * 
+	 * @see #getMaxDatabaseVersionId()
+	 */
+	public Iterator<DatabaseVersion> getDatabaseVersionsPage(long anchorDatabaseVersionId, int maxDatabaseVersionCount, int startDatabaseVersionIndex,
+			int maxFileHistoryCount) {
+		
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getDatabaseVersionsPage.sql")) {
+			maxDatabaseVersionCount = (maxDatabaseVersionCount > 0) ? maxDatabaseVersionCount : Integer.MAX_VALUE;
+			startDatabaseVersionIndex = (startDatabaseVersionIndex > 0) ? startDatabaseVersionIndex : 0;
+
+			preparedStatement.setLong(1, anchorDatabaseVersionId);
+			preparedStatement.setInt(2, maxDatabaseVersionCount);
+			preparedStatement.setInt(3, startDatabaseVersionIndex);
+
+			return new DatabaseVersionIterator(preparedStatement.executeQuery(), true, maxFileHistoryCount);
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the ID of the newest master database version, or 0 if there is none.
+	 */
+	public long getMaxDatabaseVersionId() {
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getMaxDatabaseVersionId.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					return resultSet.getLong(1);
+				}
+			}
+
+			return 0;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 
 	private class DatabaseVersionIterator implements Iterator<DatabaseVersion> {
 		private ResultSet resultSet;
@@ -26,10 +26,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import org.syncany.chunk.ChunkerResumePoint;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.VectorClock;
+import org.syncany.util.StringUtil;
 
 /**
  * The file content data access object (DAO) writes and queries the SQL database for information
@@ -73,10 +75,28 @@ public class FileContentSqlDao extends AbstractSqlDao {
 			preparedStatement.close();	
 			
 			// Write chunk references
-			writeFileContentChunkRefs(connection, fileContent);			
+			writeFileContentChunkRefs(connection, fileContent);
+			
+			// Write local resume point (if any)
+			if (fileContent.getResumePoint() != null) {
+				writeFileContentResumePoint(connection, fileContent);
+			}
 		}
 	}
 	
+	private void writeFileContentResumePoint(Connection connection, FileContent fileContent) throws SQLException {
+		PreparedStatement preparedStatement = getStatement(connection, "filecontent.insert.all.writeFileContentResumePoint.sql");
+		ChunkerResumePoint resumePoint = fileContent.getResumePoint();
+		
+		preparedStatement.setString(1, fileContent.getChecksum().toString());
+		preparedStatement.setLong(2, resumePoint.getOffset());
+		preparedStatement.setInt(3, resumePoint.getChunkCount());
+		preparedStatement.setString(4, StringUtil.toHex(resumePoint.getPrefixChecksum()));
+		
+		preparedStatement.executeUpdate();
+		preparedStatement.close();
+	}
+	
 	private void writeFileContentChunkRefs(Connection connection, FileContent fileContent) throws SQLException {
 		PreparedStatement preparedStatement = getStatement(connection, "filecontent.insert.all.writeFileContentChunkRefs.sql");
 		int order = 0;
@@ -105,13 +125,20 @@ public class FileContentSqlDao extends AbstractSqlDao {
 	 * @throws SQLException If the SQL statement fails
 	 */
 	public void removeUnreferencedFileContents() throws SQLException {
-		// Note: Chunk references (filcontent_chunk) must be removed first, because
-		//       of the foreign key constraints. 
+		// Note: Chunk references (filcontent_chunk) and resume points must be removed 
+		//       first, because of the foreign key constraints. 
 		
 		removeUnreferencedFileContentChunkRefs();
+		removeUnreferencedFileContentResumePoints();
 		removeUnreferencedFileContentsInt();
 	}
 	
+	private void removeUnreferencedFileContentResumePoints() throws SQLException {
+		PreparedStatement preparedStatement = getStatement("filecontent.delete.all.removeUnreferencedFileContentResumePoints.sql");
+		preparedStatement.executeUpdate();	
+		preparedStatement.close();
+	}
+	
 	private void removeUnreferencedFileContentsInt() throws SQLException {
 		PreparedStatement preparedStatement = getStatement("filecontent.delete.all.removeUnreferencedFileContents.sql");
 		preparedStatement.executeUpdate();	
@@ -144,6 +171,38 @@ public class FileContentSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Queries the database for the local resume point of a particular {@link FileContent}, i.e.
+	 * the stable chunk boundary at which the chunker can continue if the file is appended to.
+	 * 
+	 * @param fileChecksum {@link FileContent}-identifying file checksum
+	 * @return Returns the resume point, or <tt>null</tt> if no resume point exists for the file content
+	 */
+	public ChunkerResumePoint getFileContentResumePoint(FileChecksum fileChecksum) {
+		if (fileChecksum == null) {
+			return null;
+		}
+		
+		try (PreparedStatement preparedStatement = getStatement("filecontent.select.all.getFileContentResumePoint.sql")) {
+			preparedStatement.setString(1, fileChecksum.toString());
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					long offset = resultSet.getLong("chunk_offset");
+					int chunkCount = resultSet.getInt("chunk_count");
+					byte[] prefixChecksum = StringUtil.fromHex(resultSet.getString("prefix_checksum"));
+					
+					return new ChunkerResumePoint(offset, chunkCount, prefixChecksum);
+				}
+			}
+
+			return null;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Queries the SQL database for all {@link FileContent}s that <b>originally appeared</b> in the
 	 * database version identified by the given vector clock.
@@ -105,6 +105,206 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 
 		preparedStatement.executeBatch();
 		preparedStatement.close();
+
+		writeFilePaths(connection, fileVersions);
+		writeFileKeys(connection, fileHistoryId, fileVersions);
+	}
+
+	/**
+	 * Writes the paths of the given {@link FileVersion}s, their parent directory and their depth
+	 * to the database table <i>filepath</i>, unless the paths are already known. This table is
+	 * used to list single directories without looking at all file versions. 
+	 * 
+	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the queries.
+	 */
+	private void writeFilePaths(Connection connection, Collection<FileVersion> fileVersions) throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement(connection, "filepath.insert.all.writeFilePaths.sql")) {
+			for (FileVersion fileVersion : fileVersions) {
+				setFilePathParameters(preparedStatement, fileVersion.getPath());
+				preparedStatement.addBatch();
+			}
+
+			preparedStatement.executeBatch();
+		}
+	}
+
+	/**
+	 * Fills the database table <i>filepath</i> with the paths of all existing file versions, 
+	 * if the table is empty. This is only necessary once for databases created before the 
+	 * table existed.
+	 * 
+	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the queries.
+	 */
+	public void writeMissingFilePaths() throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("filepath.select.all.hasFilePaths.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					return;
+				}
+			}
+		}
+
+		try (PreparedStatement selectStatement = getStatement("filepath.select.all.getFileVersionPaths.sql");
+				PreparedStatement insertStatement = getStatement("filepath.insert.all.writeFilePaths.sql")) {
+
+			int pathCount = 0;
+
+			try (ResultSet resultSet = selectStatement.executeQuery()) {
+				while (resultSet.next()) {
+					setFilePathParameters(insertStatement, resultSet.getString("path"));
+					insertStatement.addBatch();
+
+					pathCount++;
+				}
+			}
+
+			if (pathCount > 0) {
+				logger.log(Level.INFO, "SQL: Writing parent directory and depth of " + pathCount + " path(s) ...");
+				insertStatement.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Recalculates the validity intervals of all master {@link FileVersion}s of the given file 
+	 * histories in the database table <i>fileversion_validity</i>. This must be called whenever
+	 * master file versions of these file histories are added or removed. 
+	 * 
+	 * <p>The validity intervals are used to find the file versions valid at a certain point in time
+	 * (see {@link #getFileList(String, Date, boolean, boolean, boolean, Set) getFileList()})
+	 * without grouping all file versions by their file history.
+	 *
+	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the queries.
+	 */
+	public void writeFileVersionValidity(Connection connection, Collection<FileHistoryId> fileHistoryIds) throws SQLException {
+		if (fileHistoryIds.size() > 0) {
+			String[] fileHistoryIdsStr = createFileHistoryIdsArray(fileHistoryIds);
+	
+			try (PreparedStatement preparedStatement = getStatement(connection, "fileversion.delete.all.removeFileVersionValidity.sql")) {
+				preparedStatement.setArray(1, connection.createArrayOf("varchar", fileHistoryIdsStr));
+				preparedStatement.executeUpdate();
+			}
+	
+			try (PreparedStatement preparedStatement = getStatement(connection, "fileversion.insert.all.writeFileVersionValidity.sql")) {
+				preparedStatement.setArray(1, connection.createArrayOf("varchar", fileHistoryIdsStr));
+				preparedStatement.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Fills the database table <i>fileversion_validity</i> for all master file versions, if the
+	 * table is empty. This is only necessary once for databases created before the table existed.
+	 * 
+	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the queries.
+	 */
+	public void writeMissingFileVersionValidity() throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("fileversion.select.all.hasFileVersionValidity.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					return;
+				}
+			}
+		}
+
+		try (PreparedStatement preparedStatement = getStatement("fileversion.insert.all.writeAllFileVersionValidity.sql")) {
+			int validityCount = preparedStatement.executeUpdate();
+
+			if (validityCount > 0) {
+				logger.log(Level.INFO, "SQL: Wrote validity interval of " + validityCount + " file version(s).");
+			}
+		}
+	}
+
+	/**
+	 * Removes paths from the database table <i>filepath</i> that are not used
+	 * by any {@link FileVersion} anymore.
+	 *
+	 * <p><b>Note:</b> This method executes, but does not commit the query.
+	 *
+	 * @throws SQLException If the SQL statement fails
+	 */
+	public void removeUnreferencedFilePaths() throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("filepath.delete.all.removeUnreferencedFilePaths.sql")) {
+			preparedStatement.executeUpdate();
+		}
+	}
+
+	private void setFilePathParameters(PreparedStatement preparedStatement, String path) throws SQLException {
+		preparedStatement.setString(1, path);
+		preparedStatement.setString(2, getParentPath(path));
+		preparedStatement.setInt(3, StringUtil.substrCount(path, "/"));
+	}
+
+	private String getParentPath(String path) {
+		int lastSlashIndex = path.lastIndexOf('/');
+		return (lastSlashIndex >= 0) ? path.substring(0, lastSlashIndex) : "";
+	}
+
+	/**
+	 * Writes the local file keys of the given {@link FileVersion}s (if they have one) to the 
+	 * database table <i>fileversion_filekey</i>. File keys are only known for file versions 
+	 * indexed on this machine, and are used to detect moved files without reading them.
+	 * 
+	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the queries.
+	 */
+	private void writeFileKeys(Connection connection, FileHistoryId fileHistoryId, Collection<FileVersion> fileVersions) throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement(connection, "fileversion.insert.all.writeFileKeys.sql")) {
+			boolean hasFileKeys = false;
+
+			for (FileVersion fileVersion : fileVersions) {
+				if (fileVersion.getFileKey() != null && fileVersion.getStatus() != FileStatus.DELETED) {
+					preparedStatement.setString(1, fileHistoryId.toString());
+					preparedStatement.setInt(2, Integer.parseInt("" + fileVersion.getVersion()));
+					preparedStatement.setString(3, fileVersion.getFileKey());
+
+					preparedStatement.addBatch();
+					hasFileKeys = true;
+				}
+			}
+
+			if (hasFileKeys) {
+				preparedStatement.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Removes file keys from the database table <i>fileversion_filekey</i> whose 
+	 * {@link FileVersion} does not exist anymore.
+	 *
+	 * <p><b>Note:</b> This method executes, but does not commit the query.
+	 *
+	 * @throws SQLException If the SQL statement fails
+	 */
+	public void removeUnreferencedFileKeys() throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("fileversion.delete.all.removeUnreferencedFileKeys.sql")) {
+			preparedStatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Queries the database for the local file keys of the currently active {@link FileVersion}s
+	 * of type {@link FileType#FILE FILE}. File versions without a known file key are not included.
+	 *
+	 * @return Returns a map of file history identifiers to the file key of their last version
+	 */
+	public Map<FileHistoryId, String> getCurrentFileKeys() {
+		try (PreparedStatement preparedStatement = getStatement("fileversion.select.master.getCurrentFileKeys.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				Map<FileHistoryId, String> fileKeys = new HashMap<FileHistoryId, String>();
+
+				while (resultSet.next()) {
+					FileHistoryId fileHistoryId = FileHistoryId.parseFileId(resultSet.getString("filehistory_id"));
+					fileKeys.put(fileHistoryId, resultSet.getString("filekey"));
+				}
+
+				return fileKeys;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -142,6 +342,8 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 
 				preparedStatement.executeBatch();
 			}
+
+			writeFileVersionValidity(connection, purgeFileVersions.keySet());
 		}
 	}
 
@@ -159,6 +361,8 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 
 				preparedStatement.executeBatch();
 			}
+
+			writeFileVersionValidity(connection, purgeFileVersions.keySet());
 		}
 	}
 
@@ -212,8 +416,88 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Returns the last file versions matching the given filter parameters. A <tt>null</tt> or
+	 * empty path expression matches all paths. Unless <tt>recursive</tt> is set, only file 
+	 * versions at the depth of the path expression are returned.
+	 * 
+	 * <p>If the path expression describes the content of a single directory (i.e. it is not
+	 * recursive and has no wildcards before its last slash), only the paths in this directory 
+	 * are looked at (see table <i>filepath</i>). Otherwise, all file versions are filtered.
+	 */
 	public List<FileVersion> getFileList(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
 			Set<FileType> fileTypes) {
+
+		String parentPath = getListedDirectory(pathExpression, fileHistoryId, recursive);
+		String sqlResource = (parentPath != null) ? "fileversion.select.master.getDirectoryFileTree.sql" : "fileversion.select.master.getFilteredFileTree.sql";
+
+		try (PreparedStatement preparedStatement = getStatement(sqlResource)) {
+			setFileListParameters(preparedStatement, parentPath, pathExpression, date, fileHistoryId, recursive, deleted, fileTypes);
+			return getFileTree(preparedStatement);
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns one page of the file list described by the given filter parameters (see
+	 * {@link #getFileList(String, Date, boolean, boolean, boolean, Set) getFileList()}). Unlike 
+	 * the unpaged file list, the page is ordered by path and file history ID, and only contains 
+	 * file versions that come strictly after the given path/file history ID (the cursor). 
+	 * 
+	 * <p>To fetch the first page, pass an empty path and file history ID. To fetch the next page,
+	 * pass the path and file history ID of the last file version of the previous page.
+	 */
+	public List<FileVersion> getFileListPage(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
+			Set<FileType> fileTypes, String afterPath, String afterFileHistoryId, int maxResults) {
+
+		String parentPath = getListedDirectory(pathExpression, fileHistoryId, recursive);
+		String sqlResource = (parentPath != null) ? "fileversion.select.master.getDirectoryFileTreePage.sql" : "fileversion.select.master.getFilteredFileTreePage.sql";
+
+		try (PreparedStatement preparedStatement = getStatement(sqlResource)) {
+			int parameterIndex = setFileListParameters(preparedStatement, parentPath, pathExpression, date, fileHistoryId, recursive, deleted, fileTypes);
+
+			preparedStatement.setString(parameterIndex++, afterPath);
+			preparedStatement.setString(parameterIndex++, afterPath);
+			preparedStatement.setString(parameterIndex++, afterFileHistoryId);
+			preparedStatement.setInt(parameterIndex++, maxResults);
+
+			return getFileTree(preparedStatement);
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the directory whose content the given path expression describes, or <tt>null</tt> if
+	 * the path expression is recursive, matches file history IDs, or has wildcards in its directory
+	 * part. The root directory is the empty string.
+	 * 
+	 * <p>Note that underscores in the directory part are matched literally, while they match
+	 * any character in the <tt>like</tt>-expressions of the filtered file tree. 
+	 */
+	private String getListedDirectory(String pathExpression, boolean fileHistoryId, boolean recursive) {
+		if (recursive || fileHistoryId) {
+			return null;
+		}
+		else if (pathExpression == null || "".equals(pathExpression)) {
+			return "";
+		}
+		else {
+			String parentPath = getParentPath(pathExpression);
+			return (parentPath.contains("%")) ? null : parentPath;
+		}
+	}
+
+	/**
+	 * Sets the query parameters of the file list queries and returns the index of the
+	 * next unset parameter. The file tree query is used if no parent path is given,
+	 * and the directory file tree query otherwise.
+	 */
+	private int setFileListParameters(PreparedStatement preparedStatement, String parentPath, String pathExpression, Date date,
+			boolean fileHistoryId, boolean recursive, boolean deleted, Set<FileType> fileTypes) throws SQLException {
 		
 		// Determine sensible query parameters
 		// Basic idea: If null/empty given, match them all!
@@ -241,25 +525,44 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 		if (logger.isLoggable(Level.INFO)) {
 			logger.log(Level.INFO, " getFileTree(path = " + pathExpression + ", history = " + fileHistoryPrefix + ", minSlash = "
 					+ filterMinSlashCount + ", maxSlash = " + filterMaxSlashCount + ", date <= " + date + ", types = " 
-					+ StringUtil.join(fileTypesStr, ", "));
+					+ StringUtil.join(fileTypesStr, ", ") + ", directory = " + parentPath + ")");
 		}
 
-		try (PreparedStatement preparedStatement = getStatement("fileversion.select.master.getFilteredFileTree.sql")) {
-			preparedStatement.setString(1, fileStatusNotEqualTo);
+		if (parentPath != null) {
+			preparedStatement.setString(1, parentPath);
 			preparedStatement.setString(2, pathExpression);
-			preparedStatement.setString(3, fileHistoryPrefix);
-			preparedStatement.setInt(4, filterMinSlashCount);
-			preparedStatement.setInt(5, filterMaxSlashCount);
-			preparedStatement.setArray(6, connection.createArrayOf("varchar", fileTypesStr));
-			preparedStatement.setTimestamp(7, new Timestamp(date.getTime()));
+			preparedStatement.setString(3, fileStatusNotEqualTo);
+			preparedStatement.setArray(4, connection.createArrayOf("varchar", fileTypesStr));
+			preparedStatement.setTimestamp(5, new Timestamp(date.getTime()));
+			preparedStatement.setTimestamp(6, new Timestamp(date.getTime()));
 
-			return getFileTree(preparedStatement);
+			return 7;
 		}
-		catch (SQLException e) {
-			throw new RuntimeException(e);
+		else {
+			preparedStatement.setTimestamp(1, new Timestamp(date.getTime()));
+			preparedStatement.setTimestamp(2, new Timestamp(date.getTime()));
+			preparedStatement.setString(3, fileStatusNotEqualTo);
+			preparedStatement.setString(4, pathExpression);
+			preparedStatement.setString(5, fileHistoryPrefix);
+			preparedStatement.setInt(6, filterMinSlashCount);
+			preparedStatement.setInt(7, filterMaxSlashCount);
+			preparedStatement.setArray(8, connection.createArrayOf("varchar", fileTypesStr));
+
+			return 9;
 		}
 	}
 
+	private String[] createFileHistoryIdsArray(Collection<FileHistoryId> fileHistoryIds) {
+		String[] fileHistoryIdsStr = new String[fileHistoryIds.size()];
+		int i = 0;
+
+		for (FileHistoryId fileHistoryId : fileHistoryIds) {
+			fileHistoryIdsStr[i++] = fileHistoryId.toString();
+		}
+
+		return fileHistoryIdsStr;
+	}
+
 	private String[] createFileTypesArray(Set<FileType> fileTypes) {
 		String[] fileTypesStr = null;
 
@@ -23,8 +23,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -111,6 +113,7 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		
 		removeUnreferencedMultiChunkChunkRefs();
 		removeUnreferencedMultiChunksInt();
+		removeUnreferencedMultiChunkChecksums();
 	}
 	
 	private void removeUnreferencedMultiChunksInt() throws SQLException {
@@ -124,7 +127,101 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		preparedStatement.executeUpdate();	
 		preparedStatement.close();
 	}
+
+	private void removeUnreferencedMultiChunkChecksums() throws SQLException {
+		PreparedStatement preparedStatement = getStatement("multichunk_checksum.delete.all.removeUnreferencedMultiChunkChecksums.sql");
+		preparedStatement.executeUpdate();	
+		preparedStatement.close();
+	}
+
+	/**
+	 * Writes the MD5 checksum of the encrypted multichunk file as it was uploaded to the
+	 * remote storage, overwriting an existing checksum for the same multichunk. The checksum
+	 * is later used to verify the remote multichunk without downloading it.
+	 */
+	public void writeMultiChunkChecksum(MultiChunkId multiChunkId, String checksum) throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("multichunk_checksum.insert.all.writeMultiChunkChecksum.sql")) {
+			preparedStatement.setString(1, multiChunkId.toString());
+			preparedStatement.setString(2, checksum);
+			
+			preparedStatement.executeUpdate();
+		}
+	}
 	
+	/**
+	 * Replaces the given multichunks by the given new multichunks, e.g. after the live chunks of
+	 * the old multichunks were repacked by the cleanup. The new multichunks are assigned to the same
+	 * database version as the old ones, and the chunk references of the old multichunks are moved
+	 * to the new multichunks (if the chunks are listed in the new multichunk entries). Remaining
+	 * references and the old multichunks are removed.
+	 *
+	 * <p>If none of the old multichunks exist in the database, nothing is changed.
+	 *
+	 * @return <tt>true</tt> if the multichunks were replaced, <tt>false</tt> otherwise
+	 */
+	public boolean replaceMultiChunks(Collection<MultiChunkId> oldMultiChunkIds, Collection<MultiChunkEntry> newMultiChunks) throws SQLException {
+		Object[] oldMultiChunkIdStrs = toStringArray(oldMultiChunkIds);
+		Long databaseVersionId = getDatabaseVersionId(oldMultiChunkIdStrs);
+
+		if (databaseVersionId == null) {
+			return false;
+		}
+
+		for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+			try (PreparedStatement preparedStatement = getStatement("multichunk.insert.all.writeMultiChunks.sql")) {
+				preparedStatement.setString(1, newMultiChunk.getId().toString());
+				preparedStatement.setLong(2, databaseVersionId);
+				preparedStatement.setLong(3, newMultiChunk.getSize());
+
+				preparedStatement.executeUpdate();
+			}
+
+			try (PreparedStatement preparedStatement = getStatement("multichunk.insert.all.copyMultiChunkRefs.sql")) {
+				preparedStatement.setString(1, newMultiChunk.getId().toString());
+				preparedStatement.setArray(2, connection.createArrayOf("varchar", oldMultiChunkIdStrs));
+				preparedStatement.setArray(3, connection.createArrayOf("varchar", toStringArray(newMultiChunk.getChunks())));
+
+				preparedStatement.executeUpdate();
+			}
+		}
+
+		try (PreparedStatement preparedStatement = getStatement("multichunk.delete.all.removeMultiChunkRefs.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", oldMultiChunkIdStrs));
+			preparedStatement.executeUpdate();
+		}
+
+		try (PreparedStatement preparedStatement = getStatement("multichunk.delete.all.removeMultiChunks.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", oldMultiChunkIdStrs));
+			preparedStatement.executeUpdate();
+		}
+
+		return true;
+	}
+
+	private Long getDatabaseVersionId(Object[] multiChunkIdStrs) throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement("multichunk.select.all.getDatabaseVersionIdsForMultiChunks.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", multiChunkIdStrs));
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (resultSet.next()) {
+					return resultSet.getLong("databaseversion_id");
+				}
+			}
+
+			return null;
+		}
+	}
+
+	private Object[] toStringArray(Collection<?> objects) {
+		List<String> strings = new ArrayList<String>();
+
+		for (Object object : objects) {
+			strings.add(object.toString());
+		}
+
+		return strings.toArray();
+	}
+
 	public void removeNonMuddyMultiChunks() throws SQLException {
 		PreparedStatement preparedStatement = getStatement("multichunk_muddy.delete.muddy.removeNonMuddyMultiChunks.sql");
 		preparedStatement.executeUpdate();	
@@ -239,6 +336,53 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 	
+	/**
+	 * Queries the database for all multichunks containing at least one of the given chunks.
+	 * In contrast to {@link #getMultiChunkIdsByChecksums(List) getMultiChunkIdsByChecksums()}, 
+	 * this method returns all multichunks for a chunk if the chunk is contained in more than one 
+	 * multichunk (e.g. after a dirty re-upload).
+	 * 
+	 * <p>Note: The returned multichunk entries only contain the given chunks, not 
+	 * all chunks of the multichunks. This method also selects {@link DatabaseVersionStatus#DIRTY DIRTY}.
+	 */
+	public Map<MultiChunkId, MultiChunkEntry> getMultiChunksForChunks(Collection<ChunkChecksum> chunkChecksums) {
+		Map<MultiChunkId, MultiChunkEntry> multiChunks = new HashMap<MultiChunkId, MultiChunkEntry>();
+		
+		if (chunkChecksums.size() == 0) {
+			return multiChunks;
+		}
+		
+		// Gather a unique array of checksum strings (required for query!)
+		Set<String> checksums = new HashSet<String>();
+		
+		for (ChunkChecksum chunkChecksum : chunkChecksums) {
+			checksums.add(chunkChecksum.toString());
+		}
+		
+		try (PreparedStatement preparedStatement = getStatement("multichunk.select.all.getMultiChunksForChunks.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", checksums.toArray()));	
+			
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					MultiChunkId multiChunkId = MultiChunkId.parseMultiChunkId(resultSet.getString("id"));
+					MultiChunkEntry multiChunk = multiChunks.get(multiChunkId);
+					
+					if (multiChunk == null) {
+						multiChunk = new MultiChunkEntry(multiChunkId, resultSet.getLong("size"));
+						multiChunks.put(multiChunkId, multiChunk);
+					}
+					
+					multiChunk.addChunk(ChunkChecksum.parseChunkChecksum(resultSet.getString("chunk_checksum")));
+				}
+			}
+
+			return multiChunks;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	public List<MultiChunkId> getDirtyMultiChunkIds() {
 		List<MultiChunkId> dirtyMultiChunkIds = new ArrayList<MultiChunkId>();		
 		
@@ -267,6 +411,56 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Returns the multichunks of {@link DatabaseVersionStatus#MASTER MASTER} database versions whose ratio
+	 * of referenced (live) chunk data to total size is below the given ratio, each with the header of the
+	 * database version it belongs to. The returned multichunk entries only contain the live chunks.
+	 *
+	 * <p>The multichunks are ordered by ascending live ratio across all database versions, i.e. the
+	 * multichunks with the least live data come first.
+	 */
+	public Map<MultiChunkEntry, DatabaseVersionHeader> getRepackableMultiChunks(double maxLiveRatio) {
+		try (PreparedStatement preparedStatement = getStatement("multichunk.select.master.getRepackableMultiChunks.sql")) {
+			preparedStatement.setDouble(1, maxLiveRatio);
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				Map<MultiChunkEntry, DatabaseVersionHeader> repackableMultiChunks = new LinkedHashMap<MultiChunkEntry, DatabaseVersionHeader>();
+				MultiChunkEntry currentMultiChunkEntry = null;
+				DatabaseVersionHeader currentDatabaseVersionHeader = null;
+
+				while (resultSet.next()) {
+					MultiChunkId multiChunkId = MultiChunkId.parseMultiChunkId(resultSet.getString("multichunk_id"));
+
+					if (currentMultiChunkEntry == null || !currentMultiChunkEntry.getId().equals(multiChunkId)) {
+						// Add complete entries only; the hash code depends on the chunks 
+						if (currentMultiChunkEntry != null) {
+							repackableMultiChunks.put(currentMultiChunkEntry, currentDatabaseVersionHeader);
+						}
+						
+						currentDatabaseVersionHeader = new DatabaseVersionHeader();
+
+						currentDatabaseVersionHeader.setClient(resultSet.getString("client"));
+						currentDatabaseVersionHeader.setDate(new Date(resultSet.getTimestamp("localtime").getTime()));
+						currentDatabaseVersionHeader.setVectorClock(VectorClock.parseVectorClock(resultSet.getString("vectorclock_serialized")));
+
+						currentMultiChunkEntry = new MultiChunkEntry(multiChunkId, resultSet.getLong("size"));
+					}
+
+					currentMultiChunkEntry.addChunk(ChunkChecksum.parseChunkChecksum(resultSet.getString("chunk_checksum")));
+				}
+
+				if (currentMultiChunkEntry != null) {
+					repackableMultiChunks.put(currentMultiChunkEntry, currentDatabaseVersionHeader);
+				}
+
+				return repackableMultiChunks;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	public Map<MultiChunkId, MultiChunkEntry> getMultiChunks() {
 		try (PreparedStatement preparedStatement = getStatement("multichunk.select.all.getMultiChunks.sql")) {
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -278,6 +472,23 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 	
+	public Map<MultiChunkId, String> getMultiChunkChecksums() {
+		Map<MultiChunkId, String> multiChunkChecksums = new HashMap<MultiChunkId, String>();
+
+		try (PreparedStatement preparedStatement = getStatement("multichunk_checksum.select.all.getMultiChunkChecksums.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					multiChunkChecksums.put(MultiChunkId.parseMultiChunkId(resultSet.getString("id")), resultSet.getString("checksum"));
+				}
+
+				return multiChunkChecksums;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	public Map<MultiChunkId, MultiChunkEntry> getMuddyMultiChunks() {
 		try (PreparedStatement preparedStatement = getStatement("multichunk.select.muddy.getMuddyMultiChunks.sql")) {
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
@@ -17,6 +17,7 @@
  */
 package org.syncany.operations;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -25,9 +26,11 @@ import java.util.logging.Logger;
 
 import org.syncany.config.Config;
 import org.syncany.config.LocalEventBus;
+import org.syncany.operations.cleanup.DatabaseSegmentLayout;
 import org.syncany.plugins.transfer.RetriableTransferManager;
 import org.syncany.plugins.transfer.StorageException;
 import org.syncany.plugins.transfer.TransactionAwareTransferManager;
+import org.syncany.plugins.transfer.TransferGovernor;
 import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.plugins.transfer.files.ActionRemoteFile;
 import org.syncany.plugins.transfer.files.CleanupRemoteFile;
@@ -82,7 +85,8 @@ public abstract class AbstractTransferOperation extends Operation {
 	}
 
 	private TransferManager createRetriableTransferManager(Config config) throws StorageException {
-		return new RetriableTransferManager(config.getTransferPlugin().createTransferManager(config.getConnection(), config));
+		TransferManager pluginTransferManager = config.getTransferPlugin().createTransferManager(config.getConnection(), config);
+		return new RetriableTransferManager(TransferGovernor.getInstance().govern(pluginTransferManager, config));
 	}
 
 	protected void startOperation() throws Exception {
@@ -190,6 +194,31 @@ public abstract class AbstractTransferOperation extends Operation {
 		return cleanupNumber;
 	}
 
+	/**
+	 * Downloads the cleanup file with the given number and reads the {@link DatabaseSegmentLayout}
+	 * stored in it. If the cleanup file does not contain a layout (e.g. if it was written by an
+	 * older version), or if it cannot be downloaded or read, <tt>null</tt> is returned.
+	 */
+	protected DatabaseSegmentLayout downloadSegmentLayout(long cleanupNumber) {
+		if (cleanupNumber <= 0) {
+			return null;
+		}
+
+		try {
+			File cleanupFile = config.getCache().createTempFile("cleanup");
+
+			transferManager.download(new CleanupRemoteFile(cleanupNumber), cleanupFile);
+			DatabaseSegmentLayout segmentLayout = DatabaseSegmentLayout.load(cleanupFile, config.getTransformer());
+
+			cleanupFile.delete();
+			return segmentLayout;
+		}
+		catch (Exception e) {
+			logger.log(Level.WARNING, "Cannot read segment layout of cleanup " + cleanupNumber + "; ignoring layout.", e);
+			return null;
+		}
+	}
+
 	private boolean isOutdatedActionFile(ActionRemoteFile actionFile) {
 		// TODO [low] Even though this is UTC and the times frames are large, this might be an issue with different timezones or wrong system clocks
 		return System.currentTimeMillis() - ACTION_FILE_DELETE_TIME > actionFile.getTimestamp();
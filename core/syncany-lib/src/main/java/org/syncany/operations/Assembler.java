@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,7 +47,12 @@ import org.syncany.util.StringUtil;
  * multichunker, etc.).
  * 
  * <p>It uses the local {@link SqlDatabase} and an optional {@link MemoryDatabase}
- * to perform file checksum and chunk checksum lookups.   
+ * to perform file checksum and chunk checksum lookups. If a {@link LocalChunkLocator}
+ * is given, chunks found in local files are read from there instead of from the
+ * downloaded multichunks. If a {@link MultiChunkDownloadPlanner} is given, chunks are 
+ * read from the multichunks chosen by the planner. If a {@link Downloader} is given,
+ * multichunks that are not in the cache (e.g. because a located chunk cannot be read
+ * from its local file anymore) are downloaded on demand.
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
@@ -56,15 +62,33 @@ public class Assembler {
 	private Config config;
 	private SqlDatabase localDatabase;
 	private MemoryDatabase memoryDatabase;
+	private LocalChunkLocator localChunkLocator;
+	private MultiChunkDownloadPlanner multiChunkDownloadPlanner;
+	private Downloader downloader;
 	
 	public Assembler(Config config, SqlDatabase localDatabase) {
 		this(config, localDatabase, null);
 	}
 	
 	public Assembler(Config config, SqlDatabase localDatabase, MemoryDatabase memoryDatabase) {
+		this(config, localDatabase, memoryDatabase, null, null);
+	}
+	
+	public Assembler(Config config, SqlDatabase localDatabase, MemoryDatabase memoryDatabase, LocalChunkLocator localChunkLocator,
+			MultiChunkDownloadPlanner multiChunkDownloadPlanner) {
+
+		this(config, localDatabase, memoryDatabase, localChunkLocator, multiChunkDownloadPlanner, null);
+	}
+	
+	public Assembler(Config config, SqlDatabase localDatabase, MemoryDatabase memoryDatabase, LocalChunkLocator localChunkLocator,
+			MultiChunkDownloadPlanner multiChunkDownloadPlanner, Downloader downloader) {
+
 		this.config = config;
 		this.localDatabase = localDatabase;
 		this.memoryDatabase = memoryDatabase;
+		this.localChunkLocator = localChunkLocator;
+		this.multiChunkDownloadPlanner = multiChunkDownloadPlanner;
+		this.downloader = downloader;
 	}
 
 	/**
@@ -103,13 +127,39 @@ public class Assembler {
 			Collection<ChunkChecksum> fileChunks = fileContent.getChunks();
 
 			for (ChunkChecksum chunkChecksum : fileChunks) {
-				MultiChunkId multiChunkIdForChunk = localDatabase.getMultiChunkId(chunkChecksum);
+				byte[] localChunkData = (localChunkLocator != null) ? localChunkLocator.readChunk(chunkChecksum) : null;
+				
+				if (localChunkData != null) {
+					reconstructedFileChecksum.update(localChunkData);
+					reconstructedFileOutputStream.write(localChunkData);
+					
+					continue;
+				}
+				
+				MultiChunkId multiChunkIdForChunk = (multiChunkDownloadPlanner != null) ? multiChunkDownloadPlanner.getMultiChunkId(chunkChecksum) : null;
+				
+				if (multiChunkIdForChunk == null) {
+					multiChunkIdForChunk = localDatabase.getMultiChunkId(chunkChecksum);
+				}
 
 				if (multiChunkIdForChunk == null && memoryDatabase != null) {
 					multiChunkIdForChunk = memoryDatabase.getMultiChunkIdForChunk(chunkChecksum);
 				}
 
 				File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkIdForChunk);
+				
+				if (!decryptedMultiChunkFile.exists() && downloader != null && multiChunkIdForChunk != null) {
+					logger.log(Level.INFO, "     - Multichunk " + multiChunkIdForChunk + " for chunk " + chunkChecksum + " not in cache, downloading ...");
+					
+					synchronized (downloader) {
+						downloader.downloadAndDecryptMultiChunks(Collections.singleton(multiChunkIdForChunk));
+					}
+				}
+				
+				if (!decryptedMultiChunkFile.exists()) {
+					reconstructedFileOutputStream.close();
+					throw new Exception("Cannot assemble file " + fileVersion.getPath() + ": Multichunk " + multiChunkIdForChunk + " for chunk " + chunkChecksum + " not in cache.");
+				}
 
 				MultiChunk multiChunk = multiChunker.createMultiChunk(decryptedMultiChunkFile);
 				InputStream chunkInputStream = multiChunk.getChunkInputStream(chunkChecksum.getBytes());
@@ -0,0 +1,199 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
+import org.syncany.database.SqlDatabase;
+import org.syncany.util.FileUtil;
+
+/**
+ * The local chunk locator finds chunks in the files of the local sync folder,
+ * so that they do not have to be downloaded from the remote storage. It is used
+ * by the {@link Assembler} to reconstruct files from local content, e.g. if a
+ * file was copied or renamed by another client.
+ *
+ * <p>Chunk positions are looked up in the local {@link SqlDatabase}. A position is
+ * only used if the local file still matches its last known file version (size and
+ * last modified date). Chunks are only read (and verified against the expected chunk
+ * checksum) once, when the file is assembled. If the local file has changed in the mean
+ * time, the {@link Assembler} falls back to downloading the chunk's multichunk.
+ *
+ * <p>A locator may be used by multiple {@link Assembler}s concurrently, e.g. when
+ * files are created in parallel by the down operation.
+ *
+ * @see ChunkPosition
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class LocalChunkLocator {
+	private static final Logger logger = Logger.getLogger(LocalChunkLocator.class.getSimpleName());
+	private static final long LAST_MODIFIED_FUZZINESS_MILLIS = 1000;
+
+	private Config config;
+	private SqlDatabase localDatabase;
+
+	private Map<ChunkChecksum, ChunkPosition> locatedChunks;
+	private Map<String, Boolean> unmodifiedFiles;
+
+	public LocalChunkLocator(Config config, SqlDatabase localDatabase) {
+		this.config = config;
+		this.localDatabase = localDatabase;
+
+		this.locatedChunks = new ConcurrentHashMap<ChunkChecksum, ChunkPosition>();
+		this.unmodifiedFiles = new ConcurrentHashMap<String, Boolean>();
+	}
+
+	/**
+	 * Tries to locate the given chunks in the local files. Files with the given excluded paths
+	 * (or within excluded folders) are not used as chunk source, e.g. because they are about to
+	 * be deleted or renamed. Located chunks are not read here; {@link #readChunk(ChunkChecksum)}
+	 * reads and verifies them, and fails if the file was changed in the mean time.
+	 *
+	 * @param chunkChecksums Checksums of the chunks to locate
+	 * @param excludedPaths Relative paths of the files that must not be used
+	 * @return Returns the subset of the given chunks that were found locally
+	 */
+	public Set<ChunkChecksum> locateChunks(Collection<ChunkChecksum> chunkChecksums, Set<String> excludedPaths) {
+		Map<ChunkChecksum, List<ChunkPosition>> chunkPositions = localDatabase.getChunkPositions(chunkChecksums);
+
+		for (Map.Entry<ChunkChecksum, List<ChunkPosition>> chunkPositionsEntry : chunkPositions.entrySet()) {
+			ChunkChecksum chunkChecksum = chunkPositionsEntry.getKey();
+
+			if (locatedChunks.containsKey(chunkChecksum)) {
+				continue;
+			}
+
+			for (ChunkPosition chunkPosition : chunkPositionsEntry.getValue()) {
+				if (isExcluded(chunkPosition.getPath(), excludedPaths) || !isUnmodified(chunkPosition)) {
+					continue;
+				}
+
+				logger.log(Level.FINE, "   + Found chunk {0} in local file {1}", new Object[] { chunkChecksum, chunkPosition.getPath() });
+				locatedChunks.put(chunkChecksum, chunkPosition);
+
+				break;
+			}
+		}
+
+		return locatedChunks.keySet();
+	}
+
+	/**
+	 * Returns whether the given chunk has been located in a local file
+	 * using {@link #locateChunks(Collection, Set)}.
+	 */
+	public boolean hasChunk(ChunkChecksum chunkChecksum) {
+		return locatedChunks.containsKey(chunkChecksum);
+	}
+
+	/**
+	 * Reads a previously located chunk from its local file and verifies its checksum. Returns <tt>null</tt> 
+	 * if the chunk has not been located, or if it cannot be read or does not match the chunk checksum anymore.
+	 * In the latter case, the chunk must be read from its multichunk instead.
+	 */
+	public byte[] readChunk(ChunkChecksum chunkChecksum) {
+		ChunkPosition chunkPosition = locatedChunks.get(chunkChecksum);
+
+		if (chunkPosition == null) {
+			return null;
+		}
+
+		byte[] chunkData = readChunk(chunkPosition);
+
+		if (chunkData == null) {
+			logger.log(Level.WARNING, "   - Local file {0} changed, chunk {1} cannot be read from it anymore.", new Object[] {
+					chunkPosition.getPath(), chunkChecksum });
+
+			locatedChunks.remove(chunkChecksum);
+		}
+
+		return chunkData;
+	}
+
+	private byte[] readChunk(ChunkPosition chunkPosition) {
+		File localFile = new File(config.getLocalDir(), chunkPosition.getPath());
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(localFile, "r")) {
+			byte[] chunkData = new byte[chunkPosition.getSize()];
+
+			randomAccessFile.seek(chunkPosition.getOffset());
+			randomAccessFile.readFully(chunkData);
+
+			byte[] actualChecksum = MessageDigest.getInstance(config.getChunker().getChecksumAlgorithm()).digest(chunkData);
+
+			if (!Arrays.equals(actualChecksum, chunkPosition.getChecksum().getBytes())) {
+				logger.log(Level.FINE, "   - Chunk {0} in local file {1} does not match checksum.", new Object[] { chunkPosition.getChecksum(),
+						chunkPosition.getPath() });
+
+				return null;
+			}
+
+			return chunkData;
+		}
+		catch (Exception e) {
+			logger.log(Level.FINE, "   - Cannot read chunk " + chunkPosition.getChecksum() + " from local file " + chunkPosition.getPath(), e);
+			return null;
+		}
+	}
+
+	private boolean isExcluded(String path, Set<String> excludedPaths) {
+		String currentPath = path;
+
+		while (currentPath != null) {
+			if (excludedPaths.contains(currentPath)) {
+				return true;
+			}
+
+			int lastSlashIndex = currentPath.lastIndexOf('/');
+			currentPath = (lastSlashIndex > 0) ? currentPath.substring(0, lastSlashIndex) : null;
+		}
+
+		return false;
+	}
+
+	private boolean isUnmodified(ChunkPosition chunkPosition) {
+		Boolean unmodified = unmodifiedFiles.get(chunkPosition.getPath());
+
+		if (unmodified == null) {
+			File localFile = new File(config.getLocalDir(), chunkPosition.getPath());
+
+			boolean isRegularFile = localFile.isFile() && !FileUtil.isSymlink(localFile);
+			boolean sizeMatches = localFile.length() == chunkPosition.getFileSize();
+			boolean lastModifiedMatches = Math.abs(localFile.lastModified() - chunkPosition.getFileLastModified().getTime()) <= LAST_MODIFIED_FUZZINESS_MILLIS;
+
+			unmodified = isRegularFile && sizeMatches && lastModifiedMatches;
+			unmodifiedFiles.put(chunkPosition.getPath(), unmodified);
+		}
+
+		return unmodified;
+	}
+}
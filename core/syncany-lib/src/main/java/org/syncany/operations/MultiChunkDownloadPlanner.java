@@ -0,0 +1,237 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+
+/**
+ * The multichunk download planner determines which multichunks have to be downloaded
+ * to get a given set of chunks. Since a chunk can be contained in more than one multichunk
+ * (e.g. after dirty re-uploads or repacking), there is often more than one way to get all
+ * required chunks.
+ *
+ * <p>The planner computes a greedy weighted set cover: In each step, it picks the candidate
+ * multichunk with the lowest cost per newly covered chunk, until all chunks are covered. The cost
+ * of a multichunk is its size, or zero if it is already in the local decrypted cache.
+ *
+ * <p>After planning, {@link #getMultiChunkId(ChunkChecksum)} returns the planned multichunk
+ * for each required chunk, so that the {@link Assembler} reads the chunk from a multichunk
+ * that has actually been downloaded.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class MultiChunkDownloadPlanner {
+	private static final Logger logger = Logger.getLogger(MultiChunkDownloadPlanner.class.getSimpleName());
+
+	private Config config;
+
+	private Map<MultiChunkId, Set<ChunkChecksum>> candidateChunks;
+	private Map<MultiChunkId, Long> candidateSizes;
+	private Map<ChunkChecksum, MultiChunkId> naiveMultiChunkIds;
+	private Map<ChunkChecksum, MultiChunkId> plannedMultiChunkIds;
+
+	private long naiveDownloadSize;
+	private long plannedDownloadSize;
+
+	public MultiChunkDownloadPlanner(Config config) {
+		this.config = config;
+
+		this.candidateChunks = new HashMap<MultiChunkId, Set<ChunkChecksum>>();
+		this.candidateSizes = new HashMap<MultiChunkId, Long>();
+		this.naiveMultiChunkIds = new HashMap<ChunkChecksum, MultiChunkId>();
+		this.plannedMultiChunkIds = new HashMap<ChunkChecksum, MultiChunkId>();
+	}
+
+	/**
+	 * Adds the given multichunks as candidates. The chunks listed in the multichunk
+	 * entries may be a subset of the actual multichunk contents, but must at least
+	 * include all chunks relevant for the plan.
+	 *
+	 * <p>The first candidate added for a chunk is regarded as the naive choice, i.e.
+	 * the multichunk that would have been downloaded without planning.
+	 */
+	public void addCandidates(Collection<MultiChunkEntry> multiChunks) {
+		for (MultiChunkEntry multiChunk : multiChunks) {
+			Set<ChunkChecksum> chunks = candidateChunks.get(multiChunk.getId());
+
+			if (chunks == null) {
+				chunks = new HashSet<ChunkChecksum>();
+
+				candidateChunks.put(multiChunk.getId(), chunks);
+				candidateSizes.put(multiChunk.getId(), multiChunk.getSize());
+			}
+
+			for (ChunkChecksum chunkChecksum : multiChunk.getChunks()) {
+				chunks.add(chunkChecksum);
+
+				if (!naiveMultiChunkIds.containsKey(chunkChecksum)) {
+					naiveMultiChunkIds.put(chunkChecksum, multiChunk.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plans the download of the given chunks and returns the multichunks to download,
+	 * including those already in the local cache (the {@link Downloader} skips them).
+	 *
+	 * @throws RuntimeException If no candidate multichunk is known for one of the chunks
+	 */
+	public Set<MultiChunkId> plan(Set<ChunkChecksum> requiredChunks) {
+		plannedDownloadSize = 0;
+		naiveDownloadSize = 0;
+		
+		Map<MultiChunkId, Set<ChunkChecksum>> requiredCandidateChunks = new HashMap<MultiChunkId, Set<ChunkChecksum>>();
+
+		for (Map.Entry<MultiChunkId, Set<ChunkChecksum>> candidateEntry : candidateChunks.entrySet()) {
+			Set<ChunkChecksum> chunks = new HashSet<ChunkChecksum>(candidateEntry.getValue());
+			chunks.retainAll(requiredChunks);
+
+			if (chunks.size() > 0) {
+				requiredCandidateChunks.put(candidateEntry.getKey(), chunks);
+			}
+		}
+
+		// Greedy set cover; candidates are re-evaluated lazily, since their cost per chunk can only increase
+		Set<ChunkChecksum> uncoveredChunks = new HashSet<ChunkChecksum>(requiredChunks);
+		Set<MultiChunkId> plannedMultiChunks = new HashSet<MultiChunkId>();
+
+		PriorityQueue<Candidate> candidateQueue = new PriorityQueue<Candidate>();
+
+		for (Map.Entry<MultiChunkId, Set<ChunkChecksum>> candidateEntry : requiredCandidateChunks.entrySet()) {
+			candidateQueue.add(new Candidate(candidateEntry.getKey(), getCost(candidateEntry.getKey()), candidateEntry.getValue().size()));
+		}
+
+		while (uncoveredChunks.size() > 0 && !candidateQueue.isEmpty()) {
+			Candidate candidate = candidateQueue.poll();
+			Set<ChunkChecksum> newlyCoveredChunks = new HashSet<ChunkChecksum>(requiredCandidateChunks.get(candidate.multiChunkId));
+			newlyCoveredChunks.retainAll(uncoveredChunks);
+
+			if (newlyCoveredChunks.size() == 0) {
+				continue;
+			}
+			else if (newlyCoveredChunks.size() < candidate.coveredChunkCount) {
+				candidateQueue.add(new Candidate(candidate.multiChunkId, candidate.cost, newlyCoveredChunks.size()));
+				continue;
+			}
+
+			logger.log(Level.FINE, "  + Planning multichunk {0} for {1} chunk(s), cost {2}", new Object[] { candidate.multiChunkId,
+					newlyCoveredChunks.size(), candidate.cost });
+
+			for (ChunkChecksum chunkChecksum : newlyCoveredChunks) {
+				plannedMultiChunkIds.put(chunkChecksum, candidate.multiChunkId);
+			}
+
+			uncoveredChunks.removeAll(newlyCoveredChunks);
+			plannedMultiChunks.add(candidate.multiChunkId);
+
+			plannedDownloadSize += candidate.cost;
+		}
+
+		if (uncoveredChunks.size() > 0) {
+			throw new RuntimeException("Cannot find multichunk for chunk " + uncoveredChunks.iterator().next());
+		}
+
+		// Compare with what would have been downloaded without planning
+		Set<MultiChunkId> naiveMultiChunks = new HashSet<MultiChunkId>();
+
+		for (ChunkChecksum chunkChecksum : requiredChunks) {
+			MultiChunkId naiveMultiChunkId = naiveMultiChunkIds.get(chunkChecksum);
+
+			if (naiveMultiChunks.add(naiveMultiChunkId)) {
+				naiveDownloadSize += getCost(naiveMultiChunkId);
+			}
+		}
+
+		logger.log(Level.INFO, "Planned download of {0} multichunk(s), {1} bytes (naive: {2} multichunk(s), {3} bytes)", new Object[] {
+				plannedMultiChunks.size(), plannedDownloadSize, naiveMultiChunks.size(), naiveDownloadSize });
+
+		return plannedMultiChunks;
+	}
+
+	/**
+	 * Returns the multichunk planned for the given chunk, or <tt>null</tt>
+	 * if the chunk was not part of a plan.
+	 */
+	public MultiChunkId getMultiChunkId(ChunkChecksum chunkChecksum) {
+		return plannedMultiChunkIds.get(chunkChecksum);
+	}
+
+	/**
+	 * Returns the number of bytes to be downloaded according to the last plan,
+	 * excluding multichunks that are already in the local cache.
+	 */
+	public long getPlannedDownloadSize() {
+		return plannedDownloadSize;
+	}
+
+	/**
+	 * Returns the number of bytes that would have been downloaded without the last plan,
+	 * i.e. when using the first known multichunk for each chunk.
+	 */
+	public long getNaiveDownloadSize() {
+		return naiveDownloadSize;
+	}
+
+	private long getCost(MultiChunkId multiChunkId) {
+		boolean inCache = config.getCache().getDecryptedMultiChunkFile(multiChunkId).exists();
+		return (inCache) ? 0 : candidateSizes.get(multiChunkId);
+	}
+
+	private static class Candidate implements Comparable<Candidate> {
+		private MultiChunkId multiChunkId;
+		private long cost;
+		private int coveredChunkCount;
+
+		public Candidate(MultiChunkId multiChunkId, long cost, int coveredChunkCount) {
+			this.multiChunkId = multiChunkId;
+			this.cost = cost;
+			this.coveredChunkCount = coveredChunkCount;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			// Lowest cost per covered chunk first, i.e. compare cost/count (cross-multiplied)
+			int costPerChunkComparison = Long.compare(cost * other.coveredChunkCount, other.cost * coveredChunkCount);
+
+			if (costPerChunkComparison != 0) {
+				return costPerChunkComparison;
+			}
+
+			int coveredChunkComparison = Integer.compare(other.coveredChunkCount, coveredChunkCount);
+
+			if (coveredChunkComparison != 0) {
+				return coveredChunkComparison;
+			}
+
+			return multiChunkId.toString().compareTo(other.multiChunkId.toString());
+		}
+	}
+}
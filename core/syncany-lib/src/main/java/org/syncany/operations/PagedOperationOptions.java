@@ -0,0 +1,37 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations;
+
+/**
+ * Options of an {@link Operation} whose result can be fetched in pages. 
+ * 
+ * <p>A paged operation returns at most {@link #getMaxResults()} entries, and a
+ * {@link PagedOperationResult#getNextPageToken() page token} if there are more entries. 
+ * To fetch the next page, the same options are passed again with this page token.
+ * Page tokens are opaque to the caller; they are only valid for the same options.
+ * 
+ * @see PagedOperationResult
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public interface PagedOperationOptions extends OperationOptions {
+	public int getMaxResults();
+	public void setMaxResults(int maxResults);
+
+	public String getPageToken();
+	public void setPageToken(String pageToken);
+}
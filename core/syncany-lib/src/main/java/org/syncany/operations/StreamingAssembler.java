@@ -0,0 +1,314 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.config.Config;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.SqlDatabase;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.TransferGovernor;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
+import org.syncany.util.StringUtil;
+
+/**
+ * The streaming assembler re-assembles a file version (or a byte range of it) directly
+ * to an output stream, e.g. to an HTTP response. Unlike the {@link Assembler}, it never
+ * writes the reassembled file to disk.
+ *
+ * <p>When created, the assembler looks up the chunks of the file (including their sizes)
+ * and the multichunks containing them in the local database. While streaming, multichunks
+ * are downloaded on demand, i.e. the first bytes are written as soon as the first multichunk
+ * is available. Each chunk is verified against its checksum before it is written, so that
+ * no tampered data is ever sent.
+ *
+ * <p>The assembler does not access the local database after it has been created. It can
+ * therefore be used after the database connection has been closed, or from another thread.
+ * Concurrent calls to {@link #stream(OutputStream, long, long) stream()} are serialized.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class StreamingAssembler {
+	private static final Logger logger = Logger.getLogger(StreamingAssembler.class.getSimpleName());
+
+	private Config config;
+	private FileVersion fileVersion;
+	private List<ChunkEntry> chunks;
+	private Map<ChunkChecksum, MultiChunkId> multiChunkIds;
+	private long length;
+
+	private TransferManager transferManager;
+	private MultiChunkId currentMultiChunkId;
+	private File currentMultiChunkFile;
+	private MultiChunk currentMultiChunk;
+	private MessageDigest chunkDigest;
+
+	public StreamingAssembler(Config config, SqlDatabase localDatabase, FileVersion fileVersion) throws Exception {
+		this.config = config;
+		this.fileVersion = fileVersion;
+
+		if (fileVersion.getChecksum() != null) {
+			this.chunks = localDatabase.getChunksForFileContent(fileVersion.getChecksum());
+			this.multiChunkIds = localDatabase.getMultiChunkIdsByChecksums(getChunkChecksums(chunks));
+		}
+		else {
+			this.chunks = new ArrayList<ChunkEntry>();
+			this.multiChunkIds = new HashMap<ChunkChecksum, MultiChunkId>();
+		}
+
+		this.length = 0;
+
+		for (ChunkEntry chunk : chunks) {
+			if (multiChunkIds.get(chunk.getChecksum()) == null) {
+				throw new Exception("Cannot assemble file " + fileVersion.getPath() + ": No multichunk found for chunk " + chunk.getChecksum());
+			}
+
+			length += chunk.getSize();
+		}
+
+		// Check consistency!
+		long expectedLength = (fileVersion.getSize() != null) ? fileVersion.getSize() : 0;
+
+		if (fileVersion.getChecksum() != null && chunks.isEmpty()) {
+			throw new Exception("Cannot determine chunks for checksum " + fileVersion.getChecksum());
+		}
+		else if (length != expectedLength) {
+			throw new Exception("Cannot assemble file " + fileVersion.getPath() + ": Size of chunks (" + length + ") does not match file size ("
+					+ expectedLength + ")");
+		}
+	}
+
+	public FileVersion getFileVersion() {
+		return fileVersion;
+	}
+
+	/**
+	 * Returns the total number of bytes of the file.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Writes the given byte range of the file to the given output stream. Only the chunks
+	 * overlapping the range are read, and only the multichunks containing these chunks are
+	 * downloaded (if they are not in the local cache).
+	 *
+	 * @param outputStream Stream to write the file content to; not closed by this method
+	 * @param offset Position of the first byte to write
+	 * @param rangeLength Number of bytes to write
+	 */
+	public synchronized void stream(OutputStream outputStream, long offset, long rangeLength) throws IOException, StorageException {
+		if (offset < 0 || rangeLength < 0 || offset + rangeLength > length) {
+			throw new IllegalArgumentException("Invalid range " + offset + "+" + rangeLength + " for file of length " + length);
+		}
+
+		logger.log(Level.INFO, "Streaming " + fileVersion.getPath() + " (bytes " + offset + "+" + rangeLength + ") ...");
+
+		long rangeEnd = offset + rangeLength;
+		long chunkOffset = 0;
+
+		try {
+			for (ChunkEntry chunk : chunks) {
+				long chunkEnd = chunkOffset + chunk.getSize();
+
+				if (chunkOffset >= rangeEnd) {
+					break;
+				}
+				else if (chunkEnd > offset) {
+					byte[] chunkData = readChunk(chunk);
+
+					int fromIndex = (int) (Math.max(offset, chunkOffset) - chunkOffset);
+					int toIndex = (int) (Math.min(rangeEnd, chunkEnd) - chunkOffset);
+
+					outputStream.write(chunkData, fromIndex, toIndex - fromIndex);
+				}
+
+				chunkOffset = chunkEnd;
+			}
+
+			outputStream.flush();
+		}
+		finally {
+			closeCurrentMultiChunk();
+			disconnect();
+		}
+	}
+
+	/**
+	 * Reads the given chunk from its multichunk and verifies its size and checksum.
+	 * Subsequent chunks of the same multichunk are read without reopening it.
+	 */
+	private byte[] readChunk(ChunkEntry chunk) throws IOException, StorageException {
+		MultiChunkId multiChunkId = multiChunkIds.get(chunk.getChecksum());
+
+		if (!multiChunkId.equals(currentMultiChunkId)) {
+			openMultiChunk(multiChunkId);
+		}
+
+		ByteArrayOutputStream chunkOutputStream = new ByteArrayOutputStream(chunk.getSize());
+
+		try (InputStream chunkInputStream = currentMultiChunk.getChunkInputStream(chunk.getChecksum().getBytes())) {
+			if (chunkInputStream == null) {
+				throw new IOException("Chunk " + chunk.getChecksum() + " not found in multichunk " + multiChunkId);
+			}
+
+			IOUtils.copy(chunkInputStream, chunkOutputStream);
+		}
+
+		byte[] chunkData = chunkOutputStream.toByteArray();
+		byte[] actualChecksum = getChunkDigest().digest(chunkData);
+
+		if (chunkData.length != chunk.getSize() || !Arrays.equals(actualChecksum, chunk.getChecksum().getBytes())) {
+			throw new IOException("Chunk " + chunk.getChecksum() + " in multichunk " + multiChunkId + " is corrupt: actual checksum "
+					+ StringUtil.toHex(actualChecksum) + ", size " + chunkData.length);
+		}
+
+		return chunkData;
+	}
+
+	private void openMultiChunk(MultiChunkId multiChunkId) throws IOException, StorageException {
+		closeCurrentMultiChunk();
+
+		File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
+		config.getCache().pin(decryptedMultiChunkFile);
+
+		currentMultiChunkId = multiChunkId;
+		currentMultiChunkFile = decryptedMultiChunkFile;
+
+		if (!decryptedMultiChunkFile.exists()) {
+			downloadAndDecryptMultiChunk(multiChunkId, decryptedMultiChunkFile);
+		}
+
+		currentMultiChunk = config.getMultiChunker().createMultiChunk(decryptedMultiChunkFile);
+	}
+
+	private void closeCurrentMultiChunk() throws IOException {
+		try {
+			if (currentMultiChunk != null) {
+				currentMultiChunk.close();
+			}
+		}
+		finally {
+			if (currentMultiChunkFile != null) {
+				config.getCache().unpin(currentMultiChunkFile);
+			}
+
+			currentMultiChunkId = null;
+			currentMultiChunkFile = null;
+			currentMultiChunk = null;
+		}
+	}
+
+	/**
+	 * Downloads and decrypts the given multichunk to temporary files, and then moves it to
+	 * the location of the decrypted multichunk in the cache. That way, a concurrently running
+	 * sync never sees a partially written multichunk.
+	 */
+	private void downloadAndDecryptMultiChunk(MultiChunkId multiChunkId, File decryptedMultiChunkFile) throws IOException, StorageException {
+		File encryptedTempFile = config.getCache().createTempFile("stream-multichunk");
+		File decryptedTempFile = config.getCache().createTempFile("stream-multichunk-decrypted");
+
+		try {
+			logger.log(Level.INFO, "- Downloading multichunk " + multiChunkId + " for streaming ...");
+			getTransferManager().download(new MultichunkRemoteFile(multiChunkId), encryptedTempFile);
+
+			try (InputStream multiChunkInputStream = config.getTransformer().createInputStream(new FileInputStream(encryptedTempFile));
+					OutputStream decryptedMultiChunkOutputStream = new FileOutputStream(decryptedTempFile)) {
+
+				IOUtils.copy(multiChunkInputStream, decryptedMultiChunkOutputStream);
+			}
+
+			if (!decryptedTempFile.renameTo(decryptedMultiChunkFile) && !decryptedMultiChunkFile.exists()) {
+				throw new IOException("Cannot move decrypted multichunk " + multiChunkId + " to cache.");
+			}
+		}
+		finally {
+			encryptedTempFile.delete();
+			decryptedTempFile.delete();
+		}
+	}
+
+	private TransferManager getTransferManager() throws StorageException {
+		if (transferManager == null) {
+			transferManager = TransferGovernor.getInstance().govern(config.getTransferPlugin().createTransferManager(config.getConnection(), config),
+					config);
+		}
+
+		return transferManager;
+	}
+
+	private void disconnect() {
+		if (transferManager != null) {
+			try {
+				transferManager.disconnect();
+			}
+			catch (StorageException e) {
+				logger.log(Level.FINE, "Could not disconnect the transfer manager", e);
+			}
+			finally {
+				transferManager = null;
+			}
+		}
+	}
+
+	private MessageDigest getChunkDigest() throws IOException {
+		try {
+			if (chunkDigest == null) {
+				chunkDigest = MessageDigest.getInstance(config.getChunker().getChecksumAlgorithm());
+			}
+
+			return chunkDigest;
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("Cannot create chunk digest", e);
+		}
+	}
+
+	private static List<ChunkChecksum> getChunkChecksums(List<ChunkEntry> chunks) {
+		List<ChunkChecksum> chunkChecksums = new ArrayList<ChunkChecksum>(chunks.size());
+
+		for (ChunkEntry chunk : chunks) {
+			chunkChecksums.add(chunk.getChecksum());
+		}
+
+		return chunkChecksums;
+	}
+}
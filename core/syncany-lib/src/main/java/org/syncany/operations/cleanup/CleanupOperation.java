@@ -21,13 +21,20 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +42,7 @@ import org.syncany.chunk.Chunk;
 import org.syncany.chunk.MultiChunk;
 import org.syncany.config.Config;
 import org.syncany.database.DatabaseVersion;
+import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MultiChunkEntry;
@@ -45,6 +53,7 @@ import org.syncany.database.SqlDatabase;
 import org.syncany.database.dao.DatabaseXmlSerializer;
 import org.syncany.database.dao.FileVersionSqlDao;
 import org.syncany.operations.AbstractTransferOperation;
+import org.syncany.operations.Downloader;
 import org.syncany.operations.cleanup.CleanupOperationOptions.TimeUnit;
 import org.syncany.operations.cleanup.CleanupOperationResult.CleanupResultCode;
 import org.syncany.operations.daemon.messages.CleanupEndSyncExternalEvent;
@@ -56,12 +65,16 @@ import org.syncany.operations.ls_remote.LsRemoteOperationResult;
 import org.syncany.operations.status.StatusOperation;
 import org.syncany.operations.status.StatusOperationResult;
 import org.syncany.operations.up.UpOperation;
+import org.syncany.operations.verify.VerifyOperation;
 import org.syncany.plugins.transfer.RemoteTransaction;
 import org.syncany.plugins.transfer.StorageException;
 import org.syncany.plugins.transfer.files.CleanupRemoteFile;
 import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
 import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
 import org.syncany.plugins.transfer.files.RemoteFile;
+import org.syncany.plugins.transfer.files.SnapshotRemoteFile;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
 
 /**
  * The purpose of the cleanup operation is to keep the local database and the
@@ -73,8 +86,11 @@ import org.syncany.plugins.transfer.files.RemoteFile;
  *   <li>Remove old {@link FileVersion} and their corresponding database entities.
  *       In particular, it also removes {@link PartialFileHistory}s, {@link FileContent}s,
  *       {@link Chunk}s and {@link MultiChunk}s.</li>
+ *   <li>Repack multichunks that are only partially used, i.e. rewrite their live chunks to new
+ *       multichunks and delete the old ones (see {@link MultiChunkRepacker}).</li>
  *   <li>Merge metadata of a single client and remove old database version files
- *       from the remote storage.</li>
+ *       from the remote storage. Database files are merged using a {@link TieredMergePolicy},
+ *       and the resulting {@link DatabaseSegmentLayout} is stored in the cleanup file.</li>
  * </ul>
  *
  * <p>High level strategy:
@@ -82,7 +98,8 @@ import org.syncany.plugins.transfer.files.RemoteFile;
  *    <ol>Lock repo and start thread that renews the lock every X seconds</ol>
  *    <ol>Find old versions / contents / ... from database</ol>
  *    <ol>Delete these versions and contents locally</ol>
- *    <ol>Delete all remote metadata</ol>
+ *    <ol>Repack partially used multichunks (limited size per run)</ol>
+ *    <ol>Determine remote metadata to merge or rewrite (recent files, same-tier segments, purged segments)</ol>
  *    <ol>Obtain consistent database files from local database</ol>
  *    <ol>Upload new database files to repo</ol>
  *    <ol>Remotely delete unused multichunks</ol>
@@ -106,6 +123,11 @@ public class CleanupOperation extends AbstractTransferOperation {
 	private SqlDatabase localDatabase;
 	private RemoteTransaction remoteTransaction;
 
+	private Map<FileHistoryId, FileVersion> purgedBeforeFileVersions;
+	private Map<FileHistoryId, List<FileVersion>> purgedFileVersions;
+	private Map<String, SortedSet<Long>> purgedClientVersions;
+	private Map<List<MultiChunkId>, List<MultiChunkEntry>> repackedMultiChunks;
+
 	public CleanupOperation(Config config) {
 		this(config, new CleanupOperationOptions());
 	}
@@ -116,6 +138,11 @@ public class CleanupOperation extends AbstractTransferOperation {
 		this.options = options;
 		this.result = new CleanupOperationResult();
 		this.localDatabase = new SqlDatabase(config);
+
+		this.purgedBeforeFileVersions = new HashMap<FileHistoryId, FileVersion>();
+		this.purgedFileVersions = new HashMap<FileHistoryId, List<FileVersion>>();
+		this.purgedClientVersions = new HashMap<String, SortedSet<Long>>();
+		this.repackedMultiChunks = new LinkedHashMap<List<MultiChunkId>, List<MultiChunkEntry>>();
 	}
 
 	@Override
@@ -170,6 +197,10 @@ public class CleanupOperation extends AbstractTransferOperation {
 
 		removeOldVersions();
 
+		if (options.isRepackMultiChunks()) {
+			repackMultiChunks();
+		}
+
 		if (options.isRemoveUnreferencedTemporaryFiles()) {
 			transferManager.removeUnreferencedTemporaryFiles();
 		}
@@ -193,7 +224,8 @@ public class CleanupOperation extends AbstractTransferOperation {
 	 * @return result The original result, with the relevant {@link CleanupResultCode}
 	 */
 	private CleanupOperationResult updateResultCode(CleanupOperationResult result) {
-		if (result.getMergedDatabaseFilesCount() > 0 || result.getRemovedMultiChunksCount() > 0 || result.getRemovedOldVersionsCount() > 0) {
+		if (result.getMergedDatabaseFilesCount() > 0 || result.getRemovedMultiChunksCount() > 0 || result.getRemovedOldVersionsCount() > 0
+				|| result.getRepackedMultiChunksCount() > 0) {
 			result.setResultCode(CleanupResultCode.OK);
 		}
 		else {
@@ -238,7 +270,7 @@ public class CleanupOperation extends AbstractTransferOperation {
 			return CleanupResultCode.NOK_REMOTE_CHANGES;
 		}
 
-		if (otherRemoteOperationsRunning(CleanupOperation.ACTION_ID, UpOperation.ACTION_ID, DownOperation.ACTION_ID)) {
+		if (otherRemoteOperationsRunning(CleanupOperation.ACTION_ID, UpOperation.ACTION_ID, DownOperation.ACTION_ID, VerifyOperation.ACTION_ID)) {
 			return CleanupResultCode.NOK_OTHER_OPERATIONS_RUNNING;
 		}
 
@@ -278,6 +310,8 @@ public class CleanupOperation extends AbstractTransferOperation {
 				purgeBeforeFileVersions.size() });
 
 		// Local: First, remove file versions that are not longer needed
+		Map<String, SortedMap<Long, Long>> entityCountsBeforePurge = localDatabase.getDatabaseVersionEntityCounts();
+
 		localDatabase.removeSmallerOrEqualFileVersions(purgeBeforeFileVersions);
 		localDatabase.removeFileVersions(purgeFileVersions);
 
@@ -287,6 +321,11 @@ public class CleanupOperation extends AbstractTransferOperation {
 		localDatabase.removeUnreferencedDatabaseEntities();
 		deleteUnusedRemoteMultiChunks(unusedMultiChunks);
 
+		// Remember what was purged, so that only the affected database segments are rewritten
+		purgedBeforeFileVersions = purgeBeforeFileVersions;
+		purgedFileVersions = purgeFileVersions;
+		purgedClientVersions = findPurgedClientVersions(entityCountsBeforePurge, localDatabase.getDatabaseVersionEntityCounts());
+
 		// Update stats
 		long unusedMultiChunkSize = 0;
 
@@ -299,6 +338,146 @@ public class CleanupOperation extends AbstractTransferOperation {
 		result.setRemovedMultiChunksSize(unusedMultiChunkSize);
 	}
 
+	/**
+	 * This method repacks multichunks whose ratio of live (still referenced) data is below the configured threshold
+	 * (see {@link CleanupOperationOptions#getMaxRepackLiveRatio()}). These multichunks are downloaded, their live chunks
+	 * are rewritten into new multichunks (see {@link MultiChunkRepacker}), and the new multichunks replace the old ones
+	 * in the local database and -- via the {@link RemoteTransaction} -- on the remote storage.
+	 *
+	 * <p>The total size of the repacked multichunks is limited per run (see {@link CleanupOperationOptions#getMaxRepackSize()}),
+	 * so that large repositories are repacked incrementally by multiple cleanups. Multichunks with the least live data are
+	 * repacked first, regardless of the database version they belong to.
+	 *
+	 * <p>Multichunks are repacked per database version, and the new multichunks belong to the same database version as
+	 * the old ones. The affected database versions are treated like purged ones, i.e. their database segments are rewritten.
+	 */
+	private void repackMultiChunks() throws Exception {
+		Map<MultiChunkEntry, DatabaseVersionHeader> repackableMultiChunks = localDatabase.getRepackableMultiChunks(options
+				.getMaxRepackLiveRatio());
+
+		if (repackableMultiChunks.isEmpty()) {
+			logger.log(Level.INFO, "- Multichunk repacking: Not necessary.");
+			return;
+		}
+
+		// Select multichunks within the size limit (least live data first), then group them by database version
+		Map<DatabaseVersionHeader, List<MultiChunkEntry>> selectedMultiChunks = new LinkedHashMap<DatabaseVersionHeader, List<MultiChunkEntry>>();
+		Set<MultiChunkId> repackMultiChunkIds = new HashSet<MultiChunkId>();
+		long repackMultiChunksSize = 0;
+
+		for (Map.Entry<MultiChunkEntry, DatabaseVersionHeader> repackableEntry : repackableMultiChunks.entrySet()) {
+			MultiChunkEntry repackableMultiChunk = repackableEntry.getKey();
+
+			if (repackMultiChunksSize + repackableMultiChunk.getSize() > options.getMaxRepackSize()) {
+				continue; // Smaller multichunks with more live data might still fit
+			}
+
+			List<MultiChunkEntry> databaseVersionRepackMultiChunks = selectedMultiChunks.get(repackableEntry.getValue());
+
+			if (databaseVersionRepackMultiChunks == null) {
+				databaseVersionRepackMultiChunks = new ArrayList<MultiChunkEntry>();
+				selectedMultiChunks.put(repackableEntry.getValue(), databaseVersionRepackMultiChunks);
+			}
+
+			databaseVersionRepackMultiChunks.add(repackableMultiChunk);
+			repackMultiChunkIds.add(repackableMultiChunk.getId());
+			repackMultiChunksSize += repackableMultiChunk.getSize();
+		}
+
+		if (selectedMultiChunks.isEmpty()) {
+			logger.log(Level.INFO, "- Multichunk repacking: Size limit does not allow repacking.");
+			return;
+		}
+
+		logger.log(Level.INFO, "- Multichunk repacking: Found {0} of {1} multichunk(s) in {2} database version(s) to repack ({3} bytes) ...",
+				new Object[] { repackMultiChunkIds.size(), repackableMultiChunks.size(), selectedMultiChunks.size(), repackMultiChunksSize });
+
+		// Download old multichunks and write new multichunks
+		new Downloader(config, transferManager).downloadAndDecryptMultiChunks(repackMultiChunkIds);
+
+		MultiChunkRepacker multiChunkRepacker = new MultiChunkRepacker(config.getMultiChunker(), config.getTransformer(), config.getCache());
+		long newMultiChunksSize = 0;
+
+		for (Map.Entry<DatabaseVersionHeader, List<MultiChunkEntry>> repackEntry : selectedMultiChunks.entrySet()) {
+			DatabaseVersionHeader databaseVersionHeader = repackEntry.getKey();
+			List<MultiChunkEntry> oldMultiChunks = repackEntry.getValue();
+			List<MultiChunkId> oldMultiChunkIds = new ArrayList<MultiChunkId>();
+
+			for (MultiChunkEntry oldMultiChunk : oldMultiChunks) {
+				oldMultiChunkIds.add(oldMultiChunk.getId());
+			}
+
+			List<MultiChunkEntry> newMultiChunks = multiChunkRepacker.repack(oldMultiChunks);
+
+			// Local: Replace multichunks
+			localDatabase.replaceMultiChunks(oldMultiChunkIds, newMultiChunks);
+
+			// Remote: Upload new multichunks, delete old multichunks
+			for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+				File newLocalMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(newMultiChunk.getId());
+
+				logger.log(Level.FINE, "  + Uploading new multichunk " + newMultiChunk + " ...");
+				remoteTransaction.upload(newLocalMultiChunkFile, new MultichunkRemoteFile(newMultiChunk.getId()));
+				localDatabase.writeMultiChunkChecksum(newMultiChunk.getId(), StringUtil.toHex(FileUtil.createChecksum(newLocalMultiChunkFile, "MD5")));
+
+				newMultiChunksSize += newMultiChunk.getSize();
+			}
+
+			for (MultiChunkId oldMultiChunkId : oldMultiChunkIds) {
+				logger.log(Level.FINE, "  + Deleting remote multichunk " + oldMultiChunkId + " ...");
+				remoteTransaction.delete(new MultichunkRemoteFile(oldMultiChunkId));
+			}
+
+			// Remember repacking, so that the database segment is rewritten and other clients can apply it
+			String client = databaseVersionHeader.getClient();
+			SortedSet<Long> clientPurgedClientVersions = purgedClientVersions.get(client);
+
+			if (clientPurgedClientVersions == null) {
+				clientPurgedClientVersions = new TreeSet<Long>();
+				purgedClientVersions.put(client, clientPurgedClientVersions);
+			}
+
+			clientPurgedClientVersions.add(databaseVersionHeader.getVectorClock().getClock(client));
+			repackedMultiChunks.put(oldMultiChunkIds, newMultiChunks);
+		}
+
+		// Update stats
+		result.setRepackedMultiChunksCount(repackMultiChunkIds.size());
+		result.setRepackedMultiChunksSize(repackMultiChunksSize - newMultiChunksSize);
+	}
+
+	/**
+	 * Compares the entity counts of all database versions before and after purging, and returns the
+	 * client versions (per client) of the database versions that were changed or removed by the purge.
+	 */
+	private Map<String, SortedSet<Long>> findPurgedClientVersions(Map<String, SortedMap<Long, Long>> entityCountsBeforePurge,
+			Map<String, SortedMap<Long, Long>> entityCountsAfterPurge) {
+
+		Map<String, SortedSet<Long>> purgedClientVersions = new HashMap<String, SortedSet<Long>>();
+
+		for (String clientName : entityCountsBeforePurge.keySet()) {
+			SortedMap<Long, Long> clientEntityCountsBefore = entityCountsBeforePurge.get(clientName);
+			SortedMap<Long, Long> clientEntityCountsAfter = entityCountsAfterPurge.get(clientName);
+
+			SortedSet<Long> clientPurgedClientVersions = new TreeSet<Long>();
+
+			for (Map.Entry<Long, Long> entityCountBefore : clientEntityCountsBefore.entrySet()) {
+				Long entityCountAfter = (clientEntityCountsAfter != null) ? clientEntityCountsAfter.get(entityCountBefore.getKey()) : null;
+
+				if (!entityCountBefore.getValue().equals(entityCountAfter)) {
+					clientPurgedClientVersions.add(entityCountBefore.getKey());
+				}
+			}
+
+			if (clientPurgedClientVersions.size() > 0) {
+				purgedClientVersions.put(clientName, clientPurgedClientVersions);
+			}
+		}
+
+		logger.log(Level.INFO, "- Database versions changed by purging: " + purgedClientVersions);
+		return purgedClientVersions;
+	}
+
 	private Map<FileHistoryId, FileVersion> collectPurgeBeforeFileVersions(Map<FileHistoryId, List<FileVersion>> purgeFileVersions) {
 		long deleteBeforeTimestamp = System.currentTimeMillis() - options.getMinKeepDeletedSeconds() * 1000;
 		
@@ -398,10 +577,15 @@ public class CleanupOperation extends AbstractTransferOperation {
 	}
 
 	/**
-	 * This method deletes all remote database files and writes new ones for each client using the local database.
-	 * To make the state clear and prevent issues with replacing files, new database files are given a higher number
-	 * than all existing database files.
-	 * Both the deletions and the new files added to the current @{link RemoteTransaction}.
+	 * This method merges remote database files of each client using a tiered merge policy (see {@link TieredMergePolicy}),
+	 * and writes new ones using the local database. Only recent database files (not contained in the segment layout of the
+	 * last cleanup), runs of adjacent segments of the same tier and segments affected by purging are rewritten; all other
+	 * segments are kept.
+	 *
+	 * <p>To make the state clear and prevent issues with replacing files, new database files are given a higher number
+	 * than all existing database files. Both the deletions and the new files added to the current @{link RemoteTransaction}.
+	 * The new segment layout is stored in the new cleanup file. If enabled, a snapshot of all database versions is
+	 * uploaded along with the new cleanup file.
 	 */
 	private void mergeRemoteFiles() throws Exception {
 		// Retrieve all database versions
@@ -417,6 +601,16 @@ public class CleanupOperation extends AbstractTransferOperation {
 		// Now do the merge!
 		logger.log(Level.INFO, "- Merge remote files ...");
 
+		DatabaseSegmentLayout lastSegmentLayout = downloadSegmentLayout(getLastRemoteCleanupNumber(transferManager.list(CleanupRemoteFile.class)));
+		DatabaseSegmentLayout newSegmentLayout = new DatabaseSegmentLayout();
+
+		newSegmentLayout.setPurgedFileVersions(purgedBeforeFileVersions, purgedFileVersions);
+
+		for (Map.Entry<List<MultiChunkId>, List<MultiChunkEntry>> repackedEntry : repackedMultiChunks.entrySet()) {
+			newSegmentLayout.addRepackedMultiChunks(repackedEntry.getKey(), repackedEntry.getValue());
+		}
+
+		Map<String, Long> lastClientVersions = getLastClientVersions();
 		List<DatabaseRemoteFile> allToDeleteDatabaseFiles = new ArrayList<DatabaseRemoteFile>();
 		Map<File, DatabaseRemoteFile> allMergedDatabaseFiles = new TreeMap<File, DatabaseRemoteFile>();
 
@@ -425,18 +619,36 @@ public class CleanupOperation extends AbstractTransferOperation {
 			Collections.sort(clientDatabaseFiles);
 			logger.log(Level.INFO, "Databases: " + clientDatabaseFiles);
 
-			// 1. Determine files to delete remotely
-			List<DatabaseRemoteFile> toDeleteDatabaseFiles = new ArrayList<DatabaseRemoteFile>(clientDatabaseFiles);
-			allToDeleteDatabaseFiles.addAll(toDeleteDatabaseFiles);
+			// 1. Determine segments and recent (unmerged) database files of this client
+			long lastClientVersion = lastClientVersions.containsKey(client) ? lastClientVersions.get(client) : 0;
+			List<DatabaseSegment> clientSegments = getClientSegments(client, clientDatabaseFiles, lastClientVersion, lastSegmentLayout);
+
+			// 2. Determine merge groups, write new database files and save them in allMergedDatabaseFiles
+			List<List<DatabaseSegment>> mergeGroups = findMergeGroups(client, clientSegments, newSegmentLayout);
+			long lastDatabaseFileNumber = getNewestDatabaseFileVersion(client, localDatabase.getKnownDatabases());
+
+			for (List<DatabaseSegment> mergeGroup : mergeGroups) {
+				lastDatabaseFileNumber++;
+
+				DatabaseSegment newSegment = writeMergeFile(client, lastDatabaseFileNumber, mergeGroup, allMergedDatabaseFiles);
+
+				newSegmentLayout.addSegment(newSegment);
 
-			// 2. Write new database file and save it in allMergedDatabaseFiles
-			writeMergeFile(client, allMergedDatabaseFiles);
+				// 3. Determine files to delete remotely
+				for (String replacedDatabaseName : newSegment.getReplacedDatabaseNames()) {
+					allToDeleteDatabaseFiles.add(new DatabaseRemoteFile(replacedDatabaseName));
+				}
+			}
+		}
 
+		if (allMergedDatabaseFiles.isEmpty() && result.getRemovedOldVersionsCount() == 0 && result.getRepackedMultiChunksCount() == 0) {
+			logger.log(Level.INFO, "- No database segments to merge according to the merge policy. Not merging remote files.");
+			return;
 		}
 
-		rememberDatabases(allMergedDatabaseFiles);
+		rememberDatabases(allToDeleteDatabaseFiles, allMergedDatabaseFiles);
 
-		// 3. Prepare transaction
+		// 4. Prepare transaction
 
 		// Queue old databases for deletion
 		for (RemoteFile toDeleteRemoteFile : allToDeleteDatabaseFiles) {
@@ -454,7 +666,7 @@ public class CleanupOperation extends AbstractTransferOperation {
 			remoteTransaction.upload(lastLocalMergeDatabaseFile, lastRemoteMergeDatabaseFile);
 		}
 
-		finishMerging();
+		finishMerging(newSegmentLayout);
 
 		// Update stats
 		result.setMergedDatabaseFilesCount(allToDeleteDatabaseFiles.size());
@@ -462,12 +674,12 @@ public class CleanupOperation extends AbstractTransferOperation {
 
 	/**
 	 * This method decides if a merge is needed. Most of the time it will be, since we need to merge every time we remove
-	 * any FileVersions to delete them remotely. Another reason for merging is if the number of files exceeds a certain threshold.
+	 * any FileVersions or repack multichunks to delete them remotely. Another reason for merging is if the number of files exceeds a certain threshold.
 	 * This threshold scales linearly with the number of clients that have database files.
 	 *
 	 * @param allDatabaseFilesMap used to determine if there are too many database files.
 	 *
-	 * @return true if there are too many database files or we have removed FileVersions, false otherwise.
+	 * @return true if there are too many database files or we have removed FileVersions or repacked multichunks, false otherwise.
 	 */
 	private boolean needMerge(Map<String, List<DatabaseRemoteFile>> allDatabaseFilesMap) {
 		int numberOfDatabaseFiles = 0;
@@ -480,59 +692,225 @@ public class CleanupOperation extends AbstractTransferOperation {
 		int maxDatabaseFiles = options.getMaxDatabaseFiles() * allDatabaseFilesMap.keySet().size();
 		boolean tooManyDatabaseFiles = numberOfDatabaseFiles > maxDatabaseFiles;
 		boolean removedOldVersions = result.getRemovedOldVersionsCount() > 0;
+		boolean multiChunksRepacked = result.getRepackedMultiChunksCount() > 0;
+
+		return removedOldVersions || multiChunksRepacked || tooManyDatabaseFiles || options.isForce();
+	}
+
+	/**
+	 * Returns the last (highest) client version of each client, i.e. the client's own logical time
+	 * in the vector clock of its last database version.
+	 */
+	private Map<String, Long> getLastClientVersions() {
+		Map<String, Long> lastClientVersions = new HashMap<String, Long>();
+
+		for (DatabaseVersionHeader databaseVersionHeader : localDatabase.getLocalDatabaseBranch().getAll()) {
+			String client = databaseVersionHeader.getClient();
+			Long clientVersion = databaseVersionHeader.getVectorClock().getClock(client);
+			Long lastClientVersion = lastClientVersions.get(client);
+
+			if (lastClientVersion == null || clientVersion > lastClientVersion) {
+				lastClientVersions.put(client, clientVersion);
+			}
+		}
 
-		return removedOldVersions || tooManyDatabaseFiles || options.isForce();
+		return lastClientVersions;
 	}
 
 	/**
-	 * This method writes the file with merged databases for a single client and adds it to a Map containing all merged
-	 * database files. This is done by querying the local database for all {@link DatabaseVersion}s by this client and
-	 * serializing them.
+	 * This method determines the current segments of a client, sorted by their client version range. Segments
+	 * known from the last segment layout are returned as they are. All other database files of this client (i.e.
+	 * the files uploaded since the last cleanup, or all files if there is no usable layout) are combined into one
+	 * additional segment, covering all client versions after the last known segment.
+	 *
+	 * <p>This additional segment has no name if it consists of more than one database file.
+	 */
+	private List<DatabaseSegment> getClientSegments(String client, List<DatabaseRemoteFile> clientDatabaseFiles, long lastClientVersion,
+			DatabaseSegmentLayout lastSegmentLayout) throws StorageException {
+
+		List<DatabaseSegment> clientSegments = new ArrayList<DatabaseSegment>();
+		List<String> recentDatabaseNames = new ArrayList<String>();
+
+		Set<String> clientDatabaseNames = new HashSet<String>();
+
+		for (DatabaseRemoteFile clientDatabaseFile : clientDatabaseFiles) {
+			clientDatabaseNames.add(clientDatabaseFile.getName());
+		}
+
+		// Use segments from last layout (if the layout matches the remote files)
+		if (lastSegmentLayout != null) {
+			for (DatabaseSegment segment : lastSegmentLayout.getSegments()) {
+				if (client.equals(segment.getRemoteFile().getClientName())) {
+					clientSegments.add(new DatabaseSegment(segment.getName(), segment.getFirstClientVersion(), segment.getLastClientVersion(), null));
+				}
+			}
+
+			for (DatabaseSegment clientSegment : clientSegments) {
+				if (!clientDatabaseNames.contains(clientSegment.getName())) {
+					logger.log(Level.WARNING, "   + Segment " + clientSegment.getName() + " does not exist remotely. Ignoring layout for client "
+							+ client + ".");
+
+					clientSegments.clear();
+					break;
+				}
+			}
+
+			Collections.sort(clientSegments, new Comparator<DatabaseSegment>() {
+				@Override
+				public int compare(DatabaseSegment segment1, DatabaseSegment segment2) {
+					return Long.compare(segment1.getFirstClientVersion(), segment2.getFirstClientVersion());
+				}
+			});
+		}
+
+		// All other files of this client form the recent segment
+		for (DatabaseRemoteFile clientDatabaseFile : clientDatabaseFiles) {
+			if (!containsSegment(clientSegments, clientDatabaseFile.getName())) {
+				recentDatabaseNames.add(clientDatabaseFile.getName());
+			}
+		}
+
+		if (recentDatabaseNames.size() > 0) {
+			long firstRecentClientVersion = (clientSegments.size() > 0) ? clientSegments.get(clientSegments.size() - 1).getLastClientVersion() + 1 : 1;
+			long lastRecentClientVersion = Math.max(firstRecentClientVersion, lastClientVersion);
+
+			String recentSegmentName = (recentDatabaseNames.size() == 1) ? recentDatabaseNames.get(0) : null;
+			clientSegments.add(new DatabaseSegment(recentSegmentName, firstRecentClientVersion, lastRecentClientVersion, recentDatabaseNames));
+		}
+
+		return clientSegments;
+	}
+
+	private boolean containsSegment(List<DatabaseSegment> segments, String name) {
+		for (DatabaseSegment segment : segments) {
+			if (name.equals(segment.getName())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * This method determines which segments of a client must be (re-)written, and adds all other segments
+	 * to the new segment layout. Segments are (re-)written if they are merged according to the {@link TieredMergePolicy},
+	 * if they consist of more than one database file, or if they contain database versions that were changed by purging.
+	 *
+	 * @return Groups of segments; each group is written to a new database file
+	 */
+	private List<List<DatabaseSegment>> findMergeGroups(String client, List<DatabaseSegment> clientSegments, DatabaseSegmentLayout newSegmentLayout) {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(options.getDatabaseSegmentsPerTier());
+
+		List<List<DatabaseSegment>> tieredMergeGroups = mergePolicy.findMerges(clientSegments);
+		List<List<DatabaseSegment>> mergeGroups = new ArrayList<List<DatabaseSegment>>();
+
+		SortedSet<Long> clientPurgedClientVersions = purgedClientVersions.get(client);
+		int segmentIndex = 0;
+
+		for (List<DatabaseSegment> tieredMergeGroup : tieredMergeGroups) {
+			int groupStartIndex = clientSegments.indexOf(tieredMergeGroup.get(0));
+
+			for (; segmentIndex < groupStartIndex; segmentIndex++) {
+				addKeptOrRewrittenSegment(clientSegments.get(segmentIndex), clientPurgedClientVersions, mergeGroups, newSegmentLayout);
+			}
+
+			mergeGroups.add(tieredMergeGroup);
+			segmentIndex += tieredMergeGroup.size();
+		}
+
+		for (; segmentIndex < clientSegments.size(); segmentIndex++) {
+			addKeptOrRewrittenSegment(clientSegments.get(segmentIndex), clientPurgedClientVersions, mergeGroups, newSegmentLayout);
+		}
+
+		return mergeGroups;
+	}
+
+	private void addKeptOrRewrittenSegment(DatabaseSegment segment, SortedSet<Long> clientPurgedClientVersions,
+			List<List<DatabaseSegment>> mergeGroups, DatabaseSegmentLayout newSegmentLayout) {
+
+		boolean isUnnamedSegment = segment.getName() == null;
+		boolean isAffectedByPurge = clientPurgedClientVersions != null
+				&& !clientPurgedClientVersions.subSet(segment.getFirstClientVersion(), segment.getLastClientVersion() + 1).isEmpty();
+
+		if (isUnnamedSegment || isAffectedByPurge) {
+			mergeGroups.add(Arrays.asList(segment));
+		}
+		else {
+			logger.log(Level.INFO, "   + Keeping segment {0} (client versions {1}-{2}) ...", new Object[] { segment.getName(),
+					segment.getFirstClientVersion(), segment.getLastClientVersion() });
+
+			newSegmentLayout.addSegment(new DatabaseSegment(segment.getName(), segment.getFirstClientVersion(), segment.getLastClientVersion(), null));
+		}
+	}
+
+	/**
+	 * This method writes a new database file for a group of segments of a single client and adds it to a Map containing all
+	 * merged database files. This is done by querying the local database for all {@link DatabaseVersion}s by this client
+	 * in the client version range of the segments, and serializing them.
 	 *
 	 * @param clientName for which we want to write the merged dataabse file.
+	 * @param databaseFileNumber number of the new database file
+	 * @param mergeGroup segments to merge into the new file
 	 * @param allMergedDatabaseFiles Map where we add the merged file once it is written.
+	 * @return Returns the new segment, including the names of the replaced database files
 	 */
-	private void writeMergeFile(String clientName, Map<File, DatabaseRemoteFile> allMergedDatabaseFiles)
-			throws StorageException, IOException {
+	private DatabaseSegment writeMergeFile(String clientName, long databaseFileNumber, List<DatabaseSegment> mergeGroup,
+			Map<File, DatabaseRemoteFile> allMergedDatabaseFiles) throws StorageException, IOException {
 
-		// Increment the version by 1, to signal cleanup has occurred
+		DatabaseRemoteFile newRemoteMergeDatabaseFile = new DatabaseRemoteFile(clientName, databaseFileNumber);
+		File newLocalMergeDatabaseFile = config.getCache().getDatabaseFile(newRemoteMergeDatabaseFile.getName());
 
-		long lastClientVersion = getNewestDatabaseFileVersion(clientName, localDatabase.getKnownDatabases());
-		DatabaseRemoteFile newRemoteMergeDatabaseFile = new DatabaseRemoteFile(clientName, lastClientVersion + 1);
+		long firstClientVersion = mergeGroup.get(0).getFirstClientVersion();
+		long lastMergeClientVersion = mergeGroup.get(mergeGroup.size() - 1).getLastClientVersion();
 
-		File newLocalMergeDatabaseFile = config.getCache().getDatabaseFile(newRemoteMergeDatabaseFile.getName());
+		List<String> replacedDatabaseNames = new ArrayList<String>();
+
+		for (DatabaseSegment segment : mergeGroup) {
+			if (segment.getName() != null && segment.getReplacedDatabaseNames().isEmpty()) {
+				replacedDatabaseNames.add(segment.getName());
+			}
+			else {
+				replacedDatabaseNames.addAll(segment.getReplacedDatabaseNames());
+			}
+		}
 
-		logger.log(Level.INFO, "   + Writing new merge file (all files up to {0}) to {1} ...", new Object[] { lastClientVersion,
-				newLocalMergeDatabaseFile });
+		logger.log(Level.INFO, "   + Writing new merge file (client versions {0}-{1}, replacing {2}) to {3} ...", new Object[] { firstClientVersion,
+				lastMergeClientVersion, replacedDatabaseNames, newLocalMergeDatabaseFile });
 
-		Iterator<DatabaseVersion> lastNDatabaseVersions = localDatabase.getDatabaseVersionsTo(clientName, lastClientVersion);
+		Iterator<DatabaseVersion> databaseVersions = localDatabase.getDatabaseVersionsBetween(clientName, firstClientVersion, lastMergeClientVersion);
 
 		DatabaseXmlSerializer databaseDAO = new DatabaseXmlSerializer(config.getTransformer());
-		databaseDAO.save(lastNDatabaseVersions, newLocalMergeDatabaseFile);
+		databaseDAO.save(databaseVersions, newLocalMergeDatabaseFile);
 		allMergedDatabaseFiles.put(newLocalMergeDatabaseFile, newRemoteMergeDatabaseFile);
+
+		return new DatabaseSegment(newRemoteMergeDatabaseFile.getName(), firstClientVersion, lastMergeClientVersion, replacedDatabaseNames);
 	}
 
 	/**
 	 * This method locally remembers which databases were newly uploaded, such that they will not be downloaded in
-	 * future Downs.
+	 * future Downs, and forgets the databases that are deleted.
 	 */
-	private void rememberDatabases(Map<File, DatabaseRemoteFile> allMergedDatabaseFiles) throws SQLException {
+	private void rememberDatabases(List<DatabaseRemoteFile> allToDeleteDatabaseFiles, Map<File, DatabaseRemoteFile> allMergedDatabaseFiles)
+			throws SQLException {
+
 		// Remember newly written files as so not to redownload them later.
-		List<DatabaseRemoteFile> newRemoteMergeDatabaseFiles = new ArrayList<DatabaseRemoteFile>();
-		newRemoteMergeDatabaseFiles.addAll(allMergedDatabaseFiles.values());
+		List<DatabaseRemoteFile> newKnownDatabaseFiles = new ArrayList<DatabaseRemoteFile>(localDatabase.getKnownDatabases());
+
+		newKnownDatabaseFiles.removeAll(allToDeleteDatabaseFiles);
+		newKnownDatabaseFiles.addAll(allMergedDatabaseFiles.values());
 
-		logger.log(Level.INFO, "Writing new known databases table: " + newRemoteMergeDatabaseFiles);
+		logger.log(Level.INFO, "Writing new known databases table: " + newKnownDatabaseFiles);
 
 		localDatabase.removeKnownDatabases();
-		localDatabase.writeKnownRemoteDatabases(newRemoteMergeDatabaseFiles);
+		localDatabase.writeKnownRemoteDatabases(newKnownDatabaseFiles);
 	}
 
 	/**
 	 * This method finishes the merging of remote files, by attempting to commit the {@link RemoteTransaction}.
 	 * If this fails, it will roll back the local database.
 	 */
-	private void finishMerging() throws Exception {
-		updateCleanupFileInTransaction();
+	private void finishMerging(DatabaseSegmentLayout newSegmentLayout) throws Exception {
+		updateCleanupFileInTransaction(newSegmentLayout);
 
 		try {
 			logger.log(Level.INFO, "Cleanup: COMMITTING TX ...");
@@ -576,26 +954,66 @@ public class CleanupOperation extends AbstractTransferOperation {
 	/**
 	 * This method checks what the current cleanup number is, increments it by one and adds
 	 * a new cleanup file to the transaction, to signify to other clients that Cleanup has occurred.
+	 * The new cleanup file contains the new segment layout.
 	 */
-	private void updateCleanupFileInTransaction() throws StorageException, IOException {
+	private void updateCleanupFileInTransaction(DatabaseSegmentLayout newSegmentLayout) throws StorageException, IOException {
 		// Find all existing cleanup files
 		Map<String, CleanupRemoteFile> cleanupFiles = transferManager.list(CleanupRemoteFile.class);
 
 		long lastRemoteCleanupNumber = getLastRemoteCleanupNumber(cleanupFiles);
+		long newCleanupNumber = lastRemoteCleanupNumber + 1;
 
 		// Schedule any existing cleanup files for deletion
 		for (CleanupRemoteFile cleanupRemoteFile : cleanupFiles.values()) {
 			remoteTransaction.delete(cleanupRemoteFile);
 		}
 
+		// Old snapshots are outdated once the database files have been merged again
+		for (SnapshotRemoteFile snapshotRemoteFile : transferManager.list(SnapshotRemoteFile.class).values()) {
+			remoteTransaction.delete(snapshotRemoteFile);
+		}
+
+		if (options.isCreateSnapshot()) {
+			writeSnapshotInTransaction(newCleanupNumber, newSegmentLayout);
+		}
+
 		// Upload a new cleanup file that indicates changes
 		File newCleanupFile = config.getCache().createTempFile("cleanup");
-		long newCleanupNumber = lastRemoteCleanupNumber + 1;
+		newSegmentLayout.save(newCleanupFile, config.getTransformer());
 
 		remoteTransaction.upload(newCleanupFile, new CleanupRemoteFile(newCleanupNumber));
 		localDatabase.writeCleanupNumber(newCleanupNumber);
 	}
 
+	/**
+	 * Writes all database versions of the local database to a single snapshot file and adds it to the
+	 * transaction. Since the remote database files are known (and applied) locally after the merge, the snapshot
+	 * covers exactly the known database files. These files and the vector clock of the last database version are
+	 * recorded in the segment layout, so that new clients know which database files they do not need to download.
+	 *
+	 * <p>The snapshot is not a compacted view of the current state; it contains the full history of
+	 * database versions, exactly like the merged database files.
+	 */
+	private void writeSnapshotInTransaction(long newCleanupNumber, DatabaseSegmentLayout newSegmentLayout) throws StorageException, IOException {
+		DatabaseVersionHeader lastDatabaseVersionHeader = localDatabase.getLastDatabaseVersionHeader();
+
+		if (lastDatabaseVersionHeader == null) {
+			logger.log(Level.INFO, "- No database versions in local database. Not writing snapshot.");
+			return;
+		}
+
+		SnapshotRemoteFile snapshotRemoteFile = new SnapshotRemoteFile(newCleanupNumber);
+		File snapshotFile = config.getCache().createTempFile("snapshot");
+
+		logger.log(Level.INFO, "   + Writing snapshot (up to {0}) to {1} ...", new Object[] { lastDatabaseVersionHeader.getVectorClock(), snapshotFile });
+
+		new DatabaseXmlSerializer(config.getTransformer()).save(localDatabase.getMasterDatabaseVersions(), snapshotFile);
+		newSegmentLayout.setSnapshot(lastDatabaseVersionHeader.getVectorClock(), localDatabase.getKnownDatabases());
+
+		logger.log(Level.INFO, "   + Uploading snapshot file {0} ...", snapshotRemoteFile);
+		remoteTransaction.upload(snapshotFile, snapshotRemoteFile);
+	}
+
 	/**
 	 * The cleanup time is used to check if cleanup has been done recently. If it has, we do not need
 	 * to clean again.
@@ -41,12 +41,27 @@ public class CleanupOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private boolean removeUnreferencedTemporaryFiles = true;
 
+	@Element(required = false)
+	private boolean repackMultiChunks = true;
+
+	@Element(required = false)
+	private double maxRepackLiveRatio = 0.5;
+
+	@Element(required = false)
+	private long maxRepackSize = 50 * 1024 * 1024; // 50 MB
+
 	@Element(required = false)
 	private long minKeepDeletedSeconds = 30 * 24 * 60 * 60; // 30 days
 
 	@Element(required = false)
 	private int maxDatabaseFiles = 15;
 
+	@Element(required = false)
+	private int databaseSegmentsPerTier = 4;
+
+	@Element(required = false)
+	private boolean createSnapshot = false;
+
 	@Element(required = false)
 	private long minSecondsBetweenCleanups = 3 * 60 * 60; // 3 hours
 
@@ -89,6 +104,38 @@ public class CleanupOperationOptions implements OperationOptions {
 		this.removeUnreferencedTemporaryFiles = removeUnreferencedTemporaryFiles;
 	}
 
+	public boolean isRepackMultiChunks() {
+		return repackMultiChunks;
+	}
+
+	public void setRepackMultiChunks(boolean repackMultiChunks) {
+		this.repackMultiChunks = repackMultiChunks;
+	}
+
+	/**
+	 * Returns the ratio of still referenced (live) data in a multichunk below which the
+	 * multichunk is repacked, i.e. its live chunks are rewritten to a new multichunk.
+	 */
+	public double getMaxRepackLiveRatio() {
+		return maxRepackLiveRatio;
+	}
+
+	public void setMaxRepackLiveRatio(double maxRepackLiveRatio) {
+		this.maxRepackLiveRatio = maxRepackLiveRatio;
+	}
+
+	/**
+	 * Returns the maximum total size (in bytes) of the multichunks repacked in a single
+	 * cleanup. Remaining multichunks are repacked by the next cleanups.
+	 */
+	public long getMaxRepackSize() {
+		return maxRepackSize;
+	}
+
+	public void setMaxRepackSize(long maxRepackSize) {
+		this.maxRepackSize = maxRepackSize;
+	}
+
 	public void setMaxDatabaseFiles(int maxDatabaseFiles) {
 		this.maxDatabaseFiles = maxDatabaseFiles;
 	}
@@ -97,6 +144,32 @@ public class CleanupOperationOptions implements OperationOptions {
 		return maxDatabaseFiles;
 	}
 
+	public void setDatabaseSegmentsPerTier(int databaseSegmentsPerTier) {
+		this.databaseSegmentsPerTier = databaseSegmentsPerTier;
+	}
+
+	/**
+	 * Returns the number of adjacent remote database segments of the same size tier
+	 * that are merged into one larger segment. See {@link TieredMergePolicy} for details.
+	 */
+	public int getDatabaseSegmentsPerTier() {
+		return databaseSegmentsPerTier;
+	}
+
+	/**
+	 * Returns whether the cleanup uploads a snapshot of all database versions when it
+	 * merges the remote database files. New clients download this single file instead of
+	 * all database files individually. The snapshot contains the full history, so it does
+	 * not reduce the number of database versions new clients have to apply.
+	 */
+	public boolean isCreateSnapshot() {
+		return createSnapshot;
+	}
+
+	public void setCreateSnapshot(boolean createSnapshot) {
+		this.createSnapshot = createSnapshot;
+	}
+
 	public void setMinSecondsBetweenCleanups(long minSecondsBetweenCleanups) {
 		this.minSecondsBetweenCleanups = minSecondsBetweenCleanups;
 	}
@@ -40,6 +40,12 @@ public class CleanupOperationResult implements OperationResult {
 	@Element(name = "removedMultiChunksSize", required = false)
 	private long removedMultiChunksSize;
 
+	@Element(name = "repackedMultiChunksCount", required = false)
+	private int repackedMultiChunksCount;
+
+	@Element(name = "repackedMultiChunksSize", required = false)
+	private long repackedMultiChunksSize;
+
 	public CleanupOperationResult() {
 		this(CleanupResultCode.OK_NOTHING_DONE);
 	}
@@ -50,6 +56,8 @@ public class CleanupOperationResult implements OperationResult {
 		this.removedOldVersionsCount = 0;
 		this.removedMultiChunksCount = 0;
 		this.removedMultiChunksSize = 0L;
+		this.repackedMultiChunksCount = 0;
+		this.repackedMultiChunksSize = 0L;
 	}
 
 	public void setResultCode(CleanupResultCode resultCode) {
@@ -91,4 +99,24 @@ public class CleanupOperationResult implements OperationResult {
 	public void setRemovedMultiChunksSize(long removedMultiChunksSize) {
 		this.removedMultiChunksSize = removedMultiChunksSize;
 	}
-}
\ No newline at end of file
+
+	public int getRepackedMultiChunksCount() {
+		return repackedMultiChunksCount;
+	}
+
+	public void setRepackedMultiChunksCount(int repackedMultiChunksCount) {
+		this.repackedMultiChunksCount = repackedMultiChunksCount;
+	}
+
+	/**
+	 * Returns the remote disk space (in bytes) freed by repacking multichunks, i.e. the size
+	 * of the repacked multichunks minus the size of the multichunks replacing them.
+	 */
+	public long getRepackedMultiChunksSize() {
+		return repackedMultiChunksSize;
+	}
+
+	public void setRepackedMultiChunksSize(long repackedMultiChunksSize) {
+		this.repackedMultiChunksSize = repackedMultiChunksSize;
+	}
+}
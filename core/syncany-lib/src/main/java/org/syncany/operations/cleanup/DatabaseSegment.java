@@ -0,0 +1,114 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.cleanup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
+
+/**
+ * A database segment describes a remote database file written by the {@link CleanupOperation}.
+ * It contains all database versions of a single client within a contiguous range of this
+ * client's own version numbers (the client's logical time in the vector clock).
+ *
+ * <p>If the segment was written by the last cleanup, it also lists the database files it
+ * replaced. A client that already knows all of these files can skip downloading the segment.
+ *
+ * @see DatabaseSegmentLayout
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+@Root(name = "segment", strict = false)
+public class DatabaseSegment {
+	@Attribute(name = "name")
+	private String name;
+
+	@Attribute(name = "firstVersion")
+	private long firstClientVersion;
+
+	@Attribute(name = "lastVersion")
+	private long lastClientVersion;
+
+	@ElementList(name = "replaces", entry = "database", required = false)
+	private ArrayList<String> replacedDatabaseNames;
+
+	public DatabaseSegment() {
+		// Required for Simple XML
+	}
+
+	public DatabaseSegment(String name, long firstClientVersion, long lastClientVersion, List<String> replacedDatabaseNames) {
+		this.name = name;
+		this.firstClientVersion = firstClientVersion;
+		this.lastClientVersion = lastClientVersion;
+		this.replacedDatabaseNames = (replacedDatabaseNames != null && replacedDatabaseNames.size() > 0) ? new ArrayList<String>(
+				replacedDatabaseNames) : null;
+	}
+
+	/**
+	 * Returns the name of the remote database file, i.e. the name of a {@link DatabaseRemoteFile}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the remote database file of this segment.
+	 */
+	public DatabaseRemoteFile getRemoteFile() throws StorageException {
+		return new DatabaseRemoteFile(name);
+	}
+
+	/**
+	 * Returns the first client version (inclusive) contained in this segment.
+	 */
+	public long getFirstClientVersion() {
+		return firstClientVersion;
+	}
+
+	/**
+	 * Returns the last client version (inclusive) contained in this segment.
+	 */
+	public long getLastClientVersion() {
+		return lastClientVersion;
+	}
+
+	/**
+	 * Returns the number of client versions covered by this segment.
+	 */
+	public long getClientVersionCount() {
+		return Math.max(1, lastClientVersion - firstClientVersion + 1);
+	}
+
+	/**
+	 * Returns the names of the database files replaced by this segment, or an
+	 * empty list if this segment was not (re-)written by the last cleanup.
+	 */
+	public List<String> getReplacedDatabaseNames() {
+		return (replacedDatabaseNames != null) ? replacedDatabaseNames : new ArrayList<String>();
+	}
+
+	@Override
+	public String toString() {
+		return "DatabaseSegment [name=" + name + ", firstClientVersion=" + firstClientVersion + ", lastClientVersion=" + lastClientVersion
+				+ ", replacedDatabaseNames=" + replacedDatabaseNames + "]";
+	}
+}
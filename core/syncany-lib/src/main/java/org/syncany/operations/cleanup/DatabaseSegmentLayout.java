@@ -0,0 +1,367 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.cleanup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+import org.simpleframework.xml.core.Persister;
+import org.syncany.chunk.Transformer;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.PartialFileHistory.FileHistoryId;
+import org.syncany.database.VectorClock;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.files.CleanupRemoteFile;
+import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
+import org.syncany.plugins.transfer.files.SnapshotRemoteFile;
+
+/**
+ * The segment layout describes the remote database files after a {@link CleanupOperation}.
+ * It is stored (transformed, i.e. encrypted and/or compressed) as content of the
+ * {@link CleanupRemoteFile} uploaded by the cleanup.
+ *
+ * <p>The layout lists all {@link DatabaseSegment}s, i.e. the database files written by this
+ * or previous cleanups, as well as the file versions purged and the multichunks repacked by this
+ * cleanup. The next cleanup uses the layout to only merge recent database files and rewrite segments
+ * affected by purging, instead of rewriting all database versions. Other clients use it to apply the
+ * purge and the repacking locally and to skip downloading segments whose contents they already know.
+ *
+ * <p>If the cleanup wrote a {@link SnapshotRemoteFile}, the layout also lists the remote database
+ * files covered by the snapshot, and the vector clock of the last database version in the snapshot.
+ * New clients load the snapshot instead of these database files.
+ *
+ * @see DatabaseSegment
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+@Root(name = "segmentLayout", strict = false)
+public class DatabaseSegmentLayout {
+	@ElementList(name = "segments", entry = "segment", required = false)
+	private ArrayList<DatabaseSegment> segments;
+
+	@ElementList(name = "purgeBefore", entry = "fileVersion", required = false)
+	private ArrayList<PurgedFileVersion> purgeBeforeFileVersions;
+
+	@ElementList(name = "purge", entry = "fileVersion", required = false)
+	private ArrayList<PurgedFileVersion> purgeFileVersions;
+
+	@ElementList(name = "repack", entry = "multiChunks", required = false)
+	private ArrayList<RepackedMultiChunks> repackedMultiChunks;
+
+	@Attribute(name = "snapshotVectorClock", required = false)
+	private String snapshotVectorClock;
+
+	@ElementList(name = "snapshot", entry = "database", required = false)
+	private ArrayList<String> snapshotDatabaseNames;
+
+	public DatabaseSegmentLayout() {
+		this.segments = new ArrayList<DatabaseSegment>();
+		this.purgeBeforeFileVersions = new ArrayList<PurgedFileVersion>();
+		this.purgeFileVersions = new ArrayList<PurgedFileVersion>();
+		this.repackedMultiChunks = new ArrayList<RepackedMultiChunks>();
+	}
+
+	public List<DatabaseSegment> getSegments() {
+		return segments;
+	}
+
+	public void addSegment(DatabaseSegment segment) {
+		segments.add(segment);
+	}
+
+	/**
+	 * Returns the segment with the given remote database file name, or <tt>null</tt>
+	 * if no such segment exists in this layout (or if the name is <tt>null</tt>).
+	 */
+	public DatabaseSegment getSegment(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		for (DatabaseSegment segment : segments) {
+			if (name.equals(segment.getName())) {
+				return segment;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Records the file versions purged by the cleanup, in the same form as they are passed to
+	 * {@link org.syncany.database.SqlDatabase#removeSmallerOrEqualFileVersions(Map) removeSmallerOrEqualFileVersions()}
+	 * and {@link org.syncany.database.SqlDatabase#removeFileVersions(Map) removeFileVersions()}.
+	 */
+	public void setPurgedFileVersions(Map<FileHistoryId, FileVersion> purgeBeforeFileVersions, Map<FileHistoryId, List<FileVersion>> purgeFileVersions) {
+		this.purgeBeforeFileVersions.clear();
+		this.purgeFileVersions.clear();
+
+		for (Map.Entry<FileHistoryId, FileVersion> purgeBeforeEntry : purgeBeforeFileVersions.entrySet()) {
+			this.purgeBeforeFileVersions.add(new PurgedFileVersion(purgeBeforeEntry.getKey(), purgeBeforeEntry.getValue().getVersion()));
+		}
+
+		for (Map.Entry<FileHistoryId, List<FileVersion>> purgeEntry : purgeFileVersions.entrySet()) {
+			for (FileVersion purgeFileVersion : purgeEntry.getValue()) {
+				this.purgeFileVersions.add(new PurgedFileVersion(purgeEntry.getKey(), purgeFileVersion.getVersion()));
+			}
+		}
+	}
+
+	public Map<FileHistoryId, FileVersion> getPurgeBeforeFileVersions() {
+		Map<FileHistoryId, FileVersion> purgeBeforeFileVersionsMap = new HashMap<FileHistoryId, FileVersion>();
+
+		for (PurgedFileVersion purgedFileVersion : purgeBeforeFileVersions) {
+			purgeBeforeFileVersionsMap.put(purgedFileVersion.getFileHistoryId(), purgedFileVersion.toFileVersion());
+		}
+
+		return purgeBeforeFileVersionsMap;
+	}
+
+	public Map<FileHistoryId, List<FileVersion>> getPurgeFileVersions() {
+		Map<FileHistoryId, List<FileVersion>> purgeFileVersionsMap = new HashMap<FileHistoryId, List<FileVersion>>();
+
+		for (PurgedFileVersion purgedFileVersion : purgeFileVersions) {
+			List<FileVersion> fileHistoryPurgeFileVersions = purgeFileVersionsMap.get(purgedFileVersion.getFileHistoryId());
+
+			if (fileHistoryPurgeFileVersions == null) {
+				fileHistoryPurgeFileVersions = new ArrayList<FileVersion>();
+				purgeFileVersionsMap.put(purgedFileVersion.getFileHistoryId(), fileHistoryPurgeFileVersions);
+			}
+
+			fileHistoryPurgeFileVersions.add(purgedFileVersion.toFileVersion());
+		}
+
+		return purgeFileVersionsMap;
+	}
+
+	public boolean hasPurgedFileVersions() {
+		return purgeBeforeFileVersions.size() > 0 || purgeFileVersions.size() > 0;
+	}
+
+	/**
+	 * Records that the given old multichunks were repacked by the cleanup, i.e. that their
+	 * live chunks were rewritten to the given new multichunks.
+	 */
+	public void addRepackedMultiChunks(Collection<MultiChunkId> oldMultiChunkIds, Collection<MultiChunkEntry> newMultiChunks) {
+		repackedMultiChunks.add(new RepackedMultiChunks(oldMultiChunkIds, newMultiChunks));
+	}
+
+	public List<RepackedMultiChunks> getRepackedMultiChunks() {
+		return (repackedMultiChunks != null) ? repackedMultiChunks : new ArrayList<RepackedMultiChunks>();
+	}
+
+	/**
+	 * Records that the cleanup wrote a snapshot of all database versions up to the given
+	 * vector clock, and that this snapshot contains everything in the given database files.
+	 */
+	public void setSnapshot(VectorClock snapshotVectorClock, Collection<DatabaseRemoteFile> snapshotDatabases) {
+		this.snapshotVectorClock = snapshotVectorClock.toString();
+		this.snapshotDatabaseNames = new ArrayList<String>();
+
+		for (DatabaseRemoteFile snapshotDatabase : snapshotDatabases) {
+			snapshotDatabaseNames.add(snapshotDatabase.getName());
+		}
+	}
+
+	public boolean hasSnapshot() {
+		return snapshotVectorClock != null && snapshotDatabaseNames != null;
+	}
+
+	public VectorClock getSnapshotVectorClock() {
+		return (snapshotVectorClock != null) ? VectorClock.parseVectorClock(snapshotVectorClock) : null;
+	}
+
+	public List<DatabaseRemoteFile> getSnapshotDatabases() throws StorageException {
+		List<DatabaseRemoteFile> snapshotDatabases = new ArrayList<DatabaseRemoteFile>();
+
+		if (snapshotDatabaseNames != null) {
+			for (String snapshotDatabaseName : snapshotDatabaseNames) {
+				snapshotDatabases.add(new DatabaseRemoteFile(snapshotDatabaseName));
+			}
+		}
+
+		return snapshotDatabases;
+	}
+
+	public void save(File file, Transformer transformer) throws IOException {
+		try (OutputStream outputStream = transformer.createOutputStream(new FileOutputStream(file))) {
+			new Persister().write(this, outputStream);
+		}
+		catch (IOException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot write segment layout to file " + file, e);
+		}
+	}
+
+	/**
+	 * Reads a segment layout from the given file. If the file is empty (cleanup files
+	 * written by older versions do not contain a layout), <tt>null</tt> is returned.
+	 */
+	public static DatabaseSegmentLayout load(File file, Transformer transformer) throws IOException {
+		if (file.length() == 0) {
+			return null;
+		}
+
+		try (InputStream inputStream = transformer.createInputStream(new FileInputStream(file))) {
+			return new Persister().read(DatabaseSegmentLayout.class, inputStream);
+		}
+		catch (IOException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot read segment layout from file " + file, e);
+		}
+	}
+
+	/**
+	 * Describes a group of multichunks repacked by the cleanup: the old multichunks (which were
+	 * deleted remotely) and the new multichunks containing the old multichunks' live chunks.
+	 */
+	@Root(name = "multiChunks")
+	public static class RepackedMultiChunks {
+		@ElementList(name = "replaces", entry = "multiChunk")
+		private ArrayList<String> oldMultiChunkIds;
+
+		@ElementList(name = "new", entry = "multiChunk")
+		private ArrayList<RepackedMultiChunk> newMultiChunks;
+
+		public RepackedMultiChunks() {
+			// Required for Simple XML
+		}
+
+		public RepackedMultiChunks(Collection<MultiChunkId> oldMultiChunkIds, Collection<MultiChunkEntry> newMultiChunks) {
+			this.oldMultiChunkIds = new ArrayList<String>();
+			this.newMultiChunks = new ArrayList<RepackedMultiChunk>();
+
+			for (MultiChunkId oldMultiChunkId : oldMultiChunkIds) {
+				this.oldMultiChunkIds.add(oldMultiChunkId.toString());
+			}
+
+			for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+				this.newMultiChunks.add(new RepackedMultiChunk(newMultiChunk));
+			}
+		}
+
+		public List<MultiChunkId> getOldMultiChunkIds() {
+			List<MultiChunkId> oldMultiChunkIdList = new ArrayList<MultiChunkId>();
+
+			for (String oldMultiChunkId : oldMultiChunkIds) {
+				oldMultiChunkIdList.add(MultiChunkId.parseMultiChunkId(oldMultiChunkId));
+			}
+
+			return oldMultiChunkIdList;
+		}
+
+		public List<MultiChunkEntry> getNewMultiChunks() {
+			List<MultiChunkEntry> newMultiChunkList = new ArrayList<MultiChunkEntry>();
+
+			for (RepackedMultiChunk newMultiChunk : newMultiChunks) {
+				newMultiChunkList.add(newMultiChunk.toMultiChunkEntry());
+			}
+
+			return newMultiChunkList;
+		}
+	}
+
+	@Root(name = "multiChunk")
+	public static class RepackedMultiChunk {
+		@Attribute(name = "id")
+		private String id;
+
+		@Attribute(name = "size")
+		private long size;
+
+		@ElementList(entry = "chunk", inline = true, required = false)
+		private ArrayList<String> chunks;
+
+		public RepackedMultiChunk() {
+			// Required for Simple XML
+		}
+
+		public RepackedMultiChunk(MultiChunkEntry multiChunkEntry) {
+			this.id = multiChunkEntry.getId().toString();
+			this.size = multiChunkEntry.getSize();
+			this.chunks = new ArrayList<String>();
+
+			for (ChunkChecksum chunkChecksum : multiChunkEntry.getChunks()) {
+				chunks.add(chunkChecksum.toString());
+			}
+		}
+
+		private MultiChunkEntry toMultiChunkEntry() {
+			MultiChunkEntry multiChunkEntry = new MultiChunkEntry(MultiChunkId.parseMultiChunkId(id), size);
+
+			if (chunks != null) {
+				for (String chunkChecksum : chunks) {
+					multiChunkEntry.addChunk(ChunkChecksum.parseChunkChecksum(chunkChecksum));
+				}
+			}
+
+			return multiChunkEntry;
+		}
+	}
+
+	@Root(name = "fileVersion")
+	public static class PurgedFileVersion {
+		@Attribute(name = "fileHistory")
+		private String fileHistoryId;
+
+		@Attribute(name = "version")
+		private long version;
+
+		public PurgedFileVersion() {
+			// Required for Simple XML
+		}
+
+		public PurgedFileVersion(FileHistoryId fileHistoryId, long version) {
+			this.fileHistoryId = fileHistoryId.toString();
+			this.version = version;
+		}
+
+		public FileHistoryId getFileHistoryId() {
+			return FileHistoryId.parseFileId(fileHistoryId);
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		private FileVersion toFileVersion() {
+			FileVersion fileVersion = new FileVersion();
+			fileVersion.setVersion(version);
+
+			return fileVersion;
+		}
+	}
+}
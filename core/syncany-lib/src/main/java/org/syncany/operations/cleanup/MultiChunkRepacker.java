@@ -0,0 +1,153 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.cleanup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.chunk.MultiChunker;
+import org.syncany.chunk.Transformer;
+import org.syncany.config.Cache;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+
+/**
+ * The multichunk repacker rewrites the live chunks of partially unused multichunks into
+ * new multichunks. It is used by the {@link CleanupOperation} to free the space occupied
+ * by chunks that are no longer referenced, but could not be deleted because other chunks
+ * in the same multichunk are still in use.
+ *
+ * <p>The repacker reads the old multichunks from their decrypted files in the cache (as
+ * downloaded by the {@link org.syncany.operations.Downloader Downloader}) and writes the new
+ * multichunks to the encrypted multichunk files in the cache, ready to be uploaded.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class MultiChunkRepacker {
+	private static final Logger logger = Logger.getLogger(MultiChunkRepacker.class.getSimpleName());
+
+	private MultiChunker multiChunker;
+	private Transformer transformer;
+	private Cache cache;
+
+	public MultiChunkRepacker(MultiChunker multiChunker, Transformer transformer, Cache cache) {
+		this.multiChunker = multiChunker;
+		this.transformer = transformer;
+		this.cache = cache;
+	}
+
+	/**
+	 * Rewrites the chunks listed in the given multichunk entries (i.e. the live chunks) into
+	 * new multichunks. All other chunks of the old multichunks are dropped. New multichunks
+	 * are closed and a new one is started whenever a multichunk is full.
+	 *
+	 * <p>If a live chunk cannot be found in the old multichunk, an exception is thrown,
+	 * because the chunk would otherwise be lost when the old multichunk is deleted.
+	 *
+	 * @param oldMultiChunks Multichunks to repack; each entry must only list the live chunks
+	 * @return Entries of the new multichunks, including their chunks and sizes
+	 */
+	public List<MultiChunkEntry> repack(List<MultiChunkEntry> oldMultiChunks) throws IOException {
+		List<MultiChunkEntry> newMultiChunks = new ArrayList<MultiChunkEntry>();
+		Set<ChunkChecksum> repackedChunks = new HashSet<ChunkChecksum>();
+
+		MultiChunk newMultiChunk = null;
+		MultiChunkEntry newMultiChunkEntry = null;
+
+		try {
+			for (MultiChunkEntry oldMultiChunk : oldMultiChunks) {
+				Set<ChunkChecksum> liveChunks = new HashSet<ChunkChecksum>(oldMultiChunk.getChunks());
+				File oldMultiChunkFile = cache.getDecryptedMultiChunkFile(oldMultiChunk.getId());
+
+				logger.log(Level.FINE, "   + Repacking {0} live chunk(s) of multichunk {1} ...", new Object[] { liveChunks.size(),
+						oldMultiChunk.getId() });
+
+				MultiChunk oldMultiChunkReader = multiChunker.createMultiChunk(new FileInputStream(oldMultiChunkFile));
+
+				try {
+					Chunk chunk = null;
+
+					while (null != (chunk = oldMultiChunkReader.read())) {
+						ChunkChecksum chunkChecksum = new ChunkChecksum(chunk.getChecksum());
+
+						if (!liveChunks.remove(chunkChecksum) || !repackedChunks.add(chunkChecksum)) {
+							continue;
+						}
+
+						if (newMultiChunk == null) {
+							MultiChunkId newMultiChunkId = MultiChunkId.secureRandomMultiChunkId();
+							File newMultiChunkFile = cache.getEncryptedMultiChunkFile(newMultiChunkId);
+
+							newMultiChunk = multiChunker.createMultiChunk(newMultiChunkId, transformer.createOutputStream(new FileOutputStream(
+									newMultiChunkFile)));
+							newMultiChunkEntry = new MultiChunkEntry(newMultiChunkId, 0);
+						}
+
+						newMultiChunk.write(chunk);
+						newMultiChunkEntry.addChunk(chunkChecksum);
+
+						if (newMultiChunk.isFull()) {
+							closeMultiChunk(newMultiChunk, newMultiChunkEntry, newMultiChunks);
+							newMultiChunk = null;
+						}
+					}
+				}
+				finally {
+					oldMultiChunkReader.close();
+				}
+
+				if (liveChunks.size() > 0) {
+					throw new IOException("Multichunk " + oldMultiChunk.getId() + " does not contain live chunk(s) " + liveChunks + ". Cannot repack.");
+				}
+			}
+
+			if (newMultiChunk != null) {
+				closeMultiChunk(newMultiChunk, newMultiChunkEntry, newMultiChunks);
+				newMultiChunk = null;
+			}
+		}
+		finally {
+			if (newMultiChunk != null) {
+				newMultiChunk.close();
+			}
+		}
+
+		return newMultiChunks;
+	}
+
+	private void closeMultiChunk(MultiChunk multiChunk, MultiChunkEntry multiChunkEntry, List<MultiChunkEntry> newMultiChunks) throws IOException {
+		multiChunk.close();
+		multiChunkEntry.setSize(multiChunk.getSize());
+
+		logger.log(Level.FINE, "   + Wrote new multichunk {0} ({1} chunk(s), {2} bytes)", new Object[] { multiChunkEntry.getId(),
+				multiChunkEntry.getChunks().size(), multiChunkEntry.getSize() });
+
+		newMultiChunks.add(multiChunkEntry);
+	}
+}
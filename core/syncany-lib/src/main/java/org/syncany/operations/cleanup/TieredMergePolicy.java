@@ -0,0 +1,150 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.cleanup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tiered merge policy decides which {@link DatabaseSegment}s of a client are merged
+ * by the {@link CleanupOperation}. Similar to the compaction in log-structured merge trees,
+ * segments are assigned to tiers by the number of database versions they contain: a segment
+ * with <i>n</i> versions belongs to tier <i>floor(log_k(n))</i>, with <i>k</i> being the number
+ * of segments per tier.
+ *
+ * <p>Whenever <i>k</i> or more adjacent segments belong to the same tier, they are merged
+ * into one segment of a higher tier. This is repeated until no tier has enough adjacent segments.
+ * Small and recent segments are therefore merged often, whereas large historical segments
+ * are only rarely touched.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class TieredMergePolicy {
+	private int segmentsPerTier;
+
+	public TieredMergePolicy(int segmentsPerTier) {
+		if (segmentsPerTier < 2) {
+			throw new IllegalArgumentException("Segments per tier must be at least 2, but was " + segmentsPerTier);
+		}
+
+		this.segmentsPerTier = segmentsPerTier;
+	}
+
+	/**
+	 * Returns the tier of a segment (or range of segments) containing the given number
+	 * of client versions.
+	 */
+	public int getTier(long clientVersionCount) {
+		int tier = 0;
+
+		while (clientVersionCount >= segmentsPerTier) {
+			clientVersionCount /= segmentsPerTier;
+			tier++;
+		}
+
+		return tier;
+	}
+
+	/**
+	 * Determines which segments of a single client are to be merged. The given segments
+	 * must be sorted by their client version range and must not overlap.
+	 *
+	 * <p>The returned list contains groups of adjacent segments, each of which should be merged
+	 * into a single new segment. Segments not contained in any group can be kept as they are.
+	 *
+	 * @param clientSegments Sorted segments of a single client
+	 * @return Groups of at least two segments to be merged
+	 */
+	public List<List<DatabaseSegment>> findMerges(List<DatabaseSegment> clientSegments) {
+		List<List<DatabaseSegment>> groups = new ArrayList<List<DatabaseSegment>>();
+
+		for (DatabaseSegment segment : clientSegments) {
+			List<DatabaseSegment> group = new ArrayList<DatabaseSegment>();
+			group.add(segment);
+
+			groups.add(group);
+		}
+
+		while (mergeLowestTierRun(groups)) {
+			// Repeat until nothing can be merged
+		}
+
+		List<List<DatabaseSegment>> mergeGroups = new ArrayList<List<DatabaseSegment>>();
+
+		for (List<DatabaseSegment> group : groups) {
+			if (group.size() > 1) {
+				mergeGroups.add(group);
+			}
+		}
+
+		return mergeGroups;
+	}
+
+	/**
+	 * Finds the lowest tier with a run of at least {@link #segmentsPerTier} adjacent groups,
+	 * and merges the groups of this run into one group.
+	 *
+	 * @return <tt>true</tt> if groups have been merged, <tt>false</tt> otherwise
+	 */
+	private boolean mergeLowestTierRun(List<List<DatabaseSegment>> groups) {
+		int mergeRunStart = -1;
+		int mergeRunLength = 0;
+		int mergeRunTier = Integer.MAX_VALUE;
+
+		int runStart = 0;
+
+		while (runStart < groups.size()) {
+			int runTier = getTier(groups.get(runStart));
+			int runEnd = runStart + 1;
+
+			while (runEnd < groups.size() && getTier(groups.get(runEnd)) == runTier) {
+				runEnd++;
+			}
+
+			int runLength = runEnd - runStart;
+
+			if (runLength >= segmentsPerTier && runTier < mergeRunTier) {
+				mergeRunStart = runStart;
+				mergeRunLength = runLength;
+				mergeRunTier = runTier;
+			}
+
+			runStart = runEnd;
+		}
+
+		if (mergeRunStart < 0) {
+			return false;
+		}
+
+		List<DatabaseSegment> mergedGroup = new ArrayList<DatabaseSegment>();
+
+		for (int i = 0; i < mergeRunLength; i++) {
+			mergedGroup.addAll(groups.remove(mergeRunStart));
+		}
+
+		groups.add(mergeRunStart, mergedGroup);
+		return true;
+	}
+
+	private int getTier(List<DatabaseSegment> group) {
+		long firstClientVersion = group.get(0).getFirstClientVersion();
+		long lastClientVersion = group.get(group.size() - 1).getLastClientVersion();
+
+		return getTier(Math.max(1, lastClientVersion - firstClientVersion + 1));
+	}
+}
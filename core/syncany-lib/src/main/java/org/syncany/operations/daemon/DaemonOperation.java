@@ -201,6 +201,7 @@ public class DaemonOperation extends Operation {
 		
 		initEventBus();		
 		loadOrCreateConfig();
+		enableAsyncEventDispatch();
 		
 		startWebServer();
 		startWatchServer();
@@ -238,6 +239,12 @@ public class DaemonOperation extends Operation {
 		eventBus.register(this);
 	}
 
+	private void enableAsyncEventDispatch() {
+		if (daemonConfig.getEventBus().isAsyncDispatch()) {
+			eventBus.enableAsyncDispatch(daemonConfig.getEventBus().getMaxQueueSize());
+		}
+	}
+	
 	private void enterControlLoop() throws IOException, ServiceAlreadyStartedException {
 		logger.log(Level.INFO, "Starting daemon control server ...");
 
@@ -250,6 +257,8 @@ public class DaemonOperation extends Operation {
 	private void stopOperation() {
 		stopWebServer();
 		stopWatchServer();
+		
+		eventBus.disableAsyncDispatch();
 	}
 	
 	private void reloadOperation() {
@@ -30,6 +30,7 @@ import org.syncany.operations.daemon.messages.AlreadySyncingResponse;
 import org.syncany.operations.daemon.messages.BadRequestResponse;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
 import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.watch.WatchOperation;
 import org.syncany.operations.watch.WatchOperationOptions;
@@ -38,9 +39,13 @@ import org.syncany.operations.watch.WatchOperationResult;
 import com.google.common.eventbus.Subscribe;
 
 /**
- * The watch operation thread runs a {@link WatchOperation} in a thread. The
- * underlying thred can be started using the {@link #start()} method, and stopped
- * gracefully using {@link #stop()}.
+ * The watch runner runs a {@link WatchOperation} using the daemon's {@link WatchScheduler},
+ * i.e. it does not have its own sync thread. The watch can be started using the {@link #start()} 
+ * method, and stopped gracefully using {@link #stop()}.
+ *
+ * <p>Folder requests with a {@link ReadOnlyFolderRequestHandler} are answered by the
+ * scheduler's read-only request pool, even while a sync is running. All other folder
+ * requests pause the watch, and are rejected while a sync is running.
  *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
@@ -49,55 +54,58 @@ public class WatchRunner {
 
 	private Config config;
 	private PortTO portTO;
-	private Thread watchThread;
+	private WatchScheduler scheduler;
+	private int priority;
+	private WatchOperationOptions watchOperationOptions;
 	private WatchOperation watchOperation;
 	private WatchOperationResult watchOperationResult;
 	private LocalEventBus eventBus;
 
-	public WatchRunner(Config config, WatchOperationOptions watchOperationOptions, PortTO portTO) throws ConfigException {
+	public WatchRunner(Config config, WatchOperationOptions watchOperationOptions, PortTO portTO, WatchScheduler scheduler, int priority)
+			throws ConfigException {
+		
 		this.config = config;
 		this.portTO = portTO;
+		this.scheduler = scheduler;
+		this.priority = priority;
+		this.watchOperationOptions = watchOperationOptions;
 		this.watchOperation = new WatchOperation(config, watchOperationOptions);
 
 		this.eventBus = LocalEventBus.getInstance();
 		this.eventBus.register(this);
 	}
 
-	public void start() {
-		watchThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					logger.log(Level.INFO, "STARTING watch at" + config.getLocalDir());
-					watchOperationResult = null;
+	public void start() throws Exception {
+		logger.log(Level.INFO, "STARTING watch at " + config.getLocalDir());
+		watchOperationResult = null;
 
-					// Write port to portFile
-					File portFile = config.getPortFile();
+		// Write port to portFile
+		File portFile = config.getPortFile();
 
-					portFile.createNewFile();
-					portFile.deleteOnExit();
+		portFile.createNewFile();
+		portFile.deleteOnExit();
 
-					new Persister().write(portTO, portFile);
-
-					// Start operation (blocks!)
-					watchOperationResult = watchOperation.execute();
-
-					logger.log(Level.INFO, "STOPPED watch at " + config.getLocalDir());
-				}
-				catch (Exception e) {
-					logger.log(Level.SEVERE, "ERROR while running watch at " + config.getLocalDir(), e);
-				}
-			}
-		}, "WR/" + config.getLocalDir().getName());
+		new Persister().write(portTO, portFile);
 
-		watchThread.start();
+		// Start operation (does not block, syncs are run by the scheduler)
+		watchOperation.start(scheduler);
+		scheduler.add(watchOperation, watchOperationOptions.getInterval(), priority);
 	}
 
+	/**
+	 * Stops the watch operation. This method waits for a currently running sync 
+	 * to finish (or to be interrupted), and then stops the watchers.
+	 */
 	public void stop() {
 		watchOperation.stop();
+		scheduler.remove(watchOperation);
+
+		watchOperationResult = watchOperation.finish();
 		config.getPortFile().delete();
 
-		watchThread = null;
+		eventBus.unregister(this);
+
+		logger.log(Level.INFO, "STOPPED watch at " + config.getLocalDir());
 	}
 
 	public boolean hasStopped() {
@@ -117,10 +125,14 @@ public class WatchRunner {
 			logger.log(Level.INFO, "Received " + folderRequest);
 
 			try {
-				if (!watchOperation.isSyncRunning() && !watchOperation.isSyncRequested()) {
+				FolderRequestHandler handler = FolderRequestHandler.createFolderRequestHandler(folderRequest, config);
+
+				if (handler instanceof ReadOnlyFolderRequestHandler) {
+					handleReadOnlyRequest(handler, folderRequest);
+				}
+				else if (!watchOperation.isSyncRunning() && !watchOperation.isSyncRequested()) {
 					watchOperation.pause();
 
-					FolderRequestHandler handler = FolderRequestHandler.createFolderRequestHandler(folderRequest, config);
 					Response response = handler.handleRequest(folderRequest);
 
 					if (response != null) {
@@ -140,4 +152,23 @@ public class WatchRunner {
 			}
 		}
 	}
+
+	private void handleReadOnlyRequest(final FolderRequestHandler handler, final FolderRequest folderRequest) {
+		scheduler.executeReadOnlyRequest(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Response response = handler.handleRequest(folderRequest);
+
+					if (response != null) {
+						eventBus.post(response);
+					}
+				}
+				catch (Exception e) {
+					logger.log(Level.FINE, "Failed to process read-only request", e);
+					eventBus.post(new BadRequestResponse(folderRequest.getId(), "Invalid request."));
+				}
+			}
+		});
+	}
 }
@@ -0,0 +1,397 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.daemon;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.to.SchedulerTO;
+import org.syncany.operations.cleanup.CleanupOperation;
+import org.syncany.operations.down.DownOperation;
+import org.syncany.operations.up.UpOperation;
+import org.syncany.operations.watch.WatchOperation;
+import org.syncany.operations.watch.WatchOperation.SyncScheduler;
+
+/**
+ * The watch scheduler runs the syncs of all {@link WatchOperation}s of the daemon using a
+ * bounded pool of worker threads, instead of one sync loop thread per watched folder.
+ *
+ * <p>A watch is run whenever its interval has passed, or as soon as possible if the watch
+ * operation requests a sync (e.g. because of local file system events). If more watches are
+ * due than workers are available, requested syncs are run first, then watches with a higher
+ * priority, then watches that have been waiting longer. After a failed sync, a watch is
+ * retried with exponential backoff.
+ *
+ * <p>In addition to the number of workers, the scheduler limits the number of concurrently
+ * running down, up and cleanup operations across all folders (see {@link SchedulerTO}).
+ *
+ * <p>Read-only folder requests (e.g. ls or log) do not have to wait for a running sync. They
+ * are executed by a small separate pool of threads (see {@link #executeReadOnlyRequest(Runnable)}).
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class WatchScheduler implements SyncScheduler {
+	private static final Logger logger = Logger.getLogger(WatchScheduler.class.getSimpleName());
+
+	private static final int STOP_GRACE_PERIOD = 15 * 1000;
+	private static final int PAUSE_RETRY_DELAY = 1000;
+	private static final int MAX_BACKOFF_EXPONENT = 10;
+
+	private SchedulerTO settings;
+	private ScheduledExecutorService timer;
+	private ExecutorService readOnlyRequestExecutor;
+	private Thread[] workers;
+	private PriorityBlockingQueue<ScheduledWatch> readyWatches;
+	private Map<WatchOperation, ScheduledWatch> scheduledWatches;
+	private Map<String, Semaphore> operationPermits;
+	private AtomicLong sequence;
+	private volatile boolean stopped;
+
+	public WatchScheduler(SchedulerTO settings) {
+		this.settings = settings;
+		this.timer = Executors.newSingleThreadScheduledExecutor();
+		this.readOnlyRequestExecutor = Executors.newFixedThreadPool(Math.max(1, settings.getReadOnlyRequestThreads()));
+		this.workers = new Thread[Math.max(1, settings.getThreads())];
+		this.readyWatches = new PriorityBlockingQueue<ScheduledWatch>();
+		this.scheduledWatches = new ConcurrentHashMap<WatchOperation, ScheduledWatch>();
+		this.operationPermits = new HashMap<String, Semaphore>();
+		this.sequence = new AtomicLong(0);
+		this.stopped = false;
+
+		this.operationPermits.put(DownOperation.ACTION_ID, new Semaphore(Math.max(1, settings.getMaxConcurrentDown()), true));
+		this.operationPermits.put(UpOperation.ACTION_ID, new Semaphore(Math.max(1, settings.getMaxConcurrentUp()), true));
+		this.operationPermits.put(CleanupOperation.ACTION_ID, new Semaphore(Math.max(1, settings.getMaxConcurrentCleanup()), true));
+	}
+
+	public void start() {
+		logger.log(Level.INFO, "Starting watch scheduler with " + workers.length + " worker thread(s) ...");
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runWorker();
+				}
+			}, "WS/Worker" + i);
+
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Stops the worker threads. Watch operations must be removed using
+	 * {@link #remove(WatchOperation)} before calling this method.
+	 */
+	public void stop() {
+		logger.log(Level.INFO, "Stopping watch scheduler ...");
+
+		stopped = true;
+		timer.shutdownNow();
+		readOnlyRequestExecutor.shutdownNow();
+
+		for (Thread worker : workers) {
+			if (worker != null) {
+				worker.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Adds a watch operation to the scheduler. The operation must have been started
+	 * with {@link WatchOperation#start(SyncScheduler)}. The first sync is run immediately.
+	 *
+	 * @param watchOperation Operation to run syncs for
+	 * @param interval Time (in milliseconds) between two regular syncs
+	 * @param priority Higher priority watches are run first if not enough workers are available
+	 */
+	public synchronized void add(WatchOperation watchOperation, int interval, int priority) {
+		ScheduledWatch scheduledWatch = new ScheduledWatch(watchOperation, interval, priority);
+		scheduledWatches.put(watchOperation, scheduledWatch);
+
+		enqueue(scheduledWatch);
+	}
+
+	/**
+	 * Removes a watch operation from the scheduler, and waits for a currently running
+	 * sync to finish. If the sync does not finish within a grace period, the worker thread
+	 * running it is interrupted.
+	 */
+	public void remove(WatchOperation watchOperation) {
+		ScheduledWatch scheduledWatch;
+
+		synchronized (this) {
+			scheduledWatch = scheduledWatches.remove(watchOperation);
+
+			if (scheduledWatch == null) {
+				return;
+			}
+
+			scheduledWatch.removed = true;
+			cancelTimer(scheduledWatch);
+			readyWatches.remove(scheduledWatch);
+		}
+
+		synchronized (scheduledWatch) {
+			long waitUntil = System.currentTimeMillis() + STOP_GRACE_PERIOD;
+
+			while (scheduledWatch.runningThread != null) {
+				long waitTime = waitUntil - System.currentTimeMillis();
+
+				if (waitTime <= 0) {
+					logger.log(Level.INFO, "Stop grace period over, interrupting sync of removed watch ...");
+
+					scheduledWatch.runningThread.interrupt();
+					waitTime = STOP_GRACE_PERIOD;
+				}
+
+				try {
+					scheduledWatch.wait(waitTime);
+				}
+				catch (InterruptedException e) {
+					logger.log(Level.INFO, "Interrupted while waiting for sync of removed watch to finish.", e);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the given read-only request handling task in the read-only request pool,
+	 * independent of running syncs.
+	 */
+	public void executeReadOnlyRequest(Runnable requestTask) {
+		readOnlyRequestExecutor.execute(requestTask);
+	}
+
+	@Override
+	public synchronized void syncRequested(WatchOperation watchOperation) {
+		ScheduledWatch scheduledWatch = scheduledWatches.get(watchOperation);
+
+		if (scheduledWatch != null && !scheduledWatch.requested) {
+			// Re-insert to restore queue order; 'requested' is part of the ordering
+			if (scheduledWatch.queued) {
+				readyWatches.remove(scheduledWatch);
+				scheduledWatch.queued = false;
+			}
+
+			scheduledWatch.requested = true;
+
+			if (scheduledWatch.runningThread == null) {
+				cancelTimer(scheduledWatch);
+				enqueue(scheduledWatch);
+			}
+		}
+	}
+
+	@Override
+	public void acquireOperation(String operationId) throws InterruptedException {
+		Semaphore permits = operationPermits.get(operationId);
+
+		if (permits != null) {
+			permits.acquire();
+		}
+	}
+
+	@Override
+	public void releaseOperation(String operationId) {
+		Semaphore permits = operationPermits.get(operationId);
+
+		if (permits != null) {
+			permits.release();
+		}
+	}
+
+	private void runWorker() {
+		while (!stopped) {
+			ScheduledWatch scheduledWatch;
+
+			try {
+				scheduledWatch = readyWatches.take();
+			}
+			catch (InterruptedException e) {
+				logger.log(Level.FINE, "Worker interrupted, checking if scheduler was stopped.", e);
+				continue;
+			}
+
+			if (startSync(scheduledWatch)) {
+				boolean success = runSync(scheduledWatch);
+				finishSync(scheduledWatch, success);
+			}
+		}
+	}
+
+	private synchronized boolean startSync(ScheduledWatch scheduledWatch) {
+		scheduledWatch.queued = false;
+
+		if (scheduledWatch.removed) {
+			return false;
+		}
+		else if (scheduledWatch.watchOperation.isPaused()) {
+			scheduleTimer(scheduledWatch, PAUSE_RETRY_DELAY);
+			return false;
+		}
+		else {
+			synchronized (scheduledWatch) {
+				scheduledWatch.requested = false;
+				scheduledWatch.runningThread = Thread.currentThread();
+			}
+
+			return true;
+		}
+	}
+
+	private boolean runSync(ScheduledWatch scheduledWatch) {
+		try {
+			scheduledWatch.watchOperation.runScheduledSync();
+			return true;
+		}
+		catch (Exception e) {
+			logger.log(Level.INFO, "Scheduled sync FAILED.", e);
+			return false;
+		}
+		finally {
+			// Clear a possible interrupt from remove(), so that it does not affect the next sync
+			Thread.interrupted();
+		}
+	}
+
+	private synchronized void finishSync(ScheduledWatch scheduledWatch, boolean success) {
+		synchronized (scheduledWatch) {
+			scheduledWatch.runningThread = null;
+			scheduledWatch.notifyAll();
+		}
+
+		if (scheduledWatch.removed) {
+			return;
+		}
+
+		if (success) {
+			scheduledWatch.failureCount = 0;
+		}
+		else {
+			scheduledWatch.failureCount++;
+		}
+
+		if (success && (scheduledWatch.requested || scheduledWatch.watchOperation.isSyncRequested())) {
+			enqueue(scheduledWatch);
+		}
+		else {
+			scheduleTimer(scheduledWatch, getDelay(scheduledWatch));
+		}
+	}
+
+	/**
+	 * Returns the regular interval of the given watch, or (if the last syncs failed),
+	 * the interval multiplied by two for every consecutive failure, at most the
+	 * configured maximum backoff.
+	 */
+	private long getDelay(ScheduledWatch scheduledWatch) {
+		if (scheduledWatch.failureCount == 0) {
+			return scheduledWatch.interval;
+		}
+		else {
+			int exponent = Math.min(scheduledWatch.failureCount - 1, MAX_BACKOFF_EXPONENT);
+			long backoff = scheduledWatch.interval * (1L << exponent);
+
+			return Math.max(scheduledWatch.interval, Math.min(backoff, settings.getMaxBackoff()));
+		}
+	}
+
+	private void enqueue(ScheduledWatch scheduledWatch) {
+		if (!scheduledWatch.queued && !scheduledWatch.removed) {
+			scheduledWatch.queued = true;
+			scheduledWatch.sequence = sequence.incrementAndGet();
+
+			readyWatches.add(scheduledWatch);
+		}
+	}
+
+	private void scheduleTimer(final ScheduledWatch scheduledWatch, long delay) {
+		if (stopped) {
+			return;
+		}
+
+		cancelTimer(scheduledWatch);
+
+		scheduledWatch.timer = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (WatchScheduler.this) {
+					scheduledWatch.timer = null;
+					enqueue(scheduledWatch);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void cancelTimer(ScheduledWatch scheduledWatch) {
+		if (scheduledWatch.timer != null) {
+			scheduledWatch.timer.cancel(false);
+			scheduledWatch.timer = null;
+		}
+	}
+
+	/**
+	 * Scheduling state of a single watch operation. Watches in the ready queue
+	 * are ordered by (1) whether a sync was requested, (2) their priority, and
+	 * (3) the order in which they became ready.
+	 */
+	private static class ScheduledWatch implements Comparable<ScheduledWatch> {
+		private WatchOperation watchOperation;
+		private int interval;
+		private int priority;
+
+		private int failureCount;
+		private long sequence;
+		private boolean queued;
+		private boolean removed;
+		private volatile boolean requested;
+		private volatile Thread runningThread;
+		private ScheduledFuture<?> timer;
+
+		public ScheduledWatch(WatchOperation watchOperation, int interval, int priority) {
+			this.watchOperation = watchOperation;
+			this.interval = interval;
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(ScheduledWatch other) {
+			if (requested != other.requested) {
+				return (requested) ? -1 : 1;
+			}
+			else if (priority != other.priority) {
+				return (priority > other.priority) ? -1 : 1;
+			}
+			else {
+				return Long.compare(sequence, other.sequence);
+			}
+		}
+	}
+}
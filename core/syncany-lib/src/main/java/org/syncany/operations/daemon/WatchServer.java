@@ -18,6 +18,7 @@
 package org.syncany.operations.daemon;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,7 @@ import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.simpleframework.xml.core.Persister;
 import org.syncany.config.Config;
 import org.syncany.config.ConfigException;
 import org.syncany.config.ConfigHelper;
@@ -32,6 +34,7 @@ import org.syncany.config.DaemonConfigHelper;
 import org.syncany.config.LocalEventBus;
 import org.syncany.config.to.DaemonConfigTO;
 import org.syncany.config.to.FolderTO;
+import org.syncany.config.to.SchedulerTO;
 import org.syncany.operations.daemon.Watch.SyncStatus;
 import org.syncany.operations.daemon.messages.AddWatchManagementRequest;
 import org.syncany.operations.daemon.messages.AddWatchManagementResponse;
@@ -47,6 +50,7 @@ import org.syncany.operations.daemon.messages.api.ManagementRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.watch.WatchOperation;
 import org.syncany.operations.watch.WatchOperationOptions;
+import org.syncany.plugins.transfer.TransferGovernor;
 
 import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
@@ -54,21 +58,33 @@ import com.google.common.eventbus.Subscribe;
 /**
  * The watch server can manage many different {@link WatchOperation}s. When started
  * with {@link #start()} or {@link #reload()}, it first reads the daemon configuration file
- * and then runs new threads for each configured Syncany folder. Invalid or non-existing folders
+ * and then starts a watch for each configured Syncany folder. Invalid or non-existing folders
  * are ignored.
  *
+ * <p>The syncs of all watches are run by a shared {@link WatchScheduler}. When the configuration
+ * is reloaded, only watches of folders that were removed or whose configuration changed are
+ * stopped, and only watches of new or changed folders are started. If the scheduler settings
+ * changed, the scheduler is re-created and all watches are restarted. Transfers of all watches
+ * are limited by the {@link TransferGovernor}.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class WatchServer {
 	private static final Logger logger = Logger.getLogger(WatchServer.class.getSimpleName());
 
 	private DaemonConfigTO daemonConfig;
+	private WatchScheduler scheduler;
+	private SchedulerTO schedulerSettings;
 	private Map<File, WatchRunner> watchOperations;
+	private Map<File, FolderTO> watchedFolders;
 	private LocalEventBus eventBus;
 
 	public WatchServer() {
 		this.daemonConfig = null;
+		this.scheduler = null;
+		this.schedulerSettings = null;
 		this.watchOperations = new TreeMap<File, WatchRunner>();
+		this.watchedFolders = new TreeMap<File, FolderTO>();
 
 		this.eventBus = LocalEventBus.getInstance();
 		this.eventBus.register(this);
@@ -78,18 +94,21 @@ public class WatchServer {
 		reload(daemonConfigTO);
 	}
 
-	public void reload(DaemonConfigTO daemonConfigTO) {
+	public synchronized void reload(DaemonConfigTO daemonConfigTO) {
 		logger.log(Level.INFO, "Starting/reloading watch server ... ");
 
 		// Update config
 		daemonConfig = daemonConfigTO;
 
-		// Restart threads
+		startOrRestartScheduler(daemonConfigTO.getScheduler());
+		TransferGovernor.getInstance().configure(daemonConfigTO.getTransferGovernor());
+
+		// Restart changed watches only
 		try {
-			Map<File, FolderTO> watchedFolders = getFolderMap(daemonConfigTO.getFolders());
+			Map<File, FolderTO> newWatchedFolders = getFolderMap(daemonConfigTO.getFolders());
 
-			stopAllWatchOperations();
-			startWatchOperations(watchedFolders);
+			stopChangedWatchOperations(newWatchedFolders);
+			startNewWatchOperations(newWatchedFolders);
 
 			fireDaemonReloadedEvent();
 		}
@@ -98,24 +117,63 @@ public class WatchServer {
 		}
 	}
 
-	public void stop() {
+	public synchronized void stop() {
 		logger.log(Level.INFO, "Stopping watch server ...  ");
 		Map<File, WatchRunner> copyOfWatchOperations = Maps.newHashMap(watchOperations);
 
 		for (Map.Entry<File, WatchRunner> folderEntry : copyOfWatchOperations.entrySet()) {
-			File localDir = folderEntry.getKey();
-			WatchRunner watchOperationThread = folderEntry.getValue();
+			stopWatchOperation(folderEntry.getKey());
+		}
 
-			logger.log(Level.INFO, "- Stopping watch operation at " + localDir + " ...");
-			watchOperationThread.stop();
+		stopScheduler();
+		TransferGovernor.getInstance().disable();
+	}
+
+	/**
+	 * Starts the scheduler if it is not running yet. If it is running, but the given settings
+	 * differ from its current settings, all watch operations are stopped and the scheduler is
+	 * re-created. The watch operations are then restarted with the new scheduler by
+	 * {@link #startNewWatchOperations(Map)}.
+	 */
+	private void startOrRestartScheduler(SchedulerTO newSchedulerSettings) {
+		if (scheduler != null && !configChanged(schedulerSettings, newSchedulerSettings)) {
+			return;
+		}
+
+		if (scheduler != null) {
+			logger.log(Level.INFO, "- Scheduler settings changed, restarting scheduler and all watch operations ...");
+
+			for (File localDir : new ArrayList<File>(watchOperations.keySet())) {
+				stopWatchOperation(localDir);
+			}
+
+			stopScheduler();
+		}
+
+		schedulerSettings = newSchedulerSettings;
+
+		scheduler = new WatchScheduler(newSchedulerSettings);
+		scheduler.start();
+	}
+
+	private void stopScheduler() {
+		if (scheduler != null) {
+			scheduler.stop();
 
-			watchOperations.remove(localDir);
+			scheduler = null;
+			schedulerSettings = null;
 		}
 	}
 
-	private void startWatchOperations(Map<File, FolderTO> newWatchedFolderTOs) throws ConfigException, ServiceAlreadyStartedException {
+	private void startNewWatchOperations(Map<File, FolderTO> newWatchedFolderTOs) {
 		for (Map.Entry<File, FolderTO> folderEntry : newWatchedFolderTOs.entrySet()) {
 			File localDir = folderEntry.getKey();
+			FolderTO folderTO = folderEntry.getValue();
+
+			if (watchOperations.containsKey(localDir)) {
+				logger.log(Level.INFO, "- Watch operation at " + localDir + " unchanged, not restarting.");
+				continue;
+			}
 
 			try {
 				Config watchConfig = ConfigHelper.loadConfig(localDir);
@@ -123,16 +181,17 @@ public class WatchServer {
 				if (watchConfig != null) {
 					logger.log(Level.INFO, "- Starting watch operation at " + localDir + " ...");
 
-					WatchOperationOptions watchOptions = folderEntry.getValue().getWatchOptions();
+					WatchOperationOptions watchOptions = folderTO.getWatchOptions();
 
 					if (watchOptions == null) {
 						watchOptions = new WatchOperationOptions();
 					}
 
-					WatchRunner watchRunner = new WatchRunner(watchConfig, watchOptions, daemonConfig.getPortTO());
+					WatchRunner watchRunner = new WatchRunner(watchConfig, watchOptions, daemonConfig.getPortTO(), scheduler, folderTO.getPriority());
 					watchRunner.start();
 
 					watchOperations.put(localDir, watchRunner);
+					watchedFolders.put(localDir, folderTO);
 				}
 				else {
 					logger.log(Level.INFO, "- CANNOT start watch, because no config found at " + localDir + " ...");
@@ -145,30 +204,52 @@ public class WatchServer {
 	}
 
 	/**
-	 * Stops all watchOperations and verifies if
-	 * they actually have stopped.
+	 * Stops the watch operations of all folders that are not part of the new 
+	 * configuration anymore, or whose configuration has changed. Stopping a watch
+	 * waits for its running sync to finish.
 	 */
-	private void stopAllWatchOperations() {
-		for (File localDir : watchOperations.keySet()) {
-			WatchRunner watchOperationThread = watchOperations.get(localDir);
+	private void stopChangedWatchOperations(Map<File, FolderTO> newWatchedFolderTOs) {
+		Map<File, FolderTO> oldWatchedFolderTOs = new TreeMap<File, FolderTO>(watchedFolders);
+
+		for (Map.Entry<File, FolderTO> folderEntry : oldWatchedFolderTOs.entrySet()) {
+			File localDir = folderEntry.getKey();
+			FolderTO newFolderTO = newWatchedFolderTOs.get(localDir);
+
+			if (newFolderTO == null || configChanged(folderEntry.getValue(), newFolderTO)) {
+				stopWatchOperation(localDir);
+			}
+		}
+	}
 
+	private void stopWatchOperation(File localDir) {
+		WatchRunner watchOperationThread = watchOperations.remove(localDir);
+		watchedFolders.remove(localDir);
+
+		if (watchOperationThread != null) {
 			logger.log(Level.INFO, "- Stopping watch operation at " + localDir + " ...");
 			watchOperationThread.stop();
 		}
+	}
 
-		// Check if watch operations actually have stopped.
-		while (watchOperations.keySet().size() > 0) {
-			Map<File, WatchRunner> watchOperationsCopy = new TreeMap<File, WatchRunner>(watchOperations);
+	/**
+	 * Compares two configurations (folder or scheduler settings) by their XML serialization, 
+	 * because the transfer objects do not implement <tt>equals()</tt>.
+	 */
+	private boolean configChanged(Object oldConfigTO, Object newConfigTO) {
+		try {
+			return !serialize(oldConfigTO).equals(serialize(newConfigTO));
+		}
+		catch (Exception e) {
+			logger.log(Level.INFO, "Cannot compare configurations. Assuming changed.", e);
+			return true;
+		}
+	}
 
-			for (File localDir : watchOperationsCopy.keySet()) {
-				WatchRunner watchOperationThread = watchOperationsCopy.get(localDir);
+	private String serialize(Object configTO) throws Exception {
+		StringWriter configXml = new StringWriter();
+		new Persister().write(configTO, configXml);
 
-				if (watchOperationThread.hasStopped()) {
-					logger.log(Level.INFO, "- Watch operation at " + localDir + " has stopped");
-					watchOperations.remove(localDir);
-				}
-			}
-		}
+		return configXml.toString();
 	}
 
 	private Map<File, FolderTO> getFolderMap(List<FolderTO> watchedFolders) {
@@ -22,15 +22,18 @@ import static io.undertow.Handlers.websocket;
 
 import javax.net.ssl.SSLContext;
 
-import java.io.File;
 import java.security.KeyPair;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,12 +50,14 @@ import org.syncany.config.to.UserTO;
 import org.syncany.config.to.WebServerTO;
 import org.syncany.crypto.CipherParams;
 import org.syncany.crypto.CipherUtil;
+import org.syncany.operations.StreamingAssembler;
 import org.syncany.operations.daemon.auth.MapIdentityManager;
 import org.syncany.operations.daemon.handlers.InternalRestHandler;
 import org.syncany.operations.daemon.handlers.InternalWebInterfaceHandler;
 import org.syncany.operations.daemon.handlers.InternalWebSocketHandler;
 import org.syncany.operations.daemon.messages.GetFileFolderResponse;
 import org.syncany.operations.daemon.messages.GetFileFolderResponseInternal;
+import org.syncany.operations.daemon.messages.api.CoalescableEvent;
 import org.syncany.operations.daemon.messages.api.ExternalEvent;
 import org.syncany.operations.daemon.messages.api.JsonMessageFactory;
 import org.syncany.operations.daemon.messages.api.Message;
@@ -84,6 +89,10 @@ import io.undertow.websockets.core.WebSockets;
  * as well as a mechanism to run a web interface by implementing a
  * {@link WebInterfacePlugin}.
  *
+ * <p>Events are broadcasted to all web socket clients. To limit the number of messages
+ * sent during large syncs, {@link CoalescableEvent}s (i.e. progress events) are collected
+ * and sent in batches; within a batch, only the latest event per coalescing key is sent.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class WebServer {
@@ -105,12 +114,18 @@ public class WebServer {
 	private Cache<Integer, WebSocketChannel> requestIdWebSocketCache;
 	private Cache<Integer, HttpServerExchange> requestIdRestSocketCache;
 	private Cache<Integer, RequestFormatType> requestIdRestFormatCache;
-	private Cache<String, File> fileTokenTempFileCache;
+	private Cache<String, StreamingAssembler> fileTokenAssemblerCache;
 
 	private Map<WebSocketChannel, RequestFormatType> webSocketChannelRequestFormatMap;
 
+	private int eventBatchInterval;
+	private Map<String, ExternalEvent> pendingEvents;
+	private volatile ScheduledExecutorService eventBatchExecutor;
+
 	public WebServer(DaemonConfigTO daemonConfig) throws Exception {
 		this.webSocketChannelRequestFormatMap = Maps.newConcurrentMap();
+		this.eventBatchInterval = daemonConfig.getEventBus().getBatchInterval();
+		this.pendingEvents = new LinkedHashMap<String, ExternalEvent>();
 		
 		initCaches();
 		initEventBus();
@@ -119,11 +134,14 @@ public class WebServer {
 
 	public void start() throws ServiceAlreadyStartedException {
 		webServer.start();
+		startEventBatching();
 	}
 
 	public void stop() {
 		try {
 			logger.log(Level.INFO, "Shutting down websocket server.");
+			
+			stopEventBatching();
 			webServer.stop();
 		}
 		catch (Exception e) {
@@ -138,7 +156,7 @@ public class WebServer {
 		requestIdRestSocketCache = CacheBuilder.newBuilder().maximumSize(10000)
 						.concurrencyLevel(2).expireAfterAccess(1, TimeUnit.MINUTES).build();
 
-		fileTokenTempFileCache = CacheBuilder.newBuilder().maximumSize(10000)
+		fileTokenAssemblerCache = CacheBuilder.newBuilder().maximumSize(10000)
 						.concurrencyLevel(2).expireAfterAccess(1, TimeUnit.MINUTES).build();
 
 		requestIdRestFormatCache = CacheBuilder.newBuilder().maximumSize(10000)
@@ -150,6 +168,27 @@ public class WebServer {
 		eventBus.register(this);
 	}
 
+	private void startEventBatching() {
+		if (eventBatchInterval > 0) {
+			eventBatchExecutor = Executors.newSingleThreadScheduledExecutor();
+			eventBatchExecutor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flushPendingEvents();
+				}
+			}, eventBatchInterval, eventBatchInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void stopEventBatching() {
+		if (eventBatchExecutor != null) {
+			eventBatchExecutor.shutdownNow();
+			eventBatchExecutor = null;
+
+			flushPendingEvents();
+		}
+	}
+
 	private void initServer(DaemonConfigTO daemonConfigTO) throws Exception {
 		WebServerTO webServerConfig = daemonConfigTO.getWebServer();
 
@@ -271,20 +310,48 @@ public class WebServer {
 
 	@Subscribe
 	public void onGetFileResponseInternal(GetFileFolderResponseInternal fileResponseInternal) {
-		File tempFile = fileResponseInternal.getTempFile();
+		StreamingAssembler assembler = fileResponseInternal.getAssembler();
 		GetFileFolderResponse fileResponse = fileResponseInternal.getFileResponse();
 
-		fileTokenTempFileCache.asMap().put(fileResponse.getTempToken(), tempFile);
+		fileTokenAssemblerCache.asMap().put(fileResponse.getTempToken(), assembler);
 		eventBus.post(fileResponse);
 	}
 
 	@Subscribe
 	public void onEvent(ExternalEvent event) {
-		try {
-			sendBroadcast(event);
+		synchronized (pendingEvents) {
+			if (eventBatchExecutor != null && event instanceof CoalescableEvent) {
+				pendingEvents.put(((CoalescableEvent) event).getCoalescingKey(), event);
+			}
+			else {
+				// Send pending events first to preserve the order of events
+				flushPendingEvents();
+
+				try {
+					sendBroadcast(event);
+				}
+				catch (Exception e) {
+					logger.log(Level.SEVERE, "Cannot send event.", e);
+				}
+			}
 		}
-		catch (Exception e) {
-			logger.log(Level.SEVERE, "Cannot send event.", e);
+	}
+
+	private void flushPendingEvents() {
+		synchronized (pendingEvents) {
+			if (pendingEvents.isEmpty()) {
+				return;
+			}
+
+			List<Message> eventBatch = new ArrayList<Message>(pendingEvents.values());
+			pendingEvents.clear();
+
+			try {
+				sendBroadcast(eventBatch);
+			}
+			catch (Exception e) {
+				logger.log(Level.SEVERE, "Cannot send event batch.", e);
+			}
 		}
 	}
 
@@ -298,7 +365,9 @@ public class WebServer {
 				sendBroadcast(response);
 			}
 			else {
-				HttpServerExchange responseToHttpServerExchange = requestIdRestSocketCache.asMap().get(response.getRequestId());
+				// A REST exchange can only carry one response; results are only streamed
+				// as multiple responses to web socket requests
+				HttpServerExchange responseToHttpServerExchange = requestIdRestSocketCache.asMap().remove(response.getRequestId());
 				WebSocketChannel responseToWebSocketChannel = requestIdWebSocketCache.asMap().get(response.getRequestId());
 
 				if (responseToHttpServerExchange != null) {
@@ -318,19 +387,52 @@ public class WebServer {
 	}
 
 	private void sendBroadcast(Message message) throws Exception {
-		logger.log(Level.INFO, "Sending broadcast message to " + webSocketChannelRequestFormatMap.size() + " websocket client(s)");
+		sendBroadcast(Collections.singletonList(message));
+	}
+
+	/**
+	 * Sends the given messages to all web socket clients. Each message is
+	 * serialized only once per format, regardless of the number of clients. 
+	 */
+	private void sendBroadcast(List<? extends Message> messages) throws Exception {
+		if (webSocketChannelRequestFormatMap.isEmpty()) {
+			return;
+		}
+
+		logger.log(Level.FINE, "Sending {0} broadcast message(s) to {1} websocket client(s)", new Object[] { messages.size(), webSocketChannelRequestFormatMap.size() });
+		Map<RequestFormatType, List<String>> messageStrsByFormat = new EnumMap<RequestFormatType, List<String>>(RequestFormatType.class);
 
 		synchronized (webSocketChannelRequestFormatMap) {
-			for (WebSocketChannel clientChannel : webSocketChannelRequestFormatMap.keySet()) {
-				sendTo(clientChannel, message);
+			for (Map.Entry<WebSocketChannel, RequestFormatType> clientChannelEntry : webSocketChannelRequestFormatMap.entrySet()) {
+				RequestFormatType requestFormatType = (clientChannelEntry.getValue() != null) ? clientChannelEntry.getValue() : DEFAULT_RESPONSE_FORMAT;
+				List<String> messageStrs = messageStrsByFormat.get(requestFormatType);
+
+				if (messageStrs == null) {
+					messageStrs = new ArrayList<String>(messages.size());
+
+					for (Message message : messages) {
+						messageStrs.add(createMessageStr(message, requestFormatType));
+					}
+
+					messageStrsByFormat.put(requestFormatType, messageStrs);
+				}
+
+				for (String messageStr : messageStrs) {
+					sendTo(clientChannelEntry.getKey(), messageStr);
+				}
 			}
 		}
 	}
 
 	private void sendTo(WebSocketChannel clientChannel, Message message) throws Exception {
-		String messageStr = createMessageStr(clientChannel, message);
-		
-		logger.log(Level.INFO, "Sending message to " + clientChannel + ": " + messageStr);
+		sendTo(clientChannel, createMessageStr(clientChannel, message));
+	}
+
+	private void sendTo(WebSocketChannel clientChannel, String messageStr) {
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Sending message to " + clientChannel + ": " + messageStr);
+		}
+
 		WebSockets.sendText(messageStr, clientChannel, null);
 	}
 
@@ -398,7 +500,7 @@ public class WebServer {
 		}
 	}
 
-	public File getFileTokenTempFileFromCache(String fileToken) {
-		return fileTokenTempFileCache.asMap().get(fileToken);
+	public StreamingAssembler getFileTokenAssemblerFromCache(String fileToken) {
+		return fileTokenAssemblerCache.asMap().get(fileToken);
 	}
 }
\ No newline at end of file
@@ -17,15 +17,16 @@
  */
 package org.syncany.operations.daemon.handlers;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.syncany.config.LocalEventBus;
+import org.syncany.operations.StreamingAssembler;
 import org.syncany.operations.daemon.WebServer;
 import org.syncany.operations.daemon.WebServer.RequestFormatType;
 import org.syncany.operations.daemon.messages.BadRequestResponse;
@@ -37,14 +38,21 @@ import com.google.common.base.Joiner;
 
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
 
 /**
  * InteralRestHandler handles the REST requests sent to the daemon.
  *
+ * <p>Files requested via <tt>/file/&lt;token&gt;</tt> are streamed directly from
+ * their multichunks using a {@link StreamingAssembler}. Single byte ranges (HTTP
+ * <tt>Range</tt> header) are supported; only the chunks overlapping the range are read.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class InternalRestHandler implements HttpHandler {
 	private static final Logger logger = Logger.getLogger(InternalRestHandler.class.getSimpleName());
+	private static final Pattern RANGE_HEADER_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+	private static final int MAX_REQUEST_SIZE = 1024 * 1024;
 
 	private final WebServer daemonWebServer;
 	private final LocalEventBus eventBus;
@@ -58,6 +66,12 @@ public class InternalRestHandler implements HttpHandler {
 
 	@Override
 	public void handleRequest(final HttpServerExchange exchange) throws Exception {
+		// Reading the request and streaming files blocks, so never do it in an I/O thread
+		if (exchange.isInIoThread()) {
+			exchange.dispatch(this);
+			return;
+		}
+
 		handleRestRequest(exchange);
 	}
 
@@ -75,7 +89,15 @@ public class InternalRestHandler implements HttpHandler {
 	}
 
 	private void handleNormalRequest(HttpServerExchange exchange) throws IOException {
-		String message = IOUtils.toString(exchange.getInputStream()); // TODO [high] Read entire file to memory. Dangerous!
+		String message = IOUtils.toString(new BoundedInputStream(exchange.getInputStream(), MAX_REQUEST_SIZE + 1));
+
+		if (message.length() > MAX_REQUEST_SIZE) {
+			logger.log(Level.WARNING, "Invalid request received; request larger than " + MAX_REQUEST_SIZE + " bytes.");
+			eventBus.post(new BadRequestResponse(-1, "Invalid request."));
+
+			return;
+		}
+
 		logger.log(Level.INFO, "REST message received: " + message);
 
 		try {
@@ -105,19 +127,94 @@ public class InternalRestHandler implements HttpHandler {
 		}
 	}
 
-	private void handleFileRequest(HttpServerExchange exchange) throws FileNotFoundException, IOException {
-		String tempFileToken = exchange.getRelativePath().substring("/file/".length());
-		File tempFile = daemonWebServer.getFileTokenTempFileFromCache(tempFileToken);
+	private void handleFileRequest(HttpServerExchange exchange) throws IOException {
+		String fileToken = exchange.getRelativePath().substring("/file/".length());
+		StreamingAssembler assembler = daemonWebServer.getFileTokenAssemblerFromCache(fileToken);
+
+		if (assembler == null) {
+			logger.log(Level.WARNING, "Invalid request received; Cannot find file token " + fileToken);
+			eventBus.post(new BadRequestResponse(-1, "Invalid request."));
+
+			exchange.setResponseCode(404);
+			exchange.endExchange();
+
+			return;
+		}
+
+		logger.log(Level.INFO, "- File token: " + fileToken);
 
-		if (tempFile != null) {
-			logger.log(Level.INFO, "- Temp file: " + tempFileToken);
+		long length = assembler.getLength();
+		long[] range = parseRange(exchange.getRequestHeaders().getFirst(Headers.RANGE), length);
 
-			IOUtils.copy(new FileInputStream(tempFile), exchange.getOutputStream());
+		exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+		exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/octet-stream");
+
+		if (range == null) {
+			exchange.setResponseCode(416);
+			exchange.getResponseHeaders().put(Headers.CONTENT_RANGE, "bytes */" + length);
 			exchange.endExchange();
+
+			return;
 		}
-		else {
-			logger.log(Level.WARNING, "Invalid request received; Cannot find file token " + tempFileToken);
-			eventBus.post(new BadRequestResponse(-1, "Invalid request."));
+
+		long offset = range[0];
+		long rangeLength = range[1] - range[0] + 1;
+
+		if (rangeLength != length) {
+			exchange.setResponseCode(206);
+			exchange.getResponseHeaders().put(Headers.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+		}
+
+		exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, rangeLength);
+
+		try {
+			assembler.stream(exchange.getOutputStream(), offset, rangeLength);
+		}
+		catch (Exception e) {
+			// Headers are already sent; the client detects the incomplete response by its length
+			logger.log(Level.WARNING, "Cannot stream file " + assembler.getFileVersion().getPath() + ". Aborting response.", e);
+			exchange.getConnection().close();
+
+			return;
+		}
+
+		exchange.endExchange();
+	}
+
+	/**
+	 * Parses a single byte range from the given HTTP <tt>Range</tt> header and returns the first
+	 * and last byte position (inclusive). If no header (or an unsupported header, e.g. with multiple
+	 * ranges) is given, the whole file is returned. If the range cannot be satisfied, <tt>null</tt>
+	 * is returned.
+	 *
+	 * @param rangeHeader Value of the <tt>Range</tt> header, or <tt>null</tt> if not present
+	 * @param length Total length of the requested file in bytes
+	 * @return Returns the first and last byte position, or <tt>null</tt> if the range cannot be satisfied
+	 */
+	public static long[] parseRange(String rangeHeader, long length) {
+		Matcher rangeMatcher = (rangeHeader != null) ? RANGE_HEADER_PATTERN.matcher(rangeHeader.trim()) : null;
+
+		if (rangeMatcher == null || !rangeMatcher.matches() || (rangeMatcher.group(1).isEmpty() && rangeMatcher.group(2).isEmpty())) {
+			return new long[] { 0, length - 1 };
+		}
+
+		try {
+			long first;
+			long last;
+
+			if (rangeMatcher.group(1).isEmpty()) { // Suffix range, e.g. "bytes=-500"
+				first = Math.max(0, length - Long.parseLong(rangeMatcher.group(2)));
+				last = length - 1;
+			}
+			else {
+				first = Long.parseLong(rangeMatcher.group(1));
+				last = (rangeMatcher.group(2).isEmpty()) ? length - 1 : Math.min(length - 1, Long.parseLong(rangeMatcher.group(2)));
+			}
+
+			return (first <= last) ? new long[] { first, last } : null;
+		}
+		catch (NumberFormatException e) {
+			return null;
 		}
 	}
 }
@@ -176,6 +176,7 @@ public class InternalWebSocketHandler implements WebSocketConnectionCallback {
 		daemonWebServer.putRequestFormatType(request.getId(), requestFormatType);
 		daemonWebServer.putCacheWebSocketRequest(request.getId(), clientSocket);
 		
+		request.setMultipleResponsesSupported(true);
 		eventBus.post(request);
 	}
 
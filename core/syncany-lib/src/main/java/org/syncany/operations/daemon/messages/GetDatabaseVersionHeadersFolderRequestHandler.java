@@ -23,22 +23,19 @@ import org.syncany.config.Config;
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
-import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 
-public class GetDatabaseVersionHeadersFolderRequestHandler extends FolderRequestHandler {
-	private SqlDatabase localDatabase;
-
+public class GetDatabaseVersionHeadersFolderRequestHandler extends ReadOnlyFolderRequestHandler {
 	public GetDatabaseVersionHeadersFolderRequestHandler(Config config) {
 		super(config);
-		this.localDatabase = new SqlDatabase(config);
 	}
 
 	@Override
-	public Response handleRequest(FolderRequest request) {
+	public Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase) {
 		GetDatabaseVersionHeadersFolderRequest concreteRequest = (GetDatabaseVersionHeadersFolderRequest) request;
 		
-		List<DatabaseVersionHeader> databaseVersionHeaders = localDatabase.getNonEmptyDatabaseVersionHeaders(); 
+		List<DatabaseVersionHeader> databaseVersionHeaders = readOnlyDatabase.getNonEmptyDatabaseVersionHeaders(); 
 		return new GetDatabaseVersionHeadersFolderResponse(concreteRequest.getId(), concreteRequest.getRoot(), databaseVersionHeaders);		
 	}
 
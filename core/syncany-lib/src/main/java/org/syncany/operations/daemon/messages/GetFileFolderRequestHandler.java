@@ -17,26 +17,18 @@
  */
 package org.syncany.operations.daemon.messages;
 
-import java.io.File;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
 import org.syncany.config.LocalEventBus;
-import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.ObjectId;
-import org.syncany.database.ChunkEntry.ChunkChecksum;
-import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.PartialFileHistory.FileHistoryId;
 import org.syncany.database.SqlDatabase;
-import org.syncany.operations.Assembler;
-import org.syncany.operations.Downloader;
+import org.syncany.operations.StreamingAssembler;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
 import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
-import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.util.StringUtil;
 
 public class GetFileFolderRequestHandler extends FolderRequestHandler {
@@ -58,21 +50,14 @@ public class GetFileFolderRequestHandler extends FolderRequestHandler {
 			FileHistoryId fileHistoryId = FileHistoryId.parseFileId(concreteRequest.getFileHistoryId());
 			long version = concreteRequest.getVersion();
 
+			// Only look up the chunks here; the content is streamed when the file token is requested
 			FileVersion fileVersion = localDatabase.getFileVersion(fileHistoryId, version);
-			FileContent fileContent = localDatabase.getFileContent(fileVersion.getChecksum(), true);
-			Map<ChunkChecksum, MultiChunkId> multiChunks = localDatabase.getMultiChunkIdsByChecksums(fileContent.getChunks());
+			StreamingAssembler assembler = new StreamingAssembler(config, localDatabase, fileVersion);
 
-			TransferManager transferManager = config.getTransferPlugin().createTransferManager(config.getConnection(), config);
-			Downloader downloader = new Downloader(config, transferManager);
-			Assembler assembler = new Assembler(config, localDatabase);
-
-			downloader.downloadAndDecryptMultiChunks(new HashSet<MultiChunkId>(multiChunks.values()));
-
-			File tempFile = assembler.assembleToCache(fileVersion);
 			String tempFileToken = StringUtil.toHex(ObjectId.secureRandomBytes(40));
 			
 			GetFileFolderResponse fileResponse = new GetFileFolderResponse(concreteRequest.getId(), concreteRequest.getRoot(), tempFileToken);
-			GetFileFolderResponseInternal fileResponseInternal = new GetFileFolderResponseInternal(fileResponse, tempFile);
+			GetFileFolderResponseInternal fileResponseInternal = new GetFileFolderResponseInternal(fileResponse, assembler);
 
 			eventBus.post(fileResponseInternal);
 			return null;
@@ -17,22 +17,22 @@
  */
 package org.syncany.operations.daemon.messages;
 
-import java.io.File;
+import org.syncany.operations.StreamingAssembler;
 
 public class GetFileFolderResponseInternal {
 	private GetFileFolderResponse fileResponse;
-	private File tempFile;
+	private StreamingAssembler assembler;
 	
-	public GetFileFolderResponseInternal(GetFileFolderResponse fileResponse, File tempFile) {
+	public GetFileFolderResponseInternal(GetFileFolderResponse fileResponse, StreamingAssembler assembler) {
 		this.fileResponse = fileResponse;
-		this.tempFile = tempFile;
+		this.assembler = assembler;
 	}
 	
 	public GetFileFolderResponse getFileResponse() {
 		return fileResponse;
 	}
 
-	public File getTempFile() {
-		return tempFile;
+	public StreamingAssembler getAssembler() {
+		return assembler;
 	}
 }
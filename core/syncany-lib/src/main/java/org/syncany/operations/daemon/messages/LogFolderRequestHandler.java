@@ -20,24 +20,56 @@ package org.syncany.operations.daemon.messages;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
+import org.syncany.config.LocalEventBus;
+import org.syncany.database.SqlDatabase;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
-import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.log.LogOperation;
+import org.syncany.operations.log.LogOperationOptions;
 import org.syncany.operations.log.LogOperationResult;
 
-public class LogFolderRequestHandler extends FolderRequestHandler {
+/**
+ * Handles {@link LogFolderRequest}s. If the request asks for a limited number of 
+ * database versions, a single page is returned. Unlimited requests from clients that can
+ * receive multiple responses (web sockets) get the log as a sequence of {@link LogFolderResponse}s
+ * with the same request ID, each containing at most {@link #STREAMING_PAGE_SIZE} database
+ * versions. All but the last response carry a next page token. All other unlimited 
+ * requests (REST) get the full log in a single response.
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class LogFolderRequestHandler extends ReadOnlyFolderRequestHandler {
+	private static final int STREAMING_PAGE_SIZE = 50;
+
+	private LocalEventBus eventBus;
+
 	public LogFolderRequestHandler(Config config) {
 		super(config);		
+		this.eventBus = LocalEventBus.getInstance();
 	}
 
 	@Override
-	public Response handleRequest(FolderRequest request) {
+	public Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase) {
 		LogFolderRequest concreteRequest = (LogFolderRequest) request;
 
 		try {
-			LogOperation operation = new LogOperation(config, concreteRequest.getOptions());
-			LogOperationResult operationResult = operation.execute();
+			LogOperationOptions options = concreteRequest.getOptions();
+			boolean streamPages = options.getMaxResults() <= 0 && request.isMultipleResponsesSupported();
+
+			if (streamPages) {
+				options.setMaxResults(STREAMING_PAGE_SIZE);
+			}
+
+			LogOperationResult operationResult = new LogOperation(config, options, readOnlyDatabase).execute();
+
+			while (streamPages && operationResult.getNextPageToken() != null) {
+				eventBus.post(new LogFolderResponse(operationResult, request.getId(), request.getRoot()));
+
+				options.setPageToken(operationResult.getNextPageToken());
+				operationResult = new LogOperation(config, options, readOnlyDatabase).execute();
+			}
+
 			LogFolderResponse response = new LogFolderResponse(operationResult, request.getId(), request.getRoot());
 		
 			return response;
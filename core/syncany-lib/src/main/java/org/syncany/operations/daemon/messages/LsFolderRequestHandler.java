@@ -20,24 +20,56 @@ package org.syncany.operations.daemon.messages;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
+import org.syncany.config.LocalEventBus;
+import org.syncany.database.SqlDatabase;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
-import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.ls.LsOperation;
+import org.syncany.operations.ls.LsOperationOptions;
 import org.syncany.operations.ls.LsOperationResult;
 
-public class LsFolderRequestHandler extends FolderRequestHandler {
+/**
+ * Handles {@link LsFolderRequest}s. If the request asks for a limited number of results,
+ * a single page is returned. Unlimited requests from clients that can receive multiple 
+ * responses (web sockets) get the file list as a sequence of {@link LsFolderResponse}s
+ * with the same request ID, each containing at most {@link #STREAMING_PAGE_SIZE} file
+ * versions. All but the last response carry a next page token. All other unlimited
+ * requests (REST) get the full file list in a single response.
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class LsFolderRequestHandler extends ReadOnlyFolderRequestHandler {
+	private static final int STREAMING_PAGE_SIZE = 1000;
+	
+	private LocalEventBus eventBus;
+
 	public LsFolderRequestHandler(Config config) {
 		super(config);		
+		this.eventBus = LocalEventBus.getInstance();
 	}
 
 	@Override
-	public Response handleRequest(FolderRequest request) {
+	public Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase) {
 		LsFolderRequest concreteRequest = (LsFolderRequest) request;
 
 		try {
-			LsOperation operation = new LsOperation(config, concreteRequest.getOptions());
-			LsOperationResult operationResult = operation.execute();
+			LsOperationOptions options = concreteRequest.getOptions();
+			boolean streamPages = options.getMaxResults() <= 0 && request.isMultipleResponsesSupported();
+
+			if (streamPages) {
+				options.setMaxResults(STREAMING_PAGE_SIZE);
+			}
+
+			LsOperationResult operationResult = new LsOperation(config, options, readOnlyDatabase).execute();
+
+			while (streamPages && operationResult.getNextPageToken() != null) {
+				eventBus.post(new LsFolderResponse(operationResult, request.getId()));
+
+				options.setPageToken(operationResult.getNextPageToken());
+				operationResult = new LsOperation(config, options, readOnlyDatabase).execute();
+			}
+
 			LsFolderResponse response = new LsFolderResponse(operationResult, request.getId());
 		
 			return response;
@@ -18,8 +18,9 @@
 package org.syncany.operations.daemon.messages;
 
 import org.simpleframework.xml.Element;
+import org.syncany.operations.daemon.messages.api.CoalescableEvent;
 
-public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEvent {
+public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEvent implements CoalescableEvent {
 	@Element
 	private int currentFileIndex;
 
@@ -60,4 +61,9 @@ public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEven
 	public long getTotalFileSize() {
 		return totalFileSize;
 	}
+
+	@Override
+	public String getCoalescingKey() {
+		return getClass().getSimpleName() + ":" + getRoot();
+	}
 }
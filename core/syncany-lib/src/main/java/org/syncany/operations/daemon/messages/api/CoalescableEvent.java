@@ -0,0 +1,36 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.daemon.messages.api;
+
+/**
+ * Coalescable events are {@link ExternalEvent}s that are superseded by 
+ * newer events with the same coalescing key, typically progress events.
+ * 
+ * <p>If the event bus delivers events asynchronously, or if events are
+ * batched before they are sent to external subscribers, only the most recent
+ * event per coalescing key is delivered.
+ *  
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public interface CoalescableEvent {
+	/**
+	 * Returns the key identifying events that supersede each other,
+	 * e.g. the event type and the root folder of a sync event.
+	 */
+	public String getCoalescingKey();
+}
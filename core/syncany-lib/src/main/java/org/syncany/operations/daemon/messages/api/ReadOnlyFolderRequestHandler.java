@@ -0,0 +1,49 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.daemon.messages.api;
+
+import org.syncany.config.Config;
+import org.syncany.database.SqlDatabase;
+
+/**
+ * Read-only folder request handlers only read from the local database. Unlike other
+ * handlers, they may run while a sync is in progress: Each request is answered from
+ * a read-only snapshot of the last committed state of the local database, which is 
+ * opened for the request and closed afterwards.
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public abstract class ReadOnlyFolderRequestHandler extends FolderRequestHandler {
+	public ReadOnlyFolderRequestHandler(Config config) {
+		super(config);
+	}
+
+	@Override
+	public Response handleRequest(FolderRequest request) {
+		SqlDatabase readOnlyDatabase = new SqlDatabase(config, true);
+
+		try {
+			return handleRequest(request, readOnlyDatabase);
+		}
+		finally {
+			readOnlyDatabase.close();
+		}
+	}
+
+	public abstract Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase);
+}
@@ -27,6 +27,9 @@ public abstract class Request extends Message {
 	@Element(required = true)
 	private int id;	
 	
+	// Set by the receiving web server handler, not part of the message
+	private transient boolean multipleResponsesSupported;
+	
 	public Request() {
 		this.id = Math.abs(new Random().nextInt());
 	}
@@ -38,4 +41,16 @@ public abstract class Request extends Message {
 	public void setId(int id) {
 		this.id = id;
 	}
+
+	/**
+	 * Returns whether the requester can receive more than one response to this 
+	 * request, e.g. a web socket client. REST exchanges can only carry one response.
+	 */
+	public boolean isMultipleResponsesSupported() {
+		return multipleResponsesSupported;
+	}
+
+	public void setMultipleResponsesSupported(boolean multipleResponsesSupported) {
+		this.multipleResponsesSupported = multipleResponsesSupported;
+	}
 }
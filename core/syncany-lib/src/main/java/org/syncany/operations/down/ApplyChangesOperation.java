@@ -17,10 +17,11 @@
  */
 package org.syncany.operations.down;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,10 +35,14 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.PartialFileHistory;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.Downloader;
+import org.syncany.operations.LocalChunkLocator;
+import org.syncany.operations.MultiChunkDownloadPlanner;
 import org.syncany.operations.Operation;
 import org.syncany.operations.OperationResult;
+import org.syncany.operations.down.actions.DeleteFileSystemAction;
 import org.syncany.operations.down.actions.FileCreatingFileSystemAction;
 import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.RenameFileSystemAction;
 import org.syncany.plugins.transfer.TransferManager;
 
 /**
@@ -47,11 +52,13 @@ import org.syncany.plugins.transfer.TransferManager;
  * <ul>
  *  <li>Determine whether the local branch needs to be updated (new database versions); if so, determine
  *      local {@link FileSystemAction}s</li>
- *  <li>Determine, download and decrypt required multi chunks from remote storage from file actions
- *      (implemented in {@link #determineMultiChunksToDownload(FileVersion, MemoryDatabase, MemoryDatabase) determineMultiChunksToDownload()},
+ *  <li>Determine, download and decrypt required multi chunks from remote storage from file actions, skipping
+ *      chunks that can be read from unchanged local files and choosing the cheapest multichunks for the remaining chunks
+ *      (implemented in {@link #determineRequiredMultiChunks(List, MemoryDatabase) determineRequiredMultiChunks()},
  *      and {@link #downloadAndDecryptMultiChunks(Set) downloadAndDecryptMultiChunks()})</li>
  *  <li>Apply file system actions locally, creating conflict files where necessary if local file does
- *      not match the expected file (implemented in {@link #applyFileSystemActions(List) applyFileSystemActions()} </li>
+ *      not match the expected file; independent files are created concurrently (implemented in 
+ *      {@link #applyFileSystemActions(List) applyFileSystemActions()} </li>
  * </ul>
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
@@ -61,24 +68,40 @@ public class ApplyChangesOperation extends Operation {
 
 	private SqlDatabase localDatabase;
 	private Downloader downloader;
+	private LocalChunkLocator localChunkLocator;
+	private MultiChunkDownloadPlanner multiChunkDownloadPlanner;
 
 	private MemoryDatabase winnersDatabase;
 	private DownOperationResult result;
 	
 	private boolean cleanupOccurred;
+	private int applyThreads;
 	private List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion;
+	private List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion;
 
 	public ApplyChangesOperation(Config config, SqlDatabase localDatabase, TransferManager transferManager, MemoryDatabase winnersDatabase,
 			DownOperationResult result, boolean cleanupOccurred, List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion) {
+
+		this(config, localDatabase, transferManager, winnersDatabase, result, cleanupOccurred, preDeleteFileHistoriesWithLastVersion, null,
+				new DownOperationOptions().getApplyThreads());
+	}
+
+	public ApplyChangesOperation(Config config, SqlDatabase localDatabase, TransferManager transferManager, MemoryDatabase winnersDatabase,
+			DownOperationResult result, boolean cleanupOccurred, List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion,
+			List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion, int applyThreads) {
 		
 		super(config);
 		
 		this.localDatabase = localDatabase;
 		this.downloader = new Downloader(config, transferManager);
+		this.localChunkLocator = new LocalChunkLocator(config, localDatabase);
+		this.multiChunkDownloadPlanner = new MultiChunkDownloadPlanner(config);
 		this.winnersDatabase = winnersDatabase;
 		this.result = result;
 		this.cleanupOccurred = cleanupOccurred;
 		this.preDeleteFileHistoriesWithLastVersion = preDeleteFileHistoriesWithLastVersion;
+		this.prePurgeFileHistoriesWithLastVersion = prePurgeFileHistoriesWithLastVersion;
+		this.applyThreads = applyThreads;
 	}
 
 	@Override
@@ -91,107 +114,164 @@ public class ApplyChangesOperation extends Operation {
 		if (cleanupOccurred) {
 			actions = actionReconciliator.determineFileSystemActions(winnersDatabase, true, preDeleteFileHistoriesWithLastVersion);
 		}
+		else if (prePurgeFileHistoriesWithLastVersion != null) {
+			actions = actionReconciliator.determineFileSystemActionsAfterPurge(winnersDatabase, prePurgeFileHistoriesWithLastVersion);
+		}
 		else {
 			actions = actionReconciliator.determineFileSystemActions(winnersDatabase);
 		}
 
 		Set<MultiChunkId> unknownMultiChunks = determineRequiredMultiChunks(actions, winnersDatabase);
 		
-		downloader.downloadAndDecryptMultiChunks(unknownMultiChunks);
-		result.getDownloadedMultiChunks().addAll(unknownMultiChunks);
-
-		applyFileSystemActions(actions);
+		// Protect multichunks from being removed from the cache until the files are assembled
+		List<File> pinnedMultiChunkFiles = pinMultiChunks(unknownMultiChunks);
+		
+		try {
+			downloader.downloadAndDecryptMultiChunks(unknownMultiChunks);
+			result.getDownloadedMultiChunks().addAll(unknownMultiChunks);
+	
+			applyFileSystemActions(actions);
+		}
+		finally {
+			unpinMultiChunks(pinnedMultiChunkFiles);
+		}
 		
 		return null;
 	}
 	
 	/**
 	 * Finds the multichunks that need to be downloaded to apply the given file system actions.
-	 * The method looks at all {@link FileCreatingFileSystemAction}s and returns their multichunks. 
+	 * The method looks at all {@link FileCreatingFileSystemAction}s and determines the chunks 
+	 * that cannot be found in local files. It then plans which multichunks to download to get 
+	 * these chunks using the {@link MultiChunkDownloadPlanner}.
+	 * 
+	 * <p>Files that are deleted or renamed by any of the actions are not used as chunk source, because 
+	 * they are gone before the file that needs the chunk is assembled. Changed files can be used: they 
+	 * are assembled before the original file is deleted. If a located chunk cannot be read anymore, the 
+	 * assembler downloads its multichunk instead.
 	 */
 	private Set<MultiChunkId> determineRequiredMultiChunks(List<FileSystemAction> actions, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
+		Set<ChunkChecksum> chunksToDownload = new HashSet<ChunkChecksum>();
+		Set<String> affectedPaths = determineAffectedPaths(actions);
 
 		for (FileSystemAction action : actions) {
-			if (action instanceof FileCreatingFileSystemAction) { // TODO [low] This adds ALL multichunks even though some might be available locally
-				multiChunksToDownload.addAll(determineMultiChunksToDownload(action.getFile2(), winnersDatabase));
+			if (action instanceof FileCreatingFileSystemAction) {
+				((FileCreatingFileSystemAction) action).setLocalChunkLocator(localChunkLocator);
+				((FileCreatingFileSystemAction) action).setMultiChunkDownloadPlanner(multiChunkDownloadPlanner);
+				((FileCreatingFileSystemAction) action).setDownloader(downloader);
+				((FileCreatingFileSystemAction) action).setLocalDatabase(localDatabase);
+				
+				chunksToDownload.addAll(determineChunksToDownload(action.getFile2(), winnersDatabase, affectedPaths));
 			}
 		}
 
+		// Candidates from the local database first; they are the naive choice (as before planning)
+		multiChunkDownloadPlanner.addCandidates(localDatabase.getMultiChunksForChunks(chunksToDownload).values());
+		multiChunkDownloadPlanner.addCandidates(winnersDatabase.getMultiChunks());
+
+		Set<MultiChunkId> multiChunksToDownload = multiChunkDownloadPlanner.plan(chunksToDownload);
+		
+		result.setPlannedDownloadSize(result.getPlannedDownloadSize() + multiChunkDownloadPlanner.getPlannedDownloadSize());
+		result.setNaiveDownloadSize(result.getNaiveDownloadSize() + multiChunkDownloadPlanner.getNaiveDownloadSize());
+		
 		return multiChunksToDownload;
 	}
 	
+	private Set<String> determineAffectedPaths(List<FileSystemAction> actions) {
+		Set<String> affectedPaths = new HashSet<String>();
+		
+		for (FileSystemAction action : actions) {
+			if (action instanceof DeleteFileSystemAction) {
+				addPathIfNotNull(affectedPaths, action.getFile1());
+				addPathIfNotNull(affectedPaths, action.getFile2());
+			}
+			else if (action instanceof RenameFileSystemAction) {
+				addPathIfNotNull(affectedPaths, action.getFile1());
+			}
+		}
+		
+		return affectedPaths;
+	}
+	
+	private void addPathIfNotNull(Set<String> paths, FileVersion fileVersion) {
+		if (fileVersion != null) {
+			paths.add(fileVersion.getPath());
+		}
+	}
+	
 	/**
-	 * Finds the multichunks that need to be downloaded for the given file version -- using the local 
-	 * database and given winners database. Returns a set of multichunk identifiers.
+	 * Finds the chunks that need to be downloaded for the given file version -- using the local 
+	 * database and given winners database. Chunks that can be read from unchanged local files (as
+	 * found by the {@link LocalChunkLocator}) are skipped. Returns a set of chunk checksums.
 	 */
-	private Collection<MultiChunkId> determineMultiChunksToDownload(FileVersion fileVersion, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
+	private Collection<ChunkChecksum> determineChunksToDownload(FileVersion fileVersion, MemoryDatabase winnersDatabase, Set<String> excludedPaths) {
+		Set<ChunkChecksum> chunksToDownload = new HashSet<ChunkChecksum>();
 
-		// First: Check if we know this file locally!
-		List<MultiChunkId> multiChunkIds = localDatabase.getMultiChunkIds(fileVersion.getChecksum());
+		if (fileVersion.getChecksum() == null) {
+			return chunksToDownload;
+		}
+		
+		// First: Check if we know this file locally; if not, it must be from the winners database
+		FileContent fileContent = localDatabase.getFileContent(fileVersion.getChecksum(), true);
 		
-		if (multiChunkIds.size() > 0) {
-			multiChunksToDownload.addAll(multiChunkIds);
+		if (fileContent == null) {
+			fileContent = winnersDatabase.getContent(fileVersion.getChecksum());
 		}
-		else {
-			// Second: We don't know it locally; must be from the winners database
-			FileContent winningFileContent = winnersDatabase.getContent(fileVersion.getChecksum());			
-			boolean winningFileHasContent = winningFileContent != null;
-
-			if (winningFileHasContent) { // File can be empty!
-				List<ChunkChecksum> fileChunks = winningFileContent.getChunks(); 
-				
-				// TODO [medium] Instead of just looking for multichunks to download here, we should look for chunks in local files as well
-				// and return the chunk positions in the local files ChunkPosition (chunk123 at file12, offset 200, size 250)
-				
-				Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds = localDatabase.getMultiChunkIdsByChecksums(fileChunks);
-				
-				for (ChunkChecksum chunkChecksum : fileChunks) {
-					MultiChunkId multiChunkIdForChunk = checksumsWithMultiChunkIds.get(chunkChecksum);
-					if (multiChunkIdForChunk == null) {
-						multiChunkIdForChunk = winnersDatabase.getMultiChunkIdForChunk(chunkChecksum);
-						
-						if (multiChunkIdForChunk == null) {
-							throw new RuntimeException("Cannot find multichunk for chunk "+chunkChecksum);	
-						}
-					}
-					
-					if (!multiChunksToDownload.contains(multiChunkIdForChunk)) {
-						logger.log(Level.INFO, "  + Adding multichunk " + multiChunkIdForChunk + " to download list ...");
-						multiChunksToDownload.add(multiChunkIdForChunk);
-					}
-				}
+		
+		if (fileContent == null) { // File can be empty!
+			return chunksToDownload;
+		}
+		
+		// Second: Look for the chunks in local files, and only download the missing ones
+		List<ChunkChecksum> fileChunks = fileContent.getChunks(); 
+		Set<ChunkChecksum> localChunks = localChunkLocator.locateChunks(fileChunks, excludedPaths);
+		
+		for (ChunkChecksum chunkChecksum : fileChunks) {
+			if (!localChunks.contains(chunkChecksum)) {
+				chunksToDownload.add(chunkChecksum);
 			}
 		}
 		
-		return multiChunksToDownload;
+		return chunksToDownload;
+	}
+	
+	private List<File> pinMultiChunks(Set<MultiChunkId> multiChunkIds) {
+		List<File> pinnedMultiChunkFiles = new ArrayList<File>();
+		
+		for (MultiChunkId multiChunkId : multiChunkIds) {
+			File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
+			
+			config.getCache().pin(decryptedMultiChunkFile);
+			pinnedMultiChunkFiles.add(decryptedMultiChunkFile);
+		}
+		
+		return pinnedMultiChunkFiles;
+	}
+	
+	private void unpinMultiChunks(List<File> pinnedMultiChunkFiles) {
+		for (File pinnedMultiChunkFile : pinnedMultiChunkFiles) {
+			config.getCache().unpin(pinnedMultiChunkFile);
+		}
 	}
 	
 	/**
 	 * Applies the given file system actions in a sensible order. To do that, 
 	 * the given actions are first sorted using the {@link FileSystemActionComparator} and
-	 * then executed individually using {@link FileSystemAction#execute()}.
+	 * then executed using the {@link FileSystemActionScheduler}, which runs independent 
+	 * file-creating actions concurrently.
 	 */
 	private void applyFileSystemActions(List<FileSystemAction> actions) throws Exception {
 		// Sort
 		FileSystemActionComparator actionComparator = new FileSystemActionComparator();
 		actionComparator.sort(actions);
 
-		logger.log(Level.FINER, "- Applying file system actions (sorted!) ...");
+		logger.log(Level.FINER, "- Applying file system actions (sorted!) using " + applyThreads + " thread(s) ...");
 
 		// Apply
-		for (FileSystemAction action : actions) {
-			if (logger.isLoggable(Level.FINER)) {
-				logger.log(Level.FINER, "   +  {0}", action);
-			}
-
-			// Execute the file system action
-			
-			// Note that exceptions are not caught here, to prevent 
-			// apply-failed-delete-on-up situations.
-			
-			action.execute(); 
-		}
+		
+		// Note that exceptions are not caught here, to prevent 
+		// apply-failed-delete-on-up situations.
+		
+		new FileSystemActionScheduler(applyThreads).execute(actions);
 	}
 }
@@ -21,8 +21,12 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -44,6 +48,9 @@ import org.syncany.database.dao.DatabaseXmlSerializer;
 import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseReadType;
 import org.syncany.operations.AbstractTransferOperation;
 import org.syncany.operations.cleanup.CleanupOperation;
+import org.syncany.operations.cleanup.DatabaseSegment;
+import org.syncany.operations.cleanup.DatabaseSegmentLayout;
+import org.syncany.operations.cleanup.DatabaseSegmentLayout.RepackedMultiChunks;
 import org.syncany.operations.daemon.messages.DownChangesDetectedSyncExternalEvent;
 import org.syncany.operations.daemon.messages.DownDownloadFileSyncExternalEvent;
 import org.syncany.operations.daemon.messages.DownEndSyncExternalEvent;
@@ -57,6 +64,7 @@ import org.syncany.plugins.transfer.StorageException;
 import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.plugins.transfer.files.CleanupRemoteFile;
 import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
+import org.syncany.plugins.transfer.files.SnapshotRemoteFile;
 
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
@@ -71,6 +79,9 @@ import com.google.common.collect.Sets.SetView;
  * <ol>
  *  <li>List all database versions on the remote storage using the {@link LsRemoteOperation}
  *      (implemented in {@link #listUnknownRemoteDatabases(MemoryDatabase, TransferManager) listUnknownRemoteDatabases()}</li>
+ *  <li>If the local database is empty and the last cleanup wrote a snapshot, download the snapshot
+ *      instead of the database files it covers (implemented in {@link #applySnapshot(Map) applySnapshot()});
+ *      the snapshot holds the full history, so all of its database versions are still applied and persisted</li>
  *  <li>Download unknown databases using a {@link TransferManager} (if any), skip the rest down otherwise
  *      (implemented in {@link #downloadUnknownRemoteDatabases(TransferManager, List) downloadUnknownRemoteDatabases()}</li>
  *  <li>Load remote database headers (branches) and compare them to the local database to determine a winner
@@ -79,7 +90,9 @@ import com.google.common.collect.Sets.SetView;
  *      local database versions (using {@link DatabaseReconciliator#findLosersPruneBranch(DatabaseBranch, DatabaseBranch)
  *      findLosersPruneBranch()})</li>
  *  <li>If the apply-changes-flag is switched on, changes are applied to the local file system using the
- *      {@link ApplyChangesOperation}.</li>
+ *      {@link ApplyChangesOperation}. Very large winner's branches are loaded and applied in batches to
+ *      limit the memory usage; batches only end at database file boundaries, so no database file is
+ *      parsed more than once because of it.</li>
  *  <li>Save local database and update known database list (database files that do not need to be
  *      downloaded anymore</li>
  * </ol>
@@ -148,16 +161,64 @@ public class DownOperation extends AbstractTransferOperation {
 		DatabaseBranch localBranch = localDatabase.getLocalDatabaseBranch();
 		List<DatabaseRemoteFile> newRemoteDatabases = result.getLsRemoteResult().getUnknownRemoteDatabases();
 
+		Map<String, CleanupRemoteFile> remoteCleanupFiles = getRemoteCleanupFiles();
+		boolean snapshotApplied = false;
+
+		if (localBranch.size() == 0 && options.isUseSnapshot() && getLastRemoteCleanupNumber(remoteCleanupFiles) > 0) {
+			List<DatabaseRemoteFile> snapshotDatabases = applySnapshot(remoteCleanupFiles);
+
+			if (snapshotDatabases.size() > 0) {
+				// Only the database files uploaded after the snapshot remain to be downloaded
+				newRemoteDatabases = new ArrayList<DatabaseRemoteFile>(newRemoteDatabases);
+				newRemoteDatabases.removeAll(snapshotDatabases);
+
+				localBranch = localDatabase.getLocalDatabaseBranch();
+				snapshotApplied = true;
+			}
+		}
+
+		boolean cleanupOccurred = cleanupOccurred(remoteCleanupFiles);
+
+		DatabaseSegmentLayout segmentLayout = null;
+		List<DatabaseRemoteFile> knownSegmentDatabases = new ArrayList<DatabaseRemoteFile>();
+
+		if (cleanupOccurred) {
+			segmentLayout = downloadConsecutiveSegmentLayout(remoteCleanupFiles);
+
+			if (segmentLayout != null) {
+				// Only download segments that are not entirely known already
+				knownSegmentDatabases = findKnownSegmentDatabases(segmentLayout);
+
+				newRemoteDatabases = new ArrayList<DatabaseRemoteFile>(newRemoteDatabases);
+				newRemoteDatabases.removeAll(knownSegmentDatabases);
+			}
+			else {
+				// Entire database will be deleted, so all remote databases have to be downloaded
+				newRemoteDatabases = new ArrayList<DatabaseRemoteFile>(transferManager.list(DatabaseRemoteFile.class).values());
+			}
+		}
+
 		SortedMap<File, DatabaseRemoteFile> unknownRemoteDatabasesInCache = downloadUnknownRemoteDatabases(newRemoteDatabases);
 		SortedMap<DatabaseRemoteFile, List<DatabaseVersion>> remoteDatabaseHeaders = readUnknownDatabaseVersionHeaders(unknownRemoteDatabasesInCache);
 		Map<DatabaseVersionHeader, File> databaseVersionLocations = findDatabaseVersionLocations(remoteDatabaseHeaders, unknownRemoteDatabasesInCache);
 
-		Map<String, CleanupRemoteFile> remoteCleanupFiles = getRemoteCleanupFiles();
-		boolean cleanupOccurred = cleanupOccurred(remoteCleanupFiles);
-
 		List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion = null;
+		List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion = null;
 
-		if (cleanupOccurred) {
+		if (cleanupOccurred && segmentLayout != null) {
+			logger.log(Level.INFO, "Cleanup occurred. Applying segment layout of cleanup to local database ...");
+
+			prePurgeFileHistoriesWithLastVersion = applySegmentLayout(segmentLayout, knownSegmentDatabases, remoteCleanupFiles);
+
+			// Like below, we have to commit here, because other connections (e.g. in the ApplyChangesOperation)
+			// would otherwise wait for the changed tables. Since the purge is idempotent, this is not a problem.
+			localDatabase.commit();
+
+			// Local database is updated, not replaced; continue like a regular down
+			localBranch = localDatabase.getLocalDatabaseBranch();
+			cleanupOccurred = false;
+		}
+		else if (cleanupOccurred) {
 			logger.log(Level.INFO, "Cleanup occurred. Capturing local file histories, then deleting entire database ...");
 
 			// Capture file histories
@@ -187,11 +248,17 @@ public class DownOperation extends AbstractTransferOperation {
 
 			purgeConflictingLocalBranch(localBranch, winnersBranch);
 			applyWinnersBranch(localBranch, winnersBranch, databaseVersionLocations, cleanupOccurred,
-					preDeleteFileHistoriesWithLastVersion);
+					preDeleteFileHistoriesWithLastVersion, prePurgeFileHistoriesWithLastVersion, true);
 
 			persistMuddyMultiChunks(winnersBranch, allBranches, databaseVersionLocations);
 			removeNonMuddyMultiChunks();
 
+			// Entities orphaned by the purge can only be removed now, because the
+			// new database versions might still reference them (e.g. deleted file versions)
+			if (segmentLayout != null && segmentLayout.hasPurgedFileVersions()) {
+				localDatabase.removeUnreferencedDatabaseEntities();
+			}
+
 			localDatabase.writeKnownRemoteDatabases(newRemoteDatabases);
 			localDatabase.commit();
 		}
@@ -200,6 +267,10 @@ public class DownOperation extends AbstractTransferOperation {
 			throw e;
 		}
 
+		if (snapshotApplied) {
+			result.setResultCode(DownResultCode.OK_WITH_REMOTE_CHANGES);
+		}
+
 		finishOperation();
 		fireEndEvent();
 
@@ -262,7 +333,7 @@ public class DownOperation extends AbstractTransferOperation {
 	 * Lists unknown/new remote databases using the {@link LsRemoteOperation}.
 	 */
 	private LsRemoteOperationResult listUnknownRemoteDatabases() throws Exception {
-		return new LsRemoteOperation(config, transferManager).execute();
+		return new LsRemoteOperation(config, transferManager, options.isUseChangeMarker()).execute();
 	}
 
 	/**
@@ -280,13 +351,19 @@ public class DownOperation extends AbstractTransferOperation {
 
 		for (DatabaseRemoteFile remoteFile : unknownRemoteDatabases) {
 			File unknownRemoteDatabaseFileInCache = config.getCache().getDatabaseFile(remoteFile.getName());
+			File prefetchedRemoteDatabaseFileInCache = config.getCache().getPrefetchedDatabaseFile(remoteFile.getName());
 			DatabaseRemoteFile unknownDatabaseRemoteFile = new DatabaseRemoteFile(remoteFile.getName());
 
-			logger.log(Level.INFO, "- Downloading {0} to local cache at {1}", new Object[] { remoteFile.getName(), unknownRemoteDatabaseFileInCache });
-			eventBus.post(new DownDownloadFileSyncExternalEvent(config.getLocalDir().getAbsolutePath(), "database", ++downloadFileIndex,
-					unknownRemoteDatabases.size()));
-
-			transferManager.download(unknownDatabaseRemoteFile, unknownRemoteDatabaseFileInCache);
+			if (usePrefetchedDatabaseFile(prefetchedRemoteDatabaseFileInCache, unknownRemoteDatabaseFileInCache)) {
+				logger.log(Level.INFO, "- Using prefetched {0} from local cache at {1}", new Object[] { remoteFile.getName(), unknownRemoteDatabaseFileInCache });
+			}
+			else {
+				logger.log(Level.INFO, "- Downloading {0} to local cache at {1}", new Object[] { remoteFile.getName(), unknownRemoteDatabaseFileInCache });
+				eventBus.post(new DownDownloadFileSyncExternalEvent(config.getLocalDir().getAbsolutePath(), "database", ++downloadFileIndex,
+						unknownRemoteDatabases.size()));
+	
+				transferManager.download(unknownDatabaseRemoteFile, unknownRemoteDatabaseFileInCache);
+			}
 
 			unknownRemoteDatabasesInCache.put(unknownRemoteDatabaseFileInCache, unknownDatabaseRemoteFile);
 			result.getDownloadedUnknownDatabases().add(remoteFile.getName());
@@ -295,6 +372,20 @@ public class DownOperation extends AbstractTransferOperation {
 		return unknownRemoteDatabasesInCache;
 	}
 
+	/**
+	 * Moves a database file prefetched by the {@link org.syncany.operations.watch.RemotePrefetcher RemotePrefetcher}
+	 * to its regular location in the cache. Returns <tt>false</tt> if the file has not been prefetched
+	 * or cannot be moved, i.e. if it has to be downloaded.
+	 */
+	private boolean usePrefetchedDatabaseFile(File prefetchedDatabaseFile, File databaseFile) {
+		if (!prefetchedDatabaseFile.exists()) {
+			return false;
+		}
+
+		databaseFile.delete();
+		return prefetchedDatabaseFile.renameTo(databaseFile);
+	}
+
 	/**
 	 * Read the given database files into individual per-user {@link DatabaseBranch}es. This method only
 	 * reads the headers from the local database files, and not the entire databases into memory.
@@ -342,17 +433,46 @@ public class DownOperation extends AbstractTransferOperation {
 
 		allBranches.put(config.getMachineName(), localBranch.clone());
 
+		// Headers of merged database files might already be known locally
+		Set<VectorClock> localVectorClocks = new HashSet<VectorClock>();
+
+		for (DatabaseVersionHeader localDatabaseVersionHeader : localBranch.getAll()) {
+			localVectorClocks.add(localDatabaseVersionHeader.getVectorClock());
+		}
+
+		Map<String, List<DatabaseVersionHeader>> remoteClientHeaders = new TreeMap<String, List<DatabaseVersionHeader>>();
+
 		for (DatabaseRemoteFile remoteDatabaseFile : remoteDatabaseHeaders.keySet()) {
+			List<DatabaseVersionHeader> clientHeaders = remoteClientHeaders.get(remoteDatabaseFile.getClientName());
 
-			// Populate branches
-			DatabaseBranch remoteClientBranch = allBranches.getBranch(remoteDatabaseFile.getClientName(), true);
+			if (clientHeaders == null) {
+				clientHeaders = new ArrayList<DatabaseVersionHeader>();
+				remoteClientHeaders.put(remoteDatabaseFile.getClientName(), clientHeaders);
+			}
 
 			for (DatabaseVersion remoteDatabaseVersion : remoteDatabaseHeaders.get(remoteDatabaseFile)) {
 				DatabaseVersionHeader header = remoteDatabaseVersion.getHeader();
-				remoteClientBranch.add(header);
+
+				if (!localVectorClocks.contains(header.getVectorClock())) {
+					clientHeaders.add(header);
+				}
 			}
 		}
 
+		// Populate branches; database files of a client are not necessarily in order, so sort by the client's version
+		for (final String remoteClientName : remoteClientHeaders.keySet()) {
+			List<DatabaseVersionHeader> clientHeaders = remoteClientHeaders.get(remoteClientName);
+
+			Collections.sort(clientHeaders, new Comparator<DatabaseVersionHeader>() {
+				@Override
+				public int compare(DatabaseVersionHeader header1, DatabaseVersionHeader header2) {
+					return Long.compare(header1.getVectorClock().getClock(remoteClientName), header2.getVectorClock().getClock(remoteClientName));
+				}
+			});
+
+			allBranches.getBranch(remoteClientName, true).addAll(clientHeaders);
+		}
+
 		logger.log(Level.INFO, "Populated unknown branches: " + allBranches);
 		return allBranches;
 	}
@@ -433,40 +553,103 @@ public class DownOperation extends AbstractTransferOperation {
 	 * and applies these actions locally.
 	 * @param cleanupOccurred
 	 * @param preDeleteFileHistoriesWithLastVersion
+	 * @param splitAllowed Whether the branch may be applied in batches (see {@link #splitWinnersApplyBranch(DatabaseBranch, Map, boolean)})
 	 */
 	private void applyWinnersBranch(DatabaseBranch localBranch, Entry<String, DatabaseBranch> winnersBranch,
 			Map<DatabaseVersionHeader, File> databaseVersionLocations, boolean cleanupOccurred,
-			List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion) throws Exception {
+			List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion, List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion,
+			boolean splitAllowed) throws Exception {
 
 		DatabaseBranch winnersApplyBranch = databaseReconciliator.findWinnersApplyBranch(localBranch, winnersBranch.getValue());
 
 		logger.log(Level.INFO, "- Cleanup occurred: " + cleanupOccurred);
 		logger.log(Level.INFO, "- Database versions to APPLY locally: " + winnersApplyBranch);
 
-		boolean remoteChangesOccurred = winnersApplyBranch.size() > 0 || cleanupOccurred;
+		boolean remoteChangesOccurred = winnersApplyBranch.size() > 0 || cleanupOccurred || prePurgeFileHistoriesWithLastVersion != null;
 
 		if (!remoteChangesOccurred) {
 			logger.log(Level.WARNING, "  + Nothing to update. Nice!");
 			result.setResultCode(DownResultCode.OK_NO_REMOTE_CHANGES);
 		}
 		else {
-			logger.log(Level.INFO, "Loading winners database (DEFAULT) ...");
-			MemoryDatabase winnersDatabase = readWinnersDatabase(winnersApplyBranch, databaseVersionLocations);
+			boolean splitBranch = splitAllowed && !cleanupOccurred && prePurgeFileHistoriesWithLastVersion == null;
+			List<DatabaseBranch> winnersApplyBatches = splitWinnersApplyBranch(winnersApplyBranch, databaseVersionLocations, splitBranch);
 
-			if (options.isApplyChanges()) {
-				new ApplyChangesOperation(config, localDatabase, transferManager, winnersDatabase, result, cleanupOccurred,
-						preDeleteFileHistoriesWithLastVersion).execute();
-			}
-			else {
-				logger.log(Level.INFO, "Doing nothing on the file system, because --no-apply switched on");
-			}
+			for (int i = 0; i < winnersApplyBatches.size(); i++) {
+				DatabaseBranch winnersApplyBatch = winnersApplyBatches.get(i);
 
-			persistDatabaseVersions(winnersApplyBranch, winnersDatabase);
+				logger.log(Level.INFO, "Loading winners database (DEFAULT), batch " + (i + 1) + "/" + winnersApplyBatches.size() + " ...");
+				MemoryDatabase winnersDatabase = readWinnersDatabase(winnersApplyBatch, databaseVersionLocations);
+
+				if (options.isApplyChanges()) {
+					new ApplyChangesOperation(config, localDatabase, transferManager, winnersDatabase, result, cleanupOccurred,
+							preDeleteFileHistoriesWithLastVersion, prePurgeFileHistoriesWithLastVersion, options.getApplyThreads()).execute();
+				}
+				else {
+					logger.log(Level.INFO, "Doing nothing on the file system, because --no-apply switched on");
+				}
+
+				persistDatabaseVersions(winnersApplyBatch, winnersDatabase);
+			}
 
 			result.setResultCode(DownResultCode.OK_WITH_REMOTE_CHANGES);
 		}
 	}
 
+	/**
+	 * Splits the winner's apply branch into consecutive batches of roughly
+	 * {@link DownOperationOptions#getApplyBatchSize()} database versions. Each batch is loaded,
+	 * applied and persisted to the local database before the next batch is loaded, so that
+	 * only one batch has to be held in memory at a time. The local database acts as the staging
+	 * area between the batches: Applying a batch is equivalent to a separate down operation
+	 * that only sees the database versions up to this batch.
+	 *
+	 * <p>A batch is only ended where the next database version is stored in a different database
+	 * file than the previous one. That way, splitting the branch never causes a database file to
+	 * be parsed more often than when loading the branch at once (see {@link #readWinnersDatabase(DatabaseBranch, Map)}).
+	 * A database file that contains many database versions (e.g. after a cleanup merged them) is
+	 * therefore always loaded as a whole, even if it exceeds the batch size.
+	 *
+	 * <p>If a cleanup or purge occurred, the file system actions are determined by comparing
+	 * the complete winner's branch with the local state before the cleanup. In this case, the
+	 * branch is never split. Snapshots are never split either, because all their database versions
+	 * are stored in a single file.
+	 */
+	private List<DatabaseBranch> splitWinnersApplyBranch(DatabaseBranch winnersApplyBranch, Map<DatabaseVersionHeader, File> databaseVersionLocations,
+			boolean splitAllowed) {
+
+		List<DatabaseBranch> winnersApplyBatches = new ArrayList<DatabaseBranch>();
+		int batchSize = options.getApplyBatchSize();
+
+		if (!splitAllowed || batchSize <= 0 || winnersApplyBranch.size() <= batchSize) {
+			winnersApplyBatches.add(winnersApplyBranch);
+			return winnersApplyBatches;
+		}
+
+		DatabaseBranch winnersApplyBatch = new DatabaseBranch();
+		File previousDatabaseVersionFile = null;
+
+		for (DatabaseVersionHeader databaseVersionHeader : winnersApplyBranch.getAll()) {
+			File databaseVersionFile = databaseVersionLocations.get(databaseVersionHeader);
+			boolean databaseFileBoundary = previousDatabaseVersionFile == null || !previousDatabaseVersionFile.equals(databaseVersionFile);
+
+			if (winnersApplyBatch.size() >= batchSize && databaseFileBoundary) {
+				winnersApplyBatches.add(winnersApplyBatch);
+				winnersApplyBatch = new DatabaseBranch();
+			}
+
+			winnersApplyBatch.add(databaseVersionHeader);
+			previousDatabaseVersionFile = databaseVersionFile;
+		}
+
+		winnersApplyBatches.add(winnersApplyBatch);
+
+		logger.log(Level.INFO, "- Winners branch too large, applying it in " + winnersApplyBatches.size() + " batches of approx. " + batchSize
+				+ " database versions.");
+
+		return winnersApplyBatches;
+	}
+
 	/**
 	 * Loads the winner's database branch into the memory in a {@link MemoryDatabase} object, by using
 	 * the already downloaded list of remote database files.
@@ -551,6 +734,8 @@ public class DownOperation extends AbstractTransferOperation {
 
 			if (rangeEnds) {
 				databaseSerializer.load(winnerBranchDatabase, databaseVersionFile, rangeVersionFrom, rangeVersionTo, DatabaseReadType.FULL);
+				result.setDatabaseFileLoadCount(result.getDatabaseFileLoadCount() + 1);
+
 				rangeClientName = null;
 			}
 		}
@@ -685,6 +870,176 @@ public class DownOperation extends AbstractTransferOperation {
 		return databaseVersionLocations;
 	}
 
+	/**
+	 * Downloads the segment layout of the last remote cleanup, if this cleanup directly follows the last
+	 * locally known cleanup. If other cleanups happened in between, or the cleanup file does not contain a
+	 * layout, <tt>null</tt> is returned and the local database has to be rebuilt from all remote databases.
+	 */
+	private DatabaseSegmentLayout downloadConsecutiveSegmentLayout(Map<String, CleanupRemoteFile> remoteCleanupFiles) {
+		long lastRemoteCleanupNumber = getLastRemoteCleanupNumber(remoteCleanupFiles);
+		Long lastLocalCleanupNumber = localDatabase.getCleanupNumber();
+
+		if (lastRemoteCleanupNumber != ((lastLocalCleanupNumber != null) ? lastLocalCleanupNumber : 0) + 1) {
+			logger.log(Level.INFO, "- Cleanup number skipped (local " + lastLocalCleanupNumber + ", remote " + lastRemoteCleanupNumber
+					+ "); not using segment layout.");
+			return null;
+		}
+
+		return downloadSegmentLayout(lastRemoteCleanupNumber);
+	}
+
+	/**
+	 * Returns the database segments written by the last cleanup whose replaced database files are all
+	 * known locally. Since they do not contain anything new, these segments do not need to be downloaded.
+	 */
+	private List<DatabaseRemoteFile> findKnownSegmentDatabases(DatabaseSegmentLayout segmentLayout) throws StorageException {
+		Set<DatabaseRemoteFile> knownDatabases = new HashSet<DatabaseRemoteFile>(localDatabase.getKnownDatabases());
+		List<DatabaseRemoteFile> knownSegmentDatabases = new ArrayList<DatabaseRemoteFile>();
+
+		for (DatabaseSegment segment : segmentLayout.getSegments()) {
+			boolean allReplacedDatabasesKnown = segment.getReplacedDatabaseNames().size() > 0;
+
+			for (String replacedDatabaseName : segment.getReplacedDatabaseNames()) {
+				allReplacedDatabasesKnown &= knownDatabases.contains(new DatabaseRemoteFile(replacedDatabaseName));
+			}
+
+			if (allReplacedDatabasesKnown) {
+				logger.log(Level.INFO, "- Segment " + segment.getName() + " only contains known databases. Skipping download.");
+				knownSegmentDatabases.add(segment.getRemoteFile());
+			}
+		}
+
+		return knownSegmentDatabases;
+	}
+
+	/**
+	 * Applies the changes of the last cleanup to the local database, instead of deleting and re-downloading the
+	 * entire database: The file versions purged by the cleanup are removed locally, repacked multichunks are replaced
+	 * by their new multichunks, the database files replaced by the cleanup are forgotten and the given already known
+	 * segments are remembered. Entities that are no longer referenced after the purge are removed after the winners
+	 * branch has been applied.
+	 *
+	 * @return Local file histories (with their last version) before the purge, or <tt>null</tt> if nothing was purged
+	 */
+	private List<PartialFileHistory> applySegmentLayout(DatabaseSegmentLayout segmentLayout, List<DatabaseRemoteFile> knownSegmentDatabases,
+			Map<String, CleanupRemoteFile> remoteCleanupFiles) throws Exception {
+
+		List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion = null;
+
+		if (segmentLayout.hasPurgedFileVersions()) {
+			logger.log(Level.INFO, "- Removing file versions purged by cleanup ...");
+
+			prePurgeFileHistoriesWithLastVersion = localDatabase.getFileHistoriesWithLastVersion();
+
+			localDatabase.removeSmallerOrEqualFileVersions(segmentLayout.getPurgeBeforeFileVersions());
+			localDatabase.removeFileVersions(segmentLayout.getPurgeFileVersions());
+		}
+
+		for (RepackedMultiChunks repackedMultiChunks : segmentLayout.getRepackedMultiChunks()) {
+			logger.log(Level.INFO, "- Replacing multichunks " + repackedMultiChunks.getOldMultiChunkIds() + " repacked by cleanup ...");
+			localDatabase.replaceMultiChunks(repackedMultiChunks.getOldMultiChunkIds(), repackedMultiChunks.getNewMultiChunks());
+		}
+
+		List<DatabaseRemoteFile> knownDatabases = localDatabase.getKnownDatabases();
+
+		for (DatabaseSegment segment : segmentLayout.getSegments()) {
+			for (String replacedDatabaseName : segment.getReplacedDatabaseNames()) {
+				knownDatabases.remove(new DatabaseRemoteFile(replacedDatabaseName));
+			}
+		}
+
+		knownDatabases.addAll(knownSegmentDatabases);
+
+		localDatabase.removeKnownDatabases();
+		localDatabase.writeKnownRemoteDatabases(knownDatabases);
+
+		// Set last cleanup values
+		localDatabase.writeCleanupNumber(getLastRemoteCleanupNumber(remoteCleanupFiles));
+		localDatabase.writeCleanupTime(System.currentTimeMillis() / 1000);
+
+		return prePurgeFileHistoriesWithLastVersion;
+	}
+
+	/**
+	 * Bootstraps an empty local database from the snapshot written by the last cleanup: The snapshot is
+	 * downloaded and applied like a single database file containing the entire winner's branch, and the database
+	 * files covered by the snapshot are remembered as known. Afterwards, only the database files uploaded after the
+	 * cleanup have to be downloaded and applied.
+	 *
+	 * <p>The snapshot is not compacted: It contains every database version of the history, which are applied
+	 * and persisted one by one just like the versions of regular database files. Using it replaces many database
+	 * file downloads by a single one, but it does not reduce the work of loading and applying the history.
+	 *
+	 * <p>If the last cleanup did not write a snapshot, or the snapshot cannot be used for any reason, nothing is
+	 * changed and the regular down operation downloads all remote database files.
+	 *
+	 * @return Returns the remote database files covered by the applied snapshot, or an empty list if no snapshot was applied
+	 */
+	private List<DatabaseRemoteFile> applySnapshot(Map<String, CleanupRemoteFile> remoteCleanupFiles) throws Exception {
+		long lastRemoteCleanupNumber = getLastRemoteCleanupNumber(remoteCleanupFiles);
+		DatabaseSegmentLayout segmentLayout = downloadSegmentLayout(lastRemoteCleanupNumber);
+
+		if (segmentLayout == null || !segmentLayout.hasSnapshot()) {
+			logger.log(Level.INFO, "- No snapshot for cleanup " + lastRemoteCleanupNumber + ". Downloading all remote databases.");
+			return new ArrayList<DatabaseRemoteFile>();
+		}
+
+		SnapshotRemoteFile snapshotRemoteFile = new SnapshotRemoteFile(lastRemoteCleanupNumber);
+		File snapshotFile = config.getCache().getDatabaseFile(snapshotRemoteFile.getName());
+		MemoryDatabase snapshotHeaders = new MemoryDatabase();
+
+		try {
+			logger.log(Level.INFO, "- Downloading {0} to local cache at {1}", new Object[] { snapshotRemoteFile.getName(), snapshotFile });
+			eventBus.post(new DownDownloadFileSyncExternalEvent(config.getLocalDir().getAbsolutePath(), "snapshot", 1, 1));
+
+			transferManager.download(snapshotRemoteFile, snapshotFile);
+			databaseSerializer.load(snapshotHeaders, snapshotFile, null, null, DatabaseReadType.HEADER_ONLY);
+		}
+		catch (StorageException | IOException e) {
+			logger.log(Level.WARNING, "- Cannot download snapshot of cleanup " + lastRemoteCleanupNumber + ". Downloading all remote databases.", e);
+			return new ArrayList<DatabaseRemoteFile>();
+		}
+
+		// The snapshot contains a single linear branch
+		DatabaseBranch snapshotBranch = new DatabaseBranch();
+		Map<DatabaseVersionHeader, File> snapshotVersionLocations = new HashMap<DatabaseVersionHeader, File>();
+
+		for (DatabaseVersion snapshotDatabaseVersion : snapshotHeaders.getDatabaseVersions()) {
+			snapshotBranch.add(snapshotDatabaseVersion.getHeader());
+			snapshotVersionLocations.put(snapshotDatabaseVersion.getHeader(), snapshotFile);
+		}
+
+		if (snapshotBranch.size() == 0 || !snapshotBranch.getLast().getVectorClock().equals(segmentLayout.getSnapshotVectorClock())) {
+			logger.log(Level.WARNING, "- Snapshot does not match segment layout of cleanup " + lastRemoteCleanupNumber + ". Ignoring snapshot.");
+			return new ArrayList<DatabaseRemoteFile>();
+		}
+
+		logger.log(Level.INFO, "Applying snapshot of cleanup " + lastRemoteCleanupNumber + " (" + snapshotBranch.size() + " database versions) ...");
+
+		Entry<String, DatabaseBranch> snapshotWinnersBranch = new AbstractMap.SimpleEntry<String, DatabaseBranch>(snapshotBranch.getLast()
+				.getClient(), snapshotBranch);
+
+		try {
+			// Loaded in one pass; splitting would re-parse the entire snapshot for every batch
+			applyWinnersBranch(new DatabaseBranch(), snapshotWinnersBranch, snapshotVersionLocations, false, null, null, false);
+
+			List<DatabaseRemoteFile> snapshotDatabases = segmentLayout.getSnapshotDatabases();
+
+			localDatabase.writeKnownRemoteDatabases(snapshotDatabases);
+			localDatabase.writeCleanupNumber(lastRemoteCleanupNumber);
+			localDatabase.writeCleanupTime(System.currentTimeMillis() / 1000);
+			localDatabase.commit();
+
+			result.getDownloadedUnknownDatabases().add(snapshotRemoteFile.getName());
+
+			return snapshotDatabases;
+		}
+		catch (Exception e) {
+			localDatabase.rollback();
+			throw e;
+		}
+	}
+
 	private Map<String, CleanupRemoteFile> getRemoteCleanupFiles() throws StorageException {
 		return transferManager.list(CleanupRemoteFile.class);
 	}
@@ -30,6 +30,17 @@ public class DownOperationOptions implements OperationOptions {
 	
 	@Element(required = false)
 	private boolean applyChanges = true;
+	
+	@Element(required = false)
+	private int applyThreads = 1;
+	
+	@Element(required = false)
+	private int applyBatchSize = 500;
+
+	@Element(required = false)
+	private boolean useSnapshot = true;
+
+	private boolean useChangeMarker = false;
 
 	public DownConflictStrategy getConflictStrategy() {
 		return conflictStrategy;
@@ -45,5 +56,61 @@ public class DownOperationOptions implements OperationOptions {
 
 	public void setApplyChanges(boolean applyChanges) {
 		this.applyChanges = applyChanges;
-	}		
+	}
+
+	/**
+	 * Returns the number of threads used to apply file system actions. By default, actions
+	 * are applied sequentially; concurrent apply must be enabled explicitly (e.g. in the
+	 * watch options of a daemon folder).
+	 */
+	public int getApplyThreads() {
+		return applyThreads;
+	}
+
+	public void setApplyThreads(int applyThreads) {
+		this.applyThreads = applyThreads;
+	}
+
+	/**
+	 * Returns the approximate number of winning database versions that are loaded into
+	 * memory, applied and persisted at once. A value of 0 loads all of them at once.
+	 *
+	 * <p>Batches only end at database file boundaries, so a single database file with
+	 * more database versions is still loaded at once. Note that the intermediate state
+	 * after each batch is applied to the local folder and database, so multichunks may be
+	 * downloaded for files that a later batch changes or deletes.
+	 */
+	public int getApplyBatchSize() {
+		return applyBatchSize;
+	}
+
+	public void setApplyBatchSize(int applyBatchSize) {
+		this.applyBatchSize = applyBatchSize;
+	}
+
+	/**
+	 * Returns whether a client without any local database versions downloads the snapshot
+	 * written by the last cleanup (if any), instead of downloading all remote database
+	 * files individually. All database versions in the snapshot are still applied.
+	 */
+	public boolean isUseSnapshot() {
+		return useSnapshot;
+	}
+
+	public void setUseSnapshot(boolean useSnapshot) {
+		this.useSnapshot = useSnapshot;
+	}
+
+	/**
+	 * Returns whether listing the remote databases is skipped if the remote change
+	 * marker has not changed (see {@link org.syncany.operations.ls_remote.LsRemoteOperation LsRemoteOperation}).
+	 * This is only set by the sync loop of the watch operation, and cannot be configured.
+	 */
+	public boolean isUseChangeMarker() {
+		return useChangeMarker;
+	}
+
+	public void setUseChangeMarker(boolean useChangeMarker) {
+		this.useChangeMarker = useChangeMarker;
+	}
 }
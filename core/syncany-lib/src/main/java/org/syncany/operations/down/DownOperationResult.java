@@ -38,6 +38,9 @@ public class DownOperationResult implements OperationResult {
 	private List<DatabaseVersionHeader> dirtyDatabasesCreated = new ArrayList<DatabaseVersionHeader>();
 	private Set<String> downloadedUnknownDatabases = new HashSet<String>();
 	private Set<MultiChunkId> downloadedMultiChunks = new HashSet<MultiChunkId>();
+	private long plannedDownloadSize = 0;
+	private long naiveDownloadSize = 0;
+	private int databaseFileLoadCount = 0;
 	private LsRemoteOperationResult lsRemoteResult = null;
 
 	public DownResultCode getResultCode() {
@@ -80,6 +83,43 @@ public class DownOperationResult implements OperationResult {
 		this.downloadedMultiChunks = downloadedMultiChunks;
 	}
 
+	/**
+	 * Returns the number of multichunk bytes downloaded, as planned by the
+	 * {@link org.syncany.operations.MultiChunkDownloadPlanner MultiChunkDownloadPlanner}.
+	 */
+	public long getPlannedDownloadSize() {
+		return plannedDownloadSize;
+	}
+
+	public void setPlannedDownloadSize(long plannedDownloadSize) {
+		this.plannedDownloadSize = plannedDownloadSize;
+	}
+
+	/**
+	 * Returns the number of multichunk bytes that would have been downloaded
+	 * without planning, i.e. using the first known multichunk for each chunk.
+	 */
+	public long getNaiveDownloadSize() {
+		return naiveDownloadSize;
+	}
+
+	public void setNaiveDownloadSize(long naiveDownloadSize) {
+		this.naiveDownloadSize = naiveDownloadSize;
+	}
+
+	/**
+	 * Returns how often database files were parsed to load the database
+	 * versions of the winner's branch (one load per consecutive range of
+	 * database versions in the same file).
+	 */
+	public int getDatabaseFileLoadCount() {
+		return databaseFileLoadCount;
+	}
+
+	public void setDatabaseFileLoadCount(int databaseFileLoadCount) {
+		this.databaseFileLoadCount = databaseFileLoadCount;
+	}
+
 	public LsRemoteOperationResult getLsRemoteResult() {
 		return lsRemoteResult;
 	}
@@ -198,25 +198,61 @@ public class FileSystemActionReconciliator {
 		
 		if (cleanupOccurred) {
 			logger.log(Level.INFO, "- Determine filesystem actions (for deleted histories in winner's branch)...");
-			Map<FileHistoryId, FileVersion> winnerFileHistoryIdCache = fillFileHistoryIdCache(winnersDatabase.getFileHistories());
-	
-			for (PartialFileHistory localFileHistoryWithLastVersion : localFileHistoriesWithLastVersion) {
-				boolean localFileHistoryInWinnersDatabase = winnerFileHistoryIdCache.get(localFileHistoryWithLastVersion.getFileHistoryId()) != null;
-				
-				// If the file history is also present in the winner's database, it
-				// has already been processed above. So we'll ignore it here.
-				
-				if (!localFileHistoryInWinnersDatabase) {
-					FileVersion localLastVersion = localFileHistoryWithLastVersion.getLastVersion();
-					File localLastFile = (localLastVersion != null) ? new File(config.getLocalDir(), localLastVersion.getPath()) : null;
+			determineActionsFileHistoriesNotInWinnerBranch(winnersDatabase, localFileHistoriesWithLastVersion, fileSystemActions);
+		}
+			
+		return fileSystemActions;
+	}
 	
-					determineActionFileHistoryNotInWinnerBranch(localLastVersion, localLastFile, fileSystemActions);
-				}
+	/**
+	 * Determines the file system actions after a remote cleanup has been applied to the local database by
+	 * purging file versions (instead of rebuilding the entire database). Since the purge might have removed
+	 * the local last versions, the winner's database is compared to the file histories as they were before
+	 * the purge. File histories that were entirely removed by the purge and that are not part of the winner's
+	 * database are assumed to be deleted.
+	 * 
+	 * @param winnersDatabase Database versions to be applied locally
+	 * @param prePurgeFileHistoriesWithLastVersion Local file histories (with their last version) before the purge
+	 */
+	public List<FileSystemAction> determineFileSystemActionsAfterPurge(MemoryDatabase winnersDatabase,
+			List<PartialFileHistory> prePurgeFileHistoriesWithLastVersion) throws Exception {
+		
+		List<FileSystemAction> fileSystemActions = determineFileSystemActions(winnersDatabase, false, prePurgeFileHistoriesWithLastVersion);
+		Map<FileHistoryId, FileVersion> localFileHistoryIdCache = fillFileHistoryIdCache(localDatabase.getFileHistoriesWithLastVersion());
+		
+		List<PartialFileHistory> purgedFileHistoriesWithLastVersion = new ArrayList<PartialFileHistory>();
+		
+		for (PartialFileHistory prePurgeFileHistory : prePurgeFileHistoriesWithLastVersion) {
+			if (!localFileHistoryIdCache.containsKey(prePurgeFileHistory.getFileHistoryId())) {
+				purgedFileHistoriesWithLastVersion.add(prePurgeFileHistory);
 			}
 		}
-			
+		
+		logger.log(Level.INFO, "- Determine filesystem actions (for histories purged by cleanup)...");
+		determineActionsFileHistoriesNotInWinnerBranch(winnersDatabase, purgedFileHistoriesWithLastVersion, fileSystemActions);
+		
 		return fileSystemActions;
 	}
+	
+	private void determineActionsFileHistoriesNotInWinnerBranch(MemoryDatabase winnersDatabase,
+			List<PartialFileHistory> localFileHistoriesWithLastVersion, List<FileSystemAction> fileSystemActions) {
+		
+		Map<FileHistoryId, FileVersion> winnerFileHistoryIdCache = fillFileHistoryIdCache(winnersDatabase.getFileHistories());
+
+		for (PartialFileHistory localFileHistoryWithLastVersion : localFileHistoriesWithLastVersion) {
+			boolean localFileHistoryInWinnersDatabase = winnerFileHistoryIdCache.get(localFileHistoryWithLastVersion.getFileHistoryId()) != null;
+			
+			// If the file history is also present in the winner's database, it
+			// has already been processed above. So we'll ignore it here.
+			
+			if (!localFileHistoryInWinnersDatabase) {
+				FileVersion localLastVersion = localFileHistoryWithLastVersion.getLastVersion();
+				File localLastFile = (localLastVersion != null) ? new File(config.getLocalDir(), localLastVersion.getPath()) : null;
+
+				determineActionFileHistoryNotInWinnerBranch(localLastVersion, localLastFile, fileSystemActions);
+			}
+		}
+	}
 
 	private void determineActionNoLocalLastVersion(FileVersion winningLastVersion, File winningLastFile, MemoryDatabase winnersDatabase,
 			List<FileSystemAction> outFileSystemActions) throws Exception {
@@ -0,0 +1,237 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.down;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.operations.down.actions.ChangeFileSystemAction;
+import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.NewFileSystemAction;
+
+/**
+ * Executes a list of file system actions that has been sorted by the {@link FileSystemActionComparator}.
+ * Consecutive actions that create or change regular files are executed concurrently on a bounded
+ * thread pool, because assembling and moving a file is independent of all other files. All other
+ * actions (deletions, renames, folders, symlinks) act as barriers: They are only executed after all
+ * previous actions have finished, and before any of the following actions start.
+ *
+ * <p>Two concurrent actions never touch the same path, or a path and one of its parent folders
+ * (compared case-insensitively). If an action conflicts with a previous action of the current
+ * stage, a new stage is started. That way, conflict files are created exactly as if the actions
+ * were executed one by one.
+ *
+ * <p>Like the sequential execution, the scheduler does not catch exceptions thrown by the actions:
+ * If an action fails, no further actions are started, and the exception is rethrown as soon as the
+ * running actions have finished.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class FileSystemActionScheduler {
+	private static final Logger logger = Logger.getLogger(FileSystemActionScheduler.class.getSimpleName());
+
+	private int threads;
+
+	public FileSystemActionScheduler(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Executes the given (sorted!) file system actions, running independent file-creating
+	 * actions concurrently.
+	 */
+	public void execute(List<FileSystemAction> actions) throws Exception {
+		if (threads == 1) {
+			executeSequentially(actions);
+			return;
+		}
+
+		ExecutorService actionPool = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<FileSystemAction> stage = new ArrayList<FileSystemAction>();
+			Set<String> stagePaths = new HashSet<String>();
+			Set<String> stageParentPaths = new HashSet<String>();
+
+			for (FileSystemAction action : actions) {
+				if (isConcurrent(action) && !conflictsWithStage(action, stagePaths, stageParentPaths)) {
+					addToStage(action, stage, stagePaths, stageParentPaths);
+				}
+				else {
+					executeStage(actionPool, stage);
+
+					stage.clear();
+					stagePaths.clear();
+					stageParentPaths.clear();
+
+					if (isConcurrent(action)) {
+						addToStage(action, stage, stagePaths, stageParentPaths);
+					}
+					else {
+						executeAction(action);
+					}
+				}
+			}
+
+			executeStage(actionPool, stage);
+		}
+		finally {
+			actionPool.shutdownNow();
+		}
+	}
+
+	private void executeSequentially(List<FileSystemAction> actions) throws Exception {
+		for (FileSystemAction action : actions) {
+			executeAction(action);
+		}
+	}
+
+	private void executeStage(ExecutorService actionPool, List<FileSystemAction> stage) throws Exception {
+		if (stage.size() <= 1) {
+			executeSequentially(stage);
+			return;
+		}
+
+		logger.log(Level.FINE, "   + Executing {0} file system actions concurrently ...", stage.size());
+
+		final AtomicBoolean stageFailed = new AtomicBoolean(false);
+		List<Future<Void>> actionFutures = new ArrayList<Future<Void>>();
+
+		for (final FileSystemAction action : stage) {
+			actionFutures.add(actionPool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					if (!stageFailed.get()) { // Do not start any new actions after a failure
+						try {
+							executeAction(action);
+						}
+						catch (Exception e) {
+							stageFailed.set(true);
+							throw e;
+						}
+					}
+					
+					return null;
+				}
+			}));
+		}
+
+		// Wait for all actions, and rethrow the first exception 
+		Exception firstException = null;
+
+		for (Future<Void> actionFuture : actionFutures) {
+			try {
+				actionFuture.get();
+			}
+			catch (ExecutionException e) {
+				if (firstException == null) {
+					firstException = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : new Exception(e.getCause());
+				}
+			}
+		}
+
+		if (firstException != null) {
+			throw firstException;
+		}
+	}
+
+	private void executeAction(FileSystemAction action) throws Exception {
+		if (logger.isLoggable(Level.FINER)) {
+			logger.log(Level.FINER, "   +  {0}", action);
+		}
+
+		action.execute();
+	}
+
+	/**
+	 * Returns whether the given action may run concurrently to other actions. Only
+	 * new/changed regular files qualify; creating them does not affect any other path
+	 * (except for creating missing parent folders).
+	 */
+	private boolean isConcurrent(FileSystemAction action) {
+		boolean isNewOrChangeAction = action instanceof NewFileSystemAction || action instanceof ChangeFileSystemAction;
+		boolean isRegularFile = action.getFile2() != null && action.getFile2().getType() == FileType.FILE
+				&& (action.getFile1() == null || action.getFile1().getType() == FileType.FILE);
+
+		return isNewOrChangeAction && isRegularFile;
+	}
+
+	private boolean conflictsWithStage(FileSystemAction action, Set<String> stagePaths, Set<String> stageParentPaths) {
+		for (String path : getActionPaths(action)) {
+			if (stagePaths.contains(path) || stageParentPaths.contains(path)) {
+				return true;
+			}
+
+			for (String parentPath : getParentPaths(path)) {
+				if (stagePaths.contains(parentPath)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private void addToStage(FileSystemAction action, List<FileSystemAction> stage, Set<String> stagePaths, Set<String> stageParentPaths) {
+		for (String path : getActionPaths(action)) {
+			stagePaths.add(path);
+			stageParentPaths.addAll(getParentPaths(path));
+		}
+
+		stage.add(action);
+	}
+
+	private List<String> getActionPaths(FileSystemAction action) {
+		List<String> actionPaths = new ArrayList<String>();
+
+		if (action.getFile1() != null) {
+			actionPaths.add(action.getFile1().getPath().toLowerCase());
+		}
+
+		if (action.getFile2() != null) {
+			actionPaths.add(action.getFile2().getPath().toLowerCase());
+		}
+
+		return actionPaths;
+	}
+
+	private List<String> getParentPaths(String path) {
+		List<String> parentPaths = new ArrayList<String>();
+		int lastSlashIndex = path.lastIndexOf('/');
+
+		while (lastSlashIndex > 0) {
+			path = path.substring(0, lastSlashIndex);
+			parentPaths.add(path);
+
+			lastSlashIndex = path.lastIndexOf('/');
+		}
+
+		return parentPaths;
+	}
+}
@@ -17,6 +17,7 @@
  */
 package org.syncany.operations.down.actions;
 
+import java.io.File;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
@@ -45,15 +46,20 @@ public class ChangeFileSystemAction extends FileCreatingFileSystemAction {
 			if (!toFileExists) {
 				logger.log(Level.INFO, "     - (1) Original file matches, target file does NOT match: deleting original file, creating target file at: "+fileVersion2);
 				
+				// Assemble first, so the original file can still be used as chunk source
+				File reconstructedFileInCache = assembleFileToCacheIfRequired(fileVersion2);
+				
 				deleteFile(fileVersion1);	
-				createFileFolderOrSymlink(fileVersion2);						
+				createFileFolderOrSymlink(fileVersion2, reconstructedFileInCache);						
 			}
 			else {
 				logger.log(Level.INFO, "     - (2) Original file matches, target file does NOT match (EXISTS!): deleting original file, creating conflict file and creating target file at: "+fileVersion2);
 				
+				File reconstructedFileInCache = assembleFileToCacheIfRequired(fileVersion2);
+				
 				deleteFile(fileVersion1);	
 				moveToConflictFile(fileVersion2);
-				createFileFolderOrSymlink(fileVersion2);										
+				createFileFolderOrSymlink(fileVersion2, reconstructedFileInCache);										
 			}				
 		}
 		else if (fromFileMatches && toFileMatches) {
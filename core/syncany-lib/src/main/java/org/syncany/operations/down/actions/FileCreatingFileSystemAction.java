@@ -26,12 +26,56 @@ import org.syncany.database.FileVersion.FileType;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.Assembler;
+import org.syncany.operations.Downloader;
+import org.syncany.operations.LocalChunkLocator;
+import org.syncany.operations.MultiChunkDownloadPlanner;
 import org.syncany.util.NormalizedPath;
 
 public abstract class FileCreatingFileSystemAction extends FileSystemAction {
+	private LocalChunkLocator localChunkLocator;
+	private MultiChunkDownloadPlanner multiChunkDownloadPlanner;
+	private Downloader downloader;
+	private SqlDatabase localDatabase;
+	
 	public FileCreatingFileSystemAction(Config config, MemoryDatabase winningDatabase, FileVersion file1, FileVersion file2) {
 		super(config, winningDatabase, file1, file2);				
 	}
+	
+	/**
+	 * Sets the chunk locator used to read chunks from local files when assembling 
+	 * the target file. If no locator is set, all chunks are read from multichunks.
+	 */
+	public void setLocalChunkLocator(LocalChunkLocator localChunkLocator) {
+		this.localChunkLocator = localChunkLocator;
+	}
+	
+	/**
+	 * Sets the download planner whose planned multichunks are used to read chunks 
+	 * when assembling the target file. If no planner is set, the multichunks are 
+	 * looked up in the local and winning database.
+	 */
+	public void setMultiChunkDownloadPlanner(MultiChunkDownloadPlanner multiChunkDownloadPlanner) {
+		this.multiChunkDownloadPlanner = multiChunkDownloadPlanner;
+	}
+	
+	/**
+	 * Sets the downloader used to download multichunks that were not planned, e.g. 
+	 * because a chunk located in a local file cannot be read from it anymore. If no 
+	 * downloader is set, all required multichunks must already be in the cache.
+	 */
+	public void setDownloader(Downloader downloader) {
+		this.downloader = downloader;
+	}
+	
+	/**
+	 * Sets the local database used to look up chunks and multichunks when assembling
+	 * the target file. The database is shared by all actions (and apply threads), and 
+	 * is not closed by the action. If no database is set, a connection is opened and
+	 * closed for each assembled file.
+	 */
+	public void setLocalDatabase(SqlDatabase localDatabase) {
+		this.localDatabase = localDatabase;
+	}
 
 	protected void createFileFolderOrSymlink(FileVersion reconstructedFileVersion) throws Exception {
 		if (reconstructedFileVersion.getType() == FileType.FILE) {
@@ -49,6 +93,36 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 		}
 	}
 
+	/**
+	 * Creates the given file version like {@link #createFileFolderOrSymlink(FileVersion)}, but uses
+	 * the already assembled file (if any) instead of assembling it again. Use together with
+	 * {@link #assembleFileToCacheIfRequired(FileVersion)}.
+	 */
+	protected void createFileFolderOrSymlink(FileVersion reconstructedFileVersion, File reconstructedFileInCache) throws Exception {
+		if (reconstructedFileInCache != null) {
+			moveFileToFinalLocation(reconstructedFileInCache, reconstructedFileVersion);
+		}
+		else {
+			createFileFolderOrSymlink(reconstructedFileVersion);
+		}
+	}
+
+	/**
+	 * Assembles the given file version to the cache if it is a file, and returns the
+	 * assembled file. For folders and symlinks, <tt>null</tt> is returned. 
+	 * 
+	 * <p>This is used to assemble a file before the original file is deleted, so that
+	 * the original file can still be used as chunk source. 
+	 */
+	protected File assembleFileToCacheIfRequired(FileVersion reconstructedFileVersion) throws Exception {
+		if (reconstructedFileVersion.getType() == FileType.FILE) {
+			return assembleFileToCache(reconstructedFileVersion);
+		}
+		else {
+			return null;
+		}
+	}
+
 	protected void createFolder(FileVersion targetFileVersion) throws Exception {
 		NormalizedPath targetDirPath = new NormalizedPath(config.getLocalDir(), targetFileVersion.getPath());
 		
@@ -76,14 +150,30 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 	}
 	
 	protected File assembleFileToCache(FileVersion reconstructedFileVersion) throws Exception {
-		SqlDatabase localDatabase = new SqlDatabase(config);
-		Assembler assembler = new Assembler(config, localDatabase, winningDatabase);
+		File reconstructedFileInCache;
+
+		if (localDatabase != null) {
+			reconstructedFileInCache = assembleFileToCache(reconstructedFileVersion, localDatabase);
+		}
+		else {
+			SqlDatabase ownLocalDatabase = new SqlDatabase(config);
 
-		File reconstructedFileInCache = assembler.assembleToCache(reconstructedFileVersion);
+			try {
+				reconstructedFileInCache = assembleFileToCache(reconstructedFileVersion, ownLocalDatabase);
+			}
+			finally {
+				ownLocalDatabase.close();
+			}
+		}
 		 
 		setFileAttributes(reconstructedFileVersion, reconstructedFileInCache);
 		setLastModified(reconstructedFileVersion, reconstructedFileInCache);
 		
 		return reconstructedFileInCache;
-	}	
+	}
+
+	private File assembleFileToCache(FileVersion reconstructedFileVersion, SqlDatabase assemblerDatabase) throws Exception {
+		Assembler assembler = new Assembler(config, assemblerDatabase, winningDatabase, localChunkLocator, multiChunkDownloadPlanner, downloader);
+		return assembler.assembleToCache(reconstructedFileVersion);
+	}
 }
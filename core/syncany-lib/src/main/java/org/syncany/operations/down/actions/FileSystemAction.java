@@ -59,6 +59,7 @@ import org.syncany.util.NormalizedPath;
  */
 public abstract class FileSystemAction {
 	protected static final Logger logger = Logger.getLogger(FileSystemAction.class.getSimpleName());
+	private static final Object CREATE_FOLDER_LOCK = new Object();
 
 	protected Config config;
 	protected MemoryDatabase winningDatabase;
@@ -208,17 +209,22 @@ public abstract class FileSystemAction {
 	}
 
 	protected void createFolder(NormalizedPath targetDir) throws Exception {
-		if (!FileUtil.exists(targetDir.toFile())) {
-			logger.log(Level.INFO, "     - Creating folder at " + targetDir.toFile() + " ...");
-			boolean targetDirCreated = targetDir.toFile().mkdirs();
-
-			if (!targetDirCreated) {
-				throw new Exception("Cannot create target dir: " + targetDir);
+		// Actions may run concurrently (see FileSystemActionScheduler), and 
+		// different files may need the same (non-existing) parent folder 
+		
+		synchronized (CREATE_FOLDER_LOCK) {
+			if (!FileUtil.exists(targetDir.toFile())) {
+				logger.log(Level.INFO, "     - Creating folder at " + targetDir.toFile() + " ...");
+				boolean targetDirCreated = targetDir.toFile().mkdirs();
+	
+				if (!targetDirCreated) {
+					throw new Exception("Cannot create target dir: " + targetDir);
+				}
+			}
+			else if (!FileUtil.isDirectory(targetDir.toFile())) {
+				logger.log(Level.INFO, "     - Expected a folder at " + targetDir.toFile() + " ...");
+				moveToConflictFile(targetDir);
 			}
-		}
-		else if (!FileUtil.isDirectory(targetDir.toFile())) {
-			logger.log(Level.INFO, "     - Expected a folder at " + targetDir.toFile() + " ...");
-			moveToConflictFile(targetDir);
 		}
 	}
 
@@ -36,10 +36,14 @@ public class LogOperation extends Operation {
 	private SqlDatabase localDatabase;
 
 	public LogOperation(Config config, LogOperationOptions options) {
+		this(config, options, new SqlDatabase(config));
+	}
+
+	public LogOperation(Config config, LogOperationOptions options, SqlDatabase localDatabase) {
 		super(config);
 
 		this.options = options;
-		this.localDatabase = new SqlDatabase(config);
+		this.localDatabase = localDatabase;
 	}
 
 	@Override
@@ -48,18 +52,44 @@ public class LogOperation extends Operation {
 		logger.log(Level.INFO, "Running 'Log' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
 
+		// The page token pins the newest database version of the first page, so that
+		// database versions added while paging do not shift the following pages
+		long anchorDatabaseVersionId = localDatabase.getMaxDatabaseVersionId();
+		int startDatabaseVersionIndex = options.getStartDatabaseVersionIndex();
+
+		if (options.getPageToken() != null) {
+			String[] pageTokenParts = options.getPageToken().split(":");
+
+			if (pageTokenParts.length != 2) {
+				throw new Exception("Invalid page token: " + options.getPageToken());
+			}
+
+			anchorDatabaseVersionId = Long.parseLong(pageTokenParts[0]);
+			startDatabaseVersionIndex = Integer.parseInt(pageTokenParts[1]);
+		}
+
+		// Fetch one more database version than requested to determine if there is a next page
+		int maxDatabaseVersionCount = options.getMaxDatabaseVersionCount();
+		int fetchDatabaseVersionCount = (maxDatabaseVersionCount > 0) ? maxDatabaseVersionCount + 1 : 0;
+
 		ArrayList<LightweightDatabaseVersion> databaseVersions = new ArrayList<>();
-		Iterator<DatabaseVersion> databaseVersionsIterator = localDatabase.getLastDatabaseVersions(options.getMaxDatabaseVersionCount(),
-				options.getStartDatabaseVersionIndex(), options.getMaxFileHistoryCount());
+		Iterator<DatabaseVersion> databaseVersionsIterator = localDatabase.getDatabaseVersionsPage(anchorDatabaseVersionId, fetchDatabaseVersionCount,
+				startDatabaseVersionIndex, options.getMaxFileHistoryCount());
 				
-		while (databaseVersionsIterator.hasNext()) {
+		while (databaseVersionsIterator.hasNext() && (maxDatabaseVersionCount <= 0 || databaseVersions.size() < maxDatabaseVersionCount)) {
 			DatabaseVersion databaseVersion = databaseVersionsIterator.next();
 			LightweightDatabaseVersion lightweightDatabaseVersion = createLightweightDatabaseVersion(databaseVersion);			
 			
 			databaseVersions.add(lightweightDatabaseVersion);
 		}
+
+		String nextPageToken = null;
+
+		if (databaseVersionsIterator.hasNext()) {
+			nextPageToken = anchorDatabaseVersionId + ":" + (startDatabaseVersionIndex + databaseVersions.size());
+		}
 		
-		return new LogOperationResult(databaseVersions);
+		return new LogOperationResult(databaseVersions, nextPageToken);
 	}
 
 	private LightweightDatabaseVersion createLightweightDatabaseVersion(DatabaseVersion databaseVersion) {
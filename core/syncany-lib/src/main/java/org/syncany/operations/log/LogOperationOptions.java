@@ -18,9 +18,9 @@
 package org.syncany.operations.log;
 
 import org.simpleframework.xml.Element;
-import org.syncany.operations.OperationOptions;
+import org.syncany.operations.PagedOperationOptions;
 
-public class LogOperationOptions implements OperationOptions {
+public class LogOperationOptions implements PagedOperationOptions {
 	@Element(required = false)
 	private int maxDatabaseVersionCount;
 	
@@ -30,10 +30,14 @@ public class LogOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private int maxFileHistoryCount;
 
+	@Element(required = false)
+	private String pageToken;
+
 	public LogOperationOptions() {
 		this.maxDatabaseVersionCount = 10;
 		this.startDatabaseVersionIndex = 0;
 		this.maxFileHistoryCount = 100;
+		this.pageToken = null;
 	}
 
 	public int getMaxDatabaseVersionCount() {
@@ -59,4 +63,28 @@ public class LogOperationOptions implements OperationOptions {
 	public void setMaxFileHistoryCount(int maxFileHistoryCount) {
 		this.maxFileHistoryCount = maxFileHistoryCount;
 	}
-}
+
+	/**
+	 * Returns the maximum number of database versions per page. This is the same as 
+	 * {@link #getMaxDatabaseVersionCount()}.
+	 */
+	@Override
+	public int getMaxResults() {
+		return maxDatabaseVersionCount;
+	}
+
+	@Override
+	public void setMaxResults(int maxResults) {
+		this.maxDatabaseVersionCount = maxResults;
+	}
+
+	@Override
+	public String getPageToken() {
+		return pageToken;
+	}
+
+	@Override
+	public void setPageToken(String pageToken) {
+		this.pageToken = pageToken;
+	}
+}
\ No newline at end of file
@@ -20,12 +20,16 @@ package org.syncany.operations.log;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
-import org.syncany.operations.OperationResult;
+import org.syncany.operations.PagedOperationResult;
 
-public class LogOperationResult implements OperationResult {
+public class LogOperationResult implements PagedOperationResult {
 	@ElementList(name = "databaseVersions", entry = "databaseVersion", required = true)
 	private ArrayList<LightweightDatabaseVersion> databaseVersions;
+
+	@Element(required = false)
+	private String nextPageToken;
 	
 	public LogOperationResult() {
 		// Nothing
@@ -35,6 +39,11 @@ public class LogOperationResult implements OperationResult {
 		this.databaseVersions = databaseVersions;
 	}
 
+	public LogOperationResult(ArrayList<LightweightDatabaseVersion> databaseVersions, String nextPageToken) {
+		this.databaseVersions = databaseVersions;
+		this.nextPageToken = nextPageToken;
+	}
+
 	public List<LightweightDatabaseVersion> getDatabaseVersions() {
 		return databaseVersions;
 	}
@@ -42,4 +51,9 @@ public class LogOperationResult implements OperationResult {
 	public void setDatabaseVersions(ArrayList<LightweightDatabaseVersion> databaseVersions) {
 		this.databaseVersions = databaseVersions;
 	}
+
+	@Override
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
 }
\ No newline at end of file
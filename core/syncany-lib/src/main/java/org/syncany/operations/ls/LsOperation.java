@@ -31,6 +31,7 @@ import org.syncany.database.PartialFileHistory;
 import org.syncany.database.PartialFileHistory.FileHistoryId;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.Operation;
+import org.syncany.util.StringUtil;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
@@ -41,10 +42,14 @@ public class LsOperation extends Operation {
 	private SqlDatabase localDatabase;
 
 	public LsOperation(Config config, LsOperationOptions options) {
+		this(config, options, new SqlDatabase(config));
+	}
+
+	public LsOperation(Config config, LsOperationOptions options, SqlDatabase localDatabase) {
 		super(config);
 
 		this.options = options;
-		this.localDatabase = new SqlDatabase(config);
+		this.localDatabase = localDatabase;
 	}
 
 	@Override
@@ -56,14 +61,62 @@ public class LsOperation extends Operation {
 		String pathExpression = parsePathExpression(options.getPathExpression(), options.isFileHistoryId());
 		Set<FileType> fileTypes = options.getFileTypes();
 
-		List<FileVersion> fileList = localDatabase.getFileList(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(), options.isDeleted(), fileTypes);
+		List<FileVersion> fileList = null;
+		String nextPageToken = null;
+
+		if (options.getMaxResults() > 0) {
+			fileList = fetchFileListPage(pathExpression, fileTypes);
+
+			if (fileList.size() > options.getMaxResults()) {
+				fileList = fileList.subList(0, options.getMaxResults());
+				nextPageToken = createPageToken(fileList.get(fileList.size() - 1));
+			}
+		}
+		else {
+			fileList = localDatabase.getFileList(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(), options.isDeleted(), fileTypes);
+		}
+
 		Map<FileHistoryId, PartialFileHistory> fileHistories = null;
 
 		if (options.isFetchHistories()) {
 			fileHistories = fetchFileHistories(fileList);
 		}
 
-		return new LsOperationResult(fileList, fileHistories);
+		return new LsOperationResult(fileList, fileHistories, nextPageToken);
+	}
+
+	/**
+	 * Fetches the page of the file list described by the page token in the options, ordered by
+	 * path and file history ID. One more file version than requested is fetched to find out
+	 * whether there is a next page.
+	 */
+	private List<FileVersion> fetchFileListPage(String pathExpression, Set<FileType> fileTypes) throws Exception {
+		String afterPath = "";
+		String afterFileHistoryId = "";
+
+		if (options.getPageToken() != null) {
+			String[] pageTokenParts = options.getPageToken().split(":");
+
+			if (pageTokenParts.length != 2) {
+				throw new Exception("Invalid page token: " + options.getPageToken());
+			}
+
+			afterPath = new String(StringUtil.fromHex(pageTokenParts[0]), "UTF-8");
+			afterFileHistoryId = pageTokenParts[1];
+		}
+
+		logger.log(Level.INFO, "Fetching page of max. " + options.getMaxResults() + " file(s), after path '" + afterPath + "' ...");
+
+		return localDatabase.getFileListPage(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(),
+				options.isDeleted(), fileTypes, afterPath, afterFileHistoryId, options.getMaxResults() + 1);
+	}
+
+	/**
+	 * Creates a page token that points right after the given file version. Since the path 
+	 * may contain any character, it is hex-encoded.
+	 */
+	private String createPageToken(FileVersion lastFileVersion) {
+		return StringUtil.toHex(StringUtil.toBytesUTF8(lastFileVersion.getPath())) + ":" + lastFileVersion.getFileHistoryId().toString();
 	}
 
 	private Map<FileHistoryId, PartialFileHistory> fetchFileHistories(List<FileVersion> fileTree) {
@@ -24,11 +24,11 @@ import java.util.Set;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.syncany.database.FileVersion.FileType;
-import org.syncany.operations.OperationOptions;
+import org.syncany.operations.PagedOperationOptions;
 
 import com.google.common.collect.Sets;
 
-public class LsOperationOptions implements OperationOptions {
+public class LsOperationOptions implements PagedOperationOptions {
 	@Element(required = false)
 	private Date date;
 
@@ -49,6 +49,12 @@ public class LsOperationOptions implements OperationOptions {
 
 	@Element(required = false)
 	private boolean deleted;
+
+	@Element(required = false)
+	private int maxResults;
+
+	@Element(required = false)
+	private String pageToken;
 	
 	public LsOperationOptions() {
 		this.date = null;
@@ -58,6 +64,8 @@ public class LsOperationOptions implements OperationOptions {
 		this.fileTypes = Sets.newHashSet(FileType.FILE, FileType.FOLDER, FileType.SYMLINK);
 		this.fetchHistories = false;
 		this.deleted = false;
+		this.maxResults = 0;
+		this.pageToken = null;
 	}
 
 	public Date getDate() {
@@ -115,4 +123,24 @@ public class LsOperationOptions implements OperationOptions {
 	public void setDeleted(boolean deleted) {
 		this.deleted = deleted;
 	}		
+
+	@Override
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	@Override
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	@Override
+	public String getPageToken() {
+		return pageToken;
+	}
+
+	@Override
+	public void setPageToken(String pageToken) {
+		this.pageToken = pageToken;
+	}
 }
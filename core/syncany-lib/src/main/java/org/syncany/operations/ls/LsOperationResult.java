@@ -22,19 +22,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.ElementMap;
 import org.syncany.database.FileVersion;
 import org.syncany.database.PartialFileHistory;
 import org.syncany.database.PartialFileHistory.FileHistoryId;
-import org.syncany.operations.OperationResult;
+import org.syncany.operations.PagedOperationResult;
 
-public class LsOperationResult implements OperationResult {
+public class LsOperationResult implements PagedOperationResult {
 	@ElementList(name = "fileList", required = false, entry = "fileVersion")
 	private ArrayList<FileVersion> fileList;
 	
 	@ElementMap(name = "fileVersions", required = false, key = "fileHistoryId", value = "partialFileHistory")
 	private HashMap<FileHistoryId, PartialFileHistory> fileVersions;
+
+	@Element(required = false)
+	private String nextPageToken;
 	
 	public LsOperationResult() {
 		// Nothing
@@ -43,6 +47,12 @@ public class LsOperationResult implements OperationResult {
 	public LsOperationResult(List<FileVersion> fileList, Map<FileHistoryId, PartialFileHistory> fileVersions) {
 		this.fileList = (fileList != null) ? new ArrayList<>(fileList) : null;
 		this.fileVersions = (fileVersions != null) ? new HashMap<>(fileVersions) : null;
+		this.nextPageToken = null;
+	}
+
+	public LsOperationResult(List<FileVersion> fileList, Map<FileHistoryId, PartialFileHistory> fileVersions, String nextPageToken) {
+		this(fileList, fileVersions);
+		this.nextPageToken = nextPageToken;
 	}
 
 	public List<FileVersion> getFileList() {
@@ -52,4 +62,9 @@ public class LsOperationResult implements OperationResult {
 	public Map<FileHistoryId, PartialFileHistory> getFileVersions() {
 		return fileVersions;
 	}
+
+	@Override
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
 }
\ No newline at end of file
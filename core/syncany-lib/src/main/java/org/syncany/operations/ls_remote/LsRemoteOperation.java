@@ -30,6 +30,7 @@ import org.syncany.operations.Operation;
 import org.syncany.operations.daemon.messages.LsRemoteEndSyncExternalEvent;
 import org.syncany.operations.daemon.messages.LsRemoteStartSyncExternalEvent;
 import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.TransferGovernor;
 import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
 
@@ -41,23 +42,38 @@ import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
  * uses the local list of known databases to filter already processed files. The local
  * list of known databases is loaded.
  * 
+ * <p>To avoid listing the remote databases over and over again in an idle repository,
+ * the operation can first retrieve the remote change marker (see {@link TransferManager#getChangeMarker(Class)}).
+ * If the marker has not changed since the last listing that found no unknown databases, the
+ * listing is skipped. Because a change marker might not change (e.g. due to a coarse timestamp
+ * granularity), this short-cut is only used if explicitly requested, i.e. by the sync loop of the
+ * {@link org.syncany.operations.watch.WatchOperation WatchOperation}, and the remote databases are
+ * listed at least every few minutes.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class LsRemoteOperation extends Operation {
 	private static final Logger logger = Logger.getLogger(LsRemoteOperation.class.getSimpleName());
+	private static final long CHANGE_MARKER_MAX_AGE = 10 * 60 * 1000;
 
 	private TransferManager loadedTransferManager;
 	private SqlDatabase localDatabase;
 	private LocalEventBus eventBus;
+	private boolean useChangeMarker;
 
 	public LsRemoteOperation(Config config) {
 		this(config, null);
 	}
 
 	public LsRemoteOperation(Config config, TransferManager transferManager) {
+		this(config, transferManager, false);
+	}
+
+	public LsRemoteOperation(Config config, TransferManager transferManager, boolean useChangeMarker) {
 		super(config);
 
 		this.loadedTransferManager = transferManager;
+		this.useChangeMarker = useChangeMarker;
 		this.localDatabase = new SqlDatabase(config);
 		this.eventBus = LocalEventBus.getInstance();
 	}
@@ -72,10 +88,24 @@ public class LsRemoteOperation extends Operation {
 
 		TransferManager transferManager = (loadedTransferManager != null)
 				? loadedTransferManager
-				: config.getTransferPlugin().createTransferManager(config.getConnection(), config);
+				: TransferGovernor.getInstance().govern(config.getTransferPlugin().createTransferManager(config.getConnection(), config), config);
 
 		List<DatabaseRemoteFile> knownDatabases = localDatabase.getKnownDatabases();
-		List<DatabaseRemoteFile> unknownRemoteDatabases = listUnknownRemoteDatabases(transferManager, knownDatabases);
+		String changeMarker = (useChangeMarker) ? getChangeMarker(transferManager, knownDatabases) : null;
+		List<DatabaseRemoteFile> unknownRemoteDatabases;
+
+		if (changeMarker != null && changeMarker.equals(localDatabase.getRemoteChangeMarker())) {
+			logger.log(Level.INFO, "Remote change marker unchanged, no need to list remote databases.");
+			unknownRemoteDatabases = new ArrayList<DatabaseRemoteFile>();
+		}
+		else {
+			unknownRemoteDatabases = listUnknownRemoteDatabases(transferManager, knownDatabases);
+
+			if (changeMarker != null && unknownRemoteDatabases.isEmpty()) {
+				localDatabase.writeRemoteChangeMarker(changeMarker);
+				localDatabase.commit();
+			}
+		}
 
 		transferManager.disconnect();
 
@@ -85,6 +115,30 @@ public class LsRemoteOperation extends Operation {
 		return new LsRemoteOperationResult(new ArrayList<>(unknownRemoteDatabases));
 	}
 
+	/**
+	 * Retrieves the remote change marker for database files and combines it with the number
+	 * of locally known databases (to detect local database resets) and the current time slot
+	 * (to enforce a full listing every now and then). Returns <tt>null</tt> if the transfer
+	 * manager does not support change markers or if retrieving the marker fails.
+	 */
+	private String getChangeMarker(TransferManager transferManager, List<DatabaseRemoteFile> knownDatabases) {
+		try {
+			String remoteChangeMarker = transferManager.getChangeMarker(DatabaseRemoteFile.class);
+
+			if (remoteChangeMarker != null) {
+				long timeSlot = System.currentTimeMillis() / CHANGE_MARKER_MAX_AGE;
+				return knownDatabases.size() + "/" + timeSlot + "/" + remoteChangeMarker;
+			}
+			else {
+				return null;
+			}
+		}
+		catch (StorageException e) {
+			logger.log(Level.INFO, "Cannot retrieve remote change marker. Listing remote databases.", e);
+			return null;
+		}
+	}
+
 	private List<DatabaseRemoteFile> listUnknownRemoteDatabases(TransferManager transferManager, List<DatabaseRemoteFile> knownDatabases)
 			throws StorageException {
 		logger.log(Level.INFO, "Retrieving remote database list.");
@@ -17,9 +17,15 @@
  */
 package org.syncany.operations.up;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -30,6 +36,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.chunk.Chunk;
+import org.syncany.chunk.ChunkerResumePoint;
 import org.syncany.chunk.Deduper;
 import org.syncany.chunk.DeduperListener;
 import org.syncany.chunk.MultiChunk;
@@ -74,6 +81,18 @@ import org.syncany.util.StringUtil;
  * dirty database into account. Lookups for chunks and file histories are performed 
  * on both databases.
  * 
+ * <p>If a file has only grown since its last version (e.g. log files), resuming appended files
+ * is enabled and the chunker supports resume points, the indexer lets the chunker resume at the
+ * last stable chunk boundary of the previous version. To make sure the file was really only
+ * appended to, the unchanged beginning of the file is read once and compared to the prefix
+ * checksum of the resume point. It is not chunked again, i.e. no chunk boundaries and chunk
+ * checksums are calculated for it, and its chunks are not looked up in the database.
+ * 
+ * <p>If a file appears at a new path and its platform file key (e.g. device and inode), size and 
+ * modification date match the last version of a file that has vanished from its old path, the file
+ * is assumed to be moved. Moved files are added as a new version of the existing file history without
+ * reading their content. If the file key is not available or ambiguous, moves are detected by checksum.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Indexer {
@@ -81,17 +100,44 @@ public class Indexer {
 	private static final String DEFAULT_POSIX_PERMISSIONS_FILE = "rw-r--r--";
 	private static final String DEFAULT_POSIX_PERMISSIONS_FOLDER = "rwxr-xr-x";
 	private static final String DEFAULT_DOS_ATTRIBUTES = "--a-";
+	private static final int PREFIX_READ_BUFFER_SIZE = 64 * 1024;
 
 	private Config config;
 	private Deduper deduper;
 	private SqlDatabase localDatabase;
+	private boolean resumeAppendedFiles;
+	private boolean detectMovedFiles;
 
 	private LocalEventBus eventBus;
 
 	public Indexer(Config config, Deduper deduper) {
+		this(config, deduper, true);
+	}
+
+	/**
+	 * Creates a new indexer.
+	 * 
+	 * @param resumeAppendedFiles If <tt>true</tt>, files that have only been appended to are chunked from 
+	 *        the last stable chunk boundary of their previous version (if the chunker supports it)
+	 */
+	public Indexer(Config config, Deduper deduper, boolean resumeAppendedFiles) {
+		this(config, deduper, resumeAppendedFiles, true);
+	}
+
+	/**
+	 * Creates a new indexer.
+	 * 
+	 * @param resumeAppendedFiles If <tt>true</tt>, files that have only been appended to are chunked from 
+	 *        the last stable chunk boundary of their previous version (if the chunker supports it)
+	 * @param detectMovedFiles If <tt>true</tt>, files moved to a new path are recognized by their file key, 
+	 *        size and modification date, and are not read again 
+	 */
+	public Indexer(Config config, Deduper deduper, boolean resumeAppendedFiles, boolean detectMovedFiles) {
 		this.config = config;
 		this.deduper = deduper;
 		this.localDatabase = new SqlDatabase(config);
+		this.resumeAppendedFiles = resumeAppendedFiles;
+		this.detectMovedFiles = detectMovedFiles;
 
 		this.eventBus = LocalEventBus.getInstance();
 	}
@@ -118,9 +164,10 @@ public class Indexer {
 		// TODO [medium] This should be in FileHistoryDao
 		Map<FileChecksum, List<PartialFileHistory>> fileChecksumCache = fillFileChecksumCache(fileHistoriesWithLastVersion);
 		Map<String, PartialFileHistory> filePathCache = fillFilePathCache(fileHistoriesWithLastVersion);
+		Map<String, List<PartialFileHistory>> fileKeyCache = fillFileKeyCache(fileHistoriesWithLastVersion);
 
 		// Find and index new files
-		deduper.deduplicate(files, new IndexerDeduperListener(newDatabaseVersion, fileChecksumCache, filePathCache));
+		deduper.deduplicate(files, new IndexerDeduperListener(newDatabaseVersion, fileChecksumCache, filePathCache, fileKeyCache));
 
 		// Find and remove deleted files
 		removeDeletedFiles(newDatabaseVersion, fileHistoriesWithLastVersion);
@@ -159,6 +206,33 @@ public class Indexer {
 		return fileChecksumCache;
 	}
 
+	private Map<String, List<PartialFileHistory>> fillFileKeyCache(List<PartialFileHistory> fileHistoriesWithLastVersion) {
+		Map<String, List<PartialFileHistory>> fileKeyCache = new HashMap<String, List<PartialFileHistory>>();
+
+		if (!detectMovedFiles) {
+			return fileKeyCache;
+		}
+
+		Map<FileHistoryId, String> currentFileKeys = localDatabase.getCurrentFileKeys();
+
+		for (PartialFileHistory fileHistory : fileHistoriesWithLastVersion) {
+			String fileKey = currentFileKeys.get(fileHistory.getFileHistoryId());
+
+			if (fileKey != null) {
+				List<PartialFileHistory> fileHistoriesWithSameFileKey = fileKeyCache.get(fileKey);
+
+				if (fileHistoriesWithSameFileKey == null) {
+					fileHistoriesWithSameFileKey = new ArrayList<PartialFileHistory>();
+				}
+
+				fileHistoriesWithSameFileKey.add(fileHistory);
+				fileKeyCache.put(fileKey, fileHistoriesWithSameFileKey);
+			}
+		}
+
+		return fileKeyCache;
+	}
+
 	private void removeDeletedFiles(DatabaseVersion newDatabaseVersion, List<PartialFileHistory> fileHistoriesWithLastVersion) {
 		logger.log(Level.FINER, "- Looking for deleted files ...");
 
@@ -228,16 +302,19 @@ public class Indexer {
 
 		private Map<FileChecksum, List<PartialFileHistory>> fileChecksumCache;
 		private Map<String, PartialFileHistory> filePathCache;
+		private Map<String, List<PartialFileHistory>> fileKeyCache;
 
 		private ChunkEntry chunkEntry;
 		private MultiChunkEntry multiChunkEntry;
+		private Map<MultiChunkId, MultiChunkEntry> unclosedMultiChunkEntries;
 		private FileContent fileContent;
+		private PartialFileHistory movedFileHistory;
 
 		private FileProperties startFileProperties;
 		private FileProperties endFileProperties;
 
 		public IndexerDeduperListener(DatabaseVersion newDatabaseVersion, Map<FileChecksum, List<PartialFileHistory>> fileChecksumCache,
-				Map<String, PartialFileHistory> filePathCache) {
+				Map<String, PartialFileHistory> filePathCache, Map<String, List<PartialFileHistory>> fileKeyCache) {
 
 			this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
 			this.secureRandom = new SecureRandom();
@@ -245,6 +322,9 @@ public class Indexer {
 
 			this.fileChecksumCache = fileChecksumCache;
 			this.filePathCache = filePathCache;
+			this.fileKeyCache = fileKeyCache;
+			
+			this.unclosedMultiChunkEntries = new HashMap<MultiChunkId, MultiChunkEntry>();
 		}
 
 		@Override
@@ -276,12 +356,219 @@ public class Indexer {
 		public boolean onFileStart(File file, int fileIndex) {
 			boolean processFile = startFileProperties.getType() == FileType.FILE; // Ignore directories and symlinks!
 
+			// Do not read moved files; they are added as new version of the existing file history
+			if (processFile) {
+				movedFileHistory = guessMovedFileHistoryByFileKey(startFileProperties);
+
+				if (movedFileHistory != null) {
+					fileContent = null;
+					processFile = false;
+				}
+			}
+
 			// We could fire an event here, but firing for every file
 			// is very exhausting for the event bus.
 
 			return processFile;
 		}
 
+		/**
+		 * Tries to find the file history of a file that has been moved to a new path, by 
+		 * matching the file key, size and modification date of the file to the last version of 
+		 * a file that does not exist at its old path anymore. 
+		 * 
+		 * <p>If no or more than one file history with the same file key exist, 
+		 * <tt>null</tt> is returned and the file is chunked (and moves are detected by checksum).
+		 */
+		private PartialFileHistory guessMovedFileHistoryByFileKey(FileProperties fileProperties) {
+			String fileKey = fileProperties.getFileKey();
+
+			if (fileKey == null || fileProperties.getSize() <= 0 || filePathCache.containsKey(fileProperties.getRelativePath())) {
+				return null;
+			}
+
+			List<PartialFileHistory> fileHistoriesWithSameFileKey = fileKeyCache.get(fileKey);
+
+			if (fileHistoriesWithSameFileKey == null || fileHistoriesWithSameFileKey.size() != 1) {
+				return null;
+			}
+
+			PartialFileHistory fileHistoryWithSameFileKey = fileHistoriesWithSameFileKey.get(0);
+			FileVersion lastVersion = fileHistoryWithSameFileKey.getLastVersion();
+
+			boolean sameFileProperties = lastVersion.getType() == FileType.FILE && lastVersion.getStatus() != FileStatus.DELETED
+					&& lastVersion.getChecksum() != null && lastVersion.getSize() == fileProperties.getSize()
+					&& lastVersion.getLastModified().getTime() == fileProperties.getLastModified();
+
+			if (!sameFileProperties) {
+				return null;
+			}
+
+			File lastVersionOnLocalDisk = new File(config.getLocalDir() + File.separator + lastVersion.getPath());
+
+			if (FileUtil.exists(lastVersionOnLocalDisk)) {
+				return null;
+			}
+
+			logger.log(Level.FINER, "   * File was moved from {0} (by file key: {1}), not reading file content.",
+					new Object[] { lastVersion.getPath(), fileKey });
+
+			fileKeyCache.remove(fileKey);
+			return fileHistoryWithSameFileKey;
+		}
+
+		/**
+		 * Returns the resume point of the previous version of the given file, if the file
+		 * has only been appended to. This is assumed if the file has the same path and a larger 
+		 * size than its previous version, if the checksum of the entire file prefix up to the resume 
+		 * point matches, and if the chunks after the resume point are unchanged. 
+		 * 
+		 * <p>If a resume point is returned, the chunks before it are added to the 
+		 * file content, since the deduper will not emit them again. The returned resume
+		 * point carries the file digest of the prefix, so the chunker can continue the
+		 * file checksum.
+		 */
+		@Override
+		public ChunkerResumePoint getResumePoint(File file) {
+			if (!resumeAppendedFiles || fileContent == null) {
+				return null;
+			}
+
+			PartialFileHistory lastFileHistory = filePathCache.get(startFileProperties.getRelativePath());
+			FileVersion lastFileVersion = (lastFileHistory != null) ? lastFileHistory.getLastVersion() : null;
+
+			boolean fileHasGrown = lastFileVersion != null && lastFileVersion.getType() == FileType.FILE
+					&& lastFileVersion.getStatus() != FileStatus.DELETED && lastFileVersion.getChecksum() != null
+					&& startFileProperties.getSize() > lastFileVersion.getSize();
+
+			if (!fileHasGrown) {
+				return null;
+			}
+
+			ChunkerResumePoint resumePoint = localDatabase.getFileContentResumePoint(lastFileVersion.getChecksum());
+
+			if (resumePoint == null) {
+				return null;
+			}
+
+			FileContent lastFileContent = localDatabase.getFileContent(lastFileVersion.getChecksum(), true);
+
+			if (lastFileContent == null || lastFileContent.getChunks().size() <= resumePoint.getChunkCount()) {
+				return null;
+			}
+
+			ChunkerResumePoint verifiedResumePoint = null;
+
+			try {
+				verifiedResumePoint = verifyResumePoint(file, lastFileContent, resumePoint);
+			}
+			catch (IOException e) {
+				logger.log(Level.FINE, "   * Cannot verify resume point of previous version, chunking entire file.", e);
+				return null;
+			}
+
+			if (verifiedResumePoint == null) {
+				logger.log(Level.FINE, "   * Resume point of previous version does not match (file not appended to), chunking entire file.");
+				return null;
+			}
+
+			logger.log(Level.FINE, "   * File was appended to, resuming at offset {0} (skipping {1} chunk(s)).",
+					new Object[] { resumePoint.getOffset(), resumePoint.getChunkCount() });
+
+			for (ChunkChecksum chunkChecksum : lastFileContent.getChunks().subList(0, resumePoint.getChunkCount())) {
+				fileContent.addChunk(chunkChecksum);
+			}
+
+			return verifiedResumePoint;
+		}
+
+		/**
+		 * Verifies that the entire file prefix up to the resume point matches the prefix 
+		 * checksum of the resume point, and that all chunks after the resume point of the previous 
+		 * file content (usually only the last chunk) are still present at the same offsets.
+		 * 
+		 * <p>The prefix is read exactly once. If it matches, a resume point carrying the file 
+		 * digest of the prefix is returned. Otherwise, <tt>null</tt> is returned. 
+		 */
+		private ChunkerResumePoint verifyResumePoint(File file, FileContent lastFileContent, ChunkerResumePoint resumePoint) throws IOException {
+			List<ChunkChecksum> lastChunks = lastFileContent.getChunks();
+			List<ChunkEntry> tailChunks = new ArrayList<ChunkEntry>();
+			long tailLength = 0;
+
+			for (ChunkChecksum chunkChecksum : lastChunks.subList(resumePoint.getChunkCount(), lastChunks.size())) {
+				ChunkEntry chunkEntry = localDatabase.getChunk(chunkChecksum);
+
+				if (chunkEntry == null) {
+					return null;
+				}
+
+				tailChunks.add(chunkEntry);
+				tailLength += chunkEntry.getSize();
+			}
+
+			if (resumePoint.getPrefixChecksum() == null || resumePoint.getOffset() + tailLength != lastFileContent.getSize()) {
+				return null;
+			}
+
+			MessageDigest prefixDigest = createChunkDigest();
+			MessageDigest chunkDigest = createChunkDigest();
+
+			try (DataInputStream fileInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), PREFIX_READ_BUFFER_SIZE))) {
+				// Verify entire prefix (and calculate the file digest up to the resume point)
+				byte[] buffer = new byte[PREFIX_READ_BUFFER_SIZE];
+				long remainingPrefixBytes = resumePoint.getOffset();
+
+				while (remainingPrefixBytes > 0) {
+					int read = fileInputStream.read(buffer, 0, (int) Math.min(buffer.length, remainingPrefixBytes));
+
+					if (read < 0) {
+						return null;
+					}
+
+					prefixDigest.update(buffer, 0, read);
+					remainingPrefixBytes -= read;
+				}
+
+				byte[] prefixChecksum = copyDigest(prefixDigest).digest();
+
+				if (!Arrays.equals(prefixChecksum, resumePoint.getPrefixChecksum())) {
+					return null;
+				}
+
+				// Verify chunks after the resume point
+				for (ChunkEntry chunkEntry : tailChunks) {
+					byte[] chunkContents = new byte[chunkEntry.getSize()];
+					fileInputStream.readFully(chunkContents);
+
+					byte[] chunkChecksum = chunkDigest.digest(chunkContents);
+
+					if (!Arrays.equals(chunkChecksum, chunkEntry.getChecksum().getBytes())) {
+						return null;
+					}
+				}
+			}
+
+			return new ChunkerResumePoint(resumePoint.getOffset(), resumePoint.getChunkCount(), resumePoint.getPrefixChecksum(), prefixDigest);
+		}
+
+		private MessageDigest copyDigest(MessageDigest digest) throws IOException {
+			try {
+				return (MessageDigest) digest.clone();
+			}
+			catch (CloneNotSupportedException e) {
+				throw new IOException("Cannot copy digest " + digest.getAlgorithm(), e);
+			}
+		}
+
+		private MessageDigest createChunkDigest() throws IOException {
+			try {
+				return MessageDigest.getInstance(config.getChunker().getChecksumAlgorithm());
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new IOException("Cannot create chunk digest", e);
+			}
+		}
+
 		@Override
 		public void onFileEnd(File file, byte[] rawFileChecksum) {
 			// Get file attributes (get them while file exists)
@@ -290,6 +577,11 @@ public class Indexer {
 			// because the file could vanish!
 			
 			FileChecksum fileChecksum = (rawFileChecksum != null) ? new FileChecksum(rawFileChecksum) : null;
+
+			if (fileChecksum == null && movedFileHistory != null) {
+				fileChecksum = movedFileHistory.getLastVersion().getChecksum();
+			}
+
 			endFileProperties = fileVersionComparator.captureFileProperties(file, fileChecksum, false);
 
 			// Check if file has vanished
@@ -408,6 +700,7 @@ public class Indexer {
 			fileVersion.setChecksum(fileProperties.getChecksum());
 			fileVersion.setLastModified(new Date(fileProperties.getLastModified()));
 			fileVersion.setUpdated(new Date());
+			fileVersion.setFileKey(fileProperties.getFileKey());
 
 			// Permissions
 			if (EnvironmentUtil.isWindows()) {
@@ -445,6 +738,7 @@ public class Indexer {
 
 		private void resetFileEnd() {
 			fileContent = null;
+			movedFileHistory = null;
 			startFileProperties = null;
 			endFileProperties = null;
 		}
@@ -510,6 +804,15 @@ public class Indexer {
 		private PartialFileHistory guessLastFileHistoryForFile(FileProperties fileProperties) {
 			PartialFileHistory lastFileHistory = null;
 
+			// Moved file (detected by file key, see onFileStart)
+			if (movedFileHistory != null) {
+				removeFromFileChecksumCache(movedFileHistory);
+
+				logger.log(Level.FINER, "   * Found old file history " + movedFileHistory.getFileHistoryId() + " (by file key: "
+						+ fileProperties.getFileKey() + "), appending new version.");
+				return movedFileHistory;
+			}
+
 			// a) Try finding a file history for which the last version has the same path
 			lastFileHistory = filePathCache.get(fileProperties.getRelativePath());
 
@@ -558,6 +861,19 @@ public class Indexer {
 			}
 		}
 
+		private void removeFromFileChecksumCache(PartialFileHistory fileHistory) {
+			FileChecksum fileChecksum = fileHistory.getLastVersion().getChecksum();
+			List<PartialFileHistory> fileHistoriesWithSameChecksum = fileChecksumCache.get(fileChecksum);
+
+			if (fileHistoriesWithSameChecksum != null) {
+				fileHistoriesWithSameChecksum.remove(fileHistory);
+
+				if (fileHistoriesWithSameChecksum.isEmpty()) {
+					fileChecksumCache.remove(fileChecksum);
+				}
+			}
+		}
+
 		private PartialFileHistory guessLastFileHistoryForFileWithMatchingChecksum(FileProperties fileProperties,
 				Collection<PartialFileHistory> fileHistoriesWithSameChecksum) {
 			PartialFileHistory lastFileHistory = null;
@@ -609,6 +925,7 @@ public class Indexer {
 		public void onMultiChunkOpen(MultiChunk multiChunk) {
 			logger.log(Level.FINER, "- +MultiChunk {0}", multiChunk.getId());
 			multiChunkEntry = new MultiChunkEntry(multiChunk.getId(), 0); // size unknown so far
+			unclosedMultiChunkEntries.put(multiChunk.getId(), multiChunkEntry);
 		}
 
 		@Override
@@ -621,10 +938,15 @@ public class Indexer {
 		public void onMultiChunkClose(MultiChunk multiChunk) {
 			logger.log(Level.FINER, "- /MultiChunk {0}", multiChunk.getId());
 
-			multiChunkEntry.setSize(multiChunk.getSize());
+			// Multichunks might be closed after the next multichunk has been opened (transformed in parallel)
+			MultiChunkEntry closedMultiChunkEntry = unclosedMultiChunkEntries.remove(multiChunk.getId());
+			closedMultiChunkEntry.setSize(multiChunk.getSize());
 
-			newDatabaseVersion.addMultiChunk(multiChunkEntry);
-			multiChunkEntry = null;
+			newDatabaseVersion.addMultiChunk(closedMultiChunkEntry);
+			
+			if (closedMultiChunkEntry == multiChunkEntry) {
+				multiChunkEntry = null;
+			}
 		}
 
 		@Override
@@ -644,6 +966,11 @@ public class Indexer {
 		public void onFileAddChunk(File file, Chunk chunk) {
 			logger.log(Level.FINER, "- Chunk > FileContent: {0} > {1}", new Object[] { StringUtil.toHex(chunk.getChecksum()), file });
 			fileContent.addChunk(new ChunkChecksum(chunk.getChecksum()));
+
+			// Last chunk carries the resume point (if the chunker supports it)
+			if (chunk.getResumePoint() != null) {
+				fileContent.setResumePoint(chunk.getResumePoint());
+			}
 		}
 
 		@Override
@@ -29,7 +29,10 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.syncany.chunk.AdaptiveGzipTransformer;
+import org.syncany.chunk.CompressionStatistics;
 import org.syncany.chunk.Deduper;
+import org.syncany.chunk.Transformer;
 import org.syncany.config.Config;
 import org.syncany.database.ChunkEntry;
 import org.syncany.database.DatabaseVersion;
@@ -55,6 +58,7 @@ import org.syncany.operations.ls_remote.LsRemoteOperationResult;
 import org.syncany.operations.status.StatusOperation;
 import org.syncany.operations.status.StatusOperationResult;
 import org.syncany.operations.up.UpOperationResult.UpResultCode;
+import org.syncany.operations.verify.VerifyOperation;
 import org.syncany.plugins.transfer.RemoteTransaction;
 import org.syncany.plugins.transfer.StorageException;
 import org.syncany.plugins.transfer.TransferManager;
@@ -65,6 +69,8 @@ import org.syncany.plugins.transfer.to.ActionTO;
 import org.syncany.plugins.transfer.to.ActionTO.ActionStatus;
 import org.syncany.plugins.transfer.to.ActionTO.ActionType;
 import org.syncany.plugins.transfer.to.TransactionTO;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
 
 /**
  * The up operation implements a central part of Syncany's business logic. It analyzes the local
@@ -488,11 +494,12 @@ public class UpOperation extends AbstractTransferOperation {
 
 	/**
 	 * This methods adds the multichunks that are not yet present in the remote repo to the {@link RemoteTransaction} for
-	 * uploading. Multichunks are not uploaded if they are dirty.
+	 * uploading. Multichunks are not uploaded if they are dirty. The MD5 checksum of each uploaded multichunk file is
+	 * written to the local database, so that the remote multichunks can be verified later (see {@link VerifyOperation}).
 	 *
 	 * @param multiChunkEntries Collection of multiChunkEntries that are included in the new {@link DatabaseVersion}
 	 */
-	private void addMultiChunksToTransaction(Collection<MultiChunkEntry> multiChunksEntries) throws InterruptedException, StorageException {
+	private void addMultiChunksToTransaction(Collection<MultiChunkEntry> multiChunksEntries) throws Exception {
 		List<MultiChunkId> dirtyMultiChunkIds = localDatabase.getDirtyMultiChunkIds();
 
 		for (MultiChunkEntry multiChunkEntry : multiChunksEntries) {
@@ -507,6 +514,7 @@ public class UpOperation extends AbstractTransferOperation {
 						remoteMultiChunkFile });
 
 				remoteTransaction.upload(localMultiChunkFile, remoteMultiChunkFile);
+				localDatabase.writeMultiChunkChecksum(multiChunkEntry.getId(), StringUtil.toHex(FileUtil.createChecksum(localMultiChunkFile, "MD5")));
 			}
 		}
 	}
@@ -526,11 +534,26 @@ public class UpOperation extends AbstractTransferOperation {
 	 */
 	private DatabaseVersion index(List<File> localFiles) throws FileNotFoundException, IOException {
 		// Index
-		Deduper deduper = new Deduper(config.getChunker(), config.getMultiChunker(), config.getTransformer());
-		Indexer indexer = new Indexer(config, deduper);
+		Deduper deduper = new Deduper(config.getChunker(), config.getMultiChunker(), config.getTransformer(), options.getTransformerThreads());
+		boolean forceChecksum = options.getStatusOptions().isForceChecksum();
+		boolean resumeAppendedFiles = options.isResumeAppendedFiles() && !forceChecksum;
+		Indexer indexer = new Indexer(config, deduper, resumeAppendedFiles, !forceChecksum);
+
+		AdaptiveGzipTransformer adaptiveGzipTransformer = findAdaptiveGzipTransformer(config.getTransformer());
+
+		if (adaptiveGzipTransformer != null) {
+			adaptiveGzipTransformer.getStatistics().reset();
+		}
 
 		DatabaseVersion newDatabaseVersion = indexer.index(localFiles);
 
+		if (adaptiveGzipTransformer != null) {
+			CompressionStatistics compressionStatistics = adaptiveGzipTransformer.getStatistics().snapshot();
+			result.setCompressionStatistics(compressionStatistics);
+
+			logger.log(Level.INFO, "Compression of new multichunks: " + compressionStatistics);
+		}
+
 		VectorClock newVectorClock = findNewVectorClock();
 		newDatabaseVersion.setVectorClock(newVectorClock);
 		newDatabaseVersion.setTimestamp(new Date());
@@ -539,6 +562,18 @@ public class UpOperation extends AbstractTransferOperation {
 		return newDatabaseVersion;
 	}
 
+	private AdaptiveGzipTransformer findAdaptiveGzipTransformer(Transformer transformer) {
+		while (transformer != null) {
+			if (transformer instanceof AdaptiveGzipTransformer) {
+				return (AdaptiveGzipTransformer) transformer;
+			}
+
+			transformer = transformer.getNextTransformer();
+		}
+
+		return null;
+	}
+
 	/**
 	 * Finds the next vector clock
 	 *
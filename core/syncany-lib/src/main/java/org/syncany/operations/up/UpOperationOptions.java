@@ -33,6 +33,12 @@ public class UpOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private boolean resume = true;
 
+	@Element(required = false)
+	private boolean resumeAppendedFiles = false;
+
+	@Element(required = false)
+	private int transformerThreads = 1;
+
 	public StatusOperationOptions getStatusOptions() {
 		return statusOptions;
 	}
@@ -56,4 +62,28 @@ public class UpOperationOptions implements OperationOptions {
 	public void setResume(boolean resume) {
 		this.resume = resume;
 	}
+
+	/**
+	 * Returns whether files that have only grown since their last version are chunked starting
+	 * at the last chunk boundary of the previous version, instead of from the beginning. 
+	 * 
+	 * <p>This saves chunking and hashing the unchanged beginning of the file, but not reading it:
+	 * The entire beginning is read once to verify that the file was only appended to. Disabled
+	 * by default.
+	 */
+	public boolean isResumeAppendedFiles() {
+		return resumeAppendedFiles;
+	}
+
+	public void setResumeAppendedFiles(boolean resumeAppendedFiles) {
+		this.resumeAppendedFiles = resumeAppendedFiles;
+	}
+
+	public int getTransformerThreads() {
+		return transformerThreads;
+	}
+
+	public void setTransformerThreads(int transformerThreads) {
+		this.transformerThreads = transformerThreads;
+	}
 }
\ No newline at end of file
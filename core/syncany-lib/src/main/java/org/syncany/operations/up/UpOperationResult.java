@@ -17,6 +17,7 @@
  */
 package org.syncany.operations.up;
 
+import org.syncany.chunk.CompressionStatistics;
 import org.syncany.operations.ChangeSet;
 import org.syncany.operations.OperationResult;
 import org.syncany.operations.status.StatusOperationResult;
@@ -29,6 +30,7 @@ public class UpOperationResult implements OperationResult {
 	private UpResultCode resultCode;
 	private StatusOperationResult statusResult = new StatusOperationResult();
 	private ChangeSet uploadChangeSet = new ChangeSet();
+	private CompressionStatistics compressionStatistics;
 
 	public UpResultCode getResultCode() {
 		return resultCode;
@@ -53,4 +55,16 @@ public class UpOperationResult implements OperationResult {
 	public ChangeSet getChangeSet() {
 		return uploadChangeSet;
 	}
+
+	/**
+	 * Returns the compression statistics of the indexed multichunks, or <tt>null</tt>
+	 * if no adaptive compression is configured for the repository.
+	 */
+	public CompressionStatistics getCompressionStatistics() {
+		return compressionStatistics;
+	}
+
+	public void setCompressionStatistics(CompressionStatistics compressionStatistics) {
+		this.compressionStatistics = compressionStatistics;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,303 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.verify;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.SqlDatabase;
+import org.syncany.operations.AbstractTransferOperation;
+import org.syncany.operations.cleanup.CleanupOperation;
+import org.syncany.operations.ls_remote.LsRemoteOperation;
+import org.syncany.operations.verify.VerifyOperationResult.VerifyResultCode;
+import org.syncany.plugins.transfer.RetriableTransferManager;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.StorageFileNotFoundException;
+import org.syncany.plugins.transfer.TransferGovernor;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
+
+/**
+ * The verify operation checks whether all multichunks referenced by the local database
+ * exist in the remote repository, and whether they are intact -- ideally without
+ * downloading them.
+ *
+ * <p>When a multichunk is uploaded (by the up or the cleanup operation), the MD5 checksum of
+ * the encrypted multichunk file is stored in the local database. The verify operation compares
+ * this checksum to the checksum calculated by the remote storage (see
+ * {@link TransferManager#getMd5Checksum(org.syncany.plugins.transfer.files.RemoteFile) getMd5Checksum()}).
+ * If the storage cannot calculate checksums, the multichunk is downloaded and hashed locally
+ * instead. Multichunks without a recorded checksum (e.g. uploaded by other clients) are downloaded
+ * and decrypted, so only corruptions detected by the transformers are found for them.
+ *
+ * <p>The multichunks are verified concurrently, each thread using its own transfer manager.
+ * Since a cleanup might remove multichunks while they are verified, the operation does not
+ * run if other clients are currently cleaning up the repository, or if there are unknown
+ * remote databases.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class VerifyOperation extends AbstractTransferOperation {
+	private static final Logger logger = Logger.getLogger(VerifyOperation.class.getSimpleName());
+
+	public static final String ACTION_ID = "verify";
+
+	private enum VerifyStatus {
+		VERIFIED, SERVER_VERIFIED, UNVERIFIED, CORRUPT, MISSING
+	}
+
+	private VerifyOperationOptions options;
+	private VerifyOperationResult result;
+	private SqlDatabase localDatabase;
+
+	public VerifyOperation(Config config) {
+		this(config, new VerifyOperationOptions());
+	}
+
+	public VerifyOperation(Config config, VerifyOperationOptions options) {
+		super(config, ACTION_ID);
+
+		this.options = options;
+		this.result = new VerifyOperationResult();
+		this.localDatabase = new SqlDatabase(config);
+	}
+
+	@Override
+	public VerifyOperationResult execute() throws Exception {
+		logger.log(Level.INFO, "");
+		logger.log(Level.INFO, "Running 'Verify' at client " + config.getMachineName() + " ...");
+		logger.log(Level.INFO, "--------------------------------------------");
+
+		if (otherRemoteOperationsRunning(CleanupOperation.ACTION_ID)) {
+			logger.log(Level.INFO, "Other clients are cleaning up the repository. Cannot verify.");
+			return new VerifyOperationResult(VerifyResultCode.NOK_OTHER_OPERATIONS_RUNNING);
+		}
+
+		if (new LsRemoteOperation(config).execute().getUnknownRemoteDatabases().size() > 0) {
+			logger.log(Level.INFO, "There are unknown remote databases. Run 'down' before verifying the repository.");
+			return new VerifyOperationResult(VerifyResultCode.NOK_REMOTE_CHANGES);
+		}
+
+		startOperation();
+
+		Map<MultiChunkId, MultiChunkEntry> localMultiChunks = localDatabase.getMultiChunks();
+		Map<MultiChunkId, String> multiChunkChecksums = localDatabase.getMultiChunkChecksums();
+		Map<String, MultichunkRemoteFile> remoteMultiChunks = transferManager.list(MultichunkRemoteFile.class);
+
+		logger.log(Level.INFO, "Verifying {0} multichunks ({1} with recorded checksum, {2} remote) ...", new Object[] { localMultiChunks.size(),
+				multiChunkChecksums.size(), remoteMultiChunks.size() });
+
+		Queue<MultiChunkId> remainingMultiChunkIds = new ConcurrentLinkedQueue<MultiChunkId>();
+
+		for (MultiChunkId multiChunkId : localMultiChunks.keySet()) {
+			if (remoteMultiChunks.containsKey(new MultichunkRemoteFile(multiChunkId).getName())) {
+				remainingMultiChunkIds.add(multiChunkId);
+			}
+			else {
+				addResult(multiChunkId, VerifyStatus.MISSING);
+			}
+		}
+
+		verifyMultiChunks(remainingMultiChunkIds, multiChunkChecksums);
+
+		finishOperation();
+
+		boolean missingOrCorrupt = result.getMissingMultiChunks().size() > 0 || result.getCorruptMultiChunks().size() > 0;
+		result.setResultCode(missingOrCorrupt ? VerifyResultCode.NOK_MISSING_OR_CORRUPT : VerifyResultCode.OK);
+
+		return result;
+	}
+
+	/**
+	 * Starts the configured number of threads, each of which verifies multichunks from
+	 * the given queue until the queue is empty. Waits for all threads to finish and
+	 * rethrows the first exception (if any).
+	 */
+	private void verifyMultiChunks(final Queue<MultiChunkId> remainingMultiChunkIds, final Map<MultiChunkId, String> multiChunkChecksums)
+			throws Exception {
+
+		if (remainingMultiChunkIds.isEmpty()) {
+			return;
+		}
+
+		int threads = Math.max(1, Math.min(options.getThreads(), remainingMultiChunkIds.size()));
+		ExecutorService verifyPool = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<Future<Void>> verifyFutures = new ArrayList<Future<Void>>();
+
+			for (int i = 0; i < threads; i++) {
+				verifyFutures.add(verifyPool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						verifyMultiChunksInThread(createTransferManager(), remainingMultiChunkIds, multiChunkChecksums);
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Void> verifyFuture : verifyFutures) {
+				try {
+					verifyFuture.get();
+				}
+				catch (ExecutionException e) {
+					throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : new Exception(e.getCause());
+				}
+			}
+		}
+		finally {
+			verifyPool.shutdownNow();
+		}
+	}
+
+	private void verifyMultiChunksInThread(TransferManager threadTransferManager, Queue<MultiChunkId> remainingMultiChunkIds,
+			Map<MultiChunkId, String> multiChunkChecksums) throws Exception {
+
+		try {
+			MultiChunkId multiChunkId = null;
+
+			while ((multiChunkId = remainingMultiChunkIds.poll()) != null) {
+				VerifyStatus verifyStatus = verifyMultiChunk(threadTransferManager, multiChunkId, multiChunkChecksums.get(multiChunkId));
+				addResult(multiChunkId, verifyStatus);
+			}
+		}
+		finally {
+			disconnect(threadTransferManager);
+		}
+	}
+
+	private VerifyStatus verifyMultiChunk(TransferManager threadTransferManager, MultiChunkId multiChunkId, String expectedChecksum)
+			throws Exception {
+
+		MultichunkRemoteFile remoteMultiChunkFile = new MultichunkRemoteFile(multiChunkId);
+
+		if (expectedChecksum != null) {
+			String remoteChecksum = threadTransferManager.getMd5Checksum(remoteMultiChunkFile);
+
+			if (remoteChecksum != null) {
+				logger.log(Level.FINE, "- Multichunk {0}: expected checksum {1}, remote checksum {2}", new Object[] { multiChunkId,
+						expectedChecksum, remoteChecksum });
+
+				return expectedChecksum.equalsIgnoreCase(remoteChecksum) ? VerifyStatus.SERVER_VERIFIED : VerifyStatus.CORRUPT;
+			}
+		}
+
+		if (!options.isDownloadFallback()) {
+			logger.log(Level.FINE, "- Multichunk {0}: cannot verify without download, download fallback disabled.", multiChunkId);
+			return VerifyStatus.UNVERIFIED;
+		}
+
+		File tempMultiChunkFile = config.getCache().createTempFile("verify-multichunk");
+
+		try {
+			logger.log(Level.FINE, "- Multichunk {0}: downloading to verify ...", multiChunkId);
+			threadTransferManager.download(remoteMultiChunkFile, tempMultiChunkFile);
+
+			if (expectedChecksum != null) {
+				String downloadedChecksum = StringUtil.toHex(FileUtil.createChecksum(tempMultiChunkFile, "MD5"));
+				return expectedChecksum.equalsIgnoreCase(downloadedChecksum) ? VerifyStatus.VERIFIED : VerifyStatus.CORRUPT;
+			}
+			else {
+				return canDecrypt(tempMultiChunkFile) ? VerifyStatus.VERIFIED : VerifyStatus.CORRUPT;
+			}
+		}
+		catch (StorageFileNotFoundException e) {
+			logger.log(Level.INFO, "- Multichunk " + multiChunkId + " disappeared while verifying.", e);
+			return VerifyStatus.MISSING;
+		}
+		finally {
+			tempMultiChunkFile.delete();
+		}
+	}
+
+	private boolean canDecrypt(File encryptedMultiChunkFile) {
+		try (InputStream multiChunkInputStream = config.getTransformer().createInputStream(new FileInputStream(encryptedMultiChunkFile))) {
+			byte[] buffer = new byte[8192];
+
+			while (multiChunkInputStream.read(buffer) != -1) {
+				// Only read to let the transformers detect corruptions
+			}
+
+			return true;
+		}
+		catch (IOException e) {
+			logger.log(Level.INFO, "- Cannot decrypt multichunk file " + encryptedMultiChunkFile + ".", e);
+			return false;
+		}
+	}
+
+	private synchronized void addResult(MultiChunkId multiChunkId, VerifyStatus verifyStatus) {
+		switch (verifyStatus) {
+		case SERVER_VERIFIED:
+			result.setServerVerifiedMultiChunksCount(result.getServerVerifiedMultiChunksCount() + 1);
+			result.setVerifiedMultiChunksCount(result.getVerifiedMultiChunksCount() + 1);
+			break;
+
+		case VERIFIED:
+			result.setVerifiedMultiChunksCount(result.getVerifiedMultiChunksCount() + 1);
+			break;
+
+		case UNVERIFIED:
+			result.setUnverifiedMultiChunksCount(result.getUnverifiedMultiChunksCount() + 1);
+			break;
+
+		case CORRUPT:
+			logger.log(Level.WARNING, "- Multichunk {0} is CORRUPT.", multiChunkId);
+			result.getCorruptMultiChunks().add(multiChunkId.toString());
+			break;
+
+		case MISSING:
+			logger.log(Level.WARNING, "- Multichunk {0} is MISSING.", multiChunkId);
+			result.getMissingMultiChunks().add(multiChunkId.toString());
+			break;
+		}
+	}
+
+	private TransferManager createTransferManager() throws StorageException {
+		TransferManager pluginTransferManager = config.getTransferPlugin().createTransferManager(config.getConnection(), config);
+		return new RetriableTransferManager(TransferGovernor.getInstance().govern(pluginTransferManager, config));
+	}
+
+	private void disconnect(TransferManager threadTransferManager) {
+		try {
+			threadTransferManager.disconnect();
+		}
+		catch (StorageException e) {
+			logger.log(Level.FINE, "Could not disconnect the transfer manager", e);
+		}
+	}
+}
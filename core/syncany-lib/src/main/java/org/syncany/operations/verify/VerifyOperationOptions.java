@@ -0,0 +1,51 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.verify;
+
+import org.simpleframework.xml.Element;
+import org.syncany.operations.OperationOptions;
+
+public class VerifyOperationOptions implements OperationOptions {
+	@Element(required = false)
+	private int threads = 4;
+
+	@Element(required = false)
+	private boolean downloadFallback = true;
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns whether multichunks are downloaded to verify them if the
+	 * remote storage cannot calculate their checksums, or if no checksum was
+	 * recorded for them. If disabled, these multichunks are only counted as
+	 * unverified.
+	 */
+	public boolean isDownloadFallback() {
+		return downloadFallback;
+	}
+
+	public void setDownloadFallback(boolean downloadFallback) {
+		this.downloadFallback = downloadFallback;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementList;
+import org.syncany.operations.OperationResult;
+
+public class VerifyOperationResult implements OperationResult {
+	public enum VerifyResultCode {
+		OK, NOK_MISSING_OR_CORRUPT, NOK_REMOTE_CHANGES, NOK_OTHER_OPERATIONS_RUNNING
+	}
+
+	@Element(name = "resultCode", required = true)
+	private VerifyResultCode resultCode;
+
+	@ElementList(name = "missingMultiChunks", entry = "multiChunkId", required = false)
+	private ArrayList<String> missingMultiChunks;
+
+	@ElementList(name = "corruptMultiChunks", entry = "multiChunkId", required = false)
+	private ArrayList<String> corruptMultiChunks;
+
+	@Element(name = "verifiedMultiChunksCount", required = false)
+	private int verifiedMultiChunksCount;
+
+	@Element(name = "serverVerifiedMultiChunksCount", required = false)
+	private int serverVerifiedMultiChunksCount;
+
+	@Element(name = "unverifiedMultiChunksCount", required = false)
+	private int unverifiedMultiChunksCount;
+
+	public VerifyOperationResult() {
+		this(VerifyResultCode.OK);
+	}
+
+	public VerifyOperationResult(VerifyResultCode resultCode) {
+		this.resultCode = resultCode;
+		this.missingMultiChunks = new ArrayList<String>();
+		this.corruptMultiChunks = new ArrayList<String>();
+		this.verifiedMultiChunksCount = 0;
+		this.serverVerifiedMultiChunksCount = 0;
+		this.unverifiedMultiChunksCount = 0;
+	}
+
+	public VerifyResultCode getResultCode() {
+		return resultCode;
+	}
+
+	public void setResultCode(VerifyResultCode resultCode) {
+		this.resultCode = resultCode;
+	}
+
+	/**
+	 * Returns the IDs of the multichunks that are referenced by the local
+	 * database, but do not exist in the remote repository.
+	 */
+	public List<String> getMissingMultiChunks() {
+		return missingMultiChunks;
+	}
+
+	/**
+	 * Returns the IDs of the remote multichunks whose checksum does not match
+	 * the checksum recorded at upload time, or that cannot be decrypted.
+	 */
+	public List<String> getCorruptMultiChunks() {
+		return corruptMultiChunks;
+	}
+
+	/**
+	 * Returns the number of intact multichunks, including the multichunks verified
+	 * by the remote storage (see {@link #getServerVerifiedMultiChunksCount()}).
+	 */
+	public int getVerifiedMultiChunksCount() {
+		return verifiedMultiChunksCount;
+	}
+
+	public void setVerifiedMultiChunksCount(int verifiedMultiChunksCount) {
+		this.verifiedMultiChunksCount = verifiedMultiChunksCount;
+	}
+
+	/**
+	 * Returns the number of multichunks verified by a server-side checksum,
+	 * i.e. without downloading them.
+	 */
+	public int getServerVerifiedMultiChunksCount() {
+		return serverVerifiedMultiChunksCount;
+	}
+
+	public void setServerVerifiedMultiChunksCount(int serverVerifiedMultiChunksCount) {
+		this.serverVerifiedMultiChunksCount = serverVerifiedMultiChunksCount;
+	}
+
+	/**
+	 * Returns the number of multichunks that could not be verified, because neither
+	 * a server-side checksum nor a download was possible (or allowed).
+	 */
+	public int getUnverifiedMultiChunksCount() {
+		return unverifiedMultiChunksCount;
+	}
+
+	public void setUnverifiedMultiChunksCount(int unverifiedMultiChunksCount) {
+		this.unverifiedMultiChunksCount = unverifiedMultiChunksCount;
+	}
+}
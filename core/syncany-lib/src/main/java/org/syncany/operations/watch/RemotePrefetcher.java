@@ -0,0 +1,319 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.watch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.syncany.config.Config;
+import org.syncany.database.MemoryDatabase;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.SqlDatabase;
+import org.syncany.database.dao.DatabaseXmlSerializer;
+import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseReadType;
+import org.syncany.operations.down.DownOperation;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.TransactionAwareTransferManager;
+import org.syncany.plugins.transfer.TransferGovernor;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
+import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
+
+/**
+ * The remote prefetcher downloads new remote database files (and optionally the multichunks
+ * they reference) to the local cache while the {@link WatchOperation} is idle. When the next
+ * {@link DownOperation} runs, it finds these files in the cache and does not have to download
+ * them anymore.
+ *
+ * <p>Prefetched database files are stored under a separate name in the cache (see
+ * {@link org.syncany.config.Cache#getPrefetchedDatabaseFile(String) getPrefetchedDatabaseFile()}),
+ * and prefetched multichunks are only moved to their final location after they have been
+ * completely downloaded and decrypted. A prefetch round is aborted as soon as a sync starts.
+ *
+ * <p>If the transfer manager supports change markers, the remote databases are only listed
+ * if the marker changed since the last prefetch round.
+ *
+ * <p>The number of bytes of prefetched multichunks is limited by a budget. Multichunks
+ * only count towards this budget until their database file has been applied locally.
+ *
+ * <p>The prefetcher runs in its own thread, so it does not use the local database of the
+ * {@link WatchOperation}. Instead, each prefetch round opens its own read-only
+ * {@link SqlDatabase}, which sees the last committed state even while a sync is running.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class RemotePrefetcher {
+	private static final Logger logger = Logger.getLogger(RemotePrefetcher.class.getSimpleName());
+
+	private Config config;
+	private AtomicBoolean syncRunning;
+	private long multiChunkBudget;
+	private AtomicBoolean stopped;
+	private String lastChangeMarker;
+
+	private Map<String, Collection<MultiChunkEntry>> prefetchedMultiChunks;
+
+	public RemotePrefetcher(Config config, AtomicBoolean syncRunning, long multiChunkBudget) {
+		this.config = config;
+		this.syncRunning = syncRunning;
+		this.multiChunkBudget = multiChunkBudget;
+		this.stopped = new AtomicBoolean(false);
+		this.lastChangeMarker = null;
+
+		this.prefetchedMultiChunks = new HashMap<String, Collection<MultiChunkEntry>>();
+	}
+
+	/**
+	 * Runs one prefetch round: Lists the remote database files, downloads all unknown
+	 * database files to the cache, and then downloads the multichunks referenced by them
+	 * (within the multichunk budget). Errors are logged, but not thrown, because the
+	 * subsequent {@link DownOperation} will simply download the missing files itself.
+	 *
+	 * @return Returns the number of database files prefetched in this round
+	 */
+	public synchronized int prefetch() {
+		if (isAborted()) {
+			return 0;
+		}
+
+		TransferManager transferManager = null;
+		SqlDatabase localDatabase = null;
+
+		try {
+			TransferManager pluginTransferManager = config.getTransferPlugin().createTransferManager(config.getConnection(), config);
+			transferManager = new TransactionAwareTransferManager(TransferGovernor.getInstance().govern(pluginTransferManager, config), config);
+
+			String changeMarker = transferManager.getChangeMarker(DatabaseRemoteFile.class);
+
+			if (changeMarker != null && changeMarker.equals(lastChangeMarker)) {
+				logger.log(Level.FINE, "Remote change marker unchanged, nothing to prefetch.");
+				return 0;
+			}
+
+			localDatabase = new SqlDatabase(config, true);
+			List<DatabaseRemoteFile> knownDatabases = localDatabase.getKnownDatabases();
+			List<File> newDatabaseFiles = prefetchDatabases(transferManager, knownDatabases);
+
+			if (!isAborted()) {
+				lastChangeMarker = changeMarker;
+			}
+
+			if (multiChunkBudget > 0) {
+				forgetAppliedDatabases(knownDatabases);
+				prefetchMultiChunks(transferManager, newDatabaseFiles);
+			}
+
+			return newDatabaseFiles.size();
+		}
+		catch (Exception e) {
+			logger.log(Level.INFO, "Prefetching remote files failed. Down operation will download them.", e);
+			return 0;
+		}
+		finally {
+			disconnect(transferManager);
+
+			if (localDatabase != null) {
+				localDatabase.close();
+			}
+		}
+	}
+
+	/**
+	 * Stops the prefetcher and waits for a currently running prefetch round to
+	 * finish. A running round is aborted after the file currently being downloaded.
+	 */
+	public void stop() {
+		stopped.set(true);
+
+		synchronized (this) {
+			logger.log(Level.INFO, "Remote prefetcher stopped.");
+		}
+	}
+
+	private boolean isAborted() {
+		return syncRunning.get() || stopped.get();
+	}
+
+	private List<File> prefetchDatabases(TransferManager transferManager, List<DatabaseRemoteFile> knownDatabases) throws IOException, StorageException {
+		Map<String, DatabaseRemoteFile> remoteDatabases = new TreeMap<String, DatabaseRemoteFile>(transferManager.list(DatabaseRemoteFile.class));
+		List<File> newDatabaseFiles = new ArrayList<File>();
+
+		for (DatabaseRemoteFile remoteDatabase : remoteDatabases.values()) {
+			if (isAborted()) {
+				logger.log(Level.INFO, "Sync started or prefetcher stopped, aborting prefetch.");
+				break;
+			}
+
+			File prefetchedDatabaseFile = config.getCache().getPrefetchedDatabaseFile(remoteDatabase.getName());
+
+			if (!knownDatabases.contains(remoteDatabase) && !prefetchedDatabaseFile.exists()) {
+				logger.log(Level.INFO, "- Prefetching database {0} ...", remoteDatabase.getName());
+
+				if (prefetchDatabase(transferManager, remoteDatabase, prefetchedDatabaseFile)) {
+					newDatabaseFiles.add(prefetchedDatabaseFile);
+				}
+			}
+		}
+
+		return newDatabaseFiles;
+	}
+
+	/**
+	 * Downloads the given database file to a temporary file, and then moves it to the location
+	 * of the prefetched database file. That way, a concurrently starting {@link DownOperation}
+	 * never sees a partially downloaded database file.
+	 */
+	private boolean prefetchDatabase(TransferManager transferManager, DatabaseRemoteFile remoteDatabase, File prefetchedDatabaseFile)
+			throws IOException, StorageException {
+
+		File tempDatabaseFile = config.getCache().createTempFile("prefetch-database");
+
+		try {
+			transferManager.download(remoteDatabase, tempDatabaseFile);
+			return tempDatabaseFile.renameTo(prefetchedDatabaseFile);
+		}
+		finally {
+			tempDatabaseFile.delete();
+		}
+	}
+
+	private void prefetchMultiChunks(TransferManager transferManager, List<File> newDatabaseFiles) throws IOException, StorageException {
+		long budgetUsed = getMultiChunkBudgetUsed();
+
+		for (File newDatabaseFile : newDatabaseFiles) {
+			String databaseName = getDatabaseName(newDatabaseFile);
+			Collection<MultiChunkEntry> databaseMultiChunks = readMultiChunks(newDatabaseFile);
+
+			List<MultiChunkEntry> databasePrefetchedMultiChunks = new ArrayList<MultiChunkEntry>();
+			prefetchedMultiChunks.put(databaseName, databasePrefetchedMultiChunks);
+
+			for (MultiChunkEntry multiChunk : databaseMultiChunks) {
+				if (isAborted()) {
+					logger.log(Level.INFO, "Sync started or prefetcher stopped, aborting prefetch.");
+					return;
+				}
+				else if (budgetUsed + multiChunk.getSize() > multiChunkBudget) {
+					logger.log(Level.INFO, "Multichunk prefetch budget of {0} bytes exhausted.", multiChunkBudget);
+					return;
+				}
+
+				if (prefetchMultiChunk(transferManager, multiChunk)) {
+					databasePrefetchedMultiChunks.add(multiChunk);
+					budgetUsed += multiChunk.getSize();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Downloads and decrypts the given multichunk to temporary files, and then moves it to the
+	 * location of the decrypted multichunk in the cache. Returns <tt>false</tt> if the multichunk
+	 * is already in the cache or cannot be downloaded (e.g. because it has been deleted remotely).
+	 */
+	private boolean prefetchMultiChunk(TransferManager transferManager, MultiChunkEntry multiChunk) throws IOException {
+		File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunk.getId());
+
+		if (decryptedMultiChunkFile.exists()) {
+			return false;
+		}
+
+		File encryptedTempFile = config.getCache().createTempFile("prefetch-multichunk");
+		File decryptedTempFile = config.getCache().createTempFile("prefetch-multichunk-decrypted");
+
+		try {
+			logger.log(Level.INFO, "- Prefetching multichunk {0} ...", multiChunk.getId());
+			transferManager.download(new MultichunkRemoteFile(multiChunk.getId()), encryptedTempFile);
+
+			try (InputStream multiChunkInputStream = config.getTransformer().createInputStream(new FileInputStream(encryptedTempFile));
+					OutputStream decryptedMultiChunkOutputStream = new FileOutputStream(decryptedTempFile)) {
+
+				IOUtils.copy(multiChunkInputStream, decryptedMultiChunkOutputStream);
+			}
+
+			return decryptedTempFile.renameTo(decryptedMultiChunkFile);
+		}
+		catch (StorageException e) {
+			logger.log(Level.INFO, "- Cannot prefetch multichunk " + multiChunk.getId() + ". Skipping.", e);
+			return false;
+		}
+		finally {
+			encryptedTempFile.delete();
+			decryptedTempFile.delete();
+		}
+	}
+
+	private Collection<MultiChunkEntry> readMultiChunks(File databaseFile) throws IOException {
+		MemoryDatabase memoryDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer(config.getTransformer()).load(memoryDatabase, databaseFile, null, null, DatabaseReadType.FULL);
+
+		return memoryDatabase.getMultiChunks();
+	}
+
+	private void forgetAppliedDatabases(List<DatabaseRemoteFile> knownDatabases) {
+		Set<String> knownDatabaseNames = new HashSet<String>();
+
+		for (DatabaseRemoteFile knownDatabase : knownDatabases) {
+			knownDatabaseNames.add(knownDatabase.getName());
+		}
+
+		prefetchedMultiChunks.keySet().removeAll(knownDatabaseNames);
+	}
+
+	private long getMultiChunkBudgetUsed() {
+		long budgetUsed = 0;
+
+		for (Collection<MultiChunkEntry> databasePrefetchedMultiChunks : prefetchedMultiChunks.values()) {
+			for (MultiChunkEntry multiChunk : databasePrefetchedMultiChunks) {
+				budgetUsed += multiChunk.getSize();
+			}
+		}
+
+		return budgetUsed;
+	}
+
+	private String getDatabaseName(File prefetchedDatabaseFile) {
+		return prefetchedDatabaseFile.getName().substring("prefetch-".length());
+	}
+
+	private void disconnect(TransferManager transferManager) {
+		if (transferManager != null) {
+			try {
+				transferManager.disconnect();
+			}
+			catch (StorageException e) {
+				logger.log(Level.FINE, "Could not disconnect the transfer manager", e);
+			}
+		}
+	}
+}
@@ -33,6 +33,7 @@ import org.syncany.config.Config;
 import org.syncany.config.LocalEventBus;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.Operation;
+import org.syncany.operations.OperationResult;
 import org.syncany.operations.cleanup.CleanupOperation;
 import org.syncany.operations.cleanup.CleanupOperationResult;
 import org.syncany.operations.cleanup.CleanupOperationResult.CleanupResultCode;
@@ -64,11 +65,20 @@ import org.syncany.util.StringUtil;
  *      subsequently the {@link UpOperation}. If the other two mechanisms are
  *      disabled or fail to register changes, this method will make sure that
  *      changes are synced eventually.</li>
+ *  <li>While no sync is running, it prefetches new remote database files (and
+ *      optionally multichunks) to the local cache using the {@link RemotePrefetcher},
+ *      so that the next {@link DownOperation} does not have to download them.</li>
  * </ul>
  *
  * As of now, this operation never returns, because it runs in a loop. The user
  * has to manually abort the operation on the command line.
  *
+ * <p>Alternatively, the operation can be run by a {@link SyncScheduler} (e.g. by the daemon),
+ * which shares a few threads among many watched folders. In this case, {@link #start(SyncScheduler)}
+ * starts the watchers and returns immediately, and the scheduler calls {@link #runScheduledSync()}
+ * whenever a sync is due. Event-triggered syncs are handed to the scheduler instead of being
+ * run directly, and {@link #finish()} has to be called to stop the watchers.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class WatchOperation extends Operation implements NotificationListenerListener, WatchListener {
@@ -88,6 +98,9 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 	private RecursiveWatcher recursiveWatcher;
 	private NotificationListener notificationListener;
+	private RemotePrefetcher remotePrefetcher;
+	private Timer remotePrefetcherTimer;
+	private SyncScheduler scheduler;
 	private LocalEventBus eventBus;
 
 	private String notificationChannel;
@@ -97,6 +110,7 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		super(config);
 
 		this.options = options;
+		this.options.getDownOptions().setUseChangeMarker(true);
 
 		this.localDatabase = new SqlDatabase(config);
 
@@ -109,6 +123,9 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 		this.recursiveWatcher = null;
 		this.notificationListener = null;
+		this.remotePrefetcher = null;
+		this.remotePrefetcherTimer = null;
+		this.scheduler = null;
 		this.eventBus = LocalEventBus.getInstance();
 
 		this.notificationChannel = StringUtil.toHex(config.getRepoId());
@@ -118,14 +135,7 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 	@Override
 	public WatchOperationResult execute() {
 		watchThread = Thread.currentThread();
-
-		if (options.announcementsEnabled()) {
-			startNotificationListener();
-		}
-
-		if (options.watcherEnabled()) {
-			startRecursiveWatcher();
-		}
+		startWatchers();
 
 		syncLoop: while (!stopRequested.get()) {
 			try {
@@ -171,6 +181,56 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 			}
 		}
 
+		return finish();
+	}
+
+	/**
+	 * Starts the watchers of this operation, but does not run the sync loop. Instead, syncs
+	 * are run by the given scheduler using {@link #runScheduledSync()}. This method returns
+	 * immediately.
+	 */
+	public void start(SyncScheduler scheduler) {
+		this.scheduler = scheduler;
+		startWatchers();
+	}
+
+	/**
+	 * Runs a single sync for the {@link SyncScheduler}, unless the operation has 
+	 * been paused or stopped. 
+	 */
+	public void runScheduledSync() throws Exception {
+		if (!pauseRequested.get() && !stopRequested.get()) {
+			runSync();
+		}
+	}
+
+	/**
+	 * Stops the watchers and shuts down the local database. This method is called
+	 * at the end of {@link #execute()}, and has to be called by the {@link SyncScheduler}
+	 * when a scheduled operation is stopped.
+	 */
+	public WatchOperationResult finish() {
+		stopWatchers();
+		localDatabase.shutdown();
+
+		return new WatchOperationResult();
+	}
+
+	private void startWatchers() {
+		if (options.announcementsEnabled()) {
+			startNotificationListener();
+		}
+
+		if (options.watcherEnabled()) {
+			startRecursiveWatcher();
+		}
+
+		if (options.prefetchEnabled()) {
+			startRemotePrefetcher();
+		}
+	}
+
+	private void stopWatchers() {
 		if (options.announcementsEnabled()) {
 			stopNotificationListener();
 		}
@@ -179,9 +239,9 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 			stopRecursiveWatcher();
 		}
 
-		localDatabase.shutdown();
-
-		return new WatchOperationResult();
+		if (options.prefetchEnabled()) {
+			stopRemotePrefetcher();
+		}
 	}
 
 	private void startRecursiveWatcher() {
@@ -214,6 +274,29 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		notificationListener.subscribe(notificationChannel);
 	}
 
+	private void startRemotePrefetcher() {
+		logger.log(Level.INFO, "Starting remote prefetcher for " + config.getLocalDir() + " ...");
+
+		remotePrefetcher = new RemotePrefetcher(config, syncRunning, options.getPrefetchMultiChunkBytes());
+		remotePrefetcherTimer = new Timer("Prefetch/" + config.getLocalDir().getName(), true);
+
+		remotePrefetcherTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				if (!syncRunning.get() && !pauseRequested.get() && !stopRequested.get()) {
+					remotePrefetcher.prefetch();
+				}
+			}
+		}, options.getPrefetchInterval(), options.getPrefetchInterval());
+	}
+
+	private void stopRemotePrefetcher() {
+		logger.log(Level.INFO, "Stopping remote prefetcher for " + config.getLocalDir() + " ...");
+
+		remotePrefetcherTimer.cancel();
+		remotePrefetcher.stop();
+	}
+
 	private void stopRecursiveWatcher() {
 		try {
 			logger.log(Level.INFO, "Stopping recursive watcher for " + config.getLocalDir() + " ...");
@@ -244,21 +327,24 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 				boolean notifyChanges = false;
 
 				// Run down
-				DownOperationResult downResult = new DownOperation(config, options.getDownOptions()).execute();
+				DownOperationResult downResult = (DownOperationResult) runOperation(DownOperation.ACTION_ID, new DownOperation(config,
+						options.getDownOptions()));
 
 				if (downResult.getResultCode() == DownResultCode.OK_WITH_REMOTE_CHANGES) {
 					// TODO [low] Do something?
 				}
 
 				// Run up
-				UpOperationResult upOperationResult = new UpOperation(config, options.getUpOptions()).execute();
+				UpOperationResult upOperationResult = (UpOperationResult) runOperation(UpOperation.ACTION_ID, new UpOperation(config,
+						options.getUpOptions()));
 
 				if (upOperationResult.getResultCode() == UpResultCode.OK_CHANGES_UPLOADED && upOperationResult.getChangeSet().hasChanges()) {
 					upCount.incrementAndGet();
 					notifyChanges = true;
 				}
 
-				CleanupOperationResult cleanupOperationResult = new CleanupOperation(config, options.getCleanupOptions()).execute();
+				CleanupOperationResult cleanupOperationResult = (CleanupOperationResult) runOperation(CleanupOperation.ACTION_ID,
+						new CleanupOperation(config, options.getCleanupOptions()));
 
 				if (cleanupOperationResult.getResultCode() == CleanupResultCode.OK) {
 					notifyChanges = true;
@@ -284,9 +370,34 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		}
 	}
 
+	/**
+	 * Runs the given operation. If this operation is run by a {@link SyncScheduler}, 
+	 * the scheduler is asked for permission first, so that it can limit the number of
+	 * concurrently running operations of the same type.
+	 */
+	private OperationResult runOperation(String operationId, Operation operation) throws Exception {
+		if (scheduler == null) {
+			return operation.execute();
+		}
+
+		scheduler.acquireOperation(operationId);
+
+		try {
+			return operation.execute();
+		}
+		finally {
+			scheduler.releaseOperation(operationId);
+		}
+	}
+
 	@Override
 	public void pushNotificationReceived(String channel, String message) {
 		if (channel.equals(notificationChannel) && !message.equals(notificationInstanceId)) {
+			if (scheduler != null) {
+				scheduler.syncRequested(this);
+				return;
+			}
+
 			try {
 				waitWhilePaused();
 				runSync();
@@ -299,6 +410,11 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 	@Override
 	public void watchEventsOccurred() {
+		if (scheduler != null) {
+			scheduler.syncRequested(this);
+			return;
+		}
+
 		try {
 			waitWhilePaused();
 			runSync();
@@ -326,7 +442,10 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		if (!stopRequested.get()) {
 			stopRequested.set(true);
 
-			if (syncRunning.get()) {
+			if (scheduler != null) {
+				logger.log(Level.INFO, "Stop requested, scheduler will wait for running sync to finish.");
+			}
+			else if (syncRunning.get()) {
 				logger.log(Level.INFO, "Stop requested, but sync process currently running. Waiting max. " + STOP_GRACE_PERIOD
 						+ "ms for sync to finish.");
 				scheduleForceKill();
@@ -341,6 +460,10 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		}
 	}
 
+	public boolean isPaused() {
+		return pauseRequested.get();
+	}
+
 	public boolean isSyncRunning() {
 		return syncRunning.get();
 	}
@@ -396,4 +519,29 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 	private void fireEndEvent() {
 		eventBus.post(new WatchEndSyncExternalEvent(config.getLocalDir().getAbsolutePath()));	
 	}
+
+	/**
+	 * A sync scheduler runs the syncs of many watch operations using a shared pool of threads,
+	 * instead of one sync loop per operation. Operations run by a scheduler are started with
+	 * {@link WatchOperation#start(SyncScheduler) start()}.
+	 */
+	public interface SyncScheduler {
+		/**
+		 * Called by the watch operation if a sync should be run as soon as possible, e.g.
+		 * because local files have changed or a remote change was announced.
+		 */
+		public void syncRequested(WatchOperation watchOperation);
+
+		/**
+		 * Called before a down, up or cleanup operation is run (identified by the operation's
+		 * action identifier, e.g. {@link DownOperation#ACTION_ID}). This method blocks until
+		 * the operation may run.
+		 */
+		public void acquireOperation(String operationId) throws InterruptedException;
+
+		/**
+		 * Called after an operation acquired via {@link #acquireOperation(String)} has finished.
+		 */
+		public void releaseOperation(String operationId);
+	}
 }
@@ -55,6 +55,15 @@ public class WatchOperationOptions implements OperationOptions {
 	
 	@Element(required = false)
 	private boolean watcher = true;
+
+	@Element(required = false)
+	private boolean prefetch = true;
+
+	@Element(required = false)
+	private int prefetchInterval = 30*1000;
+
+	@Element(required = false)
+	private long prefetchMultiChunkBytes = 0;
 	
 	@Element(name = "up", required = false) 
 	private UpOperationOptions upOptions = new UpOperationOptions();
@@ -113,6 +122,30 @@ public class WatchOperationOptions implements OperationOptions {
 		this.watcher = watcher;
 	}
 
+	public boolean prefetchEnabled() {
+		return prefetch;
+	}
+
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+
+	public int getPrefetchInterval() {
+		return prefetchInterval;
+	}
+
+	public void setPrefetchInterval(int prefetchInterval) {
+		this.prefetchInterval = prefetchInterval;
+	}
+
+	public long getPrefetchMultiChunkBytes() {
+		return prefetchMultiChunkBytes;
+	}
+
+	public void setPrefetchMultiChunkBytes(long prefetchMultiChunkBytes) {
+		this.prefetchMultiChunkBytes = prefetchMultiChunkBytes;
+	}
+
 	public int getCleanupInterval() {
 		return cleanupInterval;
 	}
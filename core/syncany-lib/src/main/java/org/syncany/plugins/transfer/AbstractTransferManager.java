@@ -23,6 +23,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
+import org.syncany.plugins.transfer.files.RemoteFile;
 import org.syncany.util.StringUtil;
 
 /**
@@ -56,6 +57,24 @@ public abstract class AbstractTransferManager implements TransferManager {
 		}
 	}
 
+	/**
+	 * Returns <tt>null</tt>, i.e. change markers are not supported by default. 
+	 * Transfer managers that can cheaply detect remote changes should override this method.
+	 */
+	@Override
+	public String getChangeMarker(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		return null;
+	}
+
+	/**
+	 * Returns <tt>null</tt>, i.e. server-side checksums are not supported by default.
+	 * Transfer managers whose storage can calculate MD5 checksums should override this method.
+	 */
+	@Override
+	public String getMd5Checksum(RemoteFile remoteFile) throws StorageException {
+		return null;
+	}
+
 	/**
 	 * Checks whether the settings given to this transfer manager can be
 	 * used to create or connect to a remote repository.
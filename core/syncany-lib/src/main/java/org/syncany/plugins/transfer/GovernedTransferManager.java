@@ -0,0 +1,188 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.plugins.transfer;
+
+import java.io.File;
+import java.util.Map;
+
+import org.syncany.plugins.transfer.files.RemoteFile;
+
+/**
+ * The governed transfer manager asks the {@link TransferGovernor} for permission
+ * before every request to the remote storage, and reports the size of uploaded and
+ * downloaded files to it. It encapsules a single transfer manager and proxies all of
+ * its methods.
+ *
+ * <p>Connecting, disconnecting and the storage test are not governed, because
+ * they do not transfer any data and are rarely called.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class GovernedTransferManager implements TransferManager {
+	private interface GovernedMethod {
+		public Object execute() throws StorageException;
+	}
+
+	private TransferManager underlyingTransferManager;
+	private TransferGovernor governor;
+	private String hostKey;
+	private String folderKey;
+
+	public GovernedTransferManager(TransferManager underlyingTransferManager, TransferGovernor governor, String hostKey, String folderKey) {
+		this.underlyingTransferManager = underlyingTransferManager;
+		this.governor = governor;
+		this.hostKey = hostKey;
+		this.folderKey = folderKey;
+	}
+
+	@Override
+	public void connect() throws StorageException {
+		underlyingTransferManager.connect();
+	}
+
+	@Override
+	public void disconnect() throws StorageException {
+		underlyingTransferManager.disconnect();
+	}
+
+	@Override
+	public void init(final boolean createIfRequired) throws StorageException {
+		governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				underlyingTransferManager.init(createIfRequired);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void download(final RemoteFile remoteFile, final File localFile) throws StorageException {
+		governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				underlyingTransferManager.download(remoteFile, localFile);
+				return null;
+			}
+		});
+
+		// Size is only known after the download; this delays the next request if necessary
+		governor.throttleDownload(localFile.length());
+	}
+
+	@Override
+	public void move(final RemoteFile sourceFile, final RemoteFile targetFile) throws StorageException {
+		governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				underlyingTransferManager.move(sourceFile, targetFile);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void upload(final File localFile, final RemoteFile remoteFile) throws StorageException {
+		governor.throttleUpload(localFile.length());
+
+		governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				underlyingTransferManager.upload(localFile, remoteFile);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public boolean delete(final RemoteFile remoteFile) throws StorageException {
+		return (Boolean) governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.delete(remoteFile);
+			}
+		});
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends RemoteFile> Map<String, T> list(final Class<T> remoteFileClass) throws StorageException {
+		return (Map<String, T>) governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.list(remoteFileClass);
+			}
+		});
+	}
+
+	@Override
+	public String getChangeMarker(final Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		return (String) governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.getChangeMarker(remoteFileClass);
+			}
+		});
+	}
+
+	@Override
+	public String getMd5Checksum(final RemoteFile remoteFile) throws StorageException {
+		return (String) governMethod(new GovernedMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.getMd5Checksum(remoteFile);
+			}
+		});
+	}
+
+	@Override
+	public StorageTestResult test(boolean testCreateTarget) {
+		return underlyingTransferManager.test(testCreateTarget);
+	}
+
+	@Override
+	public boolean testTargetExists() throws StorageException {
+		return underlyingTransferManager.testTargetExists();
+	}
+
+	@Override
+	public boolean testTargetCanWrite() throws StorageException {
+		return underlyingTransferManager.testTargetCanWrite();
+	}
+
+	@Override
+	public boolean testTargetCanCreate() throws StorageException {
+		return underlyingTransferManager.testTargetCanCreate();
+	}
+
+	@Override
+	public boolean testRepoFileExists() throws StorageException {
+		return underlyingTransferManager.testRepoFileExists();
+	}
+
+	private Object governMethod(GovernedMethod governedMethod) throws StorageException {
+		governor.acquire(hostKey, folderKey);
+
+		try {
+			return governedMethod.execute();
+		}
+		finally {
+			governor.release(hostKey);
+		}
+	}
+}
@@ -140,6 +140,26 @@ public class RetriableTransferManager implements TransferManager {
 		});
 	}
 
+	@Override
+	public String getChangeMarker(final Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		return (String) retryMethod(new RetriableMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.getChangeMarker(remoteFileClass);
+			}
+		});
+	}
+
+	@Override
+	public String getMd5Checksum(final RemoteFile remoteFile) throws StorageException {
+		return (String) retryMethod(new RetriableMethod() {
+			@Override
+			public Object execute() throws StorageException {
+				return underlyingTransferManager.getMd5Checksum(remoteFile);
+			}
+		});
+	}
+
 	@Override
 	public StorageTestResult test(boolean testCreateTarget) {
 		return underlyingTransferManager.test(testCreateTarget);
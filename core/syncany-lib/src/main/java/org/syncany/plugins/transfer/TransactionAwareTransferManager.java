@@ -139,6 +139,30 @@ public class TransactionAwareTransferManager implements TransferManager {
 		return addAndFilterFilesInTransaction(remoteFileClass, underlyingTransferManager.list(remoteFileClass));
 	}
 
+	/**
+	 * Returns a change marker for the given file type that also changes if the remote
+	 * transactions change, because {@link #list(Class) list()} adds and filters files based 
+	 * on these transactions. If the underlying transfer manager does not support change
+	 * markers, <tt>null</tt> is returned.
+	 */
+	@Override
+	public String getChangeMarker(final Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		String fileChangeMarker = underlyingTransferManager.getChangeMarker(remoteFileClass);
+		String transactionChangeMarker = underlyingTransferManager.getChangeMarker(TransactionRemoteFile.class);
+
+		if (fileChangeMarker != null && transactionChangeMarker != null) {
+			return fileChangeMarker + "/" + transactionChangeMarker;
+		}
+		else {
+			return null;
+		}
+	}
+
+	@Override
+	public String getMd5Checksum(final RemoteFile remoteFile) throws StorageException {
+		return underlyingTransferManager.getMd5Checksum(remoteFile);
+	}
+
 	/**
 	 * Checks if any transactions of the local machine were not completed and performs
 	 * a rollback if any transactions were found. The rollback itself is performed in
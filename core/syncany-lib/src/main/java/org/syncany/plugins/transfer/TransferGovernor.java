@@ -0,0 +1,362 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.plugins.transfer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.config.to.TransferGovernorTO;
+
+/**
+ * The transfer governor shares the available bandwidth and storage connections
+ * among all folders of a process (typically the daemon). Transfer managers are
+ * wrapped in a {@link GovernedTransferManager} using {@link #govern(TransferManager, Config)},
+ * which asks the governor for permission before every request.
+ *
+ * <p>The governor enforces the following limits (see {@link TransferGovernorTO}):
+ * <ul>
+ *  <li>Upload and download bandwidth are limited using token buckets. Since transfer
+ *      managers transfer entire files, the size of a file is taken from the bucket before
+ *      it is uploaded, and after it has been downloaded.</li>
+ *  <li>The number of concurrent requests per storage host is limited. Waiting requests
+ *      are granted round-robin across folders, so that a folder with many queued requests
+ *      (e.g. a large initial upload) cannot starve the other folders.</li>
+ * </ul>
+ *
+ * <p>The governor is disabled by default, i.e. {@link #govern(TransferManager, Config) govern()}
+ * returns the given transfer manager unchanged until {@link #configure(TransferGovernorTO)} is called.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class TransferGovernor {
+	private static final Logger logger = Logger.getLogger(TransferGovernor.class.getSimpleName());
+	private static TransferGovernor instance;
+
+	private volatile boolean enabled;
+	private TokenBucket uploadBucket;
+	private TokenBucket downloadBucket;
+	private int maxRequestsPerHost;
+	private Map<String, HostQueue> hostQueues;
+
+	private AtomicLong uploadedBytes;
+	private AtomicLong downloadedBytes;
+
+	public static synchronized TransferGovernor getInstance() {
+		if (instance == null) {
+			instance = new TransferGovernor();
+		}
+
+		return instance;
+	}
+
+	private TransferGovernor() {
+		this.enabled = false;
+		this.uploadBucket = new TokenBucket(0);
+		this.downloadBucket = new TokenBucket(0);
+		this.maxRequestsPerHost = 0;
+		this.hostQueues = new HashMap<String, HostQueue>();
+
+		this.uploadedBytes = new AtomicLong(0);
+		this.downloadedBytes = new AtomicLong(0);
+	}
+
+	/**
+	 * Enables the governor and applies the given limits. Transfer managers
+	 * that are already governed use the new limits right away.
+	 */
+	public synchronized void configure(TransferGovernorTO settings) {
+		logger.log(Level.INFO, "Configuring transfer governor: up " + settings.getUploadBytesPerSecond() + " B/s, down "
+				+ settings.getDownloadBytesPerSecond() + " B/s, max. " + settings.getMaxRequestsPerHost() + " request(s) per host");
+
+		uploadBucket.setRate(settings.getUploadBytesPerSecond());
+		downloadBucket.setRate(settings.getDownloadBytesPerSecond());
+		maxRequestsPerHost = settings.getMaxRequestsPerHost();
+
+		for (HostQueue hostQueue : hostQueues.values()) {
+			hostQueue.setMaxRequests(maxRequestsPerHost);
+		}
+
+		enabled = true;
+	}
+
+	/**
+	 * Disables the governor, i.e. transfer managers created from now on are not governed anymore,
+	 * and the limits of already governed transfer managers are lifted.
+	 */
+	public synchronized void disable() {
+		configure(new TransferGovernorTO());
+		enabled = false;
+	}
+
+	/**
+	 * Wraps the given transfer manager in a {@link GovernedTransferManager}, if the governor
+	 * is enabled and a config is given. Otherwise, the transfer manager is returned unchanged.
+	 */
+	public TransferManager govern(TransferManager transferManager, Config config) {
+		if (!enabled || config == null) {
+			return transferManager;
+		}
+
+		String hostKey = getHostKey(config.getConnection());
+		String folderKey = config.getLocalDir().getAbsolutePath();
+
+		return new GovernedTransferManager(transferManager, this, hostKey, folderKey);
+	}
+
+	public TransferGovernorStats getStats() {
+		int activeRequests = 0;
+		int queuedRequests = 0;
+
+		synchronized (this) {
+			for (HostQueue hostQueue : hostQueues.values()) {
+				synchronized (hostQueue) {
+					activeRequests += hostQueue.activeRequests;
+					queuedRequests += hostQueue.queuedRequests;
+				}
+			}
+		}
+
+		return new TransferGovernorStats(enabled, uploadedBytes.get(), downloadedBytes.get(), activeRequests, queuedRequests,
+				uploadBucket.getRate(), downloadBucket.getRate(), maxRequestsPerHost);
+	}
+
+	/**
+	 * Blocks until the given folder may send a request to the given host.
+	 * Every call must be followed by a call to {@link #release(String)}.
+	 */
+	void acquire(String hostKey, String folderKey) throws StorageException {
+		try {
+			getHostQueue(hostKey).acquire(folderKey);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageException("Interrupted while waiting for transfer governor", e);
+		}
+	}
+
+	void release(String hostKey) {
+		getHostQueue(hostKey).release();
+	}
+
+	void throttleUpload(long bytes) throws StorageException {
+		uploadedBytes.addAndGet(bytes);
+		throttle(uploadBucket, bytes);
+	}
+
+	void throttleDownload(long bytes) throws StorageException {
+		downloadedBytes.addAndGet(bytes);
+		throttle(downloadBucket, bytes);
+	}
+
+	private void throttle(TokenBucket bucket, long bytes) throws StorageException {
+		try {
+			bucket.consume(bytes);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageException("Interrupted while waiting for transfer governor", e);
+		}
+	}
+
+	private synchronized HostQueue getHostQueue(String hostKey) {
+		HostQueue hostQueue = hostQueues.get(hostKey);
+
+		if (hostQueue == null) {
+			hostQueue = new HostQueue(maxRequestsPerHost);
+			hostQueues.put(hostKey, hostQueue);
+		}
+
+		return hostQueue;
+	}
+
+	/**
+	 * Returns the plugin identifier and, if the plugin settings have a <tt>hostname</tt>
+	 * field, the host name of the given settings.
+	 */
+	private String getHostKey(TransferSettings settings) {
+		try {
+			return settings.getType() + "://" + settings.getField("hostname");
+		}
+		catch (StorageException e) {
+			return settings.getType() + "://";
+		}
+	}
+
+	/**
+	 * Simple token bucket with a capacity of one second worth of tokens. Consuming more
+	 * tokens than available puts the bucket in debt, and the caller waits until the debt
+	 * is paid off. A rate of 0 disables the bucket.
+	 *
+	 * <p>The wait time is calculated while holding the lock, but the caller sleeps outside
+	 * of it. Concurrent callers add to the debt and wait correspondingly longer.
+	 */
+	private static class TokenBucket {
+		private long rate;
+		private double tokens;
+		private long lastRefill;
+
+		public TokenBucket(long rate) {
+			this.rate = rate;
+			this.tokens = rate;
+			this.lastRefill = System.currentTimeMillis();
+		}
+
+		public synchronized long getRate() {
+			return rate;
+		}
+
+		public synchronized void setRate(long rate) {
+			this.rate = rate;
+			this.tokens = (rate > 0) ? Math.min(tokens, rate) : 0; // Disabling clears any debt
+		}
+
+		public void consume(long bytes) throws InterruptedException {
+			long waitMillis;
+
+			synchronized (this) {
+				if (rate <= 0) {
+					return;
+				}
+
+				refill();
+				tokens -= bytes;
+
+				waitMillis = (tokens < 0) ? (long) (-tokens * 1000 / rate) : 0;
+			}
+
+			if (waitMillis > 0) {
+				Thread.sleep(waitMillis);
+			}
+		}
+
+		private void refill() {
+			long now = System.currentTimeMillis();
+
+			tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1000.0);
+			lastRefill = now;
+		}
+	}
+
+	/**
+	 * Limits the number of concurrent requests to a single host. If the limit is reached,
+	 * requests are queued per folder, and freed slots are granted to the folders in turn.
+	 * A limit of 0 disables the queue.
+	 */
+	private static class HostQueue {
+		private int maxRequests;
+		private int activeRequests;
+		private int queuedRequests;
+		private Map<String, LinkedList<Ticket>> folderQueues;
+
+		public HostQueue(int maxRequests) {
+			this.maxRequests = maxRequests;
+			this.activeRequests = 0;
+			this.queuedRequests = 0;
+			this.folderQueues = new LinkedHashMap<String, LinkedList<Ticket>>();
+		}
+
+		public synchronized void setMaxRequests(int maxRequests) {
+			this.maxRequests = maxRequests;
+			grantWaitingRequests();
+		}
+
+		public synchronized void acquire(String folderKey) throws InterruptedException {
+			if (folderQueues.isEmpty() && hasFreeSlot()) {
+				activeRequests++;
+				return;
+			}
+
+			Ticket ticket = new Ticket();
+			LinkedList<Ticket> folderQueue = folderQueues.get(folderKey);
+
+			if (folderQueue == null) {
+				folderQueue = new LinkedList<Ticket>();
+				folderQueues.put(folderKey, folderQueue);
+			}
+
+			folderQueue.add(ticket);
+			queuedRequests++;
+
+			try {
+				while (!ticket.granted) {
+					wait();
+				}
+			}
+			catch (InterruptedException e) {
+				if (ticket.granted) {
+					release();
+				}
+				else {
+					folderQueue.remove(ticket);
+					queuedRequests--;
+
+					if (folderQueue.isEmpty()) {
+						folderQueues.remove(folderKey);
+					}
+				}
+
+				throw e;
+			}
+		}
+
+		public synchronized void release() {
+			activeRequests--;
+			grantWaitingRequests();
+		}
+
+		private boolean hasFreeSlot() {
+			return maxRequests <= 0 || activeRequests < maxRequests;
+		}
+
+		/**
+		 * Grants free slots to the first ticket of the first folder in the queue, and then
+		 * moves this folder to the end of the queue (round-robin).
+		 */
+		private void grantWaitingRequests() {
+			boolean granted = false;
+
+			while (hasFreeSlot() && !folderQueues.isEmpty()) {
+				String folderKey = folderQueues.keySet().iterator().next();
+				LinkedList<Ticket> folderQueue = folderQueues.remove(folderKey);
+
+				folderQueue.removeFirst().granted = true;
+				queuedRequests--;
+				activeRequests++;
+				granted = true;
+
+				if (!folderQueue.isEmpty()) {
+					folderQueues.put(folderKey, folderQueue);
+				}
+			}
+
+			if (granted) {
+				notifyAll();
+			}
+		}
+	}
+
+	private static class Ticket {
+		private boolean granted = false;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.plugins.transfer;
+
+import org.simpleframework.xml.Element;
+
+/**
+ * Snapshot of the {@link TransferGovernor}'s counters and limits, as returned
+ * to daemon API clients.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class TransferGovernorStats {
+	@Element(required = true)
+	private boolean enabled;
+
+	@Element(required = true)
+	private long uploadedBytes;
+
+	@Element(required = true)
+	private long downloadedBytes;
+
+	@Element(required = true)
+	private int activeRequests;
+
+	@Element(required = true)
+	private int queuedRequests;
+
+	@Element(required = true)
+	private long uploadBytesPerSecond;
+
+	@Element(required = true)
+	private long downloadBytesPerSecond;
+
+	@Element(required = true)
+	private int maxRequestsPerHost;
+
+	public TransferGovernorStats() {
+		// Nothing.
+	}
+
+	public TransferGovernorStats(boolean enabled, long uploadedBytes, long downloadedBytes, int activeRequests, int queuedRequests,
+			long uploadBytesPerSecond, long downloadBytesPerSecond, int maxRequestsPerHost) {
+
+		this.enabled = enabled;
+		this.uploadedBytes = uploadedBytes;
+		this.downloadedBytes = downloadedBytes;
+		this.activeRequests = activeRequests;
+		this.queuedRequests = queuedRequests;
+		this.uploadBytesPerSecond = uploadBytesPerSecond;
+		this.downloadBytesPerSecond = downloadBytesPerSecond;
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	public long getDownloadedBytes() {
+		return downloadedBytes;
+	}
+
+	public int getActiveRequests() {
+		return activeRequests;
+	}
+
+	public int getQueuedRequests() {
+		return queuedRequests;
+	}
+
+	public long getUploadBytesPerSecond() {
+		return uploadBytesPerSecond;
+	}
+
+	public long getDownloadBytesPerSecond() {
+		return downloadBytesPerSecond;
+	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+}
@@ -154,6 +154,38 @@ public interface TransferManager {
 	 */
 	public <T extends RemoteFile> Map<String, T> list(Class<T> remoteFileClass) throws StorageException;
 
+	/**
+	 * Returns an opaque marker that changes whenever files of the given type are added to,
+	 * removed from or renamed in the remote storage, e.g. the modification time of the folder
+	 * these files are stored in. Comparing the marker to a previously retrieved marker is a
+	 * cheap way to find out whether a {@link #list(Class)} call is necessary at all.
+	 *
+	 * <p>If the storage cannot provide such a marker (or cannot guarantee that it changes),
+	 * this method returns <tt>null</tt>, and callers have to list the remote files instead.
+	 *
+	 * @param remoteFileClass Filter class: <tt>RemoteFile</tt> or a sub-type thereof
+	 * @return Returns a change marker, or <tt>null</tt> if change markers are not supported
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc
+	 */
+	public String getChangeMarker(Class<? extends RemoteFile> remoteFileClass) throws StorageException;
+
+	/**
+	 * Returns the MD5 checksum of the given remote file, calculated by the remote storage
+	 * itself, i.e. without downloading the file. Comparing the checksum to the checksum of the
+	 * local file at upload time is a cheap way to verify that the remote file is intact.
+	 *
+	 * <p>If the storage cannot calculate checksums (or the checksum of this particular file
+	 * cannot be retrieved), this method returns <tt>null</tt>, and callers have to download
+	 * the file to verify it.
+	 *
+	 * @param remoteFile Existing remote file whose checksum is to be retrieved
+	 * @return Returns the lower case hex representation of the MD5 checksum, or <tt>null</tt> if not supported
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc
+	 */
+	public String getMd5Checksum(RemoteFile remoteFile) throws StorageException;
+
 	/**
 	 * Tests whether the repository parameters are valid. In particular, the method tests
 	 * whether a target (folder, bucket, etc.) exists or, if not, whether it can be created.
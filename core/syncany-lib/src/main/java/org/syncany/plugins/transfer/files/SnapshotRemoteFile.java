@@ -0,0 +1,79 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.plugins.transfer.files;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.syncany.plugins.transfer.StorageException;
+
+/**
+ * The snapshot file is an optional database file written by a cleanup. It contains the
+ * compacted state of all database versions known at the time of the cleanup, so that new
+ * clients can load it instead of downloading and replaying all individual database files.
+ * The database files covered by the snapshot are listed in the segment layout of the cleanup
+ * file with the same number.
+ * 
+ * <p><b>Name pattern:</b> The name pattern of a snapshot file is
+ * <b>snapshot-&lt;cleanupnumber&gt;</b>.
+ * 
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class SnapshotRemoteFile extends RemoteFile {
+	private static final Pattern NAME_PATTERN = Pattern.compile("snapshot-([0-9]+)");
+	private static final String NAME_FORMAT = "snapshot-%s";
+
+	private long cleanupNumber;
+
+	/**
+	 * Initializes a new snapshot file, given a name. 
+	 * 
+	 * @param name snapshot file name; <b>must</b> always match the {@link #NAME_PATTERN} 
+	 * @throws StorageException If the name is not match the name pattern
+	 */
+	public SnapshotRemoteFile(String name) throws StorageException {
+		super(name);
+	}
+
+	/**
+	 * Initializes a new snapshot file, given the number of the cleanup that wrote it
+	 * 
+	 * @param cleanupNumber the number of the cleanup writing the snapshot
+	 * @throws StorageException If the name is not match the name pattern
+	 */
+	public SnapshotRemoteFile(long cleanupNumber) throws StorageException {
+		super(String.format(NAME_FORMAT, Long.toString(cleanupNumber)));
+	}
+
+	@Override
+	protected String validateName(String name) throws StorageException {
+		Matcher matcher = NAME_PATTERN.matcher(name);
+
+		if (!matcher.matches()) {
+			throw new StorageException(name + ": remote filename pattern does not match: " + NAME_PATTERN.pattern() + " expected.");
+		}
+
+		cleanupNumber = Long.parseLong(matcher.group(1));
+
+		return name;
+	}
+
+	public long getCleanupNumber() {
+		return cleanupNumber;
+	}
+}
@@ -0,0 +1,7 @@
+-- Determine all the chunks (incl. size) of a file content, in the order they appear in the file
+
+select c.checksum, c.size
+from filecontent_chunk fcc
+join chunk c on c.checksum=fcc.chunk_checksum
+where fcc.filecontent_checksum=?
+order by fcc.num asc
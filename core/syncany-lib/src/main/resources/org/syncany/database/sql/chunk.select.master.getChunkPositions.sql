@@ -0,0 +1,14 @@
+-- Returns all chunks of the last file versions that contain at least one of
+-- the given chunks, in the order in which they appear in each file. The chunk
+-- offsets are calculated by the application while iterating over the rows.
+
+select fv.path, fv.size as file_size, fv.lastmodified, fcc.chunk_checksum, c.size as chunk_size
+from fileversion_master_last fv
+join filecontent_chunk fcc on fv.filecontent_checksum=fcc.filecontent_checksum
+join chunk c on fcc.chunk_checksum=c.checksum
+where fv.type='FILE' and fv.filecontent_checksum in (
+	select distinct fcc0.filecontent_checksum
+	from filecontent_chunk fcc0
+	where fcc0.chunk_checksum in ( unnest(?) )
+)
+order by fv.path, fcc.num
@@ -0,0 +1,11 @@
+select dbvm.client, dbvm.client_version, count(e.databaseversion_id) as entity_count
+from databaseversion_master dbvm
+left join (
+	select databaseversion_id from filehistory
+	union all select databaseversion_id from fileversion
+	union all select databaseversion_id from fileversion_purge
+	union all select databaseversion_id from filecontent
+	union all select databaseversion_id from chunk
+	union all select databaseversion_id from multichunk
+) e on e.databaseversion_id=dbvm.id
+group by dbvm.client, dbvm.client_version
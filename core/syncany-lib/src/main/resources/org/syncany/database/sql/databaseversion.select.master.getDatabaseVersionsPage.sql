@@ -0,0 +1,5 @@
+select dbvm.*
+from databaseversion_master dbvm
+where dbvm.id<=?
+order by dbvm.id desc
+limit ? offset ?
@@ -0,0 +1,3 @@
+select dbvm.*
+from databaseversion_master dbvm
+order by dbvm.id
\ No newline at end of file
@@ -0,0 +1,2 @@
+select max(dbvm.id)
+from databaseversion_master dbvm
@@ -0,0 +1,8 @@
+-- This query inserts the resume point of a single file content, but only if 
+-- it does not exist already. Resume points are local only; they are never
+-- written to or read from remote databases.
+
+merge into filecontent_resumepoint as resumepoint_target
+using (values(?)) as resumepoint_ref(filecontent_checksum)
+on (resumepoint_target.filecontent_checksum = resumepoint_ref.filecontent_checksum)
+when not matched then insert (filecontent_checksum, chunk_offset, chunk_count, prefix_checksum) values (resumepoint_ref.filecontent_checksum, ?, ?, ?)
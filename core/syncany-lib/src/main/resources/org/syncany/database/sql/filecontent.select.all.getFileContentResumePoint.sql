@@ -0,0 +1,3 @@
+select frp.chunk_offset, frp.chunk_count, frp.prefix_checksum
+from filecontent_resumepoint frp
+where frp.filecontent_checksum=?
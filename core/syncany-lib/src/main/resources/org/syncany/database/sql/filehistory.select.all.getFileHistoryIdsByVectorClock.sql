@@ -0,0 +1,4 @@
+select fh.id
+from filehistory fh
+join databaseversion dbv on fh.databaseversion_id=dbv.id
+where dbv.vectorclock_serialized=?
@@ -0,0 +1,9 @@
+-- Remove paths that are not used by any file version anymore
+-- (e.g. purged or dirty file versions)
+
+delete from filepath
+where not exists (
+	select 1
+	from fileversion fv
+	where fv.path=filepath.path
+)
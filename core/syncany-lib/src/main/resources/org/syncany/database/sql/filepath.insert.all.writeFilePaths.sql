@@ -0,0 +1,4 @@
+merge into filepath as filepath_target
+using (values (cast(? as varchar(1024)), cast(? as varchar(1024)), cast(? as int))) as filepath_ref(path, parent_path, depth)
+on (filepath_target.path = filepath_ref.path)
+when not matched then insert (path, parent_path, depth) values (filepath_ref.path, filepath_ref.parent_path, filepath_ref.depth)
@@ -0,0 +1,5 @@
+-- Paths of all file versions without parent directory and depth,
+-- to be called only if the filepath table is empty (upgrade)
+
+select distinct path
+from fileversion
@@ -0,0 +1,3 @@
+select path
+from filepath
+limit 1
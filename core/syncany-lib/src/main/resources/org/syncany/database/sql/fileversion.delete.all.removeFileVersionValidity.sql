@@ -0,0 +1,2 @@
+delete from fileversion_validity
+where filehistory_id in (unnest(?))
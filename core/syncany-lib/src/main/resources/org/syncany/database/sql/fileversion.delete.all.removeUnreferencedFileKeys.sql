@@ -0,0 +1,10 @@
+-- Remove file keys of file versions that do not exist anymore
+-- (e.g. purged or dirty file versions)
+
+delete from fileversion_filekey
+where not exists (
+	select 1
+	from fileversion fv
+	where fv.filehistory_id=fileversion_filekey.filehistory_id
+		and fv.version=fileversion_filekey.version
+)
@@ -0,0 +1,10 @@
+-- See fileversion.insert.all.writeFileVersionValidity.sql
+
+insert into fileversion_validity (filehistory_id, version, valid_from, valid_to)
+select distinct fv.filehistory_id, fv.version, fv.updated, coalesce((
+		select min(fvnext.updated)
+		from fileversion_master fvnext
+		where fvnext.filehistory_id=fv.filehistory_id
+			and fvnext.version>fv.version
+	), timestamp '9999-12-31 23:59:59')
+from fileversion_master fv
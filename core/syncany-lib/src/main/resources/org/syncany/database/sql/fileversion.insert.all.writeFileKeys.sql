@@ -0,0 +1,8 @@
+-- This query inserts or updates the file key of a single file version. File 
+-- keys are local only; they are never written to or read from remote databases.
+
+merge into fileversion_filekey as filekey_target
+using (values(?, ?, ?)) as filekey_ref(filehistory_id, version, filekey)
+on (filekey_target.filehistory_id = filekey_ref.filehistory_id and filekey_target.version = filekey_ref.version)
+when matched then update set filekey_target.filekey = filekey_ref.filekey
+when not matched then insert (filehistory_id, version, filekey) values (filekey_ref.filehistory_id, filekey_ref.version, filekey_ref.filekey)
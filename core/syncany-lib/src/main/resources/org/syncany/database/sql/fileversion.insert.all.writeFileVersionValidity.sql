@@ -0,0 +1,13 @@
+-- A master file version is valid from its 'updated' time until the earliest 
+-- 'updated' time of any higher version of its file history. That way, the version
+-- valid at time T is the highest version with 'updated' <= T.
+
+insert into fileversion_validity (filehistory_id, version, valid_from, valid_to)
+select distinct fv.filehistory_id, fv.version, fv.updated, coalesce((
+		select min(fvnext.updated)
+		from fileversion_master fvnext
+		where fvnext.filehistory_id=fv.filehistory_id
+			and fvnext.version>fv.version
+	), timestamp '9999-12-31 23:59:59')
+from fileversion_master fv
+where fv.filehistory_id in (unnest(?))
@@ -0,0 +1,3 @@
+select filehistory_id
+from fileversion_validity
+limit 1
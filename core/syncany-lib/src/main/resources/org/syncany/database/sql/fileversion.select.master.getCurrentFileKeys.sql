@@ -0,0 +1,6 @@
+-- Select the file keys of the current (last, non-deleted) file versions
+
+select fk.filehistory_id, fk.filekey
+from fileversion_filekey fk
+join fileversion_master_last fv on fk.filehistory_id=fv.filehistory_id and fk.version=fv.version
+where fv.type='FILE'
@@ -0,0 +1,17 @@
+-- Lists a single directory: Only paths with the given parent directory
+-- are considered, and only their versions valid at the given time
+
+select fv.*
+from filepath fp
+join fileversion fv on fv.path=fp.path
+join fileversion_validity fvv on fvv.filehistory_id=fv.filehistory_id and fvv.version=fv.version
+where 
+	fp.parent_path=?
+	and fp.path like ?
+	and fv.status<>?
+	and fv.type in (unnest(?))
+	and fvv.valid_to>?
+	and fvv.valid_from<=?
+	and (fv.path>? or (fv.path=? and fv.filehistory_id>?))
+order by fv.path, fv.filehistory_id
+limit ?
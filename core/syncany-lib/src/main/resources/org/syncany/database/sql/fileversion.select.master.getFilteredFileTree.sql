@@ -1,16 +1,16 @@
-select *
-from fileversion 
+-- The versions valid at the given time are found using the validity index
+-- (valid_to); all other conditions are checked per file version
+
+select fv.*
+from fileversion_validity fvv
+join fileversion fv on fv.filehistory_id=fvv.filehistory_id and fv.version=fvv.version
+join filepath fp on fp.path=fv.path
 where 
-	status<>?
-	and path like ?
-	and filehistory_id like ?	
-	and substr_count(path, '/')>=?
-	and substr_count(path, '/')<=?		
-	and type in (unnest(?))			
-	and (filehistory_id, version) in (
-		select filehistory_id, max(version)
-		from fileversion_master
-		where updated<=?
-		group by filehistory_id				
-	)
-	
+	fvv.valid_to>?
+	and fvv.valid_from<=?
+	and fv.status<>?
+	and fv.path like ?
+	and fv.filehistory_id like ?	
+	and fp.depth>=?
+	and fp.depth<=?		
+	and fv.type in (unnest(?))			
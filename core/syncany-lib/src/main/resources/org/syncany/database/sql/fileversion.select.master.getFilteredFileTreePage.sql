@@ -0,0 +1,21 @@
+-- The versions valid at the given time are found using the validity index
+-- (valid_to); all other conditions are checked per file version. Every page
+-- evaluates the filter again, so pages are only requested explicitly or when
+-- streaming to web socket clients, not for regular (full) file lists
+
+select fv.*
+from fileversion_validity fvv
+join fileversion fv on fv.filehistory_id=fvv.filehistory_id and fv.version=fvv.version
+join filepath fp on fp.path=fv.path
+where 
+	fvv.valid_to>?
+	and fvv.valid_from<=?
+	and fv.status<>?
+	and fv.path like ?
+	and fv.filehistory_id like ?	
+	and fp.depth>=?
+	and fp.depth<=?		
+	and fv.type in (unnest(?))			
+	and (fv.path>? or (fv.path=? and fv.filehistory_id>?))
+order by fv.path, fv.filehistory_id
+limit ?
@@ -0,0 +1,2 @@
+delete from multichunk
+where id in ( unnest(?) )
\ No newline at end of file
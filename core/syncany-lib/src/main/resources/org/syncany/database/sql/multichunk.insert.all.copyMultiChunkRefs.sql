@@ -0,0 +1,11 @@
+merge into multichunk_chunk as multichunk_chunk_target
+using (
+	select distinct cast(? as varchar(40)), chunk_checksum
+	from multichunk_chunk
+	where multichunk_id in ( unnest(?) ) and chunk_checksum in ( unnest(?) )
+) as multichunk_chunk_ref(multichunk_id, chunk_checksum)
+on (
+	multichunk_chunk_target.multichunk_id = multichunk_chunk_ref.multichunk_id
+	and multichunk_chunk_target.chunk_checksum = multichunk_chunk_ref.chunk_checksum
+)
+when not matched then insert (multichunk_id, chunk_checksum) values (multichunk_chunk_ref.multichunk_id, multichunk_chunk_ref.chunk_checksum)
\ No newline at end of file
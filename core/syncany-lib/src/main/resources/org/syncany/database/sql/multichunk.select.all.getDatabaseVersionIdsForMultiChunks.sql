@@ -0,0 +1,3 @@
+select distinct databaseversion_id
+from multichunk
+where id in ( unnest(?) )
\ No newline at end of file
@@ -0,0 +1,5 @@
+select mcc.chunk_checksum, mc.id, mc.size
+from multichunk_chunk mcc
+join multichunk mc on mc.id=mcc.multichunk_id
+where mcc.chunk_checksum in ( unnest(?) )
+order by mc.id
\ No newline at end of file
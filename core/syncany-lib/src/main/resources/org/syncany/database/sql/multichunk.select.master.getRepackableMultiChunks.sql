@@ -0,0 +1,14 @@
+select mc.id as multichunk_id, mc.size, mcc.chunk_checksum, dbv.client, dbv.localtime, dbv.vectorclock_serialized, lr.live_ratio
+from multichunk mc
+join databaseversion dbv on mc.databaseversion_id=dbv.id
+join multichunk_chunk mcc on mc.id=mcc.multichunk_id
+join (
+	select mc1.id, cast(sum(c1.size) as double) / mc1.size as live_ratio
+	from multichunk mc1
+	join multichunk_chunk mcc1 on mc1.id=mcc1.multichunk_id
+	join chunk c1 on mcc1.chunk_checksum=c1.checksum
+	where mc1.size > 0
+	group by mc1.id, mc1.size
+) lr on mc.id=lr.id
+where dbv.status='MASTER' and lr.live_ratio < ?
+order by lr.live_ratio, mc.id
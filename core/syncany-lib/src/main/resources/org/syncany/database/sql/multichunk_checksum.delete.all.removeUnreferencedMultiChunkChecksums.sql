@@ -0,0 +1,2 @@
+delete from multichunk_checksum
+where id not in (select id from multichunk)
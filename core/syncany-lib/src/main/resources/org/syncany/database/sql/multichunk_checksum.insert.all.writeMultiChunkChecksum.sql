@@ -0,0 +1,5 @@
+merge into multichunk_checksum as multichunk_checksum_target
+using (values(?, ?)) as multichunk_checksum_ref(id, checksum)
+on (multichunk_checksum_target.id = multichunk_checksum_ref.id)
+when matched then update set checksum = multichunk_checksum_ref.checksum
+when not matched then insert (id, checksum) values (multichunk_checksum_ref.id, multichunk_checksum_ref.checksum)
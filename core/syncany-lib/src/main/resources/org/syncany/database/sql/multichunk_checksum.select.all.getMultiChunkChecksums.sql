@@ -0,0 +1,2 @@
+select id, checksum
+from multichunk_checksum
@@ -42,6 +42,15 @@ CREATE CACHED TABLE filecontent_chunk (
   FOREIGN KEY (chunk_checksum) REFERENCES chunk (checksum) ON DELETE NO ACTION ON UPDATE NO ACTION
 );
 
+CREATE CACHED TABLE filecontent_resumepoint (
+  filecontent_checksum varchar(40) NOT NULL,
+  chunk_offset bigint NOT NULL,
+  chunk_count int NOT NULL,
+  prefix_checksum varchar(255) NOT NULL,
+  PRIMARY KEY (filecontent_checksum),
+  FOREIGN KEY (filecontent_checksum) REFERENCES filecontent (checksum) ON DELETE NO ACTION ON UPDATE NO ACTION
+);
+
 CREATE CACHED TABLE filehistory (
   id varchar(40) NOT NULL,
   databaseversion_id int NOT NULL,
@@ -68,6 +77,21 @@ CREATE CACHED TABLE fileversion (
   FOREIGN KEY (filecontent_checksum) REFERENCES filecontent (checksum) ON DELETE NO ACTION ON UPDATE NO ACTION
 );
 
+CREATE CACHED TABLE fileversion_filekey (
+  filehistory_id varchar(40) NOT NULL,
+  version int NOT NULL,
+  filekey varchar(255) NOT NULL,
+  PRIMARY KEY (filehistory_id, version)
+);
+
+CREATE CACHED TABLE filepath (
+  path varchar(1024) NOT NULL,
+  parent_path varchar(1024) NOT NULL,
+  depth int NOT NULL,
+  PRIMARY KEY (path),
+  UNIQUE (parent_path, path)
+);
+
 CREATE CACHED TABLE fileversion_purge (
   filehistory_id varchar(40) NOT NULL,
   fileversion_maxpurgeversion int NOT NULL,
@@ -75,6 +99,15 @@ CREATE CACHED TABLE fileversion_purge (
   PRIMARY KEY (filehistory_id, fileversion_maxpurgeversion, databaseversion_id)  
 );
 
+CREATE CACHED TABLE fileversion_validity (
+  filehistory_id varchar(40) NOT NULL,
+  version int NOT NULL,
+  valid_from datetime NOT NULL,
+  valid_to datetime NOT NULL,
+  PRIMARY KEY (filehistory_id, version),
+  UNIQUE (valid_to, filehistory_id, version)
+);
+
 CREATE CACHED TABLE multichunk (
   id varchar(40) NOT NULL,
   databaseversion_id int NOT NULL,
@@ -98,6 +131,12 @@ CREATE CACHED TABLE multichunk_muddy (
   PRIMARY KEY (id)
 );
 
+CREATE CACHED TABLE multichunk_checksum (
+  id varchar(40) NOT NULL,
+  checksum varchar(32) NOT NULL,
+  PRIMARY KEY (id)
+);
+
 CREATE CACHED TABLE known_databases (
   id int NOT NULL IDENTITY,
   client varchar(45) NOT NULL,
@@ -2,9 +2,13 @@ DELETE FROM multichunk_muddy;
 DELETE FROM multichunk_chunk;
 DELETE FROM multichunk;
 DELETE FROM fileversion_purge;
+DELETE FROM fileversion_filekey;
+DELETE FROM fileversion_validity;
 DELETE FROM fileversion;
 DELETE FROM filehistory;
+DELETE FROM filepath;
 DELETE FROM filecontent_chunk;
+DELETE FROM filecontent_resumepoint;
 DELETE FROM filecontent;
 DELETE FROM databaseversion_vectorclock;
 DELETE FROM chunk;
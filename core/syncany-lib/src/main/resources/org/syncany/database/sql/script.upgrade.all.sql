@@ -0,0 +1,58 @@
+-- Upgrades the tables of an existing database. Executed with the first 
+-- connection to an existing database after the application is started, so
+-- all statements must be idempotent.
+
+-- Local resume points for appended files (filecontent_resumepoint)
+
+CREATE CACHED TABLE IF NOT EXISTS filecontent_resumepoint (
+  filecontent_checksum varchar(40) NOT NULL,
+  chunk_offset bigint NOT NULL,
+  chunk_count int NOT NULL,
+  prefix_checksum varchar(255) NOT NULL,
+  PRIMARY KEY (filecontent_checksum),
+  FOREIGN KEY (filecontent_checksum) REFERENCES filecontent (checksum) ON DELETE NO ACTION ON UPDATE NO ACTION
+);
+
+-- Local file keys of indexed file versions (fileversion_filekey)
+
+CREATE CACHED TABLE IF NOT EXISTS fileversion_filekey (
+  filehistory_id varchar(40) NOT NULL,
+  version int NOT NULL,
+  filekey varchar(255) NOT NULL,
+  PRIMARY KEY (filehistory_id, version)
+);
+
+-- Parent directory and depth of all paths (filepath), filled by the
+-- application if empty (see FileVersionSqlDao#writeMissingFilePaths).
+-- The unique constraint doubles as index to list a directory.
+
+CREATE CACHED TABLE IF NOT EXISTS filepath (
+  path varchar(1024) NOT NULL,
+  parent_path varchar(1024) NOT NULL,
+  depth int NOT NULL,
+  PRIMARY KEY (path),
+  UNIQUE (parent_path, path)
+);
+
+-- Validity interval of all master file versions (fileversion_validity), filled
+-- by the application if empty (see FileVersionSqlDao#writeMissingFileVersionValidity).
+-- The unique constraint doubles as index for point-in-time queries.
+
+CREATE CACHED TABLE IF NOT EXISTS fileversion_validity (
+  filehistory_id varchar(40) NOT NULL,
+  version int NOT NULL,
+  valid_from datetime NOT NULL,
+  valid_to datetime NOT NULL,
+  PRIMARY KEY (filehistory_id, version),
+  UNIQUE (valid_to, filehistory_id, version)
+);
+
+-- Local MD5 checksums of uploaded (encrypted) multichunks (multichunk_checksum),
+-- used to verify the remote multichunks (see VerifyOperation). Not deleted with
+-- the other tables, because the checksums describe the remote files.
+
+CREATE CACHED TABLE IF NOT EXISTS multichunk_checksum (
+  id varchar(40) NOT NULL,
+  checksum varchar(32) NOT NULL,
+  PRIMARY KEY (id)
+);
@@ -21,12 +21,16 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.syncany.tests.integration.daemon.BasicWatchServerTest;
+import org.syncany.tests.integration.daemon.LsFolderRequestStreamingTest;
 import org.syncany.tests.integration.daemon.NoCliRequestsWhileSyncingTest;
+import org.syncany.tests.integration.daemon.ReadOnlyRequestsWhileSyncingTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
 	BasicWatchServerTest.class,
-	NoCliRequestsWhileSyncingTest.class
+	LsFolderRequestStreamingTest.class,
+	NoCliRequestsWhileSyncingTest.class,
+	ReadOnlyRequestsWhileSyncingTest.class
 })
 
 public class DaemonTestSuite {
@@ -25,14 +25,18 @@ import org.syncany.tests.integration.operations.CleanupOperationTest;
 import org.syncany.tests.integration.operations.ConnectOperationTest;
 import org.syncany.tests.integration.operations.FileSystemActionComparatorTest;
 import org.syncany.tests.integration.operations.FileSystemActionReconciliatorTest;
+import org.syncany.tests.integration.operations.FileSystemActionSchedulerTest;
 import org.syncany.tests.integration.operations.IndexerTest;
 import org.syncany.tests.integration.operations.InitOperationTest;
+import org.syncany.tests.integration.operations.LsRemoteOperationTest;
 import org.syncany.tests.integration.operations.NotificationListenerTest;
 import org.syncany.tests.integration.operations.OperationPerformanceTest;
 import org.syncany.tests.integration.operations.PluginOperationTest;
 import org.syncany.tests.integration.operations.RecursiveWatcherTest;
+import org.syncany.tests.integration.operations.RemotePrefetcherTest;
 import org.syncany.tests.integration.operations.StatusOperationTest;
 import org.syncany.tests.integration.operations.SyncUpOperationTest;
+import org.syncany.tests.integration.operations.VerifyOperationTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
@@ -41,14 +45,18 @@ import org.syncany.tests.integration.operations.SyncUpOperationTest;
 	ConnectOperationTest.class,
 	FileSystemActionComparatorTest.class,
 	FileSystemActionReconciliatorTest.class,
+	FileSystemActionSchedulerTest.class,
 	IndexerTest.class,
 	InitOperationTest.class,
+	LsRemoteOperationTest.class,
 	NotificationListenerTest.class,
 	OperationPerformanceTest.class,
 	PluginOperationTest.class,
 	RecursiveWatcherTest.class,
+	RemotePrefetcherTest.class,
 	StatusOperationTest.class,
-	SyncUpOperationTest.class	
+	SyncUpOperationTest.class,
+	VerifyOperationTest.class
 })
 public class OperationTestSuite {
 	// This class executes all tests
@@ -26,6 +26,10 @@ import org.syncany.tests.integration.plugins.TransferSettingsTest;
 import org.syncany.tests.integration.plugins.local.LocalTransferManagerPluginTest;
 import org.syncany.tests.integration.plugins.unreliable_local.CleanupInterruptedTest;
 import org.syncany.tests.integration.plugins.unreliable_local.UploadInterruptedTest;
+import org.syncany.tests.unit.chunk.AdaptiveGzipTransformerTest;
+import org.syncany.tests.unit.chunk.ChunkerResumePointTest;
+import org.syncany.tests.unit.chunk.DeduperTest;
+import org.syncany.tests.unit.chunk.FastCdcChunkerTest;
 import org.syncany.tests.unit.chunk.FixedOffsetChunkerTest;
 import org.syncany.tests.unit.chunk.FrameworkCombinationTest;
 import org.syncany.tests.unit.chunk.MultiChunkerTest;
@@ -38,6 +42,8 @@ import org.syncany.tests.unit.crypto.CipherSessionTest;
 import org.syncany.tests.unit.crypto.CipherSpecsTest;
 import org.syncany.tests.unit.crypto.CipherUtilTest;
 import org.syncany.tests.unit.crypto.MultiCipherStreamsTest;
+import org.syncany.tests.unit.operations.MultiChunkDownloadPlannerTest;
+import org.syncany.tests.unit.operations.cleanup.TieredMergePolicyTest;
 import org.syncany.tests.util.SqlRunnerTest;
 
 @RunWith(Suite.class)
@@ -56,7 +62,17 @@ import org.syncany.tests.util.SqlRunnerTest;
 		MultiChunkerTest.class,
 		FixedOffsetChunkerTest.class,
 		TTTDChunkerTest.class,
+		FastCdcChunkerTest.class,
 		FrameworkCombinationTest.class,
+		ChunkerResumePointTest.class,
+		DeduperTest.class,
+		AdaptiveGzipTransformerTest.class,
+
+		// Cleanup
+		TieredMergePolicyTest.class,
+
+		// Down
+		MultiChunkDownloadPlannerTest.class,
 
 		// Connection
 		PluginsTest.class,
@@ -21,10 +21,13 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.syncany.tests.integration.scenarios.AllFilePossibilitiesScenarioTest;
+import org.syncany.tests.integration.scenarios.AppendedFileScenarioTest;
+import org.syncany.tests.integration.scenarios.BatchedDownScenarioTest;
 import org.syncany.tests.integration.scenarios.CallUpWhileStillWritingFileScenarioTest;
 import org.syncany.tests.integration.scenarios.ChangedAttributesScenarioTest;
 import org.syncany.tests.integration.scenarios.ChangedTypeScenarioTest;
 import org.syncany.tests.integration.scenarios.CleanupMergeDatabaseFilesScenarioTest;
+import org.syncany.tests.integration.scenarios.CopyNoDownloadMultiChunksScenarioTest;
 import org.syncany.tests.integration.scenarios.CreateSimilarFileParallelScenarioTest;
 import org.syncany.tests.integration.scenarios.DirtyDatabaseScenarioTest;
 import org.syncany.tests.integration.scenarios.DirtyDatabaseVersionsScenarioTest;
@@ -32,6 +35,7 @@ import org.syncany.tests.integration.scenarios.DoSameActionAtTwoClientsTest;
 import org.syncany.tests.integration.scenarios.EmptyFileScenarioTest;
 import org.syncany.tests.integration.scenarios.EmptyFolderScenarioTest;
 import org.syncany.tests.integration.scenarios.EvilCUpWithoutDownScenarioTest;
+import org.syncany.tests.integration.scenarios.FileKeyMoveScenarioTest;
 import org.syncany.tests.integration.scenarios.FileLockedScenarioTest;
 import org.syncany.tests.integration.scenarios.FileTreeMoveToSubfolderScenarioTest;
 import org.syncany.tests.integration.scenarios.FileVanishedScenarioTest;
@@ -53,6 +57,8 @@ import org.syncany.tests.integration.scenarios.ManySyncUpsAndOtherClientSyncDown
 import org.syncany.tests.integration.scenarios.ManySyncUpsLargeFileScenarioTest;
 import org.syncany.tests.integration.scenarios.MixedUpDownScenarioTest;
 import org.syncany.tests.integration.scenarios.MoveFolderWithQuotesOnWindowsScenario;
+import org.syncany.tests.integration.scenarios.PagedLsAndLogScenarioTest;
+import org.syncany.tests.integration.scenarios.ParallelApplyScenarioTest;
 import org.syncany.tests.integration.scenarios.RenameDeleteScenarioTest;
 import org.syncany.tests.integration.scenarios.RenameFileWithDiffModifiedDateScenarioTest;
 import org.syncany.tests.integration.scenarios.RenameNoDownloadMultiChunksScenarioTest;
@@ -61,15 +67,20 @@ import org.syncany.tests.integration.scenarios.RestoreFileScenarioTest;
 import org.syncany.tests.integration.scenarios.RestrictedXmlCharInFilenameScenarioTest;
 import org.syncany.tests.integration.scenarios.SingleFileNoConflictsScenarioTest;
 import org.syncany.tests.integration.scenarios.SingleFolderNoConflictsScenarioTest;
+import org.syncany.tests.integration.scenarios.SnapshotBootstrapScenarioTest;
 import org.syncany.tests.integration.scenarios.SymlinkSyncScenarioTest;
+import org.syncany.tests.integration.scenarios.TieredDatabaseMergeScenarioTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
 		AllFilePossibilitiesScenarioTest.class,
+		AppendedFileScenarioTest.class,
+		BatchedDownScenarioTest.class,
 		CallUpWhileStillWritingFileScenarioTest.class,
 		ChangedAttributesScenarioTest.class,
 		ChangedTypeScenarioTest.class,
 		CleanupMergeDatabaseFilesScenarioTest.class,
+		CopyNoDownloadMultiChunksScenarioTest.class,
 		CreateSimilarFileParallelScenarioTest.class,
 		DirtyDatabaseScenarioTest.class,
 		DirtyDatabaseVersionsScenarioTest.class,
@@ -77,6 +88,7 @@ import org.syncany.tests.integration.scenarios.SymlinkSyncScenarioTest;
 		EmptyFileScenarioTest.class,
 		EmptyFolderScenarioTest.class,
 		EvilCUpWithoutDownScenarioTest.class,
+		FileKeyMoveScenarioTest.class,
 		FileLockedScenarioTest.class,
 		FilenameCapitalizationWindowsScenarioTest.class,
 		FileTreeMoveToSubfolderScenarioTest.class,
@@ -98,6 +110,8 @@ import org.syncany.tests.integration.scenarios.SymlinkSyncScenarioTest;
 		ManySyncUpsAndOtherClientSyncDownScenarioTest.class,
 		MixedUpDownScenarioTest.class,
 		MoveFolderWithQuotesOnWindowsScenario.class,
+		PagedLsAndLogScenarioTest.class,
+		ParallelApplyScenarioTest.class,
 		RenameFileWithDiffModifiedDateScenarioTest.class,
 		RenameToExistingFileScenarioTest.class,
 		RenameNoDownloadMultiChunksScenarioTest.class,
@@ -106,7 +120,9 @@ import org.syncany.tests.integration.scenarios.SymlinkSyncScenarioTest;
 		RestoreFileScenarioTest.class,
 		SingleFileNoConflictsScenarioTest.class,
 		SingleFolderNoConflictsScenarioTest.class,
+		SnapshotBootstrapScenarioTest.class,
 		SymlinkSyncScenarioTest.class,
+		TieredDatabaseMergeScenarioTest.class,
 })
 public class ScenarioTestSuite {
 	// This class executes all tests
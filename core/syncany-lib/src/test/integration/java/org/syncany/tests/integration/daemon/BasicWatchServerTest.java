@@ -22,8 +22,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Test;
 import org.syncany.config.LocalEventBus;
@@ -60,7 +62,7 @@ import com.google.common.eventbus.Subscribe;
  * @author Pim Otte
  */
 public class BasicWatchServerTest {
-	private Map<Integer, Response> responses = new HashMap<Integer, Response>();
+	private Map<Integer, Response> responses = new ConcurrentHashMap<Integer, Response>();
 
 	private GetFileFolderResponseInternal internalResponse;
 	private LocalEventBus eventBus;
@@ -186,7 +188,11 @@ public class BasicWatchServerTest {
 			i++;
 		}
 
-		assertEquals((long) files[0].getSize(), internalResponse.getTempFile().length());
+		ByteArrayOutputStream fileOutputStream = new ByteArrayOutputStream();
+		internalResponse.getAssembler().stream(fileOutputStream, 0, internalResponse.getAssembler().getLength());
+
+		assertEquals((long) files[0].getSize(), internalResponse.getAssembler().getLength());
+		assertEquals((long) files[0].getSize(), fileOutputStream.size());
 
 		// Cli Requests
 		clientA.copyFile("file-1", "file-1.bak");
@@ -0,0 +1,95 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.config.LocalEventBus;
+import org.syncany.operations.daemon.messages.LsFolderRequest;
+import org.syncany.operations.daemon.messages.LsFolderRequestHandler;
+import org.syncany.operations.daemon.messages.LsFolderResponse;
+import org.syncany.operations.ls.LsOperationOptions;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+import com.google.common.eventbus.Subscribe;
+
+public class LsFolderRequestStreamingTest {
+	private List<LsFolderResponse> postedResponses = Collections.synchronizedList(new ArrayList<LsFolderResponse>());
+
+	@Test
+	public void testOnlyStreamIfMultipleResponsesSupported() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+
+		// One more than the streaming page size
+		for (int i = 0; i < 1001; i++) {
+			clientA.createNewFile("file" + i, 10);
+		}
+
+		clientA.up();
+
+		LocalEventBus.getInstance().register(this);
+
+		try {
+			// REST: single full response, nothing posted
+			LsFolderResponse restResponse = (LsFolderResponse) new LsFolderRequestHandler(clientA.getConfig()).handleRequest(createLsRequest(clientA, false));
+
+			assertEquals(1001, restResponse.getResult().getFileList().size());
+			assertNull(restResponse.getResult().getNextPageToken());
+			assertEquals(0, postedResponses.size());
+
+			// Web socket: first page posted, last page returned
+			LsFolderResponse webSocketResponse = (LsFolderResponse) new LsFolderRequestHandler(clientA.getConfig()).handleRequest(createLsRequest(clientA, true));
+
+			assertEquals(1, postedResponses.size());
+			assertEquals(1000, postedResponses.get(0).getResult().getFileList().size());
+			assertNotNull(postedResponses.get(0).getResult().getNextPageToken());
+
+			assertEquals(1, webSocketResponse.getResult().getFileList().size());
+			assertNull(webSocketResponse.getResult().getNextPageToken());
+		}
+		finally {
+			LocalEventBus.getInstance().unregister(this);
+			clientA.deleteTestData();
+		}
+	}
+
+	@Subscribe
+	public void onLsFolderResponse(LsFolderResponse response) {
+		postedResponses.add(response);
+	}
+
+	private LsFolderRequest createLsRequest(TestClient client, boolean multipleResponsesSupported) {
+		LsFolderRequest lsRequest = new LsFolderRequest();
+
+		lsRequest.setRoot(client.getConfig().getLocalDir().getAbsolutePath());
+		lsRequest.setOptions(new LsOperationOptions());
+		lsRequest.setMultipleResponsesSupported(multipleResponsesSupported);
+
+		return lsRequest;
+	}
+}
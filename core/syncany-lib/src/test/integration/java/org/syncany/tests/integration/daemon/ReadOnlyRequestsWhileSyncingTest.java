@@ -0,0 +1,87 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.syncany.database.SqlDatabase;
+import org.syncany.operations.daemon.messages.LsFolderRequest;
+import org.syncany.operations.daemon.messages.LsFolderRequestHandler;
+import org.syncany.operations.daemon.messages.LsFolderResponse;
+import org.syncany.operations.daemon.messages.api.Response;
+import org.syncany.operations.ls.LsOperationOptions;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class ReadOnlyRequestsWhileSyncingTest {
+	@Test
+	public void testLsRequestAnsweredWhileSyncHoldsTransaction() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		final TestClient clientA = new TestClient("A", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.up();
+
+		// Simulate a running sync: uncommitted (and locking) changes in another connection
+		SqlDatabase syncDatabase = new SqlDatabase(clientA.getConfig());
+		syncDatabase.getConnection().setAutoCommit(false);
+		syncDatabase.getConnection().prepareStatement("update fileversion set path='file1-renamed.jpg'").executeUpdate();
+
+		final LsFolderRequest lsRequest = new LsFolderRequest();
+		lsRequest.setId(1234);
+		lsRequest.setRoot(clientA.getConfig().getLocalDir().getAbsolutePath());
+		lsRequest.setOptions(new LsOperationOptions());
+
+		ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+
+		Future<Response> responseFuture = requestExecutor.submit(new Callable<Response>() {
+			@Override
+			public Response call() throws Exception {
+				return new LsFolderRequestHandler(clientA.getConfig()).handleRequest(lsRequest);
+			}
+		});
+
+		try {
+			// Must not wait for the sync transaction, and must only see committed data
+			Response response = responseFuture.get(10, TimeUnit.SECONDS);
+			assertTrue(response instanceof LsFolderResponse);
+
+			LsFolderResponse lsResponse = (LsFolderResponse) response;
+
+			assertEquals(1234, lsResponse.getRequestId().intValue());
+			assertEquals(1, lsResponse.getResult().getFileList().size());
+			assertEquals("file1.jpg", lsResponse.getResult().getFileList().get(0).getPath());
+		}
+		finally {
+			syncDatabase.getConnection().rollback();
+			syncDatabase.close();
+
+			requestExecutor.shutdownNow();
+			clientA.deleteTestData();
+		}
+	}
+}
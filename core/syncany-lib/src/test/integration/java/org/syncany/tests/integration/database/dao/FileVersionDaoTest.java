@@ -21,6 +21,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.sql.Connection;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
@@ -61,4 +63,58 @@ public class FileVersionDaoTest {
 		databaseConnection.close();
 		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
 	}	
+
+	@Test
+	public void testFileVersionGetFileListFromFilePaths() throws Exception {
+		// Setup
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		Connection databaseConnection = testConfig.createDatabaseConnection();
+				
+		// Run
+		TestSqlUtil.runSqlFromResource(databaseConnection, "test.insert.set2.sql");
+
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(databaseConnection);
+		fileVersionDao.writeMissingFilePaths();
+		fileVersionDao.writeMissingFileVersionValidity();
+		
+		List<FileVersion> rootFileList = fileVersionDao.getFileList(null, null, false, false, false, null);
+		List<FileVersion> directoryFileList = fileVersionDao.getFileList("file1%", null, false, false, false, null);
+		List<FileVersion> recursiveFileList = fileVersionDao.getFileList("file1%", null, false, true, false, null);
+		
+		// Test
+		assertEquals(50, rootFileList.size());
+		assertEquals(11, directoryFileList.size());
+		assertEquals(11, recursiveFileList.size());
+		
+		// Tear down
+		databaseConnection.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+	}	
+
+	@Test
+	public void testFileVersionGetFileListAtDate() throws Exception {
+		// Setup
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		Connection databaseConnection = testConfig.createDatabaseConnection();
+				
+		// Run
+		TestSqlUtil.runSqlFromResource(databaseConnection, "test.insert.set2.sql");
+
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(databaseConnection);
+		fileVersionDao.writeMissingFilePaths();
+		fileVersionDao.writeMissingFileVersionValidity();
+		
+		List<FileVersion> earlyFileList = fileVersionDao.getFileList(null, new Date(1389540371000L), false, false, false, null);
+		List<FileVersion> beforeFirstFileList = fileVersionDao.getFileList(null, new Date(1389540367000L), false, false, false, null);
+		List<FileVersion> currentFileList = fileVersionDao.getFileList(null, new Date(), false, false, false, null);
+		
+		// Test
+		assertEquals(17, earlyFileList.size());
+		assertEquals(0, beforeFirstFileList.size());
+		assertEquals(50, currentFileList.size());
+		
+		// Tear down
+		databaseConnection.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+	}	
 }
@@ -18,6 +18,7 @@
 package org.syncany.tests.integration.operations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -469,10 +470,10 @@ public class CleanupOperationTest {
 			clientB.upWithForceChecksum();
 		}
 
-		// B: Cleanup (2 clients, so 7 databases is too much)
+		// B: Cleanup (2 clients, so 7 databases is too much; A's merged database is kept)
 		cleanupOperationResult = clientB.cleanup(options);
 		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
-		assertEquals(7, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(6, cleanupOperationResult.getMergedDatabaseFilesCount());
 		assertEquals(0, cleanupOperationResult.getRemovedMultiChunksCount());
 		assertEquals(0, cleanupOperationResult.getRemovedOldVersionsCount());
 
@@ -517,12 +518,12 @@ public class CleanupOperationTest {
 		cleanupOperationResult = clientA.cleanup(options);
 		assertEquals(CleanupResultCode.NOK_RECENTLY_CLEANED, cleanupOperationResult.getResultCode());
 
-		// When force is on, the cleanup should go through
+		// When force is on, the cleanup should go through (the previously merged database is kept)
 		options.setForce(true);
 
 		cleanupOperationResult = clientA.cleanup(options);
 		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
-		assertEquals(16, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(15, cleanupOperationResult.getMergedDatabaseFilesCount());
 		assertEquals(0, cleanupOperationResult.getRemovedMultiChunksCount());
 		assertEquals(0, cleanupOperationResult.getRemovedOldVersionsCount());
 
@@ -743,4 +744,107 @@ public class CleanupOperationTest {
 		// Tear down
 		clientA.deleteTestData();
 	}
+
+	@Test
+	public void testRepackPartiallyUsedMultiChunk() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+		java.sql.Connection databaseConnectionA = clientA.getConfig().createDatabaseConnection();
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(true);
+		options.setPurgeFileVersionSettings(new TreeMap<Long, TimeUnit>());
+		options.setMinKeepSeconds(0);
+		options.setMinSecondsBetweenCleanups(0);
+
+		// A: Both files' chunks end up in one multichunk
+		clientA.createNewFile("small-file.jpg", 10 * 1024);
+		clientA.createNewFile("large-file.jpg", 100 * 1024);
+		clientA.up();
+
+		String oldMultiChunkId = TestSqlUtil.runSqlSelect("select id from multichunk", databaseConnectionA);
+		assertEquals("1", TestSqlUtil.runSqlSelect("select count(*) from multichunk", databaseConnectionA));
+
+		// B: Knows the multichunk before the cleanup
+		clientB.down();
+
+		// A: Delete the large file; most of the multichunk is now unused
+		clientA.deleteFile("large-file.jpg");
+		clientA.up();
+
+		CleanupOperationResult cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		assertEquals(0, cleanupOperationResult.getRemovedMultiChunksCount());
+		assertEquals(1, cleanupOperationResult.getRepackedMultiChunksCount());
+		assertTrue(cleanupOperationResult.getRepackedMultiChunksSize() > 0);
+
+		// The multichunk was replaced locally and remotely
+		assertEquals("1", TestSqlUtil.runSqlSelect("select count(*) from multichunk", databaseConnectionA));
+		assertFalse(oldMultiChunkId.equals(TestSqlUtil.runSqlSelect("select id from multichunk", databaseConnectionA)));
+		assertEquals("0", TestSqlUtil.runSqlSelect("select count(*) from multichunk_chunk where multichunk_id='" + oldMultiChunkId + "'",
+				databaseConnectionA));
+
+		File[] remoteMultiChunkFiles = new File(testConnection.getPath(), "multichunks").listFiles();
+		assertEquals(1, remoteMultiChunkFiles.length);
+		assertFalse(remoteMultiChunkFiles[0].getName().contains(oldMultiChunkId));
+
+		// B: Applies the repacking to its local database
+		clientB.down();
+		TestAssertUtil.assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// C: Restores the remaining file from the new multichunk
+		clientC.down();
+		TestAssertUtil.assertFileEquals(clientA.getLocalFile("small-file.jpg"), clientC.getLocalFile("small-file.jpg"));
+		TestAssertUtil.assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientC.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+
+	@Test
+	public void testRepackSizeLimitNotExceeded() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		java.sql.Connection databaseConnectionA = clientA.getConfig().createDatabaseConnection();
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(true);
+		options.setPurgeFileVersionSettings(new TreeMap<Long, TimeUnit>());
+		options.setMinKeepSeconds(0);
+		options.setMinSecondsBetweenCleanups(0);
+
+		clientA.createNewFile("small-file.jpg", 10 * 1024);
+		clientA.createNewFile("large-file.jpg", 100 * 1024);
+		clientA.up();
+
+		String oldMultiChunkId = TestSqlUtil.runSqlSelect("select id from multichunk", databaseConnectionA);
+		long oldMultiChunkSize = Long.parseLong(TestSqlUtil.runSqlSelect("select size from multichunk", databaseConnectionA));
+
+		clientA.deleteFile("large-file.jpg");
+		clientA.up();
+
+		// Limit is one byte below the multichunk size: Nothing is repacked
+		options.setMaxRepackSize(oldMultiChunkSize - 1);
+
+		CleanupOperationResult cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(0, cleanupOperationResult.getRepackedMultiChunksCount());
+		assertEquals(oldMultiChunkId, TestSqlUtil.runSqlSelect("select id from multichunk", databaseConnectionA));
+
+		// Limit is exactly the multichunk size: The multichunk is repacked
+		options.setMaxRepackSize(oldMultiChunkSize);
+
+		cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(1, cleanupOperationResult.getRepackedMultiChunksCount());
+		assertTrue(cleanupOperationResult.getRepackedMultiChunksSize() <= oldMultiChunkSize);
+		assertFalse(oldMultiChunkId.equals(TestSqlUtil.runSqlSelect("select id from multichunk", databaseConnectionA)));
+
+		// Tear down
+		clientA.deleteTestData();
+	}
 }
@@ -0,0 +1,188 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.operations.down.FileSystemActionScheduler;
+import org.syncany.operations.down.actions.DeleteFileSystemAction;
+import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.FileSystemActionResult;
+import org.syncany.operations.down.actions.NewFileSystemAction;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class FileSystemActionSchedulerTest {
+	@Test
+	public void testIndependentActionsRunConcurrently() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createDummyConfig();
+		AtomicInteger executionCounter = new AtomicInteger(0);
+		CountDownLatch concurrentLatch = new CountDownLatch(2);
+
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+		List<RecordingNewFileSystemAction> newFileActions = new ArrayList<RecordingNewFileSystemAction>();
+
+		for (int i = 0; i < 20; i++) {
+			RecordingNewFileSystemAction newFileAction = new RecordingNewFileSystemAction(config, createFileVersion("folder/file" + i, FileType.FILE),
+					executionCounter, (i < 2) ? concurrentLatch : null);
+
+			newFileActions.add(newFileAction);
+			actions.add(newFileAction);
+		}
+
+		RecordingDeleteFileSystemAction deleteFolderAction = new RecordingDeleteFileSystemAction(config, createFileVersion("otherfolder", FileType.FOLDER), executionCounter);
+		actions.add(deleteFolderAction);
+
+		// Run
+		new FileSystemActionScheduler(4).execute(actions);
+
+		// Test
+		for (RecordingNewFileSystemAction newFileAction : newFileActions) {
+			assertTrue("New file action should have been executed", newFileAction.executionIndex >= 0);
+			assertTrue("First two actions should have run concurrently", newFileAction.latchReleased);
+		}
+
+		assertEquals("Delete folder action must run after all new file actions", 20, deleteFolderAction.executionIndex);
+	}
+
+	@Test
+	public void testSamePathActionsRunSequentially() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createDummyConfig();
+		AtomicInteger executionCounter = new AtomicInteger(0);
+
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+
+		RecordingNewFileSystemAction firstAction = new RecordingNewFileSystemAction(config, createFileVersion("file1", FileType.FILE), executionCounter, null);
+		RecordingNewFileSystemAction secondAction = new RecordingNewFileSystemAction(config, createFileVersion("FILE1", FileType.FILE), executionCounter, null);
+
+		firstAction.sleepMillis = 200;
+
+		actions.add(firstAction);
+		actions.add(secondAction);
+
+		// Run
+		new FileSystemActionScheduler(4).execute(actions);
+
+		// Test
+		assertEquals(0, firstAction.executionIndex);
+		assertEquals(1, secondAction.executionIndex);
+	}
+
+	@Test
+	public void testFailingActionStopsExecution() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createDummyConfig();
+		AtomicInteger executionCounter = new AtomicInteger(0);
+
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+
+		RecordingNewFileSystemAction failingAction = new RecordingNewFileSystemAction(config, createFileVersion("file1", FileType.FILE), executionCounter, null);
+		failingAction.fail = true;
+
+		RecordingDeleteFileSystemAction deleteFolderAction = new RecordingDeleteFileSystemAction(config, createFileVersion("folder", FileType.FOLDER), executionCounter);
+
+		actions.add(failingAction);
+		actions.add(new RecordingNewFileSystemAction(config, createFileVersion("file2", FileType.FILE), executionCounter, null));
+		actions.add(deleteFolderAction);
+
+		// Run
+		try {
+			new FileSystemActionScheduler(4).execute(actions);
+			fail("Exception expected");
+		}
+		catch (Exception e) {
+			assertEquals("Action failed", e.getMessage());
+		}
+
+		// Test
+		assertFalse("Delete folder action must not run after failure", deleteFolderAction.executionIndex >= 0);
+	}
+
+	private FileVersion createFileVersion(String path, FileType type) {
+		FileVersion fileVersion = new FileVersion();
+		fileVersion.setPath(path);
+		fileVersion.setType(type);
+		fileVersion.setVersion(1L);
+
+		return fileVersion;
+	}
+
+	private static class RecordingNewFileSystemAction extends NewFileSystemAction {
+		private AtomicInteger executionCounter;
+		private CountDownLatch concurrentLatch;
+
+		private volatile int executionIndex = -1;
+		private volatile boolean latchReleased = true;
+		private volatile long sleepMillis = 0;
+		private volatile boolean fail = false;
+
+		public RecordingNewFileSystemAction(Config config, FileVersion newFileVersion, AtomicInteger executionCounter, CountDownLatch concurrentLatch) {
+			super(config, newFileVersion, null);
+
+			this.executionCounter = executionCounter;
+			this.concurrentLatch = concurrentLatch;
+		}
+
+		@Override
+		public FileSystemActionResult execute() throws Exception {
+			if (fail) {
+				throw new Exception("Action failed");
+			}
+
+			if (concurrentLatch != null) {
+				concurrentLatch.countDown();
+				latchReleased = concurrentLatch.await(5, TimeUnit.SECONDS);
+			}
+
+			Thread.sleep(sleepMillis);
+			executionIndex = executionCounter.getAndIncrement();
+
+			return new FileSystemActionResult();
+		}
+	}
+
+	private static class RecordingDeleteFileSystemAction extends DeleteFileSystemAction {
+		private AtomicInteger executionCounter;
+		private volatile int executionIndex = -1;
+
+		public RecordingDeleteFileSystemAction(Config config, FileVersion deleteFileVersion, AtomicInteger executionCounter) {
+			super(config, deleteFileVersion, deleteFileVersion, null);
+			this.executionCounter = executionCounter;
+		}
+
+		@Override
+		public FileSystemActionResult execute() throws Exception {
+			executionIndex = executionCounter.getAndIncrement();
+			return new FileSystemActionResult();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.operations.down.DownOperationResult;
+import org.syncany.operations.ls_remote.LsRemoteOperation;
+import org.syncany.plugins.local.LocalTransferManager;
+import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.plugins.transfer.StorageException;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.files.RemoteFile;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class LsRemoteOperationTest {
+	@Test
+	public void testChangeMarkerOnlyUsedIfRequested() throws Exception {
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		// Simulates a coarse change marker (e.g. FTP MDTM) that does not change within the test
+		TransferManager staleMarkerTransferManager = createStaleMarkerTransferManager(testConnection, clientB.getConfig());
+
+		clientA.createNewFile("file1.jpg");
+		clientA.up();
+
+		assertEquals(1, new LsRemoteOperation(clientB.getConfig(), staleMarkerTransferManager, true).execute().getUnknownRemoteDatabases().size());
+
+		clientB.down();
+		assertEquals(0, new LsRemoteOperation(clientB.getConfig(), staleMarkerTransferManager, true).execute().getUnknownRemoteDatabases().size());
+
+		clientA.createNewFile("file2.jpg");
+		clientA.up();
+
+		// Marker unchanged: short-cut in the watch loop, but not for regular listings
+		assertEquals(0, new LsRemoteOperation(clientB.getConfig(), staleMarkerTransferManager, true).execute().getUnknownRemoteDatabases().size());
+		assertEquals(1, new LsRemoteOperation(clientB.getConfig(), staleMarkerTransferManager, false).execute().getUnknownRemoteDatabases().size());
+		assertEquals(1, new LsRemoteOperation(clientB.getConfig()).execute().getUnknownRemoteDatabases().size());
+
+		// Regular down is not affected by the stored change marker
+		DownOperationResult downResult = clientB.down();
+		assertEquals(1, downResult.getDownloadedUnknownDatabases().size());
+		assertTrue(clientB.getLocalFile("file2.jpg").exists());
+
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	private TransferManager createStaleMarkerTransferManager(LocalTransferSettings testConnection, Config config) {
+		return new LocalTransferManager(testConnection, config) {
+			@Override
+			public String getChangeMarker(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+				return "stale-marker";
+			}
+		};
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.syncany.database.SqlDatabase;
+import org.syncany.operations.watch.RemotePrefetcher;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestAssertUtil;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class RemotePrefetcherTest {
+	@Test
+	public void testPrefetchDatabaseAndUseInDown() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.up();
+
+		RemotePrefetcher remotePrefetcher = new RemotePrefetcher(clientB.getConfig(), new AtomicBoolean(false), 0);
+		File prefetchedDatabaseFile = clientB.getConfig().getCache().getPrefetchedDatabaseFile("database-A-0000000001");
+
+		assertEquals(1, remotePrefetcher.prefetch());
+		assertTrue(prefetchedDatabaseFile.exists());
+		assertEquals(0, remotePrefetcher.prefetch()); // Nothing new
+
+		clientB.down();
+
+		assertFalse(prefetchedDatabaseFile.exists()); // Moved by down
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+
+		remotePrefetcher.stop();
+
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testPrefetchMultiChunks() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		clientA.createNewFile("file1.jpg", 20 * 1024);
+		clientA.up();
+
+		RemotePrefetcher remotePrefetcher = new RemotePrefetcher(clientB.getConfig(), new AtomicBoolean(false), 10 * 1024 * 1024);
+		assertEquals(1, remotePrefetcher.prefetch());
+
+		File[] cachedFiles = clientB.getConfig().getCacheDir().listFiles();
+		boolean decryptedMultiChunkPrefetched = false;
+
+		for (File cachedFile : cachedFiles) {
+			if (cachedFile.getName().startsWith("multichunk-") && cachedFile.getName().endsWith("-decrypted")) {
+				decryptedMultiChunkPrefetched = true;
+			}
+		}
+
+		assertTrue(decryptedMultiChunkPrefetched);
+
+		clientB.down();
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+
+		remotePrefetcher.stop();
+
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testPrefetchWhileDatabaseInTransaction() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.up();
+		clientB.down();
+
+		clientA.createNewFile("file2.jpg");
+		clientA.up();
+
+		// Simulate a running sync: uncommitted changes in another connection
+		SqlDatabase syncDatabase = new SqlDatabase(clientB.getConfig());
+		syncDatabase.getConnection().setAutoCommit(false);
+		syncDatabase.getConnection().prepareStatement("delete from known_databases").executeUpdate();
+
+		RemotePrefetcher remotePrefetcher = new RemotePrefetcher(clientB.getConfig(), new AtomicBoolean(false), 0);
+
+		// Only database-A-0000000002 is unknown, the uncommitted delete is not visible
+		assertEquals(1, remotePrefetcher.prefetch());
+		assertTrue(clientB.getConfig().getCache().getPrefetchedDatabaseFile("database-A-0000000002").exists());
+		assertFalse(clientB.getConfig().getCache().getPrefetchedDatabaseFile("database-A-0000000001").exists());
+
+		syncDatabase.getConnection().rollback();
+		syncDatabase.close();
+
+		remotePrefetcher.stop();
+
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testPrefetchAbortedWhileSyncRunning() throws Exception {
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.up();
+
+		AtomicBoolean syncRunning = new AtomicBoolean(true);
+		RemotePrefetcher remotePrefetcher = new RemotePrefetcher(clientB.getConfig(), syncRunning, 0);
+
+		assertEquals(0, remotePrefetcher.prefetch());
+		assertFalse(clientB.getConfig().getCache().getPrefetchedDatabaseFile("database-A-0000000001").exists());
+
+		syncRunning.set(false);
+		assertEquals(1, remotePrefetcher.prefetch());
+
+		remotePrefetcher.stop();
+		assertEquals(0, remotePrefetcher.prefetch()); // Stopped
+
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+}
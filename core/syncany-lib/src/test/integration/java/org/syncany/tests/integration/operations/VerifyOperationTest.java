@@ -0,0 +1,156 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.syncany.config.Logging;
+import org.syncany.database.DatabaseConnectionFactory;
+import org.syncany.operations.verify.VerifyOperationOptions;
+import org.syncany.operations.verify.VerifyOperationResult;
+import org.syncany.operations.verify.VerifyOperationResult.VerifyResultCode;
+import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestSqlUtil;
+
+public class VerifyOperationTest {
+	static {
+		Logging.init();
+	}
+
+	@Test
+	public void testVerifyIntactRepository() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.upWithForceChecksum();
+
+		clientA.createNewFile("file2.jpg");
+		clientA.upWithForceChecksum();
+
+		// Test: Checksums recorded at upload time
+		Connection databaseConnectionA = DatabaseConnectionFactory.createConnection(clientA.getDatabaseFile());
+		assertEquals("2", TestSqlUtil.runSqlSelect("select count(*) from multichunk", databaseConnectionA));
+		assertEquals("2", TestSqlUtil.runSqlSelect("select count(*) from multichunk_checksum", databaseConnectionA));
+
+		// Run
+		VerifyOperationResult verifyResult = clientA.verify(new VerifyOperationOptions());
+
+		// Test
+		assertEquals(VerifyResultCode.OK, verifyResult.getResultCode());
+		assertEquals(2, verifyResult.getVerifiedMultiChunksCount());
+		assertEquals(0, verifyResult.getServerVerifiedMultiChunksCount()); // Local plugin has no server-side checksums
+		assertEquals(0, verifyResult.getUnverifiedMultiChunksCount());
+
+		// Tear down
+		clientA.deleteTestData();
+	}
+
+	@Test
+	public void testVerifyCorruptAndMissingMultiChunks() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+
+		for (int i = 1; i <= 3; i++) {
+			clientA.createNewFile("file" + i + ".jpg");
+			clientA.upWithForceChecksum();
+		}
+
+		File[] repoMultiChunkFiles = new File(testConnection.getPath(), "multichunks").listFiles();
+		Arrays.sort(repoMultiChunkFiles);
+
+		assertEquals(3, repoMultiChunkFiles.length);
+
+		// Delete first multichunk, flip one byte in the second
+		File missingMultiChunkFile = repoMultiChunkFiles[0];
+		File corruptMultiChunkFile = repoMultiChunkFiles[1];
+
+		assertTrue(missingMultiChunkFile.delete());
+
+		try (RandomAccessFile corruptMultiChunkRandomAccessFile = new RandomAccessFile(corruptMultiChunkFile, "rw")) {
+			corruptMultiChunkRandomAccessFile.seek(corruptMultiChunkFile.length() / 2);
+			int originalByte = corruptMultiChunkRandomAccessFile.read();
+
+			corruptMultiChunkRandomAccessFile.seek(corruptMultiChunkFile.length() / 2);
+			corruptMultiChunkRandomAccessFile.write(originalByte ^ 0x01);
+		}
+
+		// Run
+		VerifyOperationResult verifyResult = clientA.verify(new VerifyOperationOptions());
+
+		// Test
+		assertEquals(VerifyResultCode.NOK_MISSING_OR_CORRUPT, verifyResult.getResultCode());
+		assertEquals(Arrays.asList(getMultiChunkId(missingMultiChunkFile)), verifyResult.getMissingMultiChunks());
+		assertEquals(Arrays.asList(getMultiChunkId(corruptMultiChunkFile)), verifyResult.getCorruptMultiChunks());
+		assertEquals(1, verifyResult.getVerifiedMultiChunksCount());
+
+		// Tear down
+		clientA.deleteTestData();
+	}
+
+	@Test
+	public void testVerifyWithoutRecordedChecksums() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		clientA.createNewFile("file1.jpg");
+		clientA.upWithForceChecksum();
+
+		clientA.createNewFile("file2.jpg");
+		clientA.upWithForceChecksum();
+
+		clientB.down();
+
+		// Run: B has not uploaded anything, so it has no recorded checksums
+		VerifyOperationOptions noDownloadOptions = new VerifyOperationOptions();
+		noDownloadOptions.setDownloadFallback(false);
+
+		VerifyOperationResult noDownloadVerifyResult = clientB.verify(noDownloadOptions);
+		VerifyOperationResult downloadVerifyResult = clientB.verify(new VerifyOperationOptions());
+
+		// Test
+		assertEquals(VerifyResultCode.OK, noDownloadVerifyResult.getResultCode());
+		assertEquals(0, noDownloadVerifyResult.getVerifiedMultiChunksCount());
+		assertEquals(2, noDownloadVerifyResult.getUnverifiedMultiChunksCount());
+
+		assertEquals(VerifyResultCode.OK, downloadVerifyResult.getResultCode());
+		assertEquals(2, downloadVerifyResult.getVerifiedMultiChunksCount());
+		assertEquals(0, downloadVerifyResult.getUnverifiedMultiChunksCount());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	private String getMultiChunkId(File multiChunkFile) {
+		return multiChunkFile.getName().substring("multichunk-".length());
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.ChunkerResumePoint;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.FileContent;
+import org.syncany.database.FileVersion;
+import org.syncany.operations.up.UpOperationOptions;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestSqlDatabase;
+
+public class AppendedFileScenarioTest {
+	@Test
+	public void testAppendToFileAndResumeChunking() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setResumeAppendedFiles(true);
+
+		// Run
+		File logFile = clientA.createNewFile("file.log", 2 * 1024 * 1024 + 1234);
+		clientA.up(upOptions);
+
+		appendRandomData(logFile, 700 * 1024);
+		clientA.up(upOptions);
+
+		assertFileContentEqualsFullScan(clientA, "file.log");
+
+		appendRandomData(logFile, 10);
+		clientA.up(upOptions);
+
+		assertFileContentEqualsFullScan(clientA, "file.log");
+
+		clientB.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testChangeLastChunkAndAppend() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setResumeAppendedFiles(true);
+
+		// Run
+		File logFile = clientA.createNewFile("file.log", 1024 * 1024 + 100);
+		clientA.up(upOptions);
+
+		// Change the last (partial) chunk, then append; resume point must not be used
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+			randomAccessFile.seek(1024 * 1024 + 50);
+			randomAccessFile.write(new byte[] { 1, 2, 3, 4, 5 });
+		}
+
+		appendRandomData(logFile, 300 * 1024);
+		clientA.up(upOptions);
+
+		assertFileContentEqualsFullScan(clientA, "file.log");
+
+		clientB.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testChangeMiddleAndAppend() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setResumeAppendedFiles(true);
+
+		// Run
+		File logFile = clientA.createNewFile("file.log", 2 * 1024 * 1024 + 100);
+		clientA.up(upOptions);
+
+		// Change an early chunk (neither adjacent to the resume point nor in the tail), then append; 
+		// the prefix does not match anymore, so the resume point must not be used
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+			randomAccessFile.seek(100 * 1024);
+			randomAccessFile.write(new byte[] { 1, 2, 3, 4, 5 });
+		}
+
+		appendRandomData(logFile, 300 * 1024);
+		clientA.up(upOptions);
+
+		assertFileContentEqualsFullScan(clientA, "file.log");
+
+		clientB.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	private void assertFileContentEqualsFullScan(TestClient client, String path) throws Exception {
+		TestSqlDatabase localDatabase = client.loadLocalDatabase();
+		FileVersion lastFileVersion = localDatabase.getFileHistoryWithLastVersion(path).getLastVersion();
+		FileContent fileContent = localDatabase.getFileContent(lastFileVersion.getChecksum(), true);
+
+		File localFile = client.getLocalFile(path);
+		Chunker chunker = client.getConfig().getChunker();
+
+		List<ChunkChecksum> fullScanChunkChecksums = new ArrayList<ChunkChecksum>();
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(localFile);
+		Chunk lastChunk = null;
+
+		while (chunkEnumeration.hasMoreElements()) {
+			lastChunk = chunkEnumeration.nextElement();
+			fullScanChunkChecksums.add(new ChunkChecksum(lastChunk.getChecksum()));
+		}
+
+		chunkEnumeration.close();
+
+		assertArrayEquals(TestFileUtil.createChecksum(localFile), lastFileVersion.getChecksum().getBytes());
+		assertEquals(fullScanChunkChecksums, fileContent.getChunks());
+
+		ChunkerResumePoint resumePoint = localDatabase.getFileContentResumePoint(lastFileVersion.getChecksum());
+
+		assertNotNull(resumePoint);
+		assertEquals(lastChunk.getResumePoint().getOffset(), resumePoint.getOffset());
+		assertEquals(fullScanChunkChecksums.size() - 1, resumePoint.getChunkCount());
+	}
+
+	private void appendRandomData(File file, int size) throws Exception {
+		try (FileOutputStream appendOutputStream = new FileOutputStream(file, true)) {
+			appendOutputStream.write(TestFileUtil.createRandomArray(size));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import java.io.File;
+import java.io.FilenameFilter;
+
+import org.junit.Test;
+import org.syncany.operations.cleanup.CleanupOperationOptions;
+import org.syncany.operations.down.DownOperationOptions;
+import org.syncany.operations.down.DownOperationResult;
+import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class BatchedDownScenarioTest {
+	@Test
+	public void testDownInBatchesEqualsDownAtOnce() throws Exception {
+		// Setup 
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+		
+		// Run: Create some history at client A
+		clientA.createNewFile("file1");
+		clientA.createNewFolder("folder");
+		clientA.createNewFile("folder/file2");
+		clientA.up(); // (A1)
+		
+		clientA.changeFile("file1");
+		clientA.createNewFile("file3");
+		clientA.up(); // (A2)
+		
+		clientA.moveFile("folder/file2", "file2-moved");
+		clientA.up(); // (A3)
+		
+		clientA.deleteFile("file3");
+		clientA.createNewFile("folder/file4");
+		clientA.up(); // (A4)
+		
+		clientA.changeFile("folder/file4");
+		clientA.up(); // (A5)
+		
+		// Client B applies the history in batches of two database versions, client C at once
+		DownOperationOptions batchedDownOptions = new DownOperationOptions();
+		batchedDownOptions.setApplyBatchSize(2);
+		
+		DownOperationOptions unbatchedDownOptions = new DownOperationOptions();
+		unbatchedDownOptions.setApplyBatchSize(0);
+		
+		clientB.down(batchedDownOptions);
+		clientC.down(unbatchedDownOptions);
+		
+		// Test
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertFileListEquals(clientC.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+		assertSqlDatabaseEquals(clientC.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+
+	@Test
+	public void testDownInBatchesLoadsMergedDatabaseFilesOnce() throws Exception {
+		// Setup 
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+		
+		// Run: Create some history at client A, and merge it into a single database file
+		for (int i = 1; i <= 5; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up(); // (A1)-(A5)
+		}
+		
+		CleanupOperationOptions cleanupOptions = new CleanupOperationOptions();
+		cleanupOptions.setMaxDatabaseFiles(1);
+		cleanupOptions.setForce(true);
+		
+		clientA.cleanup(cleanupOptions);
+		
+		for (int i = 6; i <= 8; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up(); // (A6)-(A8)
+		}
+		
+		// Client B applies the history in batches of two database versions, client C at once
+		DownOperationOptions batchedDownOptions = new DownOperationOptions();
+		batchedDownOptions.setApplyBatchSize(2);
+		batchedDownOptions.setUseSnapshot(false);
+		
+		DownOperationOptions unbatchedDownOptions = new DownOperationOptions();
+		unbatchedDownOptions.setApplyBatchSize(0);
+		unbatchedDownOptions.setUseSnapshot(false);
+		
+		DownOperationResult batchedDownResult = clientB.down(batchedDownOptions);
+		DownOperationResult unbatchedDownResult = clientC.down(unbatchedDownOptions);
+		
+		// Test: Every database file is parsed exactly once, batched or not
+		int remoteDatabaseFileCount = new File(testConnection.getPath(), "databases").list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("database-");
+			}
+		}).length;
+		
+		assertEquals(remoteDatabaseFileCount, unbatchedDownResult.getDatabaseFileLoadCount());
+		assertEquals(remoteDatabaseFileCount, batchedDownResult.getDatabaseFileLoadCount());
+		
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertFileListEquals(clientC.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientC.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+}
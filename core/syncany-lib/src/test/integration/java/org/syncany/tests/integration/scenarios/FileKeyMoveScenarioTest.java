@@ -0,0 +1,147 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeNotNull;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.Test;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestSqlDatabase;
+
+public class FileKeyMoveScenarioTest {
+	@Test
+	public void testMovedFileDetectedByFileKey() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		File file = clientA.createNewFile("file.jpg", 2 * 1024 * 1024);
+		assumeFileKeySupported(file);
+
+		// Run
+		clientA.up();
+		PartialFileHistory originalFileHistory = clientA.loadLocalDatabase().getFileHistoryWithLastVersion("file.jpg");
+
+		clientA.createNewFolder("folder");
+		clientA.moveFile("file.jpg", "folder/moved.jpg");
+		clientA.up();
+
+		TestSqlDatabase localDatabase = clientA.loadLocalDatabase();
+		PartialFileHistory movedFileHistory = localDatabase.getFileHistoryWithLastVersion("folder/moved.jpg");
+		FileVersion movedFileVersion = movedFileHistory.getLastVersion();
+
+		assertEquals(originalFileHistory.getFileHistoryId(), movedFileHistory.getFileHistoryId());
+		assertEquals(FileStatus.CHANGED, movedFileVersion.getStatus()); // Same status as a move detected by checksum
+		assertEquals(originalFileHistory.getLastVersion().getChecksum(), movedFileVersion.getChecksum());
+		assertNotNull(localDatabase.getCurrentFileKeys().get(movedFileHistory.getFileHistoryId()));
+
+		clientB.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	@Test
+	public void testMovedFileContentNotRead() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+
+		File file = clientA.createNewFile("file.jpg", 1024 * 1024);
+		assumeFileKeySupported(file);
+
+		// Run
+		clientA.up();
+		PartialFileHistory originalFileHistory = clientA.loadLocalDatabase().getFileHistoryWithLastVersion("file.jpg");
+
+		clientA.moveFile("file.jpg", "moved.jpg");
+
+		// Overwrite content in place (same file key), but keep size and last modified date;
+		// a moved file is identified by its metadata only, so the old checksum must be kept
+		File movedFile = clientA.getLocalFile("moved.jpg");
+		long lastModified = movedFile.lastModified();
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(movedFile, "rw")) {
+			randomAccessFile.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		}
+
+		movedFile.setLastModified(lastModified);
+		clientA.up();
+
+		FileVersion movedFileVersion = clientA.loadLocalDatabase().getFileHistoryWithLastVersion("moved.jpg").getLastVersion();
+
+		assertEquals(FileStatus.CHANGED, movedFileVersion.getStatus()); // Same status as a move detected by checksum
+		assertEquals(originalFileHistory.getLastVersion().getChecksum(), movedFileVersion.getChecksum());
+
+		// Tear down
+		clientA.deleteTestData();
+	}
+
+	@Test
+	public void testFileKeyIgnoredIfOldPathStillExists() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+
+		File file = clientA.createNewFile("file.jpg", 1024 * 1024);
+		assumeFileKeySupported(file);
+
+		// Run
+		clientA.up();
+
+		// Hard link has the same file key, but the original file still exists
+		Files.createLink(clientA.getLocalFile("link.jpg").toPath(), file.toPath());
+		clientA.up();
+
+		TestSqlDatabase localDatabase = clientA.loadLocalDatabase();
+		PartialFileHistory originalFileHistory = localDatabase.getFileHistoryWithLastVersion("file.jpg");
+		PartialFileHistory linkFileHistory = localDatabase.getFileHistoryWithLastVersion("link.jpg");
+
+		assertFalse(originalFileHistory.getFileHistoryId().equals(linkFileHistory.getFileHistoryId()));
+		assertEquals(FileStatus.NEW, linkFileHistory.getLastVersion().getStatus());
+		assertEquals(originalFileHistory.getLastVersion().getChecksum(), linkFileHistory.getLastVersion().getChecksum());
+
+		// Tear down
+		clientA.deleteTestData();
+	}
+
+	private void assumeFileKeySupported(File file) throws Exception {
+		assumeNotNull(Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey());
+	}
+}
@@ -23,6 +23,8 @@ import static org.junit.Assert.assertTrue;
 import static org.syncany.tests.util.TestAssertUtil.assertConflictingFileExists;
 import static org.syncany.tests.util.TestAssertUtil.assertConflictingFileNotExists;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.util.Arrays;
 
 import org.junit.Test;
@@ -39,11 +41,14 @@ public class Issue316ScenarioTest {
 	public void testIssue316CleanupThenDeleteFile() throws Exception {		
 		/*
 		 * This is a test for issue #316. It creates a situation in which a 'down'
-		 * fails after a cleanup. In that first down, the local database is deleted 
-		 * entirely, so that all databases are downloaded again, so all remote file
-		 * versions are compared to "null". In this bug, comparing a deleted file version
-		 * to a local existing file failed, because this case was thought to not happen
-		 * ever.  
+		 * fails after a cleanup. Originally, the local database was deleted entirely 
+		 * in that first down, so that all remote file versions were compared to "null". 
+		 * In this bug, comparing a deleted file version to a local existing file failed, 
+		 * because this case was thought to not happen ever.
+		 * 
+		 * Since the cleanup writes a segment layout, the local database is now updated
+		 * instead of deleted, and the failed 'down' leaves it intact. The full rebuild
+		 * is tested below with a cleanup file without segment layout.
 		 */
 		
 		// Setup
@@ -51,7 +56,7 @@ public class Issue316ScenarioTest {
 				// List of failing operations (regex)
 				// Format: abs=<count> rel=<count> op=<connect|init|upload|...> <operation description>
 
-				"rel=(5|6|7) .+download.+multichunk" // << 3 retries!
+				"rel=(6|7|8) .+download.+multichunk" // << 3 retries! (after database files and cleanup file)
 		}));
 
 		TestClient clientA = new TestClient("A", testConnection);
@@ -78,6 +83,77 @@ public class Issue316ScenarioTest {
 		clientA.deleteFile("Kazam_screencast_00010.mp4");
 		clientA.upWithForceChecksum();
 		
+		// First 'down' of client B after the cleanup. 
+		// This fails AFTER the segment layout was applied.
+		
+		boolean downFailedAtB = false;
+		
+		try {
+			clientB.down();
+		}
+		catch (Exception e) {
+			downFailedAtB = true;
+		}
+		
+		assertTrue("Down operation should have failed.", downFailedAtB);
+		assertEquals("1", TestSqlUtil.runSqlSelect("select count(*) from databaseversion", databaseConnectionB));
+		assertEquals("1", TestSqlUtil.runSqlSelect("select count(*) from fileversion", databaseConnectionB));
+		
+		// Second 'down' of client B; This should delete the file 'Kazam_screencast_00010.mp4',
+		// because it matches the checksum of the 'DELETED' entry
+		
+		clientB.down();
+		assertConflictingFileNotExists("Kazam_screencast_00010.mp4", clientB.getLocalFiles());
+		assertFalse(clientB.getLocalFile("Kazam_screencast_00010.mp4").exists());
+		
+		// Tear down
+		clientB.deleteTestData();
+		clientA.deleteTestData();
+	}			
+
+	@Test
+	public void testIssue316CleanupThenDeleteFileWithLegacyCleanupFile() throws Exception {		
+		/*
+		 * Same test as above, but the cleanup file does not contain a segment layout
+		 * (as written by older clients). In the first 'down', the local database is 
+		 * deleted entirely, so that all databases are downloaded again, so all remote
+		 * file versions are compared to "null".
+		 */
+		
+		// Setup
+		UnreliableLocalTransferSettings testConnection = TestConfigUtil.createTestUnreliableLocalConnection(Arrays.asList(new String[] {
+				// List of failing operations (regex)
+				// Format: abs=<count> rel=<count> op=<connect|init|upload|...> <operation description>
+
+				"rel=(6|7|8) .+download.+multichunk" // << 3 retries! (after database files and cleanup file)
+		}));
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		java.sql.Connection databaseConnectionB = clientB.getConfig().createDatabaseConnection();
+				
+		CleanupOperationOptions cleanupOptionsKeepOne = new CleanupOperationOptions();
+		cleanupOptionsKeepOne.setMaxDatabaseFiles(1);
+		cleanupOptionsKeepOne.setForce(true);	
+				
+		clientA.createNewFile("Kazam_screencast_00010.mp4");
+		clientA.upWithForceChecksum();
+				
+		clientB.down();
+		assertTrue(clientB.getLocalFile("Kazam_screencast_00010.mp4").exists());
+		
+		clientA.createNewFile("SomeFileTOIncreaseTheDatabaseFileCount");
+		clientA.upWithForceChecksum();
+		
+		CleanupOperationResult cleanupResult = clientA.cleanup(cleanupOptionsKeepOne);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		
+		new FileOutputStream(new File(testConnection.getPath(), "databases/cleanup-1")).close(); // <<<<<<<<< Different from above test
+		
+		clientA.deleteFile("Kazam_screencast_00010.mp4");
+		clientA.upWithForceChecksum();
+		
 		// First 'down' of client B after the cleanup. 
 		// This fails AFTER the local database was wiped.
 		
@@ -118,7 +194,7 @@ public class Issue316ScenarioTest {
 				// List of failing operations (regex)
 				// Format: abs=<count> rel=<count> op=<connect|init|upload|...> <operation description>
 
-				"rel=(5|6|7) .+download.+multichunk" // << 3 retries!
+				"rel=(6|7|8) .+download.+multichunk" // << 3 retries! (after database files and cleanup file)
 		}));
 
 		TestClient clientA = new TestClient("A", testConnection);
@@ -99,11 +99,17 @@ public class ManySyncUpsAndDatabaseFileCleanupScenarioTest {
 
 		clientA.cleanup(options); // Force cleanup 
 
+		// The large segment written by the last cleanup (17) is kept, only the recent files are merged
 		for (int i = 1; i <= 32; i++) {
 			DatabaseRemoteFile expectedDatabaseRemoteFile = new DatabaseRemoteFile("A", i);
 			File expectedDatabaseFile = new File(testConnection.getPath() + "/databases/" + expectedDatabaseRemoteFile.getName());
 
-			assertTrue("Database file should NOT exist: " + expectedDatabaseFile, !expectedDatabaseFile.exists());
+			if (i == 17) {
+				assertTrue("Database file SHOULD exist: " + expectedDatabaseFile, expectedDatabaseFile.exists());
+			}
+			else {
+				assertTrue("Database file should NOT exist: " + expectedDatabaseFile, !expectedDatabaseFile.exists());
+			}
 		}
 
 		for (int i = 33; i <= 33; i++) {
@@ -0,0 +1,144 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.database.FileVersion;
+import org.syncany.operations.log.LightweightDatabaseVersion;
+import org.syncany.operations.log.LogOperationOptions;
+import org.syncany.operations.log.LogOperationResult;
+import org.syncany.operations.ls.LsOperationOptions;
+import org.syncany.operations.ls.LsOperationResult;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class PagedLsAndLogScenarioTest {
+	@Test
+	public void testPagedLsReturnsAllFilesInPathOrder() throws Exception {
+		// Setup 
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		
+		for (int i = 0; i < 23; i++) {
+			clientA.createNewFile("file" + i);
+		}
+		
+		clientA.up();
+		
+		// Fetch file list in pages of 5, and add a file while paging
+		LsOperationOptions options = new LsOperationOptions();
+		options.setMaxResults(5);
+
+		List<String> pagedPaths = new ArrayList<String>();
+		LsOperationResult lsOperationResult = clientA.ls(options);
+		int pageCount = 1;
+
+		collectPaths(lsOperationResult, pagedPaths);
+		assertEquals(5, lsOperationResult.getFileList().size());
+		
+		clientA.createNewFile("file0-after-first-page");
+		clientA.up();
+		
+		while (lsOperationResult.getNextPageToken() != null) {
+			options.setPageToken(lsOperationResult.getNextPageToken());
+			lsOperationResult = clientA.ls(options);
+			pageCount++;
+			
+			collectPaths(lsOperationResult, pagedPaths);
+		}
+		
+		// File list is complete, ordered by path, and without duplicates
+		LsOperationResult unpagedLsOperationResult = clientA.ls(new LsOperationOptions());
+		List<String> unpagedPaths = new ArrayList<String>();
+		
+		collectPaths(unpagedLsOperationResult, unpagedPaths);
+		assertEquals(24, unpagedPaths.size());
+		
+		List<String> expectedPagedPaths = new ArrayList<String>(unpagedPaths);
+		expectedPagedPaths.remove("file0-after-first-page");
+		Collections.sort(expectedPagedPaths);
+
+		assertEquals(5, pageCount);
+		assertEquals(expectedPagedPaths, pagedPaths);
+		
+		// Tear down
+		clientA.deleteTestData();
+	}
+	
+	@Test
+	public void testPagedLogIsNotShiftedByNewDatabaseVersions() throws Exception {
+		// Setup 
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		
+		for (int i = 0; i < 5; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up();
+		}
+		
+		// First page
+		LogOperationOptions options = new LogOperationOptions();
+		options.setMaxDatabaseVersionCount(2);
+		
+		LogOperationResult logOperationResult = clientA.log(options);
+		
+		assertEquals(2, logOperationResult.getDatabaseVersions().size());
+		assertNotNull(logOperationResult.getNextPageToken());
+		
+		// New database version in between must not shift the next pages
+		clientA.createNewFile("file5");
+		clientA.up();
+		
+		options.setPageToken(logOperationResult.getNextPageToken());
+		logOperationResult = clientA.log(options);
+
+		assertEquals(2, logOperationResult.getDatabaseVersions().size());
+		assertNewFile("file2", logOperationResult.getDatabaseVersions().get(0));
+		assertNewFile("file1", logOperationResult.getDatabaseVersions().get(1));
+		
+		options.setPageToken(logOperationResult.getNextPageToken());
+		logOperationResult = clientA.log(options);
+
+		assertEquals(1, logOperationResult.getDatabaseVersions().size());
+		assertNewFile("file0", logOperationResult.getDatabaseVersions().get(0));
+		assertNull(logOperationResult.getNextPageToken());
+		
+		// Tear down
+		clientA.deleteTestData();
+	}
+	
+	private void collectPaths(LsOperationResult lsOperationResult, List<String> paths) {
+		for (FileVersion fileVersion : lsOperationResult.getFileList()) {
+			paths.add(fileVersion.getPath());
+		}
+	}
+	
+	private void assertNewFile(String expectedPath, LightweightDatabaseVersion databaseVersion) {
+		assertEquals(1, databaseVersion.getChangeSet().getNewFiles().size());
+		assertEquals(expectedPath, databaseVersion.getChangeSet().getNewFiles().first());
+	}
+}
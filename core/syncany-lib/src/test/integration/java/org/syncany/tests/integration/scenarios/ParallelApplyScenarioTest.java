@@ -0,0 +1,88 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.syncany.operations.down.DownOperationOptions;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestAssertUtil;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class ParallelApplyScenarioTest {
+	@Test
+	public void testParallelApplyNewFolderAndCaseOnlyRenameConflict() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		DownOperationOptions parallelDownOptions = new DownOperationOptions();
+		parallelDownOptions.setApplyThreads(4);
+
+		clientA.createNewFile("case-file", 20 * 1024);
+		clientA.up();
+		clientB.down(parallelDownOptions);
+
+		// A: Two new files in the same new folder, and a case-only rename
+		clientA.createNewFolder("new-folder");
+		clientA.createNewFile("new-folder/file1", 30 * 1024);
+		clientA.createNewFile("new-folder/file2", 40 * 1024);
+		clientA.moveFile("case-file", "CASE-FILE");
+		clientA.up();
+
+		// B: Creates a different file at the rename target
+		File localConflictingFile = clientB.createNewFile("CASE-FILE", 10 * 1024);
+		byte[] localConflictingFileContents = FileUtils.readFileToByteArray(localConflictingFile);
+
+		clientB.down(parallelDownOptions);
+
+		// Remote changes applied, local file moved to a conflict file
+		TestAssertUtil.assertFileEquals(clientA.getLocalFile("new-folder/file1"), clientB.getLocalFile("new-folder/file1"));
+		TestAssertUtil.assertFileEquals(clientA.getLocalFile("new-folder/file2"), clientB.getLocalFile("new-folder/file2"));
+		TestAssertUtil.assertFileEquals(clientA.getLocalFile("CASE-FILE"), clientB.getLocalFile("CASE-FILE"));
+		assertFalse(clientB.getLocalFile("case-file").exists());
+
+		Map<String, File> localFilesB = clientB.getLocalFilesExcludeLockedAndNoRead();
+		File conflictFile = null;
+
+		for (Map.Entry<String, File> localFileEntry : localFilesB.entrySet()) {
+			if (localFileEntry.getKey().contains("conflicted copy")) {
+				assertTrue("More than one conflict file: " + localFilesB.keySet(), conflictFile == null);
+				conflictFile = localFileEntry.getValue();
+			}
+		}
+
+		assertNotNull("No conflict file: " + localFilesB.keySet(), conflictFile);
+		assertTrue(conflictFile.getName().startsWith("CASE-FILE"));
+		assertArrayEquals(localConflictingFileContents, FileUtils.readFileToByteArray(conflictFile));
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.syncany.operations.cleanup.CleanupOperationOptions;
+import org.syncany.operations.cleanup.CleanupOperationResult;
+import org.syncany.operations.cleanup.CleanupOperationResult.CleanupResultCode;
+import org.syncany.operations.down.DownOperationOptions;
+import org.syncany.operations.down.DownOperationResult;
+import org.syncany.operations.down.DownOperationResult.DownResultCode;
+import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class SnapshotBootstrapScenarioTest {
+	@Test
+	public void testNewClientBootstrapsFromSnapshot() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+		TestClient clientD = new TestClient("D", testConnection);
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(false);
+		options.setRemoveVersionsByInterval(false);
+		options.setMinSecondsBetweenCleanups(0);
+		options.setForce(true);
+		options.setCreateSnapshot(true);
+
+		// Run: History of two clients
+		for (int i = 1; i <= 4; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up();
+		}
+
+		clientB.down();
+		clientB.changeFile("file1");
+		clientB.createNewFile("fileB");
+		clientB.up();
+
+		clientA.down();
+		clientA.deleteFile("file2");
+		clientA.up();
+
+		// A: Cleanup merges the database files and writes a snapshot
+		CleanupOperationResult cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertTrue(new File(testConnection.getPath(), "databases/snapshot-1").exists());
+
+		// A: Changes after the snapshot
+		clientA.createNewFile("file5");
+		clientA.up();
+
+		clientA.changeFile("file3");
+		clientA.up();
+
+		// C: New client loads the snapshot and only the two database files uploaded after it
+		DownOperationResult downResult = clientC.down();
+
+		assertEquals(DownResultCode.OK_WITH_REMOTE_CHANGES, downResult.getResultCode());
+		assertEquals(3, downResult.getDownloadedUnknownDatabases().size());
+		assertTrue(downResult.getDownloadedUnknownDatabases().contains("snapshot-1"));
+
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientC.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientC.getDatabaseFile());
+
+		// D: New client ignoring the snapshot ends up in the same state
+		DownOperationOptions noSnapshotOptions = new DownOperationOptions();
+		noSnapshotOptions.setUseSnapshot(false);
+
+		downResult = clientD.down(noSnapshotOptions);
+		assertFalse(downResult.getDownloadedUnknownDatabases().contains("snapshot-1"));
+
+		assertFileListEquals(clientC.getLocalFilesExcludeLockedAndNoRead(), clientD.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientC.getDatabaseFile(), clientD.getDatabaseFile());
+
+		// C: Continues like a regular client
+		clientC.createNewFile("fileC");
+		clientC.up();
+
+		clientA.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientC.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientC.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+		clientD.deleteTestData();
+	}
+
+	@Test
+	public void testNoSnapshotWithoutOption() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(false);
+		options.setMinSecondsBetweenCleanups(0);
+		options.setForce(true);
+
+		// Run
+		for (int i = 1; i <= 3; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up();
+		}
+
+		CleanupOperationResult cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertFalse(new File(testConnection.getPath(), "databases/snapshot-1").exists());
+
+		DownOperationResult downResult = clientB.down();
+		assertFalse(downResult.getDownloadedUnknownDatabases().contains("snapshot-1"));
+
+		// Test
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+}
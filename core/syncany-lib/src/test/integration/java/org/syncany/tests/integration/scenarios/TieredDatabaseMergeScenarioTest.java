@@ -0,0 +1,169 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.syncany.operations.cleanup.CleanupOperationOptions;
+import org.syncany.operations.cleanup.CleanupOperationResult;
+import org.syncany.operations.cleanup.CleanupOperationResult.CleanupResultCode;
+import org.syncany.operations.down.DownOperationResult;
+import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class TieredDatabaseMergeScenarioTest {
+	@Test
+	public void testKnownSegmentsNotDownloaded() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(false);
+		options.setRemoveVersionsByInterval(false);
+		options.setMinSecondsBetweenCleanups(0);
+		options.setForce(true);
+
+		// Run
+		for (int i = 1; i <= 6; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up();
+		}
+
+		clientB.down();
+
+		// A: First cleanup merges all six database files into one segment
+		CleanupOperationResult cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertEquals(6, cleanupResult.getMergedDatabaseFilesCount());
+		assertTrue(databaseFileExists(testConnection, "database-A-0000000007"));
+
+		// B: Knows all replaced database files, so the new segment is not downloaded
+		DownOperationResult downResult = clientB.down();
+		assertEquals(0, downResult.getDownloadedUnknownDatabases().size());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// A: Second cleanup only merges the recent files, the old segment is kept
+		for (int i = 7; i <= 9; i++) {
+			clientA.createNewFile("file" + i);
+			clientA.up();
+		}
+
+		cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertEquals(3, cleanupResult.getMergedDatabaseFilesCount());
+
+		assertTrue(databaseFileExists(testConnection, "database-A-0000000007"));
+		assertFalse(databaseFileExists(testConnection, "database-A-0000000008"));
+		assertTrue(databaseFileExists(testConnection, "database-A-0000000011"));
+
+		// B: Did not know the recent files, so the new segment has to be downloaded
+		downResult = clientB.down();
+		assertEquals(1, downResult.getDownloadedUnknownDatabases().size());
+		assertTrue(downResult.getDownloadedUnknownDatabases().contains("database-A-0000000011"));
+
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// C: New client downloads all segments
+		clientC.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientC.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientC.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+
+	@Test
+	public void testPurgedSegmentRewrittenAndPurgeAppliedOnDown() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(true);
+		options.setMinKeepSeconds(0);
+		options.setMinSecondsBetweenCleanups(0);
+
+		// Run
+		clientA.createNewFile("file.jpg");
+		clientA.createNewFile("other.jpg");
+
+		for (int i = 1; i <= 4; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.upWithForceChecksum();
+		}
+
+		clientB.down();
+
+		CleanupOperationResult cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertTrue(cleanupResult.getRemovedOldVersionsCount() > 0);
+
+		// B: Applies purge from segment layout, does not need to download anything
+		DownOperationResult downResult = clientB.down();
+		assertEquals(0, downResult.getDownloadedUnknownDatabases().size());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// A: Delete file; the next cleanup purges it and rewrites the segment containing it
+		clientA.deleteFile("other.jpg");
+		clientA.up();
+
+		clientB.down();
+
+		cleanupResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupResult.getResultCode());
+		assertTrue(cleanupResult.getRemovedOldVersionsCount() > 0);
+		assertFalse(databaseFileExists(testConnection, "database-A-0000000005"));
+
+		downResult = clientB.down();
+		assertEquals(0, downResult.getDownloadedUnknownDatabases().size());
+
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// C: New client
+		clientC.down();
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientC.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+
+	private boolean databaseFileExists(LocalTransferSettings testConnection, String databaseFileName) {
+		return new File(testConnection.getPath(), "databases/" + databaseFileName).exists();
+	}
+}
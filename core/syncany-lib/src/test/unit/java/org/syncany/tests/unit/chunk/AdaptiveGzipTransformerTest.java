@@ -0,0 +1,135 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.syncany.chunk.AdaptiveGzipTransformer;
+import org.syncany.chunk.CompressionStatistics;
+import org.syncany.chunk.Transformer;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+public class AdaptiveGzipTransformerTest {
+	@Test
+	public void testRandomDataIsStored() throws Exception {
+		AdaptiveGzipTransformer transformer = new AdaptiveGzipTransformer();
+		byte[] randomData = TestFileUtil.createRandomArray(200 * 1024);
+
+		byte[] transformedData = transform(transformer, randomData);
+
+		assertEquals(AdaptiveGzipTransformer.STREAM_STORED, transformedData[0]);
+		assertEquals(randomData.length + 1, transformedData.length);
+		assertArrayEquals(randomData, restore(transformer, transformedData));
+
+		CompressionStatistics statistics = transformer.getStatistics();
+
+		assertEquals(0, statistics.getCompressedStreams());
+		assertEquals(1, statistics.getStoredStreams());
+		assertEquals(1.0, statistics.getCompressionRatio(), 0.001);
+	}
+
+	@Test
+	public void testCompressibleDataIsCompressed() throws Exception {
+		AdaptiveGzipTransformer transformer = new AdaptiveGzipTransformer();
+		byte[] textData = createTextArray(300 * 1024);
+
+		byte[] transformedData = transform(transformer, textData);
+
+		assertEquals(AdaptiveGzipTransformer.STREAM_GZIP, transformedData[0]);
+		assertTrue(transformedData.length < textData.length / 2);
+		assertArrayEquals(textData, restore(transformer, transformedData));
+
+		CompressionStatistics statistics = transformer.getStatistics();
+
+		assertEquals(1, statistics.getCompressedStreams());
+		assertEquals(0, statistics.getStoredStreams());
+		assertTrue(statistics.getCompressionRatio() < 0.5);
+	}
+
+	@Test
+	public void testSmallAndEmptyStreams() throws Exception {
+		AdaptiveGzipTransformer transformer = new AdaptiveGzipTransformer();
+
+		byte[] emptyData = new byte[0];
+		byte[] smallTextData = createTextArray(1000);
+
+		assertArrayEquals(emptyData, restore(transformer, transform(transformer, emptyData)));
+		assertArrayEquals(smallTextData, restore(transformer, transform(transformer, smallTextData)));
+	}
+
+	@Test
+	public void testInitWithFastLevelAndMinSaving() throws Exception {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put(AdaptiveGzipTransformer.PROPERTY_LEVEL, AdaptiveGzipTransformer.LEVEL_FAST);
+		settings.put(AdaptiveGzipTransformer.PROPERTY_MIN_SAVING, "100");
+
+		Transformer transformer = Transformer.getInstance(AdaptiveGzipTransformer.TYPE);
+		transformer.init(settings);
+
+		// No stream saves 100%, so everything is stored
+		byte[] textData = createTextArray(100 * 1024);
+		byte[] transformedData = transform(transformer, textData);
+
+		assertTrue(transformer instanceof AdaptiveGzipTransformer);
+		assertEquals(AdaptiveGzipTransformer.STREAM_STORED, transformedData[0]);
+		assertArrayEquals(textData, restore(transformer, transformedData));
+	}
+
+	private byte[] transform(Transformer transformer, byte[] data) throws Exception {
+		ByteArrayOutputStream transformedOutputStream = new ByteArrayOutputStream();
+		OutputStream outputStream = transformer.createOutputStream(transformedOutputStream);
+
+		// Write in odd-sized pieces to cover the sample buffer boundaries
+		for (int offset = 0; offset < data.length; offset += 7777) {
+			outputStream.write(data, offset, Math.min(7777, data.length - offset));
+		}
+
+		outputStream.close();
+		return transformedOutputStream.toByteArray();
+	}
+
+	private byte[] restore(Transformer transformer, byte[] transformedData) throws Exception {
+		InputStream inputStream = transformer.createInputStream(new ByteArrayInputStream(transformedData));
+		byte[] restoredData = IOUtils.toByteArray(inputStream);
+
+		inputStream.close();
+		return restoredData;
+	}
+
+	private byte[] createTextArray(int size) {
+		byte[] sentence = "The quick brown fox jumps over the lazy dog, again and again. ".getBytes();
+		byte[] textArray = new byte[size];
+
+		for (int i = 0; i < size; i++) {
+			textArray[i] = sentence[i % sentence.length];
+		}
+
+		return textArray;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.ChunkerResumePoint;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+public class ChunkerResumePointTest {
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testResumable() {
+		assertTrue(new FixedChunker(16 * 1024, "SHA1").isResumable());
+		assertTrue(new FastCdcChunker(8 * 1024, "SHA1").isResumable());
+
+		assertTrue(new FixedChunker(16 * 1024, "MD5").isResumable());
+		assertFalse(new TttdChunker(8 * 1024).isResumable());
+	}
+
+	@Test
+	public void testFixedChunkerResumeAppendedFile() throws Exception {
+		testResumeAppendedFile(new FixedChunker(16 * 1024, "SHA1"));
+	}
+
+	@Test
+	public void testFastCdcChunkerResumeAppendedFile() throws Exception {
+		testResumeAppendedFile(new FastCdcChunker(8 * 1024, "SHA1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonResumableChunkerRejectsResumePoint() throws Exception {
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 1024);
+		new TttdChunker(8 * 1024).createChunks(inputFile, new ChunkerResumePoint(0, 0, new byte[20]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResumePointWithoutPrefixDigestRejected() throws Exception {
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 1024);
+		new FixedChunker(16 * 1024, "SHA1").createChunks(inputFile, new ChunkerResumePoint(0, 0, new byte[20]));
+	}
+
+	private void testResumeAppendedFile(Chunker chunker) throws Exception {
+		int[] initialSizes = new int[] { 1, 1000, 16 * 1024, 100 * 1024 + 7, 1024 * 1024 };
+		int[] appendSizes = new int[] { 1, 5000, 16 * 1024, 300 * 1024 + 13 };
+
+		for (int initialSize : initialSizes) {
+			for (int appendSize : appendSizes) {
+				File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, initialSize);
+
+				// Chunk original file
+				List<Chunk> originalChunks = createChunks(chunker, inputFile, null);
+				ChunkerResumePoint resumePoint = originalChunks.get(originalChunks.size() - 1).getResumePoint();
+
+				assertNotNull(resumePoint);
+				assertEquals(originalChunks.size() - 1, resumePoint.getChunkCount());
+
+				for (Chunk chunk : originalChunks.subList(0, originalChunks.size() - 1)) {
+					assertNull(chunk.getResumePoint());
+				}
+
+				// Append and chunk again (full and resumed)
+				appendRandomData(inputFile, appendSize);
+
+				List<Chunk> fullChunks = createChunks(chunker, inputFile, null);
+				ChunkerResumePoint verifiedResumePoint = readPrefix(chunker, inputFile, resumePoint);
+				List<Chunk> resumedChunks = createChunks(chunker, inputFile, verifiedResumePoint);
+
+				String message = chunker + ", initial size " + initialSize + ", appended " + appendSize;
+				assertEquals(message, fullChunks.size(), resumePoint.getChunkCount() + resumedChunks.size());
+
+				for (int i = 0; i < resumePoint.getChunkCount(); i++) {
+					assertArrayEquals(message, originalChunks.get(i).getChecksum(), fullChunks.get(i).getChecksum());
+				}
+
+				for (int i = 0; i < resumedChunks.size(); i++) {
+					Chunk fullChunk = fullChunks.get(resumePoint.getChunkCount() + i);
+					Chunk resumedChunk = resumedChunks.get(i);
+
+					assertArrayEquals(message, fullChunk.getChecksum(), resumedChunk.getChecksum());
+					assertEquals(message, fullChunk.getSize(), resumedChunk.getSize());
+				}
+
+				Chunk lastFullChunk = fullChunks.get(fullChunks.size() - 1);
+				Chunk lastResumedChunk = resumedChunks.get(resumedChunks.size() - 1);
+
+				assertArrayEquals(message, TestFileUtil.createChecksum(inputFile), lastResumedChunk.getFileChecksum());
+				assertArrayEquals(message, lastFullChunk.getFileChecksum(), lastResumedChunk.getFileChecksum());
+				assertEquals(message, lastFullChunk.getResumePoint().getOffset(), lastResumedChunk.getResumePoint().getOffset());
+				assertArrayEquals(message, lastFullChunk.getResumePoint().getPrefixChecksum(), lastResumedChunk.getResumePoint()
+						.getPrefixChecksum());
+
+				inputFile.delete();
+			}
+		}
+	}
+
+	private ChunkerResumePoint readPrefix(Chunker chunker, File inputFile, ChunkerResumePoint resumePoint) throws Exception {
+		MessageDigest prefixDigest = MessageDigest.getInstance(chunker.getChecksumAlgorithm());
+
+		try (FileInputStream fileInputStream = new FileInputStream(inputFile)) {
+			byte[] prefix = new byte[(int) resumePoint.getOffset()];
+			new DataInputStream(fileInputStream).readFully(prefix);
+
+			prefixDigest.update(prefix);
+		}
+
+		assertArrayEquals(resumePoint.getPrefixChecksum(), ((MessageDigest) prefixDigest.clone()).digest());
+		return new ChunkerResumePoint(resumePoint.getOffset(), resumePoint.getChunkCount(), resumePoint.getPrefixChecksum(), prefixDigest);
+	}
+
+	private List<Chunk> createChunks(Chunker chunker, File inputFile, ChunkerResumePoint resumePoint) throws Exception {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(inputFile, resumePoint);
+
+		while (chunkEnumeration.hasMoreElements()) {
+			chunks.add(chunkEnumeration.nextElement());
+		}
+
+		chunkEnumeration.close();
+		return chunks;
+	}
+
+	private void appendRandomData(File file, int size) throws Exception {
+		try (FileOutputStream appendOutputStream = new FileOutputStream(file, true)) {
+			appendOutputStream.write(TestFileUtil.createRandomArray(size));
+		}
+	}
+}
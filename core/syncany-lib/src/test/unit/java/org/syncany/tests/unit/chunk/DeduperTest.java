@@ -0,0 +1,177 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.ChunkerResumePoint;
+import org.syncany.chunk.CipherTransformer;
+import org.syncany.chunk.Deduper;
+import org.syncany.chunk.DeduperListener;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.GzipTransformer;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.chunk.MultiChunker;
+import org.syncany.chunk.Transformer;
+import org.syncany.chunk.ZipMultiChunker;
+import org.syncany.crypto.CipherSpecs;
+import org.syncany.crypto.CipherUtil;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+public class DeduperTest {
+	@Test
+	public void testParallelTransformerClosesMultiChunksInOrder() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		List<File> inputFiles = TestFileUtil.createRandomFilesInDirectory(tempDir, 200 * 1024, 5);
+
+		MultiChunker multiChunker = new ZipMultiChunker(32); // KB
+		Transformer transformer = new GzipTransformer(new CipherTransformer(CipherSpecs.getDefaultCipherSpecs(),
+				CipherUtil.createMasterKey("some password")));
+
+		Deduper deduper = new Deduper(new FixedChunker(8 * 1024), multiChunker, transformer, 4);
+		RecordingDeduperListener listener = new RecordingDeduperListener(tempDir);
+
+		deduper.deduplicate(inputFiles, listener);
+
+		assertTrue(listener.openedMultiChunkIds.size() > 4);
+		assertEquals(listener.openedMultiChunkIds, listener.closedMultiChunkIds);
+
+		// Check that all chunks can be read from the transformed multichunks
+		for (MultiChunkId multiChunkId : listener.closedMultiChunkIds) {
+			File multiChunkFile = listener.getMultiChunkFile(multiChunkId);
+			File decryptedMultiChunkFile = new File(multiChunkFile + ".decrypted");
+
+			InputStream multiChunkInputStream = transformer.createInputStream(new FileInputStream(multiChunkFile));
+			TestFileUtil.writeToFile(IOUtils.toByteArray(multiChunkInputStream), decryptedMultiChunkFile);
+			multiChunkInputStream.close();
+
+			MultiChunk multiChunk = multiChunker.createMultiChunk(decryptedMultiChunkFile);
+
+			for (Map.Entry<ChunkChecksum, byte[]> chunkEntry : listener.chunksByMultiChunkId.get(multiChunkId).entrySet()) {
+				InputStream chunkInputStream = multiChunk.getChunkInputStream(chunkEntry.getKey().getBytes());
+
+				assertNotNull(chunkInputStream);
+				assertArrayEquals(chunkEntry.getValue(), IOUtils.toByteArray(chunkInputStream));
+			}
+
+			multiChunk.close();
+		}
+
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	private static class RecordingDeduperListener implements DeduperListener {
+		private File tempDir;
+		private int multiChunkCounter;
+
+		private List<MultiChunkId> openedMultiChunkIds = new ArrayList<MultiChunkId>();
+		private List<MultiChunkId> closedMultiChunkIds = new ArrayList<MultiChunkId>();
+		private Map<MultiChunkId, Map<ChunkChecksum, byte[]>> chunksByMultiChunkId = new HashMap<MultiChunkId, Map<ChunkChecksum, byte[]>>();
+
+		public RecordingDeduperListener(File tempDir) {
+			this.tempDir = tempDir;
+		}
+
+		@Override
+		public boolean onFileFilter(File file) {
+			return true;
+		}
+
+		@Override
+		public boolean onFileStart(File file, int fileNumber) {
+			return true;
+		}
+
+		@Override
+		public ChunkerResumePoint getResumePoint(File file) {
+			return null;
+		}
+
+		@Override
+		public void onFileAddChunk(File file, Chunk chunk) {
+			// Nothing
+		}
+
+		@Override
+		public void onFileEnd(File file, byte[] checksum) {
+			// Nothing
+		}
+
+		@Override
+		public boolean onChunk(Chunk chunk) {
+			return true;
+		}
+
+		@Override
+		public void onMultiChunkOpen(MultiChunk multiChunk) {
+			openedMultiChunkIds.add(multiChunk.getId());
+			chunksByMultiChunkId.put(multiChunk.getId(), new HashMap<ChunkChecksum, byte[]>());
+		}
+
+		@Override
+		public MultiChunkId createNewMultiChunkId(Chunk firstChunk) {
+			return new MultiChunkId(new byte[] { 0x01, (byte) multiChunkCounter++ });
+		}
+
+		@Override
+		public File getMultiChunkFile(MultiChunkId multiChunkId) {
+			return new File(tempDir, "multichunk-" + multiChunkId);
+		}
+
+		@Override
+		public void onMultiChunkWrite(MultiChunk multiChunk, Chunk chunk) {
+			byte[] chunkContent = new byte[chunk.getSize()];
+			System.arraycopy(chunk.getContent(), 0, chunkContent, 0, chunk.getSize());
+
+			chunksByMultiChunkId.get(multiChunk.getId()).put(new ChunkChecksum(chunk.getChecksum()), chunkContent);
+		}
+
+		@Override
+		public void onMultiChunkClose(MultiChunk multiChunk) {
+			assertTrue("Multichunk file must be written when closed", getMultiChunkFile(multiChunk.getId()).exists());
+			closedMultiChunkIds.add(multiChunk.getId());
+		}
+
+		@Override
+		public void onStart(int size) {
+			// Nothing
+		}
+
+		@Override
+		public void onFinish() {
+			assertEquals(openedMultiChunkIds.size(), closedMultiChunkIds.size());
+		}
+	}
+}
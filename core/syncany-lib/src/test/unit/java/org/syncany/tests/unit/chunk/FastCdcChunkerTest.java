@@ -0,0 +1,181 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+
+public class FastCdcChunkerTest {
+	private static final int AVG_CHUNK_SIZE = 8 * 1024;
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testStringSerialization() {
+		Chunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE, "SHA1");
+		assertEquals("FastCDC-2048-8192-65536-SHA1", chunker.toString());
+	}
+
+	@Test
+	public void testGetInstanceAndInit() {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put(Chunker.PROPERTY_SIZE, "32");
+
+		Chunker chunker = Chunker.getInstance(FastCdcChunker.TYPE);
+		chunker.init(settings);
+
+		assertTrue(chunker instanceof FastCdcChunker);
+		assertEquals("FastCDC-8192-32768-262144-SHA1", chunker.toString());
+	}
+
+	@Test
+	public void testReassembleAndChunkSizes() throws Exception {
+		int[] fileSizes = new int[] { 1, 2047, 2048, 8 * 1024, 64 * 1024, 64 * 1024 + 1, 5 * 1024 * 1024 + 17 };
+		FastCdcChunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE, "SHA1");
+
+		for (int fileSize : fileSizes) {
+			File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, fileSize);
+			List<Chunk> chunks = createChunks(chunker, inputFile);
+
+			ByteArrayOutputStream reassembledContent = new ByteArrayOutputStream();
+
+			for (int i = 0; i < chunks.size(); i++) {
+				Chunk chunk = chunks.get(i);
+				boolean isLastChunk = i == chunks.size() - 1;
+
+				assertTrue("Chunk must not exceed max. size", chunk.getSize() <= 8 * AVG_CHUNK_SIZE);
+				assertTrue("Only the last chunk may be smaller than min. size", isLastChunk || chunk.getSize() >= AVG_CHUNK_SIZE / 4);
+
+				if (isLastChunk) {
+					assertNotNull("Last chunk must have file checksum", chunk.getFileChecksum());
+				}
+				else {
+					assertNull("Only the last chunk must have a file checksum", chunk.getFileChecksum());
+				}
+
+				reassembledContent.write(chunk.getContent(), 0, chunk.getSize());
+			}
+
+			byte[] inputFileChecksum = FileUtil.createChecksum(inputFile, "SHA1");
+
+			assertEquals(fileSize, reassembledContent.size());
+			assertArrayEquals(inputFileChecksum, chunks.get(chunks.size() - 1).getFileChecksum());
+		}
+	}
+
+	@Test
+	public void testEmptyFileHasNoChunks() throws Exception {
+		File emptyFile = new File(tempDir, "empty");
+		TestFileUtil.createRandomFile(emptyFile, 0);
+
+		ChunkEnumeration chunkEnumeration = new FastCdcChunker(AVG_CHUNK_SIZE, "SHA1").createChunks(emptyFile);
+
+		assertFalse(chunkEnumeration.hasMoreElements());
+		chunkEnumeration.close();
+	}
+
+	@Test
+	public void testBoundariesResynchronizeAfterInsertion() throws Exception {
+		Random random = new Random(4711);
+		byte[] originalContent = new byte[2 * 1024 * 1024];
+		random.nextBytes(originalContent);
+
+		// Insert a few bytes at the beginning of the file
+		byte[] changedContent = new byte[originalContent.length + 100];
+		random.nextBytes(changedContent);
+		System.arraycopy(originalContent, 0, changedContent, 100, originalContent.length);
+
+		File originalFile = new File(tempDir, "original");
+		File changedFile = new File(tempDir, "changed");
+
+		TestFileUtil.writeToFile(originalContent, originalFile);
+		TestFileUtil.writeToFile(changedContent, changedFile);
+
+		FastCdcChunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE, "SHA1");
+		Set<ChunkChecksum> originalChunkChecksums = getChunkChecksums(createChunks(chunker, originalFile));
+		Set<ChunkChecksum> changedChunkChecksums = getChunkChecksums(createChunks(chunker, changedFile));
+
+		int commonChunks = 0;
+
+		for (ChunkChecksum changedChunkChecksum : changedChunkChecksums) {
+			if (originalChunkChecksums.contains(changedChunkChecksum)) {
+				commonChunks++;
+			}
+		}
+
+		assertTrue("Expected almost all chunks to be shared, but only " + commonChunks + " of " + changedChunkChecksums.size() + " were.",
+				commonChunks >= changedChunkChecksums.size() - 3);
+	}
+
+	private List<Chunk> createChunks(Chunker chunker, File file) throws Exception {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(file);
+
+		while (chunkEnumeration.hasMoreElements()) {
+			chunks.add(chunkEnumeration.nextElement());
+		}
+
+		chunkEnumeration.close();
+		return chunks;
+	}
+
+	private Set<ChunkChecksum> getChunkChecksums(List<Chunk> chunks) {
+		Set<ChunkChecksum> chunkChecksums = new HashSet<ChunkChecksum>();
+
+		for (Chunk chunk : chunks) {
+			chunkChecksums.add(new ChunkChecksum(chunk.getChecksum()));
+		}
+
+		return chunkChecksums;
+	}
+}
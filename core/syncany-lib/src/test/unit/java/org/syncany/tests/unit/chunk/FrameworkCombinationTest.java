@@ -40,6 +40,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.syncany.chunk.Chunk;
 import org.syncany.chunk.Chunker;
+import org.syncany.chunk.ChunkerResumePoint;
 import org.syncany.chunk.CipherTransformer;
 import org.syncany.chunk.Deduper;
 import org.syncany.chunk.DeduperListener;
@@ -245,6 +246,11 @@ public class FrameworkCombinationTest {
 				return file.isFile() && !FileUtil.isSymlink(file);
 			}
 
+			@Override
+			public ChunkerResumePoint getResumePoint(File file) {
+				return null;
+			}
+
 			@Override
 			public void onFileEnd(File file, byte[] checksum) {
 				// Empty
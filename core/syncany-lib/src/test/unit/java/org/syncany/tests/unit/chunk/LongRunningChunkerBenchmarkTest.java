@@ -0,0 +1,211 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+/**
+ * Compares throughput and deduplication ratio of the {@link TttdChunker} and the
+ * {@link FastCdcChunker} on a reproducible synthetic corpus. The corpus consists of
+ * a number of base files (random and text-like data) and several edited versions of
+ * each file (insertions, deletions and overwrites at random positions). 
+ * 
+ * <p>The dedup ratio is the total corpus size divided by the size of all unique chunks.
+ */
+public class LongRunningChunkerBenchmarkTest {
+	private static final long CORPUS_SEED = 20161018L;
+	private static final int BASE_FILE_COUNT = 4;
+	private static final int BASE_FILE_SIZE = 4 * 1024 * 1024;
+	private static final int VERSIONS_PER_FILE = 4;
+	private static final int EDITS_PER_VERSION = 20;
+	private static final int AVG_CHUNK_SIZE = 8 * 1024;
+	private static final int RUNS = 2;
+
+	private File tempDir;
+	private List<File> corpusFiles;
+	private long corpusSize;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		corpusFiles = createCorpus(tempDir);
+		corpusSize = 0;
+
+		for (File corpusFile : corpusFiles) {
+			corpusSize += corpusFile.length();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testChunkerThroughputAndDedupRatio() throws Exception {
+		Chunker[] chunkers = new Chunker[] {
+			new TttdChunker(AVG_CHUNK_SIZE),
+			new FastCdcChunker(AVG_CHUNK_SIZE, "SHA1")
+		};
+
+		System.out.println(String.format("Corpus: %d files, %.1f MB", corpusFiles.size(), corpusSize / 1024.0 / 1024.0));
+		System.out.println(String.format("%-40s %12s %12s %12s %12s", "Chunker", "MB/s", "Chunks", "Avg size", "Dedup ratio"));
+
+		for (Chunker chunker : chunkers) {
+			BenchmarkResult result = null;
+			long bestDurationNanos = Long.MAX_VALUE;
+
+			for (int run = 0; run < RUNS; run++) {
+				long startTime = System.nanoTime();
+				result = chunkCorpus(chunker);
+
+				bestDurationNanos = Math.min(bestDurationNanos, System.nanoTime() - startTime);
+			}
+
+			assertEquals("Chunker must emit all bytes", corpusSize, result.totalBytes);
+
+			double throughput = (corpusSize / 1024.0 / 1024.0) / (bestDurationNanos / 1000000000.0);
+			double dedupRatio = (double) result.totalBytes / result.uniqueBytes;
+
+			System.out.println(String.format("%-40s %12.1f %12d %12d %12.3f", chunker, throughput, result.chunkCount, result.totalBytes
+					/ result.chunkCount, dedupRatio));
+		}
+	}
+
+	private BenchmarkResult chunkCorpus(Chunker chunker) throws Exception {
+		BenchmarkResult result = new BenchmarkResult();
+		Set<ChunkChecksum> uniqueChunks = new HashSet<ChunkChecksum>();
+
+		for (File corpusFile : corpusFiles) {
+			ChunkEnumeration chunkEnumeration = chunker.createChunks(corpusFile);
+
+			while (chunkEnumeration.hasMoreElements()) {
+				Chunk chunk = chunkEnumeration.nextElement();
+
+				result.chunkCount++;
+				result.totalBytes += chunk.getSize();
+
+				if (uniqueChunks.add(new ChunkChecksum(chunk.getChecksum()))) {
+					result.uniqueBytes += chunk.getSize();
+				}
+			}
+
+			chunkEnumeration.close();
+		}
+
+		return result;
+	}
+
+	private List<File> createCorpus(File corpusDir) throws Exception {
+		Random random = new Random(CORPUS_SEED);
+		List<File> files = new ArrayList<File>();
+
+		for (int fileIndex = 0; fileIndex < BASE_FILE_COUNT; fileIndex++) {
+			byte[] content = (fileIndex % 2 == 0) ? createRandomContent(random, BASE_FILE_SIZE) : createTextContent(random, BASE_FILE_SIZE);
+
+			for (int version = 0; version <= VERSIONS_PER_FILE; version++) {
+				if (version > 0) {
+					content = editContent(random, content);
+				}
+
+				File versionFile = new File(corpusDir, "file-" + fileIndex + "-v" + version);
+				TestFileUtil.writeToFile(content, versionFile);
+
+				files.add(versionFile);
+			}
+		}
+
+		return files;
+	}
+
+	private byte[] createRandomContent(Random random, int size) {
+		byte[] content = new byte[size];
+		random.nextBytes(content);
+
+		return content;
+	}
+
+	private byte[] createTextContent(Random random, int size) {
+		String[] words = new String[] { "sync", "any", "chunk", "file", "version", "database", "the", "a", "of", "remote", "local" };
+		StringBuilder text = new StringBuilder(size);
+
+		while (text.length() < size) {
+			text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? "\n" : " ");
+		}
+
+		return text.substring(0, size).getBytes();
+	}
+
+	private byte[] editContent(Random random, byte[] content) {
+		for (int i = 0; i < EDITS_PER_VERSION; i++) {
+			int position = random.nextInt(content.length);
+			int length = 1 + random.nextInt(512);
+
+			switch (random.nextInt(3)) {
+			case 0: // Insert
+				byte[] inserted = new byte[content.length + length];
+				System.arraycopy(content, 0, inserted, 0, position);
+				System.arraycopy(createRandomContent(random, length), 0, inserted, position, length);
+				System.arraycopy(content, position, inserted, position + length, content.length - position);
+				content = inserted;
+				break;
+
+			case 1: // Delete
+				length = Math.min(length, content.length - position);
+				byte[] deleted = new byte[content.length - length];
+				System.arraycopy(content, 0, deleted, 0, position);
+				System.arraycopy(content, position + length, deleted, position, content.length - position - length);
+				content = deleted;
+				break;
+
+			default: // Overwrite
+				byte[] overwritten = content.clone();
+				length = Math.min(length, content.length - position);
+				System.arraycopy(createRandomContent(random, length), 0, overwritten, position, length);
+				content = overwritten;
+				break;
+			}
+		}
+
+		return content;
+	}
+
+	private static class BenchmarkResult {
+		private long chunkCount;
+		private long totalBytes;
+		private long uniqueBytes;
+	}
+}
@@ -23,6 +23,7 @@ import java.io.File;
 
 import org.junit.Test;
 import org.syncany.config.Cache;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.tests.unit.util.TestFileUtil;
 
 public class CacheTest {
@@ -113,4 +114,115 @@ public class CacheTest {
 		
 		TestFileUtil.deleteDirectory(testCacheFolder);
 	}
+	
+	@Test
+	public void testCacheAccessOrderNotLastModified() throws Exception {
+		File testCacheFolder = TestFileUtil.createTempDirectoryInSystemTemp();
+		File testIndexFile = new File(TestFileUtil.createTempDirectoryInSystemTemp(), "cache-index.xml");
+		
+		Cache cache = new Cache(testCacheFolder, testIndexFile);
+		cache.setKeepBytes(50*1024);
+		
+		TestFileUtil.createRandomFile(new File(testCacheFolder, "db-A-1"), 30*1024);
+		Thread.sleep(1001);	// Linux/ext3 only has 1s accuracy
+		TestFileUtil.createRandomFile(new File(testCacheFolder, "db-A-2"), 30*1024);
+		
+		cache.clear(); // Indexes files, deletes "db-A-1"
+		assertFalse(new File(testCacheFolder, "db-A-1").exists());
+		
+		TestFileUtil.createRandomFile(cache.getDatabaseFile("db-A-3"), 30*1024);
+		cache.getDatabaseFile("db-A-2"); // Accessed, but last modified date is not updated
+		
+		cache.clear(); // Deletes "db-A-3", because "db-A-2" was accessed more recently
+		
+		assertTrue(new File(testCacheFolder, "db-A-2").exists());
+		assertFalse(new File(testCacheFolder, "db-A-3").exists());
+		assertTrue(testIndexFile.exists());		
+		assertEquals(0, cache.getHitCount()); // Database files are write targets, not lookups
+		assertEquals(0, cache.getMissCount());
+		assertEquals(2, cache.getEvictionCount());
+		assertEquals(60*1024, cache.getEvictedBytes());
+		
+		TestFileUtil.deleteDirectory(testCacheFolder);
+		TestFileUtil.deleteDirectory(testIndexFile.getParentFile());
+	}
+	
+	@Test
+	public void testCacheMultiChunkQuotaAndPinning() throws Exception {
+		File testCacheFolder = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		Cache cache = new Cache(testCacheFolder);
+		cache.setKeepBytes(1024*1024);
+		cache.setKeepMultiChunkBytes(60*1024);
+		
+		File multiChunkFile1 = cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("01"));
+		File multiChunkFile2 = cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("02"));
+		File multiChunkFile3 = cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("03"));
+		File databaseFile = cache.getDatabaseFile("db-A-1");
+		
+		TestFileUtil.createRandomFile(databaseFile, 100*1024);
+		TestFileUtil.createRandomFile(multiChunkFile1, 30*1024);
+		TestFileUtil.createRandomFile(multiChunkFile2, 30*1024);
+		TestFileUtil.createRandomFile(multiChunkFile3, 30*1024);
+		
+		cache.pin(multiChunkFile1);
+		cache.clear();
+		
+		// Eldest multichunk is pinned, so the second one is deleted; database file is within its quota 
+		assertTrue(databaseFile.exists());
+		assertTrue(multiChunkFile1.exists());
+		assertFalse(multiChunkFile2.exists());
+		assertTrue(multiChunkFile3.exists());
+		
+		cache.unpin(multiChunkFile1);
+		cache.setKeepMultiChunkBytes(30*1024);
+		cache.clear();
+		
+		assertFalse(multiChunkFile1.exists());
+		assertTrue(multiChunkFile3.exists());
+		
+		TestFileUtil.deleteDirectory(testCacheFolder);
+	}
+	
+	@Test
+	public void testCacheHitsAndMisses() throws Exception {
+		File testCacheFolder = TestFileUtil.createTempDirectoryInSystemTemp();
+		Cache cache = new Cache(testCacheFolder);
+		
+		File multiChunkFile = cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("01"));
+		TestFileUtil.createRandomFile(multiChunkFile, 10*1024);
+		
+		cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("01"));
+		cache.getEncryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("02"));
+		cache.getDatabaseFile("db-A-1");
+		
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		
+		TestFileUtil.deleteDirectory(testCacheFolder);
+	}
+	
+	@Test
+	public void testCacheTypeQuotasDefaultToTotalQuota() throws Exception {
+		File testCacheFolder = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		Cache cache = new Cache(testCacheFolder);
+		cache.setKeepBytes(1024*1024);
+		
+		assertEquals(1024*1024, cache.getKeepMultiChunkBytes());
+		assertEquals(1024*1024, cache.getKeepDatabaseBytes());
+		
+		File multiChunkFile = cache.getDecryptedMultiChunkFile(MultiChunkId.parseMultiChunkId("01"));
+		File databaseFile = cache.getDatabaseFile("db-A-1");
+		
+		TestFileUtil.createRandomFile(multiChunkFile, 600*1024);
+		TestFileUtil.createRandomFile(databaseFile, 300*1024);
+		
+		cache.clear();
+		
+		assertTrue(multiChunkFile.exists());
+		assertTrue(databaseFile.exists());
+		
+		TestFileUtil.deleteDirectory(testCacheFolder);
+	}
 }
@@ -19,6 +19,7 @@ package org.syncany.tests.unit.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -30,10 +31,13 @@ import javax.crypto.spec.SecretKeySpec;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.FastCdcChunker;
 import org.syncany.config.Config;
 import org.syncany.config.ConfigException;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.tests.util.TestAssertUtil;
@@ -192,6 +196,61 @@ public class ConfigTest {
 		}
 	}
 
+	@Test
+	public void testConfigFastCdcChunker() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder");
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+
+		ChunkerTO fastCdcChunkerTO = new ChunkerTO();
+		fastCdcChunkerTO.setType(FastCdcChunker.TYPE);
+		fastCdcChunkerTO.setSettings(new HashMap<String, String>());
+		fastCdcChunkerTO.getSettings().put(Chunker.PROPERTY_SIZE, "16");
+
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+
+		repoTO.setChunkerTO(fastCdcChunkerTO); // <<< valid
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		repoTO.setTransformers(null); // <<< valid
+
+		// Run!
+		Config config = new Config(localDir, configTO, repoTO);
+
+		// Test
+		assertTrue(config.getChunker() instanceof FastCdcChunker);
+		assertEquals("FastCDC-4096-16384-131072-SHA1", config.getChunker().toString());
+	}
+
+	@Test
+	public void testConfigChunkerInvalidType() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder");
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+
+		ChunkerTO invalidChunkerTO = new ChunkerTO();
+		invalidChunkerTO.setType("invalid-typeXXX");
+
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		repoTO.setTransformers(null); // <<< valid
+
+		repoTO.setChunkerTO(invalidChunkerTO); // <<< INVALID !
+
+		// Run!
+		try {
+			new Config(localDir, configTO, repoTO);
+			fail("Chunker should NOT have been found.");
+		}
+		catch (ConfigException e) {
+			TestAssertUtil.assertErrorStackTraceContains("invalid-typeXXX", e);
+		}
+	}
+
 	@Test
 	public void testConfigCipherTransformersInvalidType() throws Exception {
 		// Setup
@@ -0,0 +1,182 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.config.InternalEventBus;
+import org.syncany.operations.daemon.messages.api.CoalescableEvent;
+import org.syncany.operations.daemon.messages.api.ExternalEvent;
+import org.syncany.operations.daemon.messages.api.Message;
+import org.syncany.operations.daemon.messages.api.Response;
+
+import com.google.common.eventbus.Subscribe;
+
+public class InternalEventBusTest {
+	private TestEventBus eventBus;
+	private RecordingSubscriber subscriber;
+
+	@Before
+	public void setUp() {
+		eventBus = new TestEventBus();
+		subscriber = new RecordingSubscriber();
+
+		eventBus.register(subscriber);
+	}
+
+	@After
+	public void tearDown() {
+		subscriber.releaseBlocker.countDown();
+		eventBus.disableAsyncDispatch();
+	}
+
+	@Test
+	public void testSyncDispatchByDefault() {
+		eventBus.post(new TestEvent("event1"));
+		eventBus.post(new TestResponse("response1"));
+
+		assertEquals(Arrays.asList("event1", "response1"), subscriber.getNames());
+	}
+
+	@Test
+	public void testResponseDoesNotOvertakeEvent() throws Exception {
+		eventBus.enableAsyncDispatch(10);
+
+		eventBus.post(new TestEvent("blocker"));
+		assertTrue(subscriber.blockerStarted.await(2, TimeUnit.SECONDS));
+
+		eventBus.post(new TestEvent("event1"));
+		eventBus.post(new TestResponse("response1"));
+
+		subscriber.releaseBlocker.countDown();
+		eventBus.disableAsyncDispatch();
+
+		assertEquals(Arrays.asList("blocker", "event1", "response1"), subscriber.getNames());
+	}
+
+	@Test
+	public void testCoalescableEventsReplaced() throws Exception {
+		eventBus.enableAsyncDispatch(10);
+
+		eventBus.post(new TestEvent("blocker"));
+		assertTrue(subscriber.blockerStarted.await(2, TimeUnit.SECONDS));
+
+		eventBus.post(new TestCoalescableEvent("progress", "progress1"));
+		eventBus.post(new TestCoalescableEvent("progress", "progress2"));
+		eventBus.post(new TestCoalescableEvent("progress", "progress3"));
+
+		subscriber.releaseBlocker.countDown();
+		eventBus.disableAsyncDispatch();
+
+		assertEquals(Arrays.asList("blocker", "progress3"), subscriber.getNames());
+	}
+
+	@Test
+	public void testLatestCoalescableEventKeptIfQueueFull() throws Exception {
+		eventBus.enableAsyncDispatch(1);
+
+		eventBus.post(new TestEvent("blocker"));
+		assertTrue(subscriber.blockerStarted.await(2, TimeUnit.SECONDS));
+
+		eventBus.post(new TestEvent("event1")); // Queue is full now
+		eventBus.post(new TestCoalescableEvent("progress", "progress1"));
+		eventBus.post(new TestCoalescableEvent("progress", "progress2"));
+
+		subscriber.releaseBlocker.countDown();
+		eventBus.disableAsyncDispatch();
+
+		assertEquals(Arrays.asList("blocker", "event1", "progress2"), subscriber.getNames());
+	}
+
+	public static class TestEventBus extends InternalEventBus {
+		// Own instance per test, not shared via getInstance()
+	}
+
+	public static class RecordingSubscriber {
+		private List<String> names = Collections.synchronizedList(new ArrayList<String>());
+		private CountDownLatch blockerStarted = new CountDownLatch(1);
+		private CountDownLatch releaseBlocker = new CountDownLatch(1);
+
+		@Subscribe
+		public void onMessage(Message message) throws InterruptedException {
+			String name = message.toString();
+			names.add(name);
+
+			if ("blocker".equals(name)) {
+				blockerStarted.countDown();
+				releaseBlocker.await(5, TimeUnit.SECONDS);
+			}
+		}
+
+		public List<String> getNames() {
+			return new ArrayList<String>(names);
+		}
+	}
+
+	public static class TestEvent extends ExternalEvent {
+		private String name;
+
+		public TestEvent(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	public static class TestCoalescableEvent extends TestEvent implements CoalescableEvent {
+		private String coalescingKey;
+
+		public TestCoalescableEvent(String coalescingKey, String name) {
+			super(name);
+			this.coalescingKey = coalescingKey;
+		}
+
+		@Override
+		public String getCoalescingKey() {
+			return coalescingKey;
+		}
+	}
+
+	public static class TestResponse extends Response {
+		private String name;
+
+		public TestResponse(String name) {
+			super(200, null, null);
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
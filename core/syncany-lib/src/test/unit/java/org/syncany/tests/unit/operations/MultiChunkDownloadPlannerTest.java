@@ -0,0 +1,163 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.operations.MultiChunkDownloadPlanner;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class MultiChunkDownloadPlannerTest {
+	private Config config;
+
+	@Before
+	public void setUp() throws Exception {
+		config = TestConfigUtil.createTestLocalConfig();
+	}
+
+	@After
+	public void tearDown() {
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+
+	@Test
+	public void testPlanPrefersSingleMultiChunk() {
+		// Naive choice: chunk 1 from A, chunk 2 from B; but C contains both chunks
+		MultiChunkEntry multiChunkA = createMultiChunk("aa", 100, "01");
+		MultiChunkEntry multiChunkB = createMultiChunk("bb", 100, "02");
+		MultiChunkEntry multiChunkC = createMultiChunk("cc", 150, "01", "02");
+
+		MultiChunkDownloadPlanner planner = new MultiChunkDownloadPlanner(config);
+		planner.addCandidates(Arrays.asList(multiChunkA, multiChunkB, multiChunkC));
+
+		Set<MultiChunkId> plannedMultiChunks = planner.plan(createChunks("01", "02"));
+
+		assertEquals(new HashSet<MultiChunkId>(Arrays.asList(multiChunkC.getId())), plannedMultiChunks);
+		assertEquals(multiChunkC.getId(), planner.getMultiChunkId(createChunk("01")));
+		assertEquals(multiChunkC.getId(), planner.getMultiChunkId(createChunk("02")));
+		assertEquals(150, planner.getPlannedDownloadSize());
+		assertEquals(200, planner.getNaiveDownloadSize());
+	}
+
+	@Test
+	public void testPlanPrefersSmallMultiChunks() {
+		// Large multichunk C contains both chunks, but A and B are cheaper
+		MultiChunkEntry multiChunkA = createMultiChunk("aa", 100, "01");
+		MultiChunkEntry multiChunkB = createMultiChunk("bb", 100, "02");
+		MultiChunkEntry multiChunkC = createMultiChunk("cc", 500, "01", "02", "03");
+
+		MultiChunkDownloadPlanner planner = new MultiChunkDownloadPlanner(config);
+		planner.addCandidates(Arrays.asList(multiChunkC, multiChunkA, multiChunkB));
+
+		Set<MultiChunkId> plannedMultiChunks = planner.plan(createChunks("01", "02"));
+
+		assertEquals(new HashSet<MultiChunkId>(Arrays.asList(multiChunkA.getId(), multiChunkB.getId())), plannedMultiChunks);
+		assertEquals(200, planner.getPlannedDownloadSize());
+		assertEquals(500, planner.getNaiveDownloadSize());
+	}
+
+	@Test
+	public void testPlanPrefersCachedMultiChunks() throws Exception {
+		MultiChunkEntry multiChunkA = createMultiChunk("aa", 100, "01", "02");
+		MultiChunkEntry multiChunkB = createMultiChunk("bb", 1000, "01", "02");
+
+		FileUtils.touch(config.getCache().getDecryptedMultiChunkFile(multiChunkB.getId()));
+
+		MultiChunkDownloadPlanner planner = new MultiChunkDownloadPlanner(config);
+		planner.addCandidates(Arrays.asList(multiChunkA, multiChunkB));
+
+		Set<MultiChunkId> plannedMultiChunks = planner.plan(createChunks("01", "02"));
+
+		assertEquals(new HashSet<MultiChunkId>(Arrays.asList(multiChunkB.getId())), plannedMultiChunks);
+		assertEquals(0, planner.getPlannedDownloadSize());
+		assertEquals(100, planner.getNaiveDownloadSize());
+	}
+
+	@Test
+	public void testPlanSizesNotAccumulated() {
+		MultiChunkEntry multiChunkA = createMultiChunk("aa", 100, "01");
+		MultiChunkEntry multiChunkB = createMultiChunk("bb", 200, "02");
+
+		MultiChunkDownloadPlanner planner = new MultiChunkDownloadPlanner(config);
+		planner.addCandidates(Arrays.asList(multiChunkA, multiChunkB));
+
+		planner.plan(createChunks("01"));
+
+		assertEquals(100, planner.getPlannedDownloadSize());
+		assertEquals(100, planner.getNaiveDownloadSize());
+
+		planner.plan(createChunks("02"));
+
+		assertEquals(200, planner.getPlannedDownloadSize());
+		assertEquals(200, planner.getNaiveDownloadSize());
+	}
+
+	@Test
+	public void testPlanMissingChunk() {
+		MultiChunkDownloadPlanner planner = new MultiChunkDownloadPlanner(config);
+		planner.addCandidates(Arrays.asList(createMultiChunk("aa", 100, "01")));
+
+		boolean planFailed = false;
+
+		try {
+			planner.plan(createChunks("01", "02"));
+		}
+		catch (RuntimeException e) {
+			planFailed = true;
+		}
+
+		assertTrue("Planning should fail if a chunk is not in any multichunk.", planFailed);
+	}
+
+	private MultiChunkEntry createMultiChunk(String id, long size, String... chunks) {
+		MultiChunkEntry multiChunk = new MultiChunkEntry(MultiChunkId.parseMultiChunkId(id), size);
+
+		for (String chunk : chunks) {
+			multiChunk.addChunk(createChunk(chunk));
+		}
+
+		return multiChunk;
+	}
+
+	private Set<ChunkChecksum> createChunks(String... chunks) {
+		Set<ChunkChecksum> chunkChecksums = new HashSet<ChunkChecksum>();
+
+		for (String chunk : chunks) {
+			chunkChecksums.add(createChunk(chunk));
+		}
+
+		return chunkChecksums;
+	}
+
+	private ChunkChecksum createChunk(String chunk) {
+		return ChunkChecksum.parseChunkChecksum(chunk);
+	}
+}
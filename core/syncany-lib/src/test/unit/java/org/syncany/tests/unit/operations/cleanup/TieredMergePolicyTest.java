@@ -0,0 +1,105 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.operations.cleanup;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.operations.cleanup.DatabaseSegment;
+import org.syncany.operations.cleanup.TieredMergePolicy;
+
+public class TieredMergePolicyTest {
+	@Test
+	public void testGetTier() {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(4);
+
+		assertEquals(0, mergePolicy.getTier(1));
+		assertEquals(0, mergePolicy.getTier(3));
+		assertEquals(1, mergePolicy.getTier(4));
+		assertEquals(1, mergePolicy.getTier(15));
+		assertEquals(2, mergePolicy.getTier(16));
+		assertEquals(3, mergePolicy.getTier(64));
+	}
+
+	@Test
+	public void testNothingToMerge() {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(4);
+
+		// Tiers 2, 1, 0, 0, 0
+		List<DatabaseSegment> segments = createSegments(16, 4, 1, 1, 1);
+		assertEquals(0, mergePolicy.findMerges(segments).size());
+	}
+
+	@Test
+	public void testMergeSmallSegments() {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(4);
+
+		// Tiers 2, 1, 0, 0, 0, 0 -> last four segments are merged
+		List<DatabaseSegment> segments = createSegments(16, 4, 1, 1, 1, 1);
+		List<List<DatabaseSegment>> merges = mergePolicy.findMerges(segments);
+
+		assertEquals(1, merges.size());
+		assertEquals(segments.subList(2, 6), merges.get(0));
+	}
+
+	@Test
+	public void testMergeCascade() {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(4);
+
+		// Tiers 1, 1, 1, 0, 0, 0, 0 -> last four (tier 0) are merged to tier 1, then all four tier 1 segments are merged
+		List<DatabaseSegment> segments = createSegments(4, 4, 4, 1, 1, 1, 1);
+		List<List<DatabaseSegment>> merges = mergePolicy.findMerges(segments);
+
+		assertEquals(1, merges.size());
+		assertEquals(segments, merges.get(0));
+	}
+
+	@Test
+	public void testLargeSegmentsNotMerged() {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy(4);
+
+		// Tiers 3, 2, 2, 2, 1, 1, 1, 1 -> only the tier 1 segments are merged
+		List<DatabaseSegment> segments = createSegments(64, 16, 16, 16, 4, 4, 4, 5);
+		List<List<DatabaseSegment>> merges = mergePolicy.findMerges(segments);
+
+		assertEquals(1, merges.size());
+		assertEquals(segments.subList(1, 8), merges.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSegmentsPerTier() {
+		new TieredMergePolicy(1);
+	}
+
+	private List<DatabaseSegment> createSegments(int... clientVersionCounts) {
+		List<DatabaseSegment> segments = new ArrayList<DatabaseSegment>();
+		long firstClientVersion = 1;
+
+		for (int i = 0; i < clientVersionCounts.length; i++) {
+			long lastClientVersion = firstClientVersion + clientVersionCounts[i] - 1;
+			segments.add(new DatabaseSegment(String.format("database-A-%010d", i + 1), firstClientVersion, lastClientVersion, null));
+
+			firstClientVersion = lastClientVersion + 1;
+		}
+
+		return segments;
+	}
+}
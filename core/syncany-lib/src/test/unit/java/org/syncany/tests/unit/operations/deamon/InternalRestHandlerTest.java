@@ -0,0 +1,156 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.operations.deamon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.syncany.operations.StreamingAssembler;
+import org.syncany.operations.daemon.WebServer;
+import org.syncany.operations.daemon.WebServer.RequestFormatType;
+import org.syncany.operations.daemon.handlers.InternalRestHandler;
+
+import io.undertow.Undertow;
+
+/**
+ * Unit tests for the {@link InternalRestHandler}'s range requests, using Mockito
+ * to mock the {@link WebServer} and the {@link StreamingAssembler}.
+ */
+public class InternalRestHandlerTest {
+	private static final int PORT = 58447;
+	private static final String FILE_TOKEN = "abcdef";
+	private static final byte[] FILE_CONTENT = "0123456789".getBytes();
+
+	private Undertow undertow;
+
+	@Before
+	public void setUp() throws Exception {
+		StreamingAssembler assembler = mock(StreamingAssembler.class);
+		when(assembler.getLength()).thenReturn((long) FILE_CONTENT.length);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				OutputStream outputStream = (OutputStream) invocation.getArguments()[0];
+				long offset = (Long) invocation.getArguments()[1];
+				long rangeLength = (Long) invocation.getArguments()[2];
+
+				outputStream.write(FILE_CONTENT, (int) offset, (int) rangeLength);
+				return null;
+			}
+		}).when(assembler).stream(any(OutputStream.class), anyLong(), anyLong());
+
+		WebServer webServer = mock(WebServer.class);
+		when(webServer.getFileTokenAssemblerFromCache(FILE_TOKEN)).thenReturn(assembler);
+
+		undertow = Undertow.builder()
+				.addHttpListener(PORT, "localhost")
+				.setHandler(new InternalRestHandler(webServer, RequestFormatType.XML))
+				.build();
+
+		undertow.start();
+	}
+
+	@After
+	public void tearDown() {
+		undertow.stop();
+	}
+
+	@Test
+	public void testParseRange() {
+		assertArrayEquals(new long[] { 0, 9 }, InternalRestHandler.parseRange(null, 10));
+		assertArrayEquals(new long[] { 0, 9 }, InternalRestHandler.parseRange("bytes=0-1,3-4", 10)); // Multiple ranges unsupported
+		assertArrayEquals(new long[] { 0, 9 }, InternalRestHandler.parseRange("bytes=-", 10));
+		assertArrayEquals(new long[] { 2, 5 }, InternalRestHandler.parseRange("bytes=2-5", 10));
+		assertArrayEquals(new long[] { 2, 9 }, InternalRestHandler.parseRange("bytes=2-", 10));
+		assertArrayEquals(new long[] { 2, 9 }, InternalRestHandler.parseRange("bytes=2-100", 10));
+		assertArrayEquals(new long[] { 7, 9 }, InternalRestHandler.parseRange("bytes=-3", 10));
+		assertArrayEquals(new long[] { 0, 9 }, InternalRestHandler.parseRange("bytes=-100", 10));
+
+		assertNull(InternalRestHandler.parseRange("bytes=10-", 10));
+		assertNull(InternalRestHandler.parseRange("bytes=5-2", 10));
+		assertNull(InternalRestHandler.parseRange("bytes=99999999999999999999-", 10));
+	}
+
+	@Test
+	public void testFullFile() throws Exception {
+		HttpURLConnection connection = openFileConnection(null);
+
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("bytes", connection.getHeaderField("Accept-Ranges"));
+		assertEquals("10", connection.getHeaderField("Content-Length"));
+		assertArrayEquals(FILE_CONTENT, readResponse(connection));
+	}
+
+	@Test
+	public void testPartialContent() throws Exception {
+		HttpURLConnection connection = openFileConnection("bytes=2-5");
+
+		assertEquals(206, connection.getResponseCode());
+		assertEquals("bytes 2-5/10", connection.getHeaderField("Content-Range"));
+		assertEquals("4", connection.getHeaderField("Content-Length"));
+		assertArrayEquals("2345".getBytes(), readResponse(connection));
+	}
+
+	@Test
+	public void testRangeNotSatisfiable() throws Exception {
+		HttpURLConnection connection = openFileConnection("bytes=20-");
+
+		assertEquals(416, connection.getResponseCode());
+		assertEquals("bytes */10", connection.getHeaderField("Content-Range"));
+	}
+
+	@Test
+	public void testUnknownFileToken() throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/file/unknown").openConnection();
+		assertEquals(404, connection.getResponseCode());
+	}
+
+	private HttpURLConnection openFileConnection(String rangeHeader) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/file/" + FILE_TOKEN).openConnection();
+
+		if (rangeHeader != null) {
+			connection.setRequestProperty("Range", rangeHeader);
+		}
+
+		return connection;
+	}
+
+	private byte[] readResponse(HttpURLConnection connection) throws Exception {
+		try (InputStream inputStream = connection.getInputStream()) {
+			return IOUtils.toByteArray(inputStream);
+		}
+	}
+}
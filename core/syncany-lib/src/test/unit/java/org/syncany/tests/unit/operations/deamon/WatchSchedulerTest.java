@@ -0,0 +1,284 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.operations.deamon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.syncany.config.to.SchedulerTO;
+import org.syncany.operations.daemon.WatchScheduler;
+import org.syncany.operations.down.DownOperation;
+import org.syncany.operations.watch.WatchOperation;
+
+/**
+ * Unit tests for the {@link WatchScheduler} class, using Mockito
+ * to mock the scheduled {@link WatchOperation}s.
+ */
+public class WatchSchedulerTest {
+	private SchedulerTO settings;
+	private WatchScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		settings = new SchedulerTO();
+		scheduler = null;
+	}
+
+	@After
+	public void tearDown() {
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+	}
+
+	@Test
+	public void testFirstSyncImmediatelyThenInterval() throws Exception {
+		startScheduler(1);
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		scheduler.add(watchOperation, 100, 0);
+
+		verify(watchOperation, timeout(2000).atLeast(3)).runScheduledSync();
+	}
+
+	@Test
+	public void testRequestedSyncRunsBeforeInterval() throws Exception {
+		startScheduler(1);
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		scheduler.add(watchOperation, 60 * 1000, 0);
+		verify(watchOperation, timeout(2000).times(1)).runScheduledSync();
+
+		scheduler.syncRequested(watchOperation);
+		verify(watchOperation, timeout(2000).times(2)).runScheduledSync();
+	}
+
+	@Test
+	public void testHigherPriorityRunsFirst() throws Exception {
+		startScheduler(1);
+
+		final List<String> syncOrder = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch blockerStarted = new CountDownLatch(1);
+		final CountDownLatch releaseBlocker = new CountDownLatch(1);
+
+		WatchOperation blockingWatchOperation = mock(WatchOperation.class);
+		WatchOperation lowPriorityWatchOperation = createRecordingWatchOperation("low", syncOrder);
+		WatchOperation highPriorityWatchOperation = createRecordingWatchOperation("high", syncOrder);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				blockerStarted.countDown();
+				releaseBlocker.await();
+				return null;
+			}
+		}).when(blockingWatchOperation).runScheduledSync();
+
+		// Occupy the only worker, then queue both watches
+		scheduler.add(blockingWatchOperation, 60 * 1000, 0);
+		assertTrue(blockerStarted.await(2, TimeUnit.SECONDS));
+
+		scheduler.add(lowPriorityWatchOperation, 60 * 1000, 0);
+		scheduler.add(highPriorityWatchOperation, 60 * 1000, 10);
+
+		releaseBlocker.countDown();
+
+		verify(lowPriorityWatchOperation, timeout(2000).times(1)).runScheduledSync();
+		assertEquals("high", syncOrder.get(0));
+		assertEquals("low", syncOrder.get(1));
+	}
+
+	@Test
+	public void testPausedWatchNotRun() throws Exception {
+		startScheduler(1);
+		WatchOperation watchOperation = mock(WatchOperation.class);
+		when(watchOperation.isPaused()).thenReturn(true);
+
+		scheduler.add(watchOperation, 100, 0);
+		Thread.sleep(500);
+
+		verify(watchOperation, never()).runScheduledSync();
+
+		when(watchOperation.isPaused()).thenReturn(false);
+		verify(watchOperation, timeout(3000).atLeast(1)).runScheduledSync();
+	}
+
+	@Test
+	public void testBackoffAfterFailedSyncs() throws Exception {
+		startScheduler(1);
+		final AtomicInteger failedSyncCount = new AtomicInteger(0);
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				failedSyncCount.incrementAndGet();
+				throw new RuntimeException("Sync failed");
+			}
+		}).when(watchOperation).runScheduledSync();
+
+		scheduler.add(watchOperation, 100, 0);
+		Thread.sleep(1000);
+		scheduler.remove(watchOperation);
+
+		// Without backoff ~10 syncs; with backoff at t=0, 100, 300, 700 ms
+		int syncCount = failedSyncCount.get();
+
+		assertTrue("Expected at least 2 syncs, got " + syncCount, syncCount >= 2);
+		assertTrue("Expected at most 5 syncs, got " + syncCount, syncCount <= 5);
+	}
+
+	@Test
+	public void testRemoveWaitsForRunningSync() throws Exception {
+		startScheduler(1);
+
+		final CountDownLatch syncStarted = new CountDownLatch(1);
+		final AtomicBoolean syncFinished = new AtomicBoolean(false);
+
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				syncStarted.countDown();
+				Thread.sleep(500);
+				syncFinished.set(true);
+				return null;
+			}
+		}).when(watchOperation).runScheduledSync();
+
+		scheduler.add(watchOperation, 100, 0);
+		assertTrue(syncStarted.await(2, TimeUnit.SECONDS));
+
+		scheduler.remove(watchOperation);
+		assertTrue(syncFinished.get());
+
+		// Not run again after removal
+		Thread.sleep(300);
+		verify(watchOperation, times(1)).runScheduledSync();
+	}
+
+	@Test
+	public void testOperationPermitsLimitConcurrency() throws Exception {
+		settings.setMaxConcurrentDown(1);
+		startScheduler(2);
+
+		final AtomicBoolean secondAcquired = new AtomicBoolean(false);
+
+		scheduler.acquireOperation(DownOperation.ACTION_ID);
+
+		Thread secondDownThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					scheduler.acquireOperation(DownOperation.ACTION_ID);
+					secondAcquired.set(true);
+					scheduler.releaseOperation(DownOperation.ACTION_ID);
+				}
+				catch (InterruptedException e) {
+					// Test fails below
+				}
+			}
+		});
+
+		secondDownThread.start();
+		Thread.sleep(300);
+
+		assertFalse(secondAcquired.get());
+
+		scheduler.releaseOperation(DownOperation.ACTION_ID);
+		secondDownThread.join(2000);
+
+		assertTrue(secondAcquired.get());
+	}
+
+	@Test
+	public void testReadOnlyRequestsRunWhileAllWorkersBusy() throws Exception {
+		startScheduler(1);
+
+		final CountDownLatch syncStarted = new CountDownLatch(1);
+		final CountDownLatch releaseSync = new CountDownLatch(1);
+		final CountDownLatch requestExecuted = new CountDownLatch(1);
+
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				syncStarted.countDown();
+				releaseSync.await();
+				return null;
+			}
+		}).when(watchOperation).runScheduledSync();
+
+		scheduler.add(watchOperation, 60 * 1000, 0);
+		assertTrue(syncStarted.await(2, TimeUnit.SECONDS));
+
+		scheduler.executeReadOnlyRequest(new Runnable() {
+			@Override
+			public void run() {
+				requestExecuted.countDown();
+			}
+		});
+
+		assertTrue(requestExecuted.await(2, TimeUnit.SECONDS));
+		releaseSync.countDown();
+	}
+
+	private void startScheduler(int threads) {
+		settings.setThreads(threads);
+
+		scheduler = new WatchScheduler(settings);
+		scheduler.start();
+	}
+
+	private WatchOperation createRecordingWatchOperation(final String name, final List<String> syncOrder) throws Exception {
+		WatchOperation watchOperation = mock(WatchOperation.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				syncOrder.add(name);
+				return null;
+			}
+		}).when(watchOperation).runScheduledSync();
+
+		return watchOperation;
+	}
+}
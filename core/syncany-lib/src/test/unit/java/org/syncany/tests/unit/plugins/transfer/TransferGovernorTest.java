@@ -0,0 +1,215 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.plugins.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.syncany.config.to.TransferGovernorTO;
+import org.syncany.plugins.transfer.GovernedTransferManager;
+import org.syncany.plugins.transfer.TransferGovernor;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
+import org.syncany.plugins.transfer.files.RemoteFile;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+/**
+ * Unit tests for the {@link TransferGovernor} and the {@link GovernedTransferManager},
+ * using Mockito to mock the underlying transfer managers.
+ */
+public class TransferGovernorTest {
+	private static final String HOST_KEY = "test://host";
+
+	private TransferGovernor governor;
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		governor = TransferGovernor.getInstance();
+		governor.disable();
+
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() {
+		governor.disable();
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testDisabledGovernorDoesNotWrap() {
+		TransferManager transferManager = mock(TransferManager.class);
+		assertSame(transferManager, governor.govern(transferManager, null));
+		assertFalse(governor.getStats().isEnabled());
+	}
+
+	@Test
+	public void testGovernedTransferManagerProxiesMethods() throws Exception {
+		configure(0, 0, 0);
+
+		TransferManager transferManager = mock(TransferManager.class);
+		DatabaseRemoteFile remoteFile = new DatabaseRemoteFile("A", 1);
+		File localFile = TestFileUtil.createRandomFileInDirectory(tempDir, 1024);
+
+		when(transferManager.delete(remoteFile)).thenReturn(true);
+		when(transferManager.getChangeMarker(DatabaseRemoteFile.class)).thenReturn("marker");
+
+		TransferManager governedTransferManager = new GovernedTransferManager(transferManager, governor, HOST_KEY, "folder");
+		long uploadedBytesBefore = governor.getStats().getUploadedBytes();
+
+		governedTransferManager.upload(localFile, remoteFile);
+		assertTrue(governedTransferManager.delete(remoteFile));
+		assertEquals("marker", governedTransferManager.getChangeMarker(DatabaseRemoteFile.class));
+
+		verify(transferManager).upload(localFile, remoteFile);
+		verify(transferManager).delete(remoteFile);
+		assertEquals(uploadedBytesBefore + 1024, governor.getStats().getUploadedBytes());
+		assertEquals(0, governor.getStats().getActiveRequests());
+	}
+
+	@Test
+	public void testUploadBandwidthLimited() throws Exception {
+		configure(50 * 1024, 0, 0);
+
+		TransferManager governedTransferManager = new GovernedTransferManager(mock(TransferManager.class), governor, HOST_KEY, "folder");
+		DatabaseRemoteFile remoteFile = new DatabaseRemoteFile("A", 1);
+		File localFile = TestFileUtil.createRandomFileInDirectory(tempDir, 50 * 1024);
+
+		// 150 KB at 50 KB/s, with at most 50 KB available at the start
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < 3; i++) {
+			governedTransferManager.upload(localFile, remoteFile);
+		}
+
+		long duration = System.currentTimeMillis() - startTime;
+		assertTrue("Uploads should take at least ~2s, took " + duration + "ms", duration >= 1500);
+	}
+
+	@Test
+	public void testThrottledUploadDoesNotBlockGovernor() throws Exception {
+		configure(10 * 1024, 0, 0);
+
+		final TransferManager governedTransferManager = new GovernedTransferManager(mock(TransferManager.class), governor, HOST_KEY, "folder");
+		final DatabaseRemoteFile remoteFile = new DatabaseRemoteFile("A", 1);
+		final File localFile = TestFileUtil.createRandomFileInDirectory(tempDir, 50 * 1024);
+
+		Thread uploadThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					governedTransferManager.upload(localFile, remoteFile); // Waits ~4-5s
+				}
+				catch (Exception e) {
+					// Interrupted below
+				}
+			}
+		});
+
+		uploadThread.start();
+		Thread.sleep(300);
+
+		// Reading stats and re-configuring the rate must not wait for the sleeping upload
+		long startTime = System.currentTimeMillis();
+
+		governor.getStats();
+		configure(20 * 1024, 0, 0);
+
+		long duration = System.currentTimeMillis() - startTime;
+		assertTrue("Governor blocked for " + duration + "ms", duration < 1000);
+
+		uploadThread.interrupt();
+		uploadThread.join(2000);
+	}
+
+	@Test
+	public void testMaxRequestsPerHost() throws Exception {
+		configure(0, 0, 1);
+
+		final AtomicInteger activeDownloads = new AtomicInteger(0);
+		final AtomicInteger maxActiveDownloads = new AtomicInteger(0);
+		final CountDownLatch downloadsDone = new CountDownLatch(3);
+
+		TransferManager transferManager = mock(TransferManager.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				int active = activeDownloads.incrementAndGet();
+				maxActiveDownloads.set(Math.max(maxActiveDownloads.get(), active));
+
+				Thread.sleep(100);
+
+				activeDownloads.decrementAndGet();
+				return null;
+			}
+		}).when(transferManager).download(any(RemoteFile.class), any(File.class));
+
+		for (int i = 0; i < 3; i++) {
+			final TransferManager governedTransferManager = new GovernedTransferManager(transferManager, governor, HOST_KEY, "folder" + i);
+
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						governedTransferManager.download(new DatabaseRemoteFile("A", 1), new File(tempDir, "nonexistent"));
+					}
+					catch (Exception e) {
+						// Ignore, test fails below
+					}
+					finally {
+						downloadsDone.countDown();
+					}
+				}
+			}).start();
+		}
+
+		assertTrue(downloadsDone.await(5, TimeUnit.SECONDS));
+		assertEquals(1, maxActiveDownloads.get());
+		assertEquals(0, governor.getStats().getActiveRequests());
+		assertEquals(0, governor.getStats().getQueuedRequests());
+	}
+
+	private void configure(long uploadBytesPerSecond, long downloadBytesPerSecond, int maxRequestsPerHost) {
+		TransferGovernorTO settings = new TransferGovernorTO();
+
+		settings.setUploadBytesPerSecond(uploadBytesPerSecond);
+		settings.setDownloadBytesPerSecond(downloadBytesPerSecond);
+		settings.setMaxRequestsPerHost(maxRequestsPerHost);
+
+		governor.configure(settings);
+	}
+}
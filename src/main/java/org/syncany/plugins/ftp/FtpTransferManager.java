@@ -32,6 +32,7 @@ import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
 import org.syncany.config.Config;
 import org.syncany.plugins.transfer.AbstractTransferManager;
 import org.syncany.plugins.transfer.StorageException;
@@ -43,6 +44,7 @@ import org.syncany.plugins.transfer.files.CleanupRemoteFile;
 import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
 import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
 import org.syncany.plugins.transfer.files.RemoteFile;
+import org.syncany.plugins.transfer.files.SnapshotRemoteFile;
 import org.syncany.plugins.transfer.files.SyncanyRemoteFile;
 import org.syncany.plugins.transfer.files.TempRemoteFile;
 import org.syncany.plugins.transfer.files.TransactionRemoteFile;
@@ -74,9 +76,12 @@ public class FtpTransferManager extends AbstractTransferManager {
 	private static final int TIMEOUT_DEFAULT = 5000;
 	private static final int TIMEOUT_CONNECT = 5000;
 	private static final int TIMEOUT_DATA = 5000;
+	private static final String[] MD5_COMMANDS = new String[] { "MD5", "XMD5" };
 
 	private FTPClient ftp;
 	private boolean ftpIsLoggedIn;
+	private String md5Command;
+	private boolean md5CommandUnsupported;
 
 	private String repoPath;
 	private String multichunksPath;
@@ -90,6 +95,8 @@ public class FtpTransferManager extends AbstractTransferManager {
 
 		this.ftp = new FTPClient();
 		this.ftpIsLoggedIn = false;
+		this.md5Command = null;
+		this.md5CommandUnsupported = false;
 
 		this.repoPath = connection.getPath().startsWith("/") ? connection.getPath() : "/" + connection.getPath();
 		this.multichunksPath = repoPath + "/multichunks";
@@ -342,6 +349,108 @@ public class FtpTransferManager extends AbstractTransferManager {
 		}
 	}
 
+	/**
+	 * Returns the modification time of the folder in which the files of the given type
+	 * are stored, as reported by the FTP <tt>MDTM</tt> command. Since the modification time
+	 * of a folder changes whenever a file is added, deleted or renamed within this folder,
+	 * it can be used to detect remote changes without listing the folder.
+	 *
+	 * <p>Many FTP servers only support <tt>MDTM</tt> for files, but not for folders. In 
+	 * this case, <tt>null</tt> is returned, and the caller has to list the folder instead.
+	 */
+	@Override
+	public String getChangeMarker(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		connect();
+
+		String remoteFilePath = getRemoteFilePath(remoteFileClass);
+
+		try {
+			String modificationTime = ftp.getModificationTime(remoteFilePath);
+
+			if (modificationTime == null) {
+				logger.log(Level.INFO, "FTP: MDTM not supported for folder " + remoteFilePath + ", no change marker available.");
+				return null;
+			}
+
+			return modificationTime.trim();
+		}
+		catch (IOException ex) {
+			forceFtpDisconnect();
+
+			logger.log(Level.SEVERE, "Unable to retrieve modification time of FTP directory " + remoteFilePath, ex);
+			throw new StorageException(ex);
+		}
+	}
+
+	/**
+	 * Returns the MD5 checksum of the given file, as calculated by the FTP server using the
+	 * <tt>MD5</tt> command or its older variant <tt>XMD5</tt>. The command that worked is
+	 * remembered for subsequent calls. If the server supports neither of the commands,
+	 * <tt>null</tt> is returned without asking the server again.
+	 *
+	 * <p>Replies to both commands end with the checksum (e.g. <tt>251 "/path/file" 8DE4..</tt>
+	 * or <tt>250 8DE4..</tt>), so only the last token of the reply is parsed.
+	 */
+	@Override
+	public String getMd5Checksum(RemoteFile remoteFile) throws StorageException {
+		if (md5CommandUnsupported) {
+			return null;
+		}
+
+		connect();
+
+		String remotePath = getRemoteFile(remoteFile);
+		String[] md5Commands = (md5Command != null) ? new String[] { md5Command } : MD5_COMMANDS;
+
+		try {
+			for (String command : md5Commands) {
+				int replyCode = ftp.sendCommand(command, remotePath);
+
+				if (FTPReply.isPositiveCompletion(replyCode)) {
+					String checksum = parseMd5Reply(ftp.getReplyString());
+
+					if (checksum != null) {
+						md5Command = command;
+						return checksum;
+					}
+				}
+				else if (!isCommandUnsupportedReply(replyCode)) {
+					logger.log(Level.INFO, "FTP: " + command + " failed for " + remotePath + ": " + ftp.getReplyString());
+					return null;
+				}
+			}
+
+			logger.log(Level.INFO, "FTP: Server does not support MD5 checksums, no server-side checksums available.");
+			md5CommandUnsupported = (md5Command == null);
+
+			return null;
+		}
+		catch (IOException ex) {
+			forceFtpDisconnect();
+
+			logger.log(Level.SEVERE, "Unable to retrieve MD5 checksum of FTP file " + remotePath, ex);
+			throw new StorageException(ex);
+		}
+	}
+
+	private String parseMd5Reply(String replyString) {
+		String[] replyTokens = replyString.trim().split("\\s+");
+		String checksum = replyTokens[replyTokens.length - 1].replace("\"", "");
+
+		if (checksum.matches("^[0-9a-fA-F]{32}$")) {
+			return checksum.toLowerCase();
+		}
+		else {
+			logger.log(Level.INFO, "FTP: Cannot parse MD5 reply " + replyString.trim());
+			return null;
+		}
+	}
+
+	private boolean isCommandUnsupportedReply(int replyCode) {
+		return replyCode == FTPReply.UNRECOGNIZED_COMMAND || replyCode == FTPReply.SYNTAX_ERROR_IN_ARGUMENTS
+				|| replyCode == FTPReply.COMMAND_NOT_IMPLEMENTED || replyCode == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER;
+	}
+
 	private void forceFtpDisconnect() {
 		try {
 			ftp.disconnect();
@@ -359,7 +468,8 @@ public class FtpTransferManager extends AbstractTransferManager {
 		if (remoteFile.equals(MultichunkRemoteFile.class)) {
 			return multichunksPath;
 		}
-		else if (remoteFile.equals(DatabaseRemoteFile.class) || remoteFile.equals(CleanupRemoteFile.class)) {
+		else if (remoteFile.equals(DatabaseRemoteFile.class) || remoteFile.equals(CleanupRemoteFile.class)
+				|| remoteFile.equals(SnapshotRemoteFile.class)) {
 			return databasesPath;
 		}
 		else if (remoteFile.equals(ActionRemoteFile.class)) {
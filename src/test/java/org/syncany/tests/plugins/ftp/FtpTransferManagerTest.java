@@ -17,12 +17,24 @@
  */
 package org.syncany.tests.plugins.ftp;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.syncany.plugins.Plugins;
+import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.TransferPlugin;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
 import org.syncany.tests.plugins.AbstractTransferManagerTest;
+import org.syncany.tests.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
 
 /**
  * @author Vincent Wiencek <vwiencek@gmail.com>
@@ -38,6 +50,39 @@ public class FtpTransferManagerTest extends AbstractTransferManagerTest {
 		EmbeddedTestFtpServer.stopServer();
 	}
 	
+	@Test
+	public void testMd5ChecksumCalculatedByServer() throws Exception {
+		// Setup
+		File tempLocalDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File localFile = TestFileUtil.createRandomFileInDirectory(tempLocalDir, 50 * 1024);
+
+		TransferPlugin plugin = Plugins.get(getPluginId(), TransferPlugin.class);
+		TransferSettings connection = plugin.createEmptySettings();
+
+		for (Map.Entry<String, String> pair : createPluginSettings().entrySet()) {
+			connection.setField(pair.getKey(), pair.getValue());
+		}
+
+		TransferManager transferManager = plugin.createTransferManager(connection, null);
+		transferManager.init(true);
+
+		// Run
+		MultichunkRemoteFile remoteFile = new MultichunkRemoteFile("multichunk-84f7e2b31440aaef9b73de3cadcf4e449aeb55a1");
+		transferManager.upload(localFile, remoteFile);
+
+		String localChecksum = StringUtil.toHex(FileUtil.createChecksum(localFile, "MD5"));
+		String remoteChecksum = transferManager.getMd5Checksum(remoteFile);
+
+		// Test
+		assertEquals(localChecksum, remoteChecksum);
+
+		// Tear down
+		transferManager.delete(remoteFile);
+		transferManager.disconnect();
+
+		TestFileUtil.deleteDirectory(tempLocalDir);
+	}
+
 	@Override
 	public Map<String, String> createPluginSettings() {
 		Map<String, String> pluginSettings = new HashMap<String, String>();